@@ -0,0 +1,27 @@
+package io.github.heathensoft.jlib.ai.btree;
+
+/**
+ * Stateless action leaf of a SharedTree. The same instance acts for every agent.
+ * Per-agent data is looked up by the agent index.
+ *
+ * @author Frederik Dahl
+ * 18/10/2026
+ */
+
+
+@FunctionalInterface
+public interface AgentAction {
+    
+    /**
+     * Called at the start of a tick if the action is not already RUNNING for the agent
+     */
+    default void initialize(int agent) { }
+    
+    Status update(int agent);
+    
+    /**
+     * Called on exiting an update with status != RUNNING,
+     * or when the action is aborted while RUNNING for the agent.
+     */
+    default void terminate(int agent, Status status) { }
+}
@@ -0,0 +1,15 @@
+package io.github.heathensoft.jlib.ai.btree;
+
+/**
+ * Stateless condition leaf of a SharedTree. The same instance queries every agent.
+ *
+ * @author Frederik Dahl
+ * 18/10/2026
+ */
+
+
+@FunctionalInterface
+public interface AgentCondition {
+    
+    boolean query(int agent);
+}
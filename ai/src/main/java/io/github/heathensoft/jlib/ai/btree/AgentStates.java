@@ -0,0 +1,78 @@
+package io.github.heathensoft.jlib.ai.btree;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Per-agent state of a SharedTree. Agent-major arrays:
+ * status and cursor per node, timer start time per timed node, child order per random composite.
+ * Timers run on the clock of this block. Advance it with update(dt).
+ * Random composites draw from a per-agent seed (derived from the seed of the block), so agents can be ticked on different threads.
+ *
+ * @author Frederik Dahl
+ * 18/10/2026
+ */
+
+
+public final class AgentStates {
+    
+    final SharedTree tree;
+    final int agents;
+    final byte[] status;
+    final int[] cursor;
+    final double[] timer;
+    final int[] order;
+    final int[] seed;
+    double clock;
+    
+    AgentStates(SharedTree tree, int agents, long seed) {
+        if (agents < 0) throw new IllegalArgumentException("agents < 0");
+        this.tree = tree;
+        this.agents = agents;
+        this.status = new byte[agents * tree.nodeCount()];
+        this.cursor = new int[agents * tree.nodeCount()];
+        this.timer = new double[agents * tree.timerCount()];
+        this.order = new int[agents * tree.orderCount()];
+        this.seed = new int[tree.orderCount() > 0 ? agents : 0];
+        Random random = new Random(seed);
+        for (int i = 0; i < this.seed.length; i++) this.seed[i] = random.nextInt() | 1;
+        Arrays.fill(timer,Double.NEGATIVE_INFINITY);
+        tree.initializeOrder(order,agents);
+    }
+    
+    /**
+     * Advance the clock of the timers
+     * @param dt delta time
+     */
+    public void update(float dt) {
+        clock += dt;
+    }
+    
+    /**
+     * @param agent agent
+     * @return status of the agent's root node after its last tick
+     */
+    public Status status(int agent) {
+        return Status.values()[status[agent * tree.nodeCount()]];
+    }
+    
+    public SharedTree tree() {
+        return tree;
+    }
+    
+    public int agents() {
+        return agents;
+    }
+    
+    public double clock() {
+        return clock;
+    }
+    
+    /** @return bytes of state per agent */
+    public int bytesPerAgent() {
+        return tree.nodeCount() * (Byte.BYTES + Integer.BYTES)
+                + tree.timerCount() * Double.BYTES
+                + tree.orderCount() * Integer.BYTES
+                + (seed.length > 0 ? Integer.BYTES : 0);
+    }
+}
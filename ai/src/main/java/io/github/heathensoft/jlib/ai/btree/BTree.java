@@ -1,5 +1,7 @@
 package io.github.heathensoft.jlib.ai.btree;
 
+import io.github.heathensoft.jlib.ai.btree.time.BTime;
+
 /**
  * @author Frederik Dahl
  * 06/08/2022
@@ -23,6 +25,10 @@ public abstract class BTree {
         this.root = root;
     }
     
+    /**
+     * Advances the time shared by all nodes built without a BTime.
+     * Main thread only. Trees ticked on other threads should use the time of a BTreeShard
+     */
     public static void updateInternalTime(float dt) {
         TreeNode.internalTime.update(dt);
     }
@@ -75,6 +81,10 @@ public abstract class BTree {
         return new Wait(duration);
     }
     
+    public static Wait wait(BTime time, final float duration) {
+        return new Wait(time,duration);
+    }
+    
     public static Parallel parallelRequireONE(TreeNode... children) {
         return new Parallel(Parallel.Policy.REQUIRE_ONE,children);
     }
@@ -95,6 +105,18 @@ public abstract class BTree {
         return new Remember(child,TreeNode.internalTime, Remember.Policy.LAST_STATE,duration);
     }
     
+    public static Remember rememberSuccess(TreeNode child, BTime time, final float duration) {
+        return new Remember(child,time, Remember.Policy.SUCCESS,duration);
+    }
+    
+    public static Remember rememberFailiure(TreeNode child, BTime time, final float duration) {
+        return new Remember(child,time, Remember.Policy.FAILIURE,duration);
+    }
+    
+    public static Remember rememberLast(TreeNode child, BTime time, final float duration) {
+        return new Remember(child,time, Remember.Policy.LAST_STATE,duration);
+    }
+    
     public static Repeat repeat(TreeNode child, final int times) {
         return new Repeat(child, times);
     }
@@ -0,0 +1,114 @@
+package io.github.heathensoft.jlib.ai.btree;
+
+import io.github.heathensoft.jlib.ai.btree.time.BTime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A group of behaviour trees with its own time source.
+ * Build the timed nodes of the trees with the shard's time
+ * (BTree.wait(time,duration), BTree.rememberLast(child,time,duration) ...),
+ * and the shard's trees and timers are confined to whichever thread ticks the shard.
+ *
+ * Shards (i.e. one per world or region) can be ticked in parallel with tickParallel.
+ * A shard is never ticked by two threads at once, trees of different shards must not share nodes.
+ *
+ * @author Frederik Dahl
+ * 18/10/2026
+ */
+
+
+public class BTreeShard {
+    
+    private final BTime time;
+    private final List<BTree> trees;
+    
+    public BTreeShard() {
+        this(16);
+    }
+    
+    public BTreeShard(int initialCapacity) {
+        this.time = new BTime(initialCapacity);
+        this.trees = new ArrayList<>(initialCapacity);
+    }
+    
+    /** @return the time source for the timed nodes of this shard */
+    public BTime time() {
+        return time;
+    }
+    
+    public void add(BTree tree) {
+        trees.add(tree);
+    }
+    
+    public boolean remove(BTree tree) {
+        return trees.remove(tree);
+    }
+    
+    public int size() {
+        return trees.size();
+    }
+    
+    /** Advance the timers of this shard */
+    public void update(float dt) {
+        time.update(dt);
+    }
+    
+    /**
+     * Tick every tree of the shard
+     * @return number of trees per root status, indexed by Status.ordinal()
+     */
+    public int[] tick() {
+        int[] count = new int[Status.values().length];
+        for (int i = 0; i < trees.size(); i++) {
+            count[trees.get(i).tick().ordinal()]++;
+        } return count;
+    }
+    
+    /**
+     * Update then tick every shard on the common ForkJoinPool. One task per shard.
+     * @param dt delta time
+     * @return merged number of trees per root status, indexed by Status.ordinal()
+     */
+    public static int[] tickParallel(float dt, BTreeShard... shards) {
+        return tickParallel(ForkJoinPool.commonPool(),dt,shards);
+    }
+    
+    /**
+     * Update then tick every shard on the pool. One task per shard.
+     * @param pool worker pool
+     * @param dt delta time
+     * @return merged number of trees per root status, indexed by Status.ordinal()
+     */
+    public static int[] tickParallel(ForkJoinPool pool, float dt, BTreeShard... shards) {
+        return pool.invoke(new ShardTask(shards,dt,0,shards.length));
+    }
+    
+    private static final class ShardTask extends RecursiveTask<int[]> {
+        private final BTreeShard[] shards;
+        private final float dt;
+        private final int from, to;
+        ShardTask(BTreeShard[] shards, float dt, int from, int to) {
+            this.shards = shards;
+            this.dt = dt;
+            this.from = from;
+            this.to = to;
+        }
+        protected int[] compute() {
+            if (to - from <= 1) {
+                if (to == from) return new int[Status.values().length];
+                shards[from].update(dt);
+                return shards[from].tick();
+            } int mid = (from + to) >>> 1;
+            ShardTask left = new ShardTask(shards,dt,from,mid);
+            left.fork();
+            int[] count = new ShardTask(shards,dt,mid,to).compute();
+            int[] left_count = left.join();
+            for (int i = 0; i < count.length; i++) count[i] += left_count[i];
+            return count;
+        }
+    }
+}
@@ -42,6 +42,10 @@ public class Parallel extends Composite {
         this.policy = policy;
     }
     
+    Policy policy() {
+        return policy;
+    }
+    
     @Override
     protected void initialize() {
     
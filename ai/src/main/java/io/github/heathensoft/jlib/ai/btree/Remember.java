@@ -63,6 +63,14 @@ public class Remember extends Decorator implements TimedTask {
         SUCCESS
     }
     
+    Policy policy() {
+        return policy;
+    }
+    
+    float duration() {
+        return timer.duration();
+    }
+    
     @Override
     protected void initialize() {
     
@@ -0,0 +1,136 @@
+package io.github.heathensoft.jlib.ai.btree;
+
+import static io.github.heathensoft.jlib.ai.btree.SharedTree.*;
+
+/**
+ * Node of a SharedTree definition, built with the static methods (named like the BTree builders).
+ * Not a TreeNode: AgentAction and AgentCondition leaves act for an agent index,
+ * so they can only be placed in a SharedTree, never ticked by an object tree.
+ * Immutable. A node can be reused, every occurrence is compiled to its own node (own state).
+ *
+ * @author Frederik Dahl
+ * 18/10/2026
+ */
+
+
+public final class SharedNode {
+
+    private static final SharedNode[] LEAF = new SharedNode[0];
+
+    final byte type;
+    final byte flags;
+    final int param;
+    final float duration;
+    final Object leaf;
+    final SharedNode[] children;
+
+    private SharedNode(byte type, byte flags, int param, float duration, Object leaf, SharedNode... children) {
+        if (children == null) throw new IllegalArgumentException("Null argument for ...children");
+        for (SharedNode child : children) {
+            if (child == null) throw new IllegalArgumentException("null child");
+        } this.type = type;
+        this.flags = flags;
+        this.param = param;
+        this.duration = duration;
+        this.leaf = leaf;
+        this.children = children.clone();
+    }
+
+    private SharedNode(byte type) {
+        this(type,(byte) 0,0,0,null,LEAF);
+    }
+
+    public static SharedNode passiveSelector(SharedNode... children) {
+        return new SharedNode(SELECTOR,(byte) 0,0,0,null,children);
+    }
+
+    public static SharedNode reactiveSelector(SharedNode... children) {
+        return new SharedNode(SELECTOR,REACTIVE,0,0,null,children);
+    }
+
+    public static SharedNode passiveSelectorRND(SharedNode... children) {
+        return new SharedNode(SELECTOR,RANDOM,0,0,null,children);
+    }
+
+    public static SharedNode reactiveSelectorRND(SharedNode... children) {
+        return new SharedNode(SELECTOR,(byte) (REACTIVE | RANDOM),0,0,null,children);
+    }
+
+    public static SharedNode passiveSequence(SharedNode... children) {
+        return new SharedNode(SEQUENCE,(byte) 0,0,0,null,children);
+    }
+
+    public static SharedNode reactiveSequence(SharedNode... children) {
+        return new SharedNode(SEQUENCE,REACTIVE,0,0,null,children);
+    }
+
+    public static SharedNode passiveSequenceRND(SharedNode... children) {
+        return new SharedNode(SEQUENCE,RANDOM,0,0,null,children);
+    }
+
+    public static SharedNode reactiveSequenceRND(SharedNode... children) {
+        return new SharedNode(SEQUENCE,(byte) (REACTIVE | RANDOM),0,0,null,children);
+    }
+
+    public static SharedNode parallelRequireONE(SharedNode... children) {
+        return new SharedNode(PARALLEL,REQUIRE_ONE,0,0,null,children);
+    }
+
+    public static SharedNode parallelRequireALL(SharedNode... children) {
+        return new SharedNode(PARALLEL,(byte) 0,0,0,null,children);
+    }
+
+    public static SharedNode fail() {
+        return new SharedNode(FAIL);
+    }
+
+    public static SharedNode succeed() {
+        return new SharedNode(SUCCEED);
+    }
+
+    public static SharedNode invert(SharedNode child) {
+        return new SharedNode(INVERT,(byte) 0,0,0,null,child);
+    }
+
+    public static SharedNode toFailiure(SharedNode child) {
+        return new SharedNode(TO_FAILIURE,(byte) 0,0,0,null,child);
+    }
+
+    public static SharedNode repeat(SharedNode child, final int times) {
+        if (times <= 0) throw new IllegalStateException("repeat <= 0");
+        return new SharedNode(REPEAT,(byte) 0,times,0,null,child);
+    }
+
+    /** Timers run on the clock of the AgentStates block */
+    public static SharedNode wait(final float duration) {
+        return new SharedNode(WAIT,(byte) 0,0,duration,null,LEAF);
+    }
+
+    public static SharedNode rememberSuccess(SharedNode child, final float duration) {
+        return remember(child,Remember.Policy.SUCCESS,duration);
+    }
+
+    public static SharedNode rememberFailiure(SharedNode child, final float duration) {
+        return remember(child,Remember.Policy.FAILIURE,duration);
+    }
+
+    public static SharedNode rememberLast(SharedNode child, final float duration) {
+        return remember(child,Remember.Policy.LAST_STATE,duration);
+    }
+
+    /** Stateless action leaf. The same instance acts for every agent */
+    public static SharedNode action(AgentAction action) {
+        if (action == null) throw new IllegalArgumentException("action == null");
+        return new SharedNode(ACTION,(byte) 0,0,0,action,LEAF);
+    }
+
+    /** Stateless condition leaf. The same instance queries every agent */
+    public static SharedNode condition(AgentCondition condition) {
+        if (condition == null) throw new IllegalArgumentException("condition == null");
+        return new SharedNode(CONDITION,(byte) 0,0,0,condition,LEAF);
+    }
+
+    private static SharedNode remember(SharedNode child, Remember.Policy policy, float duration) {
+        return new SharedNode(REMEMBER,(byte) 0,policy.ordinal(),duration,null,child);
+    }
+}
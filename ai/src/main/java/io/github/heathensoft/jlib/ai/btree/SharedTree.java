@@ -0,0 +1,500 @@
+package io.github.heathensoft.jlib.ai.btree;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Immutable behaviour tree definition, shared by any number of agents.
+ *
+ * Compiled from a tree of SharedNodes (built like a BTree, see SharedNode). The nodes are flattened
+ * into arrays (pre-order) and every agent's state (status and child cursor per node,
+ * timer per timed node, child order per random composite) is stored in an AgentStates block.
+ * One tree ticks N agents in a loop, instead of one object graph per agent.
+ *
+ * Ticks behave like the object tree (same child order, same policies).
+ * Timers (Wait, Remember) run on the clock of the AgentStates block (AgentStates.update(dt)),
+ * not on the static BTree time.
+ *
+ * Leaves are stateless: SharedNode.action(AgentAction), SharedNode.condition(AgentCondition),
+ * SharedNode.succeed(), SharedNode.fail() and SharedNode.wait(duration).
+ *
+ * tickParallel splits the agents of a state block across a ForkJoinPool.
+ * Agents never share state, so leaves only need to be safe for distinct agents on different threads.
+ * Don't update(dt) the state block while it is being ticked.
+ *
+ * @author Frederik Dahl
+ * 18/10/2026
+ */
+
+
+public final class SharedTree {
+
+    static final byte INVALID = 0;
+    static final byte RUNNING = 1;
+    static final byte SUCCESS = 2;
+    static final byte FAILIURE = 3;
+
+    /** Agents per fork-join task */
+    public static final int PARALLEL_GRAIN = 256;
+
+    private static final Status[] STATUS = Status.values();
+    private static final Remember.Policy[] REMEMBER_POLICY = Remember.Policy.values();
+
+    static final byte SELECTOR = 0;
+    static final byte SEQUENCE = 1;
+    static final byte PARALLEL = 2;
+    static final byte INVERT = 3;
+    static final byte TO_FAILIURE = 4;
+    static final byte REPEAT = 5;
+    static final byte REMEMBER = 6;
+    static final byte WAIT = 7;
+    static final byte ACTION = 8;
+    static final byte CONDITION = 9;
+    static final byte SUCCEED = 10;
+    static final byte FAIL = 11;
+
+    static final byte REACTIVE = 0b001;
+    static final byte RANDOM = 0b010;
+    static final byte REQUIRE_ONE = 0b100;
+
+    private final byte[] type;
+    private final byte[] flags;
+    private final int[] first_child;
+    private final int[] child_count;
+    private final int[] children;
+    private final int[] param;
+    private final float[] duration;
+    private final int[] timer_slot;
+    private final int[] order_slot;
+    private final Object[] leaf;
+    private final int node_count;
+    private final int timer_count;
+    private final int order_count;
+
+    public SharedTree(SharedNode root) {
+        if (root == null) throw new IllegalArgumentException("root == null");
+        Compiler compiler = new Compiler();
+        compiler.compile(root);
+        this.node_count = compiler.count;
+        this.timer_count = compiler.timers;
+        this.order_count = compiler.orders;
+        this.type = Arrays.copyOf(compiler.type,node_count);
+        this.flags = Arrays.copyOf(compiler.flags,node_count);
+        this.first_child = Arrays.copyOf(compiler.first_child,node_count);
+        this.child_count = Arrays.copyOf(compiler.child_count,node_count);
+        this.children = Arrays.copyOf(compiler.children,compiler.children_size);
+        this.param = Arrays.copyOf(compiler.param,node_count);
+        this.duration = Arrays.copyOf(compiler.duration,node_count);
+        this.timer_slot = Arrays.copyOf(compiler.timer_slot,node_count);
+        this.order_slot = Arrays.copyOf(compiler.order_slot,node_count);
+        this.leaf = Arrays.copyOf(compiler.leaf,node_count);
+    }
+
+    /**
+     * @param agents number of agents
+     * @param seed seeds the per-agent draws of the random composites
+     * @return a new state block for this tree
+     */
+    public AgentStates newStates(int agents, long seed) {
+        return new AgentStates(this,agents,seed);
+    }
+
+    /**
+     * Tick every agent
+     * @param states state block of this tree
+     */
+    public void tick(AgentStates states) {
+        tick(states,0,states.agents);
+    }
+
+    /**
+     * Tick agents in range
+     * @param states state block of this tree
+     * @param fromAgent first agent inclusive
+     * @param toAgent last agent exclusive
+     */
+    public void tick(AgentStates states, int fromAgent, int toAgent) {
+        validate(states);
+        for (int agent = fromAgent; agent < toAgent; agent++) {
+            tick_node(states,0,agent);
+        }
+    }
+
+    /**
+     * Tick every agent on the common ForkJoinPool
+     * @param states state block of this tree
+     * @return number of agents per root status, indexed by Status.ordinal()
+     */
+    public int[] tickParallel(AgentStates states) {
+        return tickParallel(states,ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Tick every agent. Agent ranges are split across the pool and the results merged.
+     * @param states state block of this tree
+     * @param pool worker pool
+     * @return number of agents per root status, indexed by Status.ordinal()
+     */
+    public int[] tickParallel(AgentStates states, ForkJoinPool pool) {
+        validate(states);
+        return pool.invoke(new ParallelTick(states,0,states.agents));
+    }
+
+    /**
+     * Tick a single agent
+     * @param states state block of this tree
+     * @param agent agent
+     * @return status of the root
+     */
+    public Status tick(AgentStates states, int agent) {
+        validate(states);
+        return STATUS[tick_node(states,0,agent)];
+    }
+
+    /**
+     * Terminates the agent's running nodes
+     * @param states state block of this tree
+     * @param agent agent
+     */
+    public void abort(AgentStates states, int agent) {
+        validate(states);
+        abort_node(states,0,agent);
+    }
+
+    public int nodeCount() {
+        return node_count;
+    }
+
+    int timerCount() {
+        return timer_count;
+    }
+
+    int orderCount() {
+        return order_count;
+    }
+
+    void initializeOrder(int[] order, int agents) {
+        for (int n = 0; n < node_count; n++) {
+            if ((flags[n] & RANDOM) != 0) {
+                for (int agent = 0; agent < agents; agent++) {
+                    int offset = agent * order_count + order_slot[n];
+                    for (int i = 0; i < child_count[n]; i++) order[offset + i] = i;
+                }
+            }
+        }
+    }
+
+    private int[] tick_range(AgentStates states, int from, int to) {
+        int[] count = new int[STATUS.length];
+        for (int agent = from; agent < to; agent++) {
+            count[tick_node(states,0,agent)]++;
+        } return count;
+    }
+
+    private final class ParallelTick extends RecursiveTask<int[]> {
+        private final AgentStates states;
+        private final int from, to;
+        ParallelTick(AgentStates states, int from, int to) {
+            this.states = states;
+            this.from = from;
+            this.to = to;
+        }
+        protected int[] compute() {
+            if (to - from <= PARALLEL_GRAIN) return tick_range(states,from,to);
+            int mid = (from + to) >>> 1;
+            ParallelTick left = new ParallelTick(states,from,mid);
+            left.fork();
+            int[] count = new ParallelTick(states,mid,to).compute();
+            int[] left_count = left.join();
+            for (int i = 0; i < count.length; i++) count[i] += left_count[i];
+            return count;
+        }
+    }
+
+    private void validate(AgentStates states) {
+        if (states.tree != this) throw new IllegalArgumentException("AgentStates of another SharedTree");
+    }
+
+    private byte tick_node(AgentStates states, int n, int agent) {
+        switch (type[n]) {
+            case CONDITION: return ((AgentCondition) leaf[n]).query(agent) ? SUCCESS : FAILIURE;
+            case SUCCEED: return SUCCESS;
+            case FAIL: return FAILIURE;
+            case WAIT: return tick_wait(states,n,agent);
+        } final int i = agent * node_count + n;
+        if (states.status[i] != RUNNING) initialize(states,n,agent);
+        byte status = update(states,n,agent);
+        states.status[i] = status;
+        if (status != RUNNING) terminate(states,n,agent,status);
+        return status;
+    }
+
+    private void initialize(AgentStates states, int n, int agent) {
+        switch (type[n]) {
+            case SELECTOR:
+            case SEQUENCE: states.cursor[agent * node_count + n] = child_count[n]; break;
+            case ACTION: ((AgentAction) leaf[n]).initialize(agent); break;
+        }
+    }
+
+    private byte update(AgentStates states, int n, int agent) {
+        switch (type[n]) {
+            case SELECTOR: return update_serial(states,n,agent,SUCCESS,FAILIURE);
+            case SEQUENCE: return update_serial(states,n,agent,FAILIURE,SUCCESS);
+            case PARALLEL: return update_parallel(states,n,agent);
+            case INVERT: switch (tick_node(states,children[first_child[n]],agent)) {
+                    case RUNNING: return RUNNING;
+                    case SUCCESS: return FAILIURE;
+                    case FAILIURE: return SUCCESS;
+                    default: throw new IllegalStateException();
+                }
+            case TO_FAILIURE: switch (tick_node(states,children[first_child[n]],agent)) {
+                    case RUNNING:
+                    case SUCCESS: return RUNNING;
+                    case FAILIURE: return SUCCESS;
+                    default: throw new IllegalStateException("INVALID");
+                }
+            case REPEAT: return update_repeat(states,n,agent);
+            case REMEMBER: return update_remember(states,n,agent);
+            case ACTION: return (byte) ((AgentAction) leaf[n]).update(agent).ordinal();
+            default: throw new IllegalStateException();
+        }
+    }
+
+    private void terminate(AgentStates states, int n, int agent, byte status) {
+        final int i = agent * node_count + n;
+        switch (type[n]) {
+            case SELECTOR:
+            case SEQUENCE:
+                for (int c = 0; c < child_count[n]; c++)
+                    abort_node(states,children[first_child[n] + c],agent);
+                break;
+            case PARALLEL:
+                for (int c = 0; c < child_count[n]; c++)
+                    abort_node(states,children[first_child[n] + c],agent);
+                states.cursor[i] = 0;
+                break;
+            case INVERT:
+            case TO_FAILIURE:
+                if (status == RUNNING) abort_node(states,children[first_child[n]],agent);
+                break;
+            case REPEAT:
+                if (status == RUNNING) abort_node(states,children[first_child[n]],agent);
+                states.cursor[i] = 0;
+                break;
+            case REMEMBER:
+                if (status == RUNNING) {
+                    stop_timer(states,n,agent);
+                    abort_node(states,children[first_child[n]],agent);
+                } break;
+            case WAIT: stop_timer(states,n,agent); break;
+            case ACTION: ((AgentAction) leaf[n]).terminate(agent,STATUS[status]); break;
+        }
+    }
+
+    private void abort_node(AgentStates states, int n, int agent) {
+        switch (type[n]) {
+            case CONDITION:
+            case SUCCEED:
+            case FAIL: return;
+        } final int i = agent * node_count + n;
+        if (states.status[i] == RUNNING) {
+            terminate(states,n,agent,RUNNING);
+            states.status[i] = INVALID;
+        }
+    }
+
+    /** Selector: exit = SUCCESS, exhausted = FAILIURE. Sequence: exit = FAILIURE, exhausted = SUCCESS */
+    private byte update_serial(AgentStates states, int n, int agent, byte exit, byte exhausted) {
+        final int i = agent * node_count + n;
+        final boolean random = (flags[n] & RANDOM) != 0;
+        final int first = first_child[n];
+        final int order = agent * order_count + order_slot[n];
+        if (states.status[i] == RUNNING) {
+            if ((flags[n] & REACTIVE) != 0) states.cursor[i] = child_count[n];
+            else { int cursor = states.cursor[i];
+                int previous = random ? children[first + states.order[order + cursor]] : children[first + cursor];
+                byte status = tick_node(states,previous,agent);
+                if (status == RUNNING) return RUNNING;
+                if (status == exit) return exit;
+            }
+        } while (states.cursor[i] > 0) {
+            int remaining = --states.cursor[i];
+            int child;
+            if (random) {
+                int[] o = states.order;
+                int index = next_random(states,agent,remaining + 1);
+                if (index != remaining) {
+                    int tmp = o[order + index];
+                    o[order + index] = o[order + remaining];
+                    o[order + remaining] = tmp;
+                } child = children[first + o[order + remaining]];
+            } else child = children[first + remaining];
+            byte status = tick_node(states,child,agent);
+            if (status == RUNNING) return RUNNING;
+            if (status == exit) return exit;
+        } return exhausted;
+    }
+
+    private byte update_parallel(AgentStates states, int n, int agent) {
+        final int i = agent * node_count + n;
+        final int base = agent * node_count;
+        final boolean require_one = (flags[n] & REQUIRE_ONE) != 0;
+        final boolean first_pass = states.status[i] != RUNNING;
+        final int count = child_count[n];
+        int running = 0;
+        for (int c = 0; c < count; c++) {
+            int child = children[first_child[n] + c];
+            if (!first_pass && states.status[base + child] != RUNNING) continue;
+            switch (tick_node(states,child,agent)) {
+                case RUNNING:
+                    running++;
+                    break;
+                case SUCCESS:
+                    if (require_one) return SUCCESS;
+                    states.cursor[i]++;
+                    break;
+                case FAILIURE:
+                    if (!require_one) return FAILIURE;
+                    break;
+                default: throw new IllegalStateException();
+            }
+        } if (running == 0) {
+            if (!require_one) {
+                if (states.cursor[i] == count) {
+                    return SUCCESS;
+                } else throw new IllegalStateException();
+            } else {
+                if (states.cursor[i] == 0) {
+                    return FAILIURE;
+                } else throw new IllegalStateException();
+            }
+        } return RUNNING;
+    }
+
+    private byte update_repeat(AgentStates states, int n, int agent) {
+        final int i = agent * node_count + n;
+        final int child = children[first_child[n]];
+        while (true) {
+            switch (tick_node(states,child,agent)) {
+                case RUNNING: return RUNNING;
+                case FAILIURE: return FAILIURE;
+                case SUCCESS: if (++states.cursor[i] == param[n]) return SUCCESS; break;
+                default: throw new IllegalStateException();
+            }
+        }
+    }
+
+    private byte update_remember(AgentStates states, int n, int agent) {
+        if (timer_running(states,n,agent))
+            return states.status[agent * node_count + n];
+        byte status = tick_node(states,children[first_child[n]],agent);
+        switch (status) {
+            case RUNNING: break;
+            case INVALID: throw new IllegalStateException();
+            default: Remember.Policy policy = REMEMBER_POLICY[param[n]];
+                if (policy == Remember.Policy.LAST_STATE
+                || (policy == Remember.Policy.FAILIURE && status == FAILIURE)
+                || (policy == Remember.Policy.SUCCESS && status == SUCCESS)) {
+                    start_timer(states,n,agent);
+                }
+        } return status;
+    }
+
+    private byte tick_wait(AgentStates states, int n, int agent) {
+        final int i = agent * node_count + n;
+        byte status = states.status[i];
+        if (!timer_running(states,n,agent)) {
+            if (status != RUNNING) {
+                status = RUNNING;
+                start_timer(states,n,agent);
+            } else {
+                status = SUCCESS;
+                stop_timer(states,n,agent);
+            } states.status[i] = status;
+        } return status;
+    }
+
+    /** xorshift on the agent's seed */
+    private static int next_random(AgentStates states, int agent, int bound) {
+        int x = states.seed[agent];
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        states.seed[agent] = x;
+        return (x & 0x7FFF_FFFF) % bound;
+    }
+
+    /** Timers store their start time. Stopped: negative infinity */
+    private boolean timer_running(AgentStates states, int n, int agent) {
+        return (float) (states.clock - states.timer[agent * timer_count + timer_slot[n]]) < duration[n];
+    }
+
+    private void start_timer(AgentStates states, int n, int agent) {
+        states.timer[agent * timer_count + timer_slot[n]] = states.clock;
+    }
+
+    private void stop_timer(AgentStates states, int n, int agent) {
+        states.timer[agent * timer_count + timer_slot[n]] = Double.NEGATIVE_INFINITY;
+    }
+
+    private static final class Compiler {
+
+        byte[] type = new byte[16];
+        byte[] flags = new byte[16];
+        int[] first_child = new int[16];
+        int[] child_count = new int[16];
+        int[] children = new int[16];
+        int[] param = new int[16];
+        float[] duration = new float[16];
+        int[] timer_slot = new int[16];
+        int[] order_slot = new int[16];
+        Object[] leaf = new Object[16];
+        int children_size;
+        int count;
+        int timers;
+        int orders;
+
+        int compile(SharedNode node) {
+            if (node == null) throw new IllegalArgumentException("null SharedNode");
+            final int n = count++;
+            if (n == type.length) grow();
+            type[n] = node.type;
+            flags[n] = node.flags;
+            param[n] = node.param;
+            duration[n] = node.duration;
+            leaf[n] = node.leaf;
+            if (node.type == REMEMBER || node.type == WAIT) {
+                timer_slot[n] = timers++;
+            } if ((node.flags & RANDOM) != 0) {
+                order_slot[n] = orders;
+                orders += node.children.length;
+            } SharedNode[] nodes = node.children;
+            if (nodes.length > 0) {
+                int[] compiled = new int[nodes.length];
+                for (int c = 0; c < nodes.length; c++) {
+                    compiled[c] = compile(nodes[c]);
+                } if (children_size + compiled.length > children.length) {
+                    children = Arrays.copyOf(children,Math.max(children.length * 2,children_size + compiled.length));
+                } first_child[n] = children_size;
+                child_count[n] = compiled.length;
+                System.arraycopy(compiled,0,children,children_size,compiled.length);
+                children_size += compiled.length;
+            } return n;
+        }
+
+        private void grow() {
+            int capacity = type.length * 2;
+            type = Arrays.copyOf(type,capacity);
+            flags = Arrays.copyOf(flags,capacity);
+            first_child = Arrays.copyOf(first_child,capacity);
+            child_count = Arrays.copyOf(child_count,capacity);
+            param = Arrays.copyOf(param,capacity);
+            duration = Arrays.copyOf(duration,capacity);
+            timer_slot = Arrays.copyOf(timer_slot,capacity);
+            order_slot = Arrays.copyOf(order_slot,capacity);
+            leaf = Arrays.copyOf(leaf,capacity);
+        }
+    }
+}
@@ -4,7 +4,17 @@ package io.github.heathensoft.jlib.ai.btree.time;
 /**
  *
  * No need to remove timers manually. They remove themselves when they end.
- * Timers are removed dynamically in the update loop.
+ *
+ * Hierarchical timing wheel: 4 levels of 64 slots. Level 0 slots are one tick (resolution) wide,
+ * each level above is 64 times wider. A running timer sits in the slot of its deadline
+ * (intrusive doubly linked list), so start / pause / stop are O(1). An update only visits
+ * the level 0 slots of the ticks that passed, and cascades a higher level slot down
+ * every 64 ticks of the level below. Timers that are not due are never touched.
+ * Deadlines beyond the range of the wheel (2^24 ticks) wait in the last slot of the top level.
+ * A timer is due when its float running time reaches its duration (like an accumulator of dt).
+ * Timers are slotted slightly early, those not yet due when their tick passes move to the current tick.
+ *
+ * Not thread-safe. A BTime and its timers are confined to the thread that updates it.
  *
  * @author Frederik Dahl
  * 06/08/2022
@@ -12,41 +22,165 @@ package io.github.heathensoft.jlib.ai.btree.time;
 
 
 public class BTime {
- 
+    
+    /** Default tick length in seconds */
+    public static final double RESOLUTION = 1.0 / 1000.0;
+    
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long RANGE = 1L << (SLOT_BITS * LEVELS);
+    
+    static final int UNSCHEDULED = -1;
+    static final int DUE = -2;
+    
+    private final Timer[] wheel;
+    private final double resolution;
+    private Timer[] due;
+    private Timer deferred;
+    private int dueCount;
     private int iCount;
-    private Timer[] timers;
+    private double now;
+    private long tick;
     
     public BTime() {
-        timers = new Timer[1];
+        this(16,RESOLUTION);
     }
     
     public BTime(int initialCapacity) {
-        timers = new Timer[Math.max(1,initialCapacity)];
+        this(initialCapacity,RESOLUTION);
     }
     
-    public void add(Timer timer) {
-        if (iCount == timers.length) {
-            Timer[] tmp = timers;
-            timers = new Timer[iCount * 2];
-            System.arraycopy(tmp,0,timers,0,iCount);
-        } timers[iCount++] = timer;
+    /**
+     * @param initialCapacity initial capacity of the buffer of timers due in one update
+     * @param resolution tick length in seconds. Deadlines are exact, the resolution
+     *                   only decides how timers are spread across the wheel
+     */
+    public BTime(int initialCapacity, double resolution) {
+        if (resolution <= 0) throw new IllegalArgumentException("resolution <= 0");
+        this.wheel = new Timer[LEVELS * SLOTS];
+        this.due = new Timer[Math.max(1,initialCapacity)];
+        this.resolution = resolution;
     }
     
+    /**
+     * Advance the time. Timers with deadlines reached are removed from the wheel
+     * and their TimedTask notified (in deadline order per tick).
+     * A timer still running after its onTimerEnd (not stopped, paused or reset)
+     * is notified again on the next update.
+     */
     public void update(float dt) {
-        for (int i = iCount - 1; i >= 0; --i) {
-            Timer timer = timers[i];
-            if (timer.isRunning())
-                timer.update(dt);
-            else { timer.setInActive();
-                timers[i] = timers[--iCount];
-                timers[iCount] = null;
+        now += dt;
+        final long target = (long) Math.floor(now / resolution);
+        while (tick < target) {
+            collect(tick & SLOT_MASK,true);
+            if ((++tick & SLOT_MASK) == 0) cascade(1);
+        } while (deferred != null) {
+            Timer timer = deferred;
+            deferred = timer.next;
+            schedule(timer);
+        } collect(tick & SLOT_MASK,false);
+        for (int i = 0; i < dueCount; i++) {
+            Timer timer = due[i];
+            due[i] = null;
+            if (timer.slot != DUE) continue; // cancelled by a previous onTimerEnd
+            timer.slot = UNSCHEDULED;
+            timer.behaviour.onTimerEnd(timer);
+            if (timer.running && timer.slot == UNSCHEDULED) {
+                timer.deadline = now;
+                schedule(timer);
             }
-        }
+        } dueCount = 0;
     }
     
+    /**
+     * Timers are scheduled when started (Timer.start), on the BTime they were created with.
+     * @deprecated does nothing. A running timer is already scheduled, and a timer that is not running has nothing to do
+     */
+    @Deprecated
+    public void add(Timer timer) { }
     
+    /** @return seconds since creation (sum of dt) */
+    public double now() {
+        return now;
+    }
     
+    /** @return running timers */
     public int activeTimers() {
         return iCount;
     }
+    
+    void schedule(Timer timer) {
+        double early = timer.deadline - (Math.abs(timer.duration()) * 1e-6 + 1e-9);
+        long expires = (long) Math.floor(early / resolution);
+        long delta = Math.max(0,expires - tick);
+        if (delta >= RANGE) expires = tick + RANGE - 1;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (SLOT_BITS * (level + 1)))) level++;
+        int slot = level * SLOTS + (int) ((Math.max(expires,tick) >>> (SLOT_BITS * level)) & SLOT_MASK);
+        Timer head = wheel[slot];
+        timer.prev = null;
+        timer.next = head;
+        if (head != null) head.prev = timer;
+        wheel[slot] = timer;
+        timer.slot = slot;
+        iCount++;
+    }
+    
+    void cancel(Timer timer) {
+        if (timer.slot >= 0) {
+            unlink(timer);
+            iCount--;
+        } timer.slot = UNSCHEDULED;
+    }
+    
+    private void unlink(Timer timer) {
+        if (timer.prev != null) timer.prev.next = timer.next;
+        else wheel[timer.slot] = timer.next;
+        if (timer.next != null) timer.next.prev = timer.prev;
+        timer.prev = timer.next = null;
+    }
+    
+    /** level 0 slot. passed: the tick of the slot has passed, timers not yet due are deferred */
+    private void collect(long slot, boolean passed) {
+        Timer timer = wheel[(int) slot];
+        while (timer != null) {
+            Timer next = timer.next;
+            if (!timer.due(now)) {
+                if (passed) {
+                    unlink(timer);
+                    iCount--;
+                    timer.slot = UNSCHEDULED;
+                    timer.next = deferred;
+                    deferred = timer;
+                }
+            } else {
+                unlink(timer);
+                iCount--;
+                timer.slot = DUE;
+                if (dueCount == due.length) {
+                    Timer[] tmp = due;
+                    due = new Timer[dueCount * 2];
+                    System.arraycopy(tmp,0,due,0,dueCount);
+                } due[dueCount++] = timer;
+            } timer = next;
+        }
+    }
+    
+    /** Move the current slot of the level down to the levels below */
+    private void cascade(int level) {
+        int index = (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+        if (index == 0 && level < LEVELS - 1) cascade(level + 1);
+        int slot = level * SLOTS + index;
+        Timer timer = wheel[slot];
+        wheel[slot] = null;
+        while (timer != null) {
+            Timer next = timer.next;
+            timer.prev = timer.next = null;
+            iCount--;
+            schedule(timer);
+            timer = next;
+        }
+    }
 }
@@ -1,6 +1,9 @@
 package io.github.heathensoft.jlib.ai.btree.time;
 
 /**
+ * A countdown on a BTime. The TimedTask is notified when the running time reaches the duration.
+ * Start, pause and stop are O(1).
+ *
  * @author Frederik Dahl
  * 31/07/2022
  */
@@ -8,17 +11,21 @@ package io.github.heathensoft.jlib.ai.btree.time;
 
 public class Timer {
     
-    private TimedTask behaviour;
+    TimedTask behaviour;
     private final BTime internalTime;
     private final float duration;
     private float accumulator;
-    private boolean running;
-    private boolean inActive;
+    private double start;
+    boolean running;
+    double deadline;
+    int slot;
+    Timer prev;
+    Timer next;
     
     public Timer(BTime internalTime, final float duration) {
         this.internalTime = internalTime;
         this.duration = duration;
-        this.inActive = true;
+        this.slot = BTime.UNSCHEDULED;
         this.running = false;
     }
     
@@ -26,41 +33,73 @@ public class Timer {
         this.behaviour = behaviour;
     }
     
+    /**
+     * Advances the running time by dt outside the BTime, and notifies the TimedTask if the duration is reached.
+     * @deprecated BTime no longer calls this, overriding it has no effect. A running timer moves to its new deadline
+     */
+    @Deprecated
     protected void update(float dt) {
         accumulator += dt;
-        if (accumulator >= duration) {
+        if (running && slot >= 0) {
+            internalTime.cancel(this);
+            deadline = start + (duration - accumulator);
+            internalTime.schedule(this);
+        } if (elapsed() >= duration) {
             behaviour.onTimerEnd(this);
         }
     }
     
     public void start() {
-        running = true;
-        if (inActive) {
-            internalTime.add(this);
-            inActive = false;
+        if (!running) {
+            running = true;
+            start = internalTime.now();
+            deadline = start + (duration - accumulator);
+            internalTime.schedule(this);
         }
     }
     
     public void pause() {
-        running = false;
+        if (running) {
+            accumulator += (float) (internalTime.now() - start);
+            running = false;
+            internalTime.cancel(this);
+        }
     }
     
     public void stop() {
         accumulator = 0;
         running = false;
+        internalTime.cancel(this);
     }
     
     public void reset() {
         accumulator = 0;
+        if (running) {
+            internalTime.cancel(this);
+            running = false;
+            start();
+        }
     }
     
-    public boolean isRunning() {
-        return running;
+    /** @return running time since the last stop or reset */
+    public float elapsed() {
+        return running ? accumulator + (float) (internalTime.now() - start) : accumulator;
     }
     
-    protected void setInActive() {
-        inActive = true;
+    boolean due(double now) {
+        return accumulator + (float) (now - start) >= duration;
+    }
+    
+    public float duration() {
+        return duration;
+    }
+    
+    public boolean isRunning() {
+        return running;
     }
     
+    /** @deprecated does nothing. Timers leave the BTime when they stop or end */
+    @Deprecated
+    protected void setInActive() { }
     
 }
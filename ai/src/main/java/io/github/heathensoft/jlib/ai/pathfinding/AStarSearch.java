@@ -0,0 +1,199 @@
+package io.github.heathensoft.jlib.ai.pathfinding;
+
+import io.github.heathensoft.jlib.common.storage.primitive.IntMinHeap;
+
+import java.util.Arrays;
+
+/**
+ * Reusable A* search over an AStarGrid. No node objects:
+ * Per-tile costs and parents are stored in flat arrays (index = y * cols + x),
+ * the open set is an IntMinHeap of tile indices by f-cost (stale entries are skipped).
+ * A search-stamp marks visited / closed tiles, so nothing is cleared between searches.
+ *
+ * Costs: 10 orthogonal, 14 diagonal + movementPenalty of the tile entered.
+ * Diagonal moves are not allowed to cut corners.
+ *
+ * One search at a time. Pool instances for concurrent searches.
+ *
+ * @author Frederik Dahl
+ * 18/10/2026
+ */
+
+
+public class AStarSearch {
+
+    @FunctionalInterface
+    public interface Filter {
+        /** @return true if the search is allowed to enter tile (x,y) */
+        boolean accept(int x, int y);
+    }
+
+    private static final int[][] adjacent8 = {
+            {-1, 1},{ 0, 1},{ 1, 1},
+            {-1, 0}        ,{ 1, 0},
+            {-1,-1},{ 0,-1},{ 1,-1}
+    };
+
+    private final int rows;
+    private final int cols;
+    private final int[] g_cost;
+    private final int[] parent;
+    private final int[] visited;
+    private final int[] closed;
+    private final IntMinHeap open;
+    private int search;
+    private int target;
+    private int expanded;
+
+    public AStarSearch(int rows, int cols) {
+        int size = rows * cols;
+        this.rows = rows;
+        this.cols = cols;
+        this.g_cost = new int[size];
+        this.parent = new int[size];
+        this.visited = new int[size];
+        this.closed = new int[size];
+        this.open = new IntMinHeap(256);
+        this.target = -1;
+    }
+
+    public AStarSearch(AStarGrid grid) {
+        this(grid.rows(),grid.cols());
+    }
+
+    /**
+     * Search the whole grid.
+     * @return true if a path was found
+     */
+    public boolean search(AStarGrid grid, int x0, int y0, int x1, int y1) {
+        return search(grid,x0,y0,x1,y1,null);
+    }
+
+    /**
+     * @param grid grid of the same dimensions as this search
+     * @param filter restricts the tiles the search can enter (null for none)
+     * @return true if a path was found. Retrieve it with path()
+     */
+    public boolean search(AStarGrid grid, int x0, int y0, int x1, int y1, Filter filter) {
+        target = -1;
+        expanded = 0;
+        if (!grid.contains(x0,y0) || !grid.contains(x1,y1)) return false;
+        if (grid.isObstacle(x0,y0) || grid.isObstacle(x1,y1)) return false;
+        next_search();
+        final int start = y0 * cols + x0;
+        final int goal = y1 * cols + x1;
+        open.clear();
+        visited[start] = search;
+        g_cost[start] = 0;
+        parent[start] = -1;
+        open.push(start,heuristic(x0,y0,x1,y1));
+        while (!open.isEmpty()) {
+            final int current = open.pop();
+            if (closed[current] == search) continue; // stale entry
+            closed[current] = search;
+            if (current == goal) {
+                target = goal;
+                return true;
+            } expanded++;
+            final int cx = current % cols;
+            final int cy = current / cols;
+            final int g = g_cost[current];
+            for (int i = 0; i < 8; i++) {
+                final int ox = adjacent8[i][0];
+                final int oy = adjacent8[i][1];
+                final int nx = cx + ox;
+                final int ny = cy + oy;
+                if (!grid.contains(nx,ny)) continue;
+                final int neighbor = ny * cols + nx;
+                if (closed[neighbor] == search) continue;
+                if (!traversable(grid,filter,nx,ny)) continue;
+                final boolean diagonal = ox != 0 && oy != 0;
+                if (diagonal) { // no corner cutting
+                    if (!traversable(grid,filter,cx + ox,cy)) continue;
+                    if (!traversable(grid,filter,cx,cy + oy)) continue;
+                } final int cost = g + (diagonal ? 14 : 10) + grid.movementPenalty(nx,ny);
+                if (visited[neighbor] != search || cost < g_cost[neighbor]) {
+                    visited[neighbor] = search;
+                    g_cost[neighbor] = cost;
+                    parent[neighbor] = current;
+                    open.push(neighbor,cost + heuristic(nx,ny,x1,y1));
+                }
+            }
+        } return false;
+    }
+
+    /**
+     * Path of the last successful search as (x,y) pairs from start to end.
+     * @param collapse remove intermediate points on straight lines
+     * @return the path, or an empty array if the last search failed
+     */
+    public int[] path(boolean collapse) {
+        if (target < 0) return new int[0];
+        int count = 0;
+        for (int i = target; i != -1; i = parent[i]) count++;
+        int[] path = new int[count * 2];
+        int index = path.length;
+        for (int i = target; i != -1; i = parent[i]) {
+            path[--index] = i / cols;
+            path[--index] = i % cols;
+        } return collapse ? collapse(path) : path;
+    }
+
+    /** @return accumulated cost of the last successful search, or -1 */
+    public int cost() {
+        return target < 0 ? -1 : g_cost[target];
+    }
+
+    /** @return tiles expanded by the last search */
+    public int expanded() {
+        return expanded;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int cols() {
+        return cols;
+    }
+
+    /** Octile distance. Admissible for the movement costs used by the search */
+    public static int heuristic(int x0, int y0, int x1, int y1) {
+        int dx = Math.abs(x1 - x0);
+        int dy = Math.abs(y1 - y0);
+        if (dx < dy) return 14 * dx + 10 * (dy - dx);
+        else return 14 * dy + 10 * (dx - dy);
+    }
+
+    private boolean traversable(AStarGrid grid, Filter filter, int x, int y) {
+        return !grid.isObstacle(x,y) && (filter == null || filter.accept(x,y));
+    }
+
+    private void next_search() {
+        if (++search == Integer.MAX_VALUE) {
+            Arrays.fill(visited,0);
+            Arrays.fill(closed,0);
+            search = 1;
+        }
+    }
+
+    private static int[] collapse(int[] path) {
+        if (path.length <= 4) return path;
+        int[] collapsed = new int[path.length];
+        collapsed[0] = path[0];
+        collapsed[1] = path[1];
+        int count = 2;
+        for (int i = 2; i < path.length - 2; i += 2) {
+            int dx0 = Integer.signum(path[i] - path[i - 2]);
+            int dy0 = Integer.signum(path[i + 1] - path[i - 1]);
+            int dx1 = Integer.signum(path[i + 2] - path[i]);
+            int dy1 = Integer.signum(path[i + 3] - path[i + 1]);
+            if (dx0 != dx1 || dy0 != dy1) {
+                collapsed[count++] = path[i];
+                collapsed[count++] = path[i + 1];
+            }
+        } collapsed[count++] = path[path.length - 2];
+        collapsed[count++] = path[path.length - 1];
+        return Arrays.copyOf(collapsed,count);
+    }
+}
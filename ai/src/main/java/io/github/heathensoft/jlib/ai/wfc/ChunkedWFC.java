@@ -0,0 +1,235 @@
+package io.github.heathensoft.jlib.ai.wfc;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ *
+ * Wave function collapse in square chunks, solved in parallel on a ForkJoinPool (FlatWFC per worker).
+ * The output is never held in memory as a whole. Finished chunks are streamed to a ChunkConsumer.
+ *
+ * Chunk (cx, cy) covers output [cx * chunk_size, cx * chunk_size + chunk_size) x [cy * chunk_size, ...).
+ * It is solved together with a one cell overlap into the already solved chunks (cx - 1, cy) and (cx, cy - 1).
+ * The overlapping cells are fixed to the patterns those chunks were solved with, so chunks connect seamlessly.
+ * It is also solved with a margin into the unsolved chunks (cx + 1, cy) and (cx, cy + 1), which is discarded.
+ * Without it, the last column / row could be any patterns that the next chunk is unable to continue.
+ * Where margins of different chunks meet, they are solved consistently, or the chunk could be unsolvable:
+ * The overlap row continues below the right margin with the last row of (cx + 1, cy - 1),
+ * the lower half of the right margin is fixed to the top margin (cx + 1, cy - 1) was solved with,
+ * and the overlap column continues beside the top margin with the margin of (cx - 1, cy).
+ * A chunk is scheduled as soon as (cx - 1, cy), (cx, cy - 1) and (cx + 1, cy - 1) are finished (a wavefront).
+ * Only the edge patterns of solved chunks are kept, until the chunks depending on them are solved.
+ *
+ * Each chunk is seeded from the seed and its chunk coordinates. The output is deterministic for a seed and grid,
+ * independent of the number of workers and the order chunks are finished in.
+ *
+ * A chunk that fails (failure_limit restarts) fails the generation. Chunks depending on it are never solved.
+ * Use a backtrack_limit > 0, chunks fixed on two sides contradict more often than free outputs.
+ * A wider margin makes chunk failures less likely, at the cost of solving more cells per chunk.
+ *
+ * @author Frederik Dahl
+ * 18/10/2026
+ */
+
+
+public class ChunkedWFC {
+
+    @FunctionalInterface
+    public interface ChunkConsumer {
+        /**
+         * Worker thread. Called once per solved chunk, possibly concurrently and in wavefront order.
+         * @param chunk_x chunk column
+         * @param chunk_y chunk row
+         * @param chunk solved values [row][column]. Owned by the consumer
+         */
+        void accept(int chunk_x, int chunk_y, int[][] chunk);
+    }
+
+    private final FlatWFC template; // pattern tables shared by the engines
+    private final ConcurrentLinkedQueue<FlatWFC> engines; // idle engines
+    private final int chunk_size;
+    private final int margin;
+    private final int seed;
+
+    /**
+     * @param training_input input to process
+     * @param seed seed used by internal random generators
+     * @param allow_pattern_permutations allow pattern rotations and reflections
+     * @param chunk_size width and height of a chunk
+     */
+    public ChunkedWFC(int[][] training_input, int seed, boolean allow_pattern_permutations, int chunk_size) {
+        this(training_input,seed,allow_pattern_permutations,chunk_size,Math.min(8,chunk_size));
+    }
+
+    /**
+     * @param training_input input to process
+     * @param seed seed used by internal random generators
+     * @param allow_pattern_permutations allow pattern rotations and reflections
+     * @param chunk_size width and height of a chunk
+     * @param margin cells solved (and discarded) into the next chunks, at most chunk_size
+     */
+    public ChunkedWFC(int[][] training_input, int seed, boolean allow_pattern_permutations, int chunk_size, int margin) {
+        if (chunk_size < 1) throw new IllegalArgumentException("chunk size < 1");
+        if (margin < 0 || margin > chunk_size) throw new IllegalArgumentException("margin outside [0, chunk_size]");
+        this.template = new FlatWFC(training_input,seed,allow_pattern_permutations);
+        this.engines = new ConcurrentLinkedQueue<>();
+        this.engines.offer(template);
+        this.chunk_size = chunk_size;
+        this.margin = margin;
+        this.seed = seed;
+    }
+
+    /**
+     * Solves chunks_x * chunks_y chunks on the common ForkJoinPool.
+     * @param chunks_x chunk columns
+     * @param chunks_y chunk rows
+     * @param failure_limit tolerated restarts per chunk before termination
+     * @param backtrack_limit tolerated backtracks per chunk attempt before restarting
+     * @param consumer receives every solved chunk
+     * @return true if every chunk was solved
+     */
+    public boolean generate(int chunks_x, int chunks_y, int failure_limit, int backtrack_limit, ChunkConsumer consumer) {
+        return generate(chunks_x,chunks_y,failure_limit,backtrack_limit,consumer,ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Solves chunks_x * chunks_y chunks on the pool. Blocks until finished.
+     * @param chunks_x chunk columns
+     * @param chunks_y chunk rows
+     * @param failure_limit tolerated restarts per chunk before termination
+     * @param backtrack_limit tolerated backtracks per chunk attempt before restarting
+     * @param consumer receives every solved chunk
+     * @param pool worker pool
+     * @return true if every chunk was solved
+     */
+    public boolean generate(int chunks_x, int chunks_y, int failure_limit, int backtrack_limit, ChunkConsumer consumer, ForkJoinPool pool) {
+        if (chunks_x < 1 || chunks_y < 1) throw new IllegalArgumentException("empty chunk grid");
+        if ((long) chunks_x * chunks_y > Integer.MAX_VALUE) throw new IllegalArgumentException("chunk grid too large");
+        if (backtrack_limit < 0) throw new IllegalArgumentException("negative backtrack limit");
+        Generation generation = new Generation(chunks_x,chunks_y,failure_limit,backtrack_limit,consumer);
+        pool.invoke(new ChunkTask(null,generation,0));
+        return !generation.failed;
+    }
+
+    /** @return width and height of a chunk */
+    public int chunk_size() { return chunk_size; }
+
+    /** @return number of unique patterns in the training input */
+    public int pattern_count() { return template.pattern_count(); }
+
+    /** Solve one chunk and keep its edges. @return false if the chunk could not be solved */
+    private boolean solve(Generation generation, int chunk) {
+        final int size = chunk_size;
+        final int cx = chunk % generation.chunks_x;
+        final int cy = chunk / generation.chunks_x;
+        final int ox = cx > 0 ? 1 : 0; // overlap column
+        final int oy = cy > 0 ? 1 : 0; // overlap row
+        final int mx = cx + 1 < generation.chunks_x ? margin : 0;
+        final int my = cy + 1 < generation.chunks_y ? margin : 0;
+        FlatWFC engine = engines.poll();
+        if (engine == null) engine = new FlatWFC(template,seed);
+        try { engine.clear_constraints();
+            if (ox == 1) {
+                int[] edge = generation.column_edges[chunk - 1];
+                generation.column_edges[chunk - 1] = null;
+                for (int y = 0; y < edge.length; y++) engine.constrain(0,oy + y,edge[y]);
+            } if (oy == 1) {
+                int[] edge = generation.row_edges[chunk - generation.chunks_x];
+                generation.row_edges[chunk - generation.chunks_x] = null; // (cx - 1, cy) has read it
+                for (int x = 0; x < size; x++) engine.constrain(ox + x,0,edge[x]);
+                if (mx > 0) {
+                    edge = generation.row_edges[chunk - generation.chunks_x + 1];
+                    for (int x = 0; x < mx; x++) engine.constrain(ox + size + x,0,edge[x]);
+                    int[] block = generation.corner_blocks[chunk - generation.chunks_x + 1];
+                    generation.corner_blocks[chunk - generation.chunks_x + 1] = null;
+                    for (int i = 0; i < block.length; i++) engine.constrain(ox + size + i % margin,1 + i / margin,block[i]);
+                }
+            } engine.set_noise_seed(chunk_seed(cx,cy));
+            engine.reset_noise_position();
+            int[][] region = new int[oy + size + my][ox + size + mx];
+            if (!engine.generate(region,generation.failure_limit,generation.backtrack_limit,false)) return false;
+            if (cx + 1 < generation.chunks_x) {
+                int[] edge = new int[size + my];
+                for (int y = 0; y < edge.length; y++) edge[y] = engine.pattern_at(ox + size - 1,oy + y);
+                generation.column_edges[chunk] = edge;
+            } if (cy + 1 < generation.chunks_y) {
+                int[] edge = new int[size];
+                for (int x = 0; x < size; x++) edge[x] = engine.pattern_at(ox + x,oy + size - 1);
+                generation.row_edges[chunk] = edge;
+                if (cx > 0) {
+                    int[] block = new int[margin * ((my + 1) / 2)];
+                    for (int i = 0; i < block.length; i++) block[i] = engine.pattern_at(ox + i % margin,oy + size + i / margin);
+                    generation.corner_blocks[chunk] = block;
+                }
+            } int[][] values = new int[size][size];
+            for (int y = 0; y < size; y++) {
+                System.arraycopy(region[oy + y],ox,values[y],0,size);
+            } generation.consumer.accept(cx,cy,values);
+            return true;
+        } finally { engines.offer(engine); }
+    }
+
+    private int chunk_seed(int cx, int cy) {
+        return seed ^ (cx * 0x1B873593) ^ (cy * 0x5BD1E995);
+    }
+
+    private static final class Generation {
+        final ChunkConsumer consumer;
+        final AtomicIntegerArray dependencies; // unsolved chunks each chunk waits for (left, below, below right)
+        final int[][] column_edges; // [chunk] -> patterns of the last column, until (cx + 1, cy) is solved
+        final int[][] row_edges; // [chunk] -> patterns of the last row, until (cx - 1, cy + 1) and (cx, cy + 1) are solved
+        final int[][] corner_blocks; // [chunk] -> patterns of the lower half of the top margin (first margin columns), until (cx - 1, cy + 1) is solved
+        final int chunks_x, chunks_y;
+        final int failure_limit;
+        final int backtrack_limit;
+        volatile boolean failed;
+        Generation(int chunks_x, int chunks_y, int failure_limit, int backtrack_limit, ChunkConsumer consumer) {
+            int chunks = chunks_x * chunks_y;
+            this.consumer = consumer;
+            this.dependencies = new AtomicIntegerArray(chunks);
+            this.column_edges = new int[chunks][];
+            this.row_edges = new int[chunks][];
+            this.corner_blocks = new int[chunks][];
+            this.chunks_x = chunks_x;
+            this.chunks_y = chunks_y;
+            this.failure_limit = failure_limit;
+            this.backtrack_limit = backtrack_limit;
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                int cx = chunk % chunks_x, cy = chunk / chunks_x;
+                int below_right = cy > 0 && cx + 1 < chunks_x ? 1 : 0;
+                dependencies.set(chunk,(cx > 0 ? 1 : 0) + (cy > 0 ? 1 : 0) + below_right);
+            }
+        }
+    }
+
+    private final class ChunkTask extends CountedCompleter<Void> {
+        private final Generation generation;
+        private final int chunk;
+        ChunkTask(CountedCompleter<?> completer, Generation generation, int chunk) {
+            super(completer);
+            this.generation = generation;
+            this.chunk = chunk;
+        }
+        public void compute() {
+            if (!generation.failed) {
+                if (solve(generation,chunk)) {
+                    int cx = chunk % generation.chunks_x;
+                    int cy = chunk / generation.chunks_x;
+                    if (cx + 1 < generation.chunks_x) release(chunk + 1);
+                    if (cy + 1 < generation.chunks_y) {
+                        release(chunk + generation.chunks_x);
+                        if (cx > 0) release(chunk + generation.chunks_x - 1);
+                    }
+                } else generation.failed = true;
+            } tryComplete();
+        }
+        private void release(int dependent) {
+            if (generation.dependencies.decrementAndGet(dependent) == 0) {
+                addToPendingCount(1);
+                new ChunkTask(this,generation,dependent).fork();
+            }
+        }
+    }
+}
@@ -0,0 +1,554 @@
+package io.github.heathensoft.jlib.ai.wfc;
+
+import io.github.heathensoft.jlib.common.storage.primitive.BitSet;
+
+import java.util.Arrays;
+
+/**
+ *
+ * Wave function collapse without per-cell objects. Same input, patterns and rules as WFC.
+ *
+ * The wave is a packed long[] bitset per cell (cell = y * width + x).
+ * The compatible patterns of every (direction, pattern) are precomputed from Patterns into a flat int table.
+ * Propagation is AC-4: every (cell, pattern, direction) keeps a count of the patterns in the
+ * neighbouring cell that support it. Banning a pattern decrements the counts it supports,
+ * and a count reaching zero bans that pattern in turn. No bitset unions are rebuilt per step.
+ * The lowest entropy cell is taken from an int-indexed binary heap (decrease / increase key in place).
+ * Entropy is updated incrementally from running sums of w and w*log(w),
+ * once per changed cell after propagation (not per banned pattern).
+ *
+ * Nothing is allocated per attempt. Buffers are allocated by generate
+ * when the output size changes, and reused for every attempt after a contradiction.
+ * Memory per cell: ~ 8 bytes per pattern (16-bit support counts) + 1 bit per pattern (wave).
+ *
+ * Every ban is recorded on a trail. With backtracking enabled (backtrack_limit > 0) the trail is kept
+ * for the whole attempt, and a contradiction undoes the trail back to the last collapse (choice point),
+ * bans the pattern chosen there and propagates again, instead of resetting every cell.
+ * The attempt is only restarted from scratch when the choice points run out or the backtrack limit is spent.
+ * Undo is exact: support counts are decremented for every ban (also of patterns already banned),
+ * so unbanning in reverse order increments them back.
+ * The trail grows up to 8 bytes per banned (cell, pattern) while backtracking.
+ *
+ * Uses the same hash noise, weighted choice and entropy noise scale as WFC.
+ * Outputs for a seed are deterministic, but not identical to WFC:
+ * WFC draws noise in the order of its propagation, this engine draws the entropy noise once per cell and attempt.
+ *
+ * Directions are represented by [0,1,2,3] -> [N,E,S,W]
+ *
+ * @author Frederik Dahl
+ * 18/10/2026
+ */
+
+
+public class FlatWFC {
+
+    private static final int[][] CARDINALS = new int[][]{{0,1},{1,0},{0,-1},{-1,0}}; // [N,E,S,W]
+    private static final int[] OPPOSITE = new int[]{ 2, 3, 0, 1 }; // [S,W,N,E]
+
+    private final Patterns patterns;
+    private final int pattern_count;
+    private final int words; // longs per cell in the wave
+    private final int[] weight; // pattern frequencies
+    private final double[] weight_log_weight; // w * log(w) per pattern
+    private final int[] propagator_offset; // [direction * pattern_count + pattern] -> first index in propagator
+    private final int[] propagator; // patterns allowed in the adjacent cell in direction
+    private final char[] initial_support; // [pattern * 4 + direction]
+    private final int[] zero_support; // (pattern, direction) pairs without support
+    private final long[] super_position; // every pattern
+    private final int super_weight_sum;
+    private final double super_weight_log_sum;
+    private final float super_entropy;
+    private int noise_position; // internal position of the random generator
+    private int noise_seed; // seed of the random generator
+    private int contradictions;
+    private int backtracks;
+    private int backtrack_limit;
+
+    private int width;
+    private int height;
+    private int cells;
+    private boolean wrap_around;
+    private int[] neighbors; // [cell * 4 + direction] -> adjacent cell or -1
+    private long[] wave; // [cell * words + word]
+    private char[] support; // [(cell * pattern_count + pattern) * 4 + direction]
+    private int[] remaining;
+    private int[] weight_sum;
+    private double[] weight_log_sum;
+    private float[] noise;
+    private float[] entropy;
+    private int[] heap;
+    private int[] heap_index; // position of cell in heap or -1
+    private int heap_size;
+    private int[] trail; // banned (cell, pattern) pairs in order
+    private int trail_size;
+    private int propagated; // trail entries below this have been propagated
+    private int[] popped; // cells popped from the heap in order
+    private int popped_size;
+    private int[] choice_cell; // choice points: the collapsed cell,
+    private int[] choice_pattern; // the pattern it collapsed to,
+    private int[] choice_trail; // trail size before the collapse,
+    private int[] choice_popped; // and popped size before the cell was popped
+    private int choice_depth;
+    private int[] changed; // cells in the heap with options banned since the last entropy update
+    private int changed_size;
+    private boolean[] dirty;
+    private boolean contradiction;
+    private int[] constraints; // (x, y, pattern) fixed before every attempt
+    private int constraint_size;
+
+    /**
+     * @param training_input input to process
+     * @param seed seed used by internal random generator
+     * @param allow_pattern_permutations allow pattern rotations and reflections
+     */
+    public FlatWFC(int[][] training_input, int seed, boolean allow_pattern_permutations) {
+        this.patterns = new Patterns(training_input,allow_pattern_permutations);
+        this.pattern_count = patterns.count();
+        if (pattern_count > Character.MAX_VALUE) throw new IllegalArgumentException("too many patterns: " + pattern_count);
+        this.words = (pattern_count + 63) >>> 6;
+        this.weight = new int[pattern_count];
+        this.weight_log_weight = new double[pattern_count];
+        this.super_position = new long[words];
+        int weight_sum = 0;
+        double weight_log_sum = 0;
+        for (int t = 0; t < pattern_count; t++) {
+            weight[t] = patterns.frequency_of(t);
+            weight_log_weight[t] = weight[t] * Math.log(weight[t]);
+            weight_sum += weight[t];
+            weight_log_sum += weight_log_weight[t];
+            super_position[t >>> 6] |= 1L << t;
+        } this.super_weight_sum = weight_sum;
+        this.super_weight_log_sum = weight_log_sum;
+        this.super_entropy = patterns.super_entropy();
+        this.propagator_offset = new int[4 * pattern_count + 1];
+        this.initial_support = new char[pattern_count * 4];
+        int size = 0;
+        for (int d = 0; d < 4; d++) {
+            for (int t = 0; t < pattern_count; t++) {
+                BitSet valid = patterns.valid_connections(t,d);
+                for (int t2 = 0; t2 < pattern_count; t2++) {
+                    if (valid.get(t2)) {
+                        initial_support[t2 * 4 + d]++;
+                        size++;
+                    }
+                }
+            }
+        } this.propagator = new int[size];
+        size = 0;
+        for (int d = 0; d < 4; d++) {
+            for (int t = 0; t < pattern_count; t++) {
+                propagator_offset[d * pattern_count + t] = size;
+                BitSet valid = patterns.valid_connections(t,d);
+                for (int t2 = 0; t2 < pattern_count; t2++) {
+                    if (valid.get(t2)) propagator[size++] = t2;
+                }
+            }
+        } propagator_offset[4 * pattern_count] = size;
+        int zero = 0;
+        for (int i = 0; i < initial_support.length; i++) {
+            if (initial_support[i] == 0) zero++;
+        } this.zero_support = new int[zero];
+        zero = 0;
+        for (int i = 0; i < initial_support.length; i++) {
+            if (initial_support[i] == 0) zero_support[zero++] = i;
+        } this.noise_position = 1337;
+        this.noise_seed = seed;
+        this.trail = new int[1024];
+        this.constraints = new int[0];
+    }
+
+    /**
+     * Shares the (read only) pattern tables of template. Buffers are not shared,
+     * so the copy can generate on another thread than template.
+     * @param template engine to share tables with
+     * @param seed seed used by internal random generator
+     */
+    FlatWFC(FlatWFC template, int seed) {
+        this.patterns = template.patterns;
+        this.pattern_count = template.pattern_count;
+        this.words = template.words;
+        this.weight = template.weight;
+        this.weight_log_weight = template.weight_log_weight;
+        this.propagator_offset = template.propagator_offset;
+        this.propagator = template.propagator;
+        this.initial_support = template.initial_support;
+        this.zero_support = template.zero_support;
+        this.super_position = template.super_position;
+        this.super_weight_sum = template.super_weight_sum;
+        this.super_weight_log_sum = template.super_weight_log_sum;
+        this.super_entropy = template.super_entropy;
+        this.noise_position = 1337;
+        this.noise_seed = seed;
+        this.trail = new int[1024];
+        this.constraints = new int[0];
+    }
+
+    /**
+     * Runs wave function collapse and stores the result in output.
+     * @param output storage
+     * @param failure_limit tolerated collisions before termination
+     * @param wrap_around If you want the results edges connected
+     * @return true if successful
+     */
+    public boolean generate(int[][] output, int failure_limit, boolean wrap_around) {
+        return generate(output,failure_limit,0,wrap_around);
+    }
+
+    /**
+     * Runs wave function collapse and stores the result in output.
+     * On a contradiction, undo to the last choice point and try another pattern there.
+     * Restart from scratch only if no choice point is left or the attempt has used up its backtrack_limit.
+     * @param output storage
+     * @param failure_limit tolerated restarts before termination
+     * @param backtrack_limit tolerated backtracks per attempt before restarting (0 to always restart)
+     * @param wrap_around If you want the results edges connected
+     * @return true if successful
+     */
+    public boolean generate(int[][] output, int failure_limit, int backtrack_limit, boolean wrap_around) {
+        if (backtrack_limit < 0) throw new IllegalArgumentException("negative backtrack limit");
+        allocate(output[0].length,output.length,wrap_around);
+        this.backtrack_limit = backtrack_limit;
+        contradictions = 0;
+        backtracks = 0;
+        while (contradictions != failure_limit) {
+            clear();
+            propagate();
+            if (contradiction) { // the initial state (or constraints) contradict, every attempt would
+                contradictions++;
+                return false;
+            } if (run(output)) return true;
+            contradictions++;
+        } return false;
+    }
+
+    public void set_noise_seed(int seed) { this.noise_seed = seed; }
+
+    public void reset_noise_position() { noise_position = 1337; }
+
+    /**
+     * Fix the pattern of the output cell at (x, y) for every following generate, until clear_constraints.
+     * Used to continue the output of an adjacent, already solved region.
+     */
+    void constrain(int x, int y, int pattern) {
+        if (pattern < 0 || pattern >= pattern_count) throw new IllegalArgumentException("no such pattern: " + pattern);
+        if (constraint_size + 3 > constraints.length) constraints = Arrays.copyOf(constraints,Math.max(48,constraints.length * 2));
+        constraints[constraint_size++] = x;
+        constraints[constraint_size++] = y;
+        constraints[constraint_size++] = pattern;
+    }
+
+    void clear_constraints() { constraint_size = 0; }
+
+    /** @return the pattern of the output cell at (x, y) after a successful generate */
+    int pattern_at(int x, int y) { return first_option(y * width + x); }
+
+    /** @return number of unique patterns in the training input */
+    public int pattern_count() { return pattern_count; }
+
+    /** @return contradictions (restarts) during the last generate */
+    public int contradictions() { return contradictions; }
+
+    /** @return backtracks (undone choice points) during the last generate */
+    public int backtracks() { return backtracks; }
+
+    private boolean run(int[][] output) {
+        final int attempt_limit = backtracks + backtrack_limit;
+        while (!contradiction && heap_size > 0) {
+            int cell = heap_pop();
+            int pattern;
+            if (remaining[cell] == 1) {
+                pattern = first_option(cell);
+                popped[popped_size++] = cell;
+            } else { pattern = choose(cell);
+                if (backtrack_limit > 0) {
+                    choice_cell[choice_depth] = cell;
+                    choice_pattern[choice_depth] = pattern;
+                    choice_trail[choice_depth] = trail_size;
+                    choice_popped[choice_depth++] = popped_size;
+                } popped[popped_size++] = cell;
+                collapse(cell,pattern);
+                propagate();
+                if (contradiction) { // the cell is back in the heap if backtracking succeeds
+                    while (contradiction && choice_depth > 0 && backtracks != attempt_limit) backtrack();
+                    continue;
+                }
+            } output[cell / width][cell % width] = patterns.value_of(pattern);
+        } return !contradiction;
+    }
+
+    /** Undo the last choice point, ban the pattern chosen there and propagate */
+    private void backtrack() {
+        final int c = --choice_depth;
+        final int mark = choice_trail[c];
+        while (popped_size > choice_popped[c]) heap_push(popped[--popped_size]);
+        for (int i = trail_size - 2; i >= mark; i -= 2) {
+            unban(trail[i],trail[i + 1],i < propagated);
+        } trail_size = mark;
+        propagated = mark;
+        contradiction = false;
+        backtracks++;
+        ban(choice_cell[c],choice_pattern[c]);
+        propagate();
+    }
+
+    /** Reset the wave to the super position (start of an attempt) */
+    private void clear() {
+        final int support_stride = pattern_count * 4;
+        for (int cell = 0; cell < cells; cell++) {
+            System.arraycopy(super_position,0,wave,cell * words,words);
+            System.arraycopy(initial_support,0,support,cell * support_stride,support_stride);
+            remaining[cell] = pattern_count;
+            weight_sum[cell] = super_weight_sum;
+            weight_log_sum[cell] = super_weight_log_sum;
+            noise[cell] = white_noise() * 0.001f;
+            entropy[cell] = super_entropy + noise[cell];
+            heap[cell] = cell;
+            heap_index[cell] = cell;
+        } heap_size = cells;
+        for (int i = (heap_size >> 1) - 1; i >= 0; i--) sift_down(i);
+        trail_size = 0;
+        propagated = 0;
+        popped_size = 0;
+        choice_depth = 0;
+        changed_size = 0;
+        Arrays.fill(dirty,false);
+        contradiction = false;
+        // patterns that nothing can support from an existing neighbour
+        for (int cell = 0; cell < cells; cell++) {
+            for (int z : zero_support) {
+                int t = z >> 2, d = z & 3;
+                if (neighbors[cell * 4 + OPPOSITE[d]] >= 0 && has_option(cell,t)) ban(cell,t);
+            }
+        } for (int i = 0; i < constraint_size; i += 3) {
+            int x = constraints[i], y = constraints[i + 1];
+            if (x < 0 || x >= width || y < 0 || y >= height) throw new IllegalStateException("constraint outside output");
+            int cell = y * width + x;
+            if (has_option(cell,constraints[i + 2])) collapse(cell,constraints[i + 2]);
+            else contradiction = true;
+        }
+    }
+
+    private void propagate() {
+        while (propagated < trail_size && !contradiction) {
+            final int cell = trail[propagated];
+            final int t = trail[propagated + 1];
+            propagated += 2;
+            for (int d = 0; d < 4; d++) {
+                final int adjacent = neighbors[cell * 4 + d];
+                if (adjacent < 0) continue;
+                final int base = adjacent * pattern_count;
+                final int end = propagator_offset[d * pattern_count + t + 1];
+                for (int i = propagator_offset[d * pattern_count + t]; i < end; i++) {
+                    final int t2 = propagator[i];
+                    if (--support[((base + t2) << 2) + d] == 0 && has_option(adjacent,t2)) ban(adjacent,t2);
+                }
+            }
+        } if (backtrack_limit == 0 && !contradiction) {
+            trail_size = 0; // nothing to undo, keep the trail short
+            propagated = 0;
+        } update_entropy();
+    }
+
+    private void update_entropy() {
+        for (int i = 0; i < changed_size; i++) {
+            final int cell = changed[i];
+            final int index = heap_index[cell];
+            dirty[cell] = false;
+            if (index < 0) continue;
+            final float previous = entropy[cell];
+            final int r = remaining[cell];
+            if (r <= 1) entropy[cell] = 0.0f;
+            else { double W = weight_sum[cell];
+                // log(W) - (w1*log(w1) + w2*log(w2) + ... + wn*log(wn)) / W
+                entropy[cell] = (float) (Math.log(W) - weight_log_sum[cell] / W) + noise[cell];
+            } if (entropy[cell] < previous) sift_up(index);
+            else sift_down(index);
+        } changed_size = 0;
+    }
+
+    private void ban(int cell, int t) {
+        wave[cell * words + (t >>> 6)] &= ~(1L << t);
+        if (trail_size + 2 > trail.length) trail = Arrays.copyOf(trail,trail.length * 2);
+        trail[trail_size++] = cell;
+        trail[trail_size++] = t;
+        final int r = --remaining[cell];
+        weight_sum[cell] -= weight[t];
+        weight_log_sum[cell] -= weight_log_weight[t];
+        if (r == 0) contradiction = true;
+        else if (heap_index[cell] >= 0 && !dirty[cell]) {
+            dirty[cell] = true;
+            changed[changed_size++] = cell;
+        }
+    }
+
+    /** Reverse of ban. Restores the support counts if the ban was propagated */
+    private void unban(int cell, int t, boolean was_propagated) {
+        if (was_propagated) {
+            for (int d = 0; d < 4; d++) {
+                final int adjacent = neighbors[cell * 4 + d];
+                if (adjacent < 0) continue;
+                final int base = adjacent * pattern_count;
+                final int end = propagator_offset[d * pattern_count + t + 1];
+                for (int i = propagator_offset[d * pattern_count + t]; i < end; i++) {
+                    support[((base + propagator[i]) << 2) + d]++;
+                }
+            }
+        } wave[cell * words + (t >>> 6)] |= 1L << t;
+        remaining[cell]++;
+        weight_sum[cell] += weight[t];
+        weight_log_sum[cell] += weight_log_weight[t];
+        if (heap_index[cell] >= 0 && !dirty[cell]) {
+            dirty[cell] = true;
+            changed[changed_size++] = cell;
+        }
+    }
+
+    /** Selects randomly (weighted) one of the cell's remaining options */
+    private int choose(int cell) {
+        int rand = positive_integer(weight_sum[cell]);
+        int accumulated = 0;
+        final int offset = cell * words;
+        for (int w = 0; w < words; w++) {
+            long bits = wave[offset + w];
+            while (bits != 0) {
+                int t = (w << 6) + Long.numberOfTrailingZeros(bits);
+                accumulated += weight[t];
+                if (rand <= accumulated) return t;
+                bits &= bits - 1;
+            }
+        } throw new IllegalStateException("Unreachable");
+    }
+
+    /** Ban every option of the cell but pattern */
+    private void collapse(int cell, int pattern) {
+        final int offset = cell * words;
+        for (int w = 0; w < words; w++) {
+            long bits = wave[offset + w];
+            while (bits != 0) {
+                int t = (w << 6) + Long.numberOfTrailingZeros(bits);
+                if (t != pattern) ban(cell,t);
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    private int first_option(int cell) {
+        final int offset = cell * words;
+        for (int w = 0; w < words; w++) {
+            long bits = wave[offset + w];
+            if (bits != 0) return (w << 6) + Long.numberOfTrailingZeros(bits);
+        } throw new IllegalStateException("Unreachable");
+    }
+
+    private boolean has_option(int cell, int t) {
+        return (wave[cell * words + (t >>> 6)] & (1L << t)) != 0;
+    }
+
+    private void allocate(int width, int height, boolean wrap_around) {
+        if (width > 0 && height > 0) {
+            int cells = width * height;
+            if (this.cells != cells) {
+                this.cells = cells;
+                this.neighbors = new int[cells * 4];
+                this.wave = new long[cells * words];
+                this.support = new char[cells * pattern_count * 4];
+                this.remaining = new int[cells];
+                this.weight_sum = new int[cells];
+                this.weight_log_sum = new double[cells];
+                this.noise = new float[cells];
+                this.entropy = new float[cells];
+                this.heap = new int[cells];
+                this.heap_index = new int[cells];
+                this.changed = new int[cells];
+                this.dirty = new boolean[cells];
+                this.popped = new int[cells];
+                this.choice_cell = new int[cells];
+                this.choice_pattern = new int[cells];
+                this.choice_trail = new int[cells];
+                this.choice_popped = new int[cells];
+            } else if (this.width == width && this.wrap_around == wrap_around) {
+                return;
+            } this.width = width;
+            this.height = height;
+            this.wrap_around = wrap_around;
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    for (int d = 0; d < 4; d++) {
+                        int nx = x + CARDINALS[d][0];
+                        int ny = y + CARDINALS[d][1];
+                        if (wrap_around) {
+                            nx = (nx + width) % width;
+                            ny = (ny + height) % height;
+                        } else if (nx < 0 || nx == width || ny < 0 || ny == height) {
+                            neighbors[(y * width + x) * 4 + d] = -1;
+                            continue;
+                        } neighbors[(y * width + x) * 4 + d] = ny * width + nx;
+                    }
+                }
+            }
+        } else throw new IllegalArgumentException("empty output");
+    }
+
+    private int heap_pop() {
+        int cell = heap[0];
+        heap_index[cell] = -1;
+        if (--heap_size > 0) {
+            heap[0] = heap[heap_size];
+            heap_index[heap[0]] = 0;
+            sift_down(0);
+        } return cell;
+    }
+
+    private void heap_push(int cell) {
+        final int i = heap_size++;
+        heap[i] = cell;
+        heap_index[cell] = i;
+        sift_up(i);
+    }
+
+    private void sift_up(int i) {
+        final int cell = heap[i];
+        final float key = entropy[cell];
+        while (i > 0) {
+            int p = (i - 1) >> 1;
+            if (entropy[heap[p]] <= key) break;
+            heap[i] = heap[p];
+            heap_index[heap[i]] = i;
+            i = p;
+        } heap[i] = cell;
+        heap_index[cell] = i;
+    }
+
+    private void sift_down(int i) {
+        final int cell = heap[i];
+        final float key = entropy[cell];
+        final int half = heap_size >> 1;
+        while (i < half) {
+            int c = (i << 1) + 1;
+            if (c + 1 < heap_size && entropy[heap[c + 1]] < entropy[heap[c]]) c++;
+            if (key <= entropy[heap[c]]) break;
+            heap[i] = heap[c];
+            heap_index[heap[i]] = i;
+            i = c;
+        } heap[i] = cell;
+        heap_index[cell] = i;
+    }
+
+    private int positive_integer(int max) { return positive_integer() % (max + 1); }
+
+    private int positive_integer() { return hash(++noise_position, noise_seed) & 0x7FFF_FFFF;}
+
+    private float white_noise() { return positive_integer() / (float) 0x7FFF_FFFF; }
+
+    private int hash(int value, int seed) {
+        long m = (long) value & 0xFFFFFFFFL;
+        m *= 0xB5297AAD;
+        m += seed;
+        m ^= (m >> 8);
+        m += 0x68E31DA4;
+        m ^= (m << 8);
+        m *= 0x1B56C4E9;
+        m ^= (m >> 8);
+        return (int) m;
+    }
+}
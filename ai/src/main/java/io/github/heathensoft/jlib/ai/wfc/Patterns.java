@@ -92,6 +92,21 @@ class Patterns {
         } return intermediary_bitset;
     }
     
+    /**
+     * @param pattern pattern index
+     * @param direction to_direction [N,E,S,W]
+     * @return the patterns allowed next to pattern in direction
+     */
+    BitSet valid_connections(int pattern, int direction) {
+        return switch (direction) {
+            case 0 -> valid_connections_t[pattern];
+            case 1 -> valid_connections_r[pattern];
+            case 2 -> valid_connections_b[pattern];
+            case 3 -> valid_connections_l[pattern];
+            default -> throw new IllegalStateException("Unexpected value: " + direction);
+        };
+    }
+    
     IntBuffer borrow_buffer_0() {
         return buffer_0;
     }
@@ -118,6 +118,8 @@ public class FastNoiseLite
   DefaultOpenSimplex2
  }
  
+ private static final int BATCH_BLOCK_SIZE = 64;
+ 
  private int mSeed = 1337;
  private float mFrequency = 0.01f;
  private NoiseType mNoiseType = NoiseType.OpenSimplex2;
@@ -343,6 +345,94 @@ public class FastNoiseLite
   }
  }
  
+ /// <summary>
+ /// Batch 2D noise along a line using current settings.
+ /// dst[offset + i] = GetNoise(x0 + i * dx, y0 + i * dy)
+ /// </summary>
+ /// <remarks>
+ /// Output is identical to calling GetNoise per point.
+ /// Points are processed in blocks. Noise type and fractal dispatch is done once per block (and octave)
+ /// instead of once per point. Safe to call concurrently (no shared state is written).
+ /// </remarks>
+ public void GetNoise(float[] dst, int offset, /*FNLfloat*/ float x0, /*FNLfloat*/ float y0, /*FNLfloat*/ float dx, /*FNLfloat*/ float dy, int count)
+ {
+  final int block = Math.min(count, BATCH_BLOCK_SIZE);
+  /*FNLfloat*/ float[] xs = new /*FNLfloat*/ float[block];
+  /*FNLfloat*/ float[] ys = new /*FNLfloat*/ float[block];
+  float[] noise = new float[block];
+  float[] amps = new float[block];
+  
+  for (int start = 0; start < count; start += block)
+  {
+   int n = Math.min(block, count - start);
+   
+   for (int i = 0; i < n; i++)
+   {
+    xs[i] = (x0 + (start + i) * dx) * mFrequency;
+    ys[i] = (y0 + (start + i) * dy) * mFrequency;
+   }
+   
+   switch (mNoiseType)
+   {
+    case OpenSimplex2:
+    case OpenSimplex2S:
+    {
+     final /*FNLfloat*/ float SQRT3 = (/*FNLfloat*/ float)1.7320508075688772935274463415059;
+     final /*FNLfloat*/ float F2 = 0.5f * (SQRT3 - 1);
+     for (int i = 0; i < n; i++)
+     {
+      /*FNLfloat*/ float t = (xs[i] + ys[i]) * F2;
+      xs[i] += t;
+      ys[i] += t;
+     }
+    }
+    break;
+    default:
+     break;
+   }
+   
+   int dst_offset = offset + start;
+   
+   switch (mFractalType)
+   {
+    default:
+     GenNoiseBlock(mSeed, xs, ys, dst, dst_offset, n);
+     break;
+    case FBm:
+    {
+     int seed = mSeed;
+     for (int i = 0; i < n; i++)
+     {
+      dst[dst_offset + i] = 0;
+      amps[i] = mFractalBounding;
+     }
+     for (int o = 0; o < mOctaves; o++)
+     {
+      GenNoiseBlock(seed++, xs, ys, noise, 0, n);
+      for (int i = 0; i < n; i++)
+      {
+       float amp = amps[i];
+       dst[dst_offset + i] += noise[i] * amp;
+       amp *= Lerp(1.0f, FastMin(noise[i] + 1, 2) * 0.5f, mWeightedStrength);
+       xs[i] *= mLacunarity;
+       ys[i] *= mLacunarity;
+       amps[i] = amp * mGain;
+      }
+     }
+    }
+    break;
+    case Ridged:
+     for (int i = 0; i < n; i++)
+      dst[dst_offset + i] = GenFractalRidged(xs[i], ys[i]);
+     break;
+    case PingPong:
+     for (int i = 0; i < n; i++)
+      dst[dst_offset + i] = GenFractalPingPong(xs[i], ys[i]);
+     break;
+   }
+  }
+ }
+ 
  /// <summary>
  /// 3D noise at given position using current settings
  /// </summary>
@@ -709,6 +799,34 @@ public class FastNoiseLite
   }
  }
  
+ private void GenNoiseBlock(int seed, /*FNLfloat*/ float[] xs, /*FNLfloat*/ float[] ys, float[] dst, int offset, int n)
+ {
+  switch (mNoiseType)
+  {
+   case OpenSimplex2:
+    for (int i = 0; i < n; i++) dst[offset + i] = SingleSimplex(seed, xs[i], ys[i]);
+    break;
+   case OpenSimplex2S:
+    for (int i = 0; i < n; i++) dst[offset + i] = SingleOpenSimplex2S(seed, xs[i], ys[i]);
+    break;
+   case Cellular:
+    for (int i = 0; i < n; i++) dst[offset + i] = SingleCellular(seed, xs[i], ys[i]);
+    break;
+   case Perlin:
+    for (int i = 0; i < n; i++) dst[offset + i] = SinglePerlin(seed, xs[i], ys[i]);
+    break;
+   case ValueCubic:
+    for (int i = 0; i < n; i++) dst[offset + i] = SingleValueCubic(seed, xs[i], ys[i]);
+    break;
+   case Value:
+    for (int i = 0; i < n; i++) dst[offset + i] = SingleValue(seed, xs[i], ys[i]);
+    break;
+   default:
+    for (int i = 0; i < n; i++) dst[offset + i] = 0;
+    break;
+  }
+ }
+ 
  private float GenNoiseSingle(int seed, /*FNLfloat*/ float x, /*FNLfloat*/ float y, /*FNLfloat*/ float z)
  {
   switch (mNoiseType)
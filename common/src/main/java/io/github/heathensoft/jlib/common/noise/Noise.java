@@ -5,6 +5,8 @@ import io.github.heathensoft.jlib.common.utils.Rand;
 import io.github.heathensoft.jlib.common.utils.U;
 
 import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import static io.github.heathensoft.jlib.common.utils.U.*;
 
@@ -16,6 +18,8 @@ import static io.github.heathensoft.jlib.common.utils.U.*;
 
 public class Noise {
 
+    private static final int PARALLEL_BAND_ROWS = 8;
+
     public static final class Sampler1D {
         private final float[] array;
         public Sampler1D(float[] array) {
@@ -138,11 +142,11 @@ public class Noise {
         float min = Float.MAX_VALUE;
         float[][] dst = new float[rows][cols];
         for (int r = 0; r < rows; r++) {
+            noise.fill(dst[r],0,x0,y0 + r,1,0,cols);
             for (int c = 0; c < cols; c++) {
-                float n = noise.get(x0 + c,y0 + r);
+                float n = dst[r][c];
                 max = Math.max(max,n);
                 min = Math.min(min,n);
-                dst[r][c] = n;
             }
         }
         if (max != min) {
@@ -158,11 +162,102 @@ public class Noise {
     public static float[][] generate(NoiseFunction noise, int rows, int cols, float x0, float y0) {
         float[][] dst = new float[rows][cols];
         for (int r = 0; r < rows; r++) {
-            for (int c = 0; c < cols; c++)
-                dst[r][c] = noise.get(x0 + c,y0 + r);
+            noise.fill(dst[r],0,x0,y0 + r,1,0,cols);
+        } return dst;
+    }
+
+    /**
+     * Parallel generate(). Rows are split into bands evaluated on the common ForkJoinPool.
+     * Output is identical to the serial version. The NoiseFunction must be safe
+     * to call concurrently (i.e. not advance a shared Rand).
+     */
+    public static float[][] generate_parallel(NoiseFunction noise, int rows, int cols, float x0, float y0) {
+        return generate_parallel(noise,rows,cols,x0,y0,ForkJoinPool.commonPool());
+    }
+
+    public static float[][] generate_parallel(NoiseFunction noise, int rows, int cols, float x0, float y0, ForkJoinPool pool) {
+        float[][] dst = new float[rows][cols];
+        pool.invoke(new GenerateBand(noise,dst,x0,y0,0,rows));
+        return dst;
+    }
+
+    /**
+     * Parallel generate_amplified(). Rows are split into bands evaluated on the common ForkJoinPool.
+     * Output is identical to the serial version. The NoiseFunction must be safe
+     * to call concurrently (i.e. not advance a shared Rand).
+     */
+    public static float[][] generate_amplified_parallel(NoiseFunction noise, int rows, int cols, float x0, float y0) {
+        return generate_amplified_parallel(noise,rows,cols,x0,y0,ForkJoinPool.commonPool());
+    }
+
+    public static float[][] generate_amplified_parallel(NoiseFunction noise, int rows, int cols, float x0, float y0, ForkJoinPool pool) {
+        float[][] dst = new float[rows][cols];
+        GenerateBand generate = new GenerateBand(noise,dst,x0,y0,0,rows);
+        pool.invoke(generate);
+        if (generate.max != generate.min) {
+            pool.invoke(new AmplifyBand(dst,generate.min,generate.max,0,rows));
         } return dst;
     }
 
+    private static final class GenerateBand extends RecursiveAction {
+        private final NoiseFunction noise;
+        private final float[][] dst;
+        private final float x0, y0;
+        private final int r0, r1;
+        float max = Float.MIN_VALUE;
+        float min = Float.MAX_VALUE;
+        GenerateBand(NoiseFunction noise, float[][] dst, float x0, float y0, int r0, int r1) {
+            this.noise = noise; this.dst = dst;
+            this.x0 = x0; this.y0 = y0;
+            this.r0 = r0; this.r1 = r1;
+        }
+        protected void compute() {
+            if (r1 - r0 <= PARALLEL_BAND_ROWS) {
+                int cols = r0 < r1 ? dst[r0].length : 0;
+                for (int r = r0; r < r1; r++) {
+                    float[] row = dst[r];
+                    noise.fill(row,0,x0,y0 + r,1,0,cols);
+                    for (int c = 0; c < cols; c++) {
+                        float n = row[c];
+                        max = Math.max(max,n);
+                        min = Math.min(min,n);
+                    }
+                }
+            } else {
+                int mid = (r0 + r1) >>> 1;
+                GenerateBand top = new GenerateBand(noise,dst,x0,y0,r0,mid);
+                GenerateBand bottom = new GenerateBand(noise,dst,x0,y0,mid,r1);
+                invokeAll(top,bottom);
+                max = Math.max(top.max,bottom.max);
+                min = Math.min(top.min,bottom.min);
+            }
+        }
+    }
+
+    private static final class AmplifyBand extends RecursiveAction {
+        private final float[][] dst;
+        private final float min, max;
+        private final int r0, r1;
+        AmplifyBand(float[][] dst, float min, float max, int r0, int r1) {
+            this.dst = dst; this.min = min; this.max = max;
+            this.r0 = r0; this.r1 = r1;
+        }
+        protected void compute() {
+            if (r1 - r0 <= PARALLEL_BAND_ROWS) {
+                for (int r = r0; r < r1; r++) {
+                    float[] row = dst[r];
+                    for (int c = 0; c < row.length; c++) {
+                        row[c] = unLerp(min,max,row[c]);
+                    }
+                }
+            } else {
+                int mid = (r0 + r1) >>> 1;
+                invokeAll(new AmplifyBand(dst,min,max,r0,mid),
+                          new AmplifyBand(dst,min,max,mid,r1));
+            }
+        }
+    }
+
     public static int[] local_minima(float[][] src) { // edges are excluded
         int rows = src.length - 1;
         int cols = src[0].length - 1;
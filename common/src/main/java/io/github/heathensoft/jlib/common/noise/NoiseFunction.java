@@ -20,6 +20,24 @@ public interface NoiseFunction {
      */
     float get(float x, float y);
 
+    /**
+     * Batch sampling along a line: dst[offset + i] = get(x0 + i * dx, y0 + i * dy).
+     * Points are sampled in order. Implementations backed by FastNoiseLite override this
+     * with the FastNoiseLite batch path. Output must be identical to calling get() per point.
+     * @param dst destination
+     * @param offset destination offset
+     * @param x0 first point x
+     * @param y0 first point y
+     * @param dx x step per point
+     * @param dy y step per point
+     * @param count number of points
+     */
+    default void fill(float[] dst, int offset, float x0, float y0, float dx, float dy, int count) {
+        for (int i = 0; i < count; i++) {
+            dst[offset + i] = get(x0 + i * dx, y0 + i * dy);
+        }
+    }
+
 
 
     final class Rigged implements NoiseFunction {
@@ -51,6 +69,15 @@ public interface NoiseFunction {
             n = inverted ? 1 - n : n;
             return smooth ? U.smooth(n) : n;
         }
+
+        public void fill(float[] dst, int offset, float x0, float y0, float dx, float dy, int count) {
+            noiseLite.GetNoise(dst,offset,x0,y0,dx,dy,count);
+            for (int i = offset; i < offset + count; i++) {
+                float n = (dst[i] + 1.0f) * 0.5f;
+                n = inverted ? 1 - n : n;
+                dst[i] = smooth ? U.smooth(n) : n;
+            }
+        }
     }
 
 
@@ -80,5 +107,13 @@ public interface NoiseFunction {
             float n = (noise.GetNoise(x, y) + 1.0f) * 0.5f;
             return smooth ? U.smooth(n) : n;
         }
+
+        public void fill(float[] dst, int offset, float x0, float y0, float dx, float dy, int count) {
+            noise.GetNoise(dst,offset,x0,y0,dx,dy,count);
+            for (int i = offset; i < offset + count; i++) {
+                float n = (dst[i] + 1.0f) * 0.5f;
+                dst[i] = smooth ? U.smooth(n) : n;
+            }
+        }
     }
 }
@@ -0,0 +1,418 @@
+package io.github.heathensoft.jlib.common.noise;
+
+import io.github.heathensoft.jlib.common.utils.U;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static io.github.heathensoft.jlib.common.utils.U.*;
+
+/**
+ * Records Noise post-processing operations and executes them as fused passes
+ * over a flat (row-major) float[].
+ *
+ * Consecutive point operations (terraces, brighten, contrast, mix etc.) are applied
+ * row by row in a single pass, so each row is loaded once per pass instead of once per operation.
+ * A pass ends at operations that need the complete result of the previous ones:
+ * 3x3 kernels (smoothen, sharpen) read the previous pass and write a scratch buffer
+ * (the following point operations are fused into the kernel pass),
+ * amplify needs the min / max of the data (the reduction is fused into the pass before it).
+ *
+ * Passes are processed in bands of rows, optionally in parallel on a ForkJoinPool.
+ * Results are identical to the corresponding Noise methods.
+ * A pipeline keeps its scratch buffer between executions. It is not thread safe.
+ *
+ * @author Frederik Dahl
+ * 18/10/2026
+ */
+
+
+public class NoisePipeline {
+
+    private static final int BAND_ROWS = 16;
+
+    private static final int SAMPLE = 0;
+    private static final int TERRACES = 1;
+    private static final int BRIGHTEN = 2;
+    private static final int CONTRAST = 3;
+    private static final int MULTIPLY_ARRAY = 4;
+    private static final int MULTIPLY_NOISE = 5;
+    private static final int MIX_ARRAY = 6;
+    private static final int MIX_NOISE = 7;
+    private static final int CLAMP = 8;
+    private static final int AMPLIFY = 9;
+    private static final int SMOOTHEN = 10;
+    private static final int SHARPEN = 11;
+    private static final int SCALE = 12;
+
+    private static final float[] SMOOTHEN_KERNEL = {
+            0.0778f,0.1233f,0.0778f,
+            0.1233f,0.1953f,0.1233f,
+            0.0778f,0.1233f,0.0778f };
+
+    private static final float[] SHARPEN_KERNEL = {
+            -0.250f, -1.000f, -0.250f,
+            -1.000f,  6.0000f,-1.000f,
+            -0.250f, -1.000f, -0.250f };
+
+    private final List<Op> ops;
+    private ForkJoinPool pool;
+    private float[] scratch;
+
+    public NoisePipeline() {
+        this.ops = new ArrayList<>();
+    }
+
+    /** Execute passes in parallel on the common pool */
+    public NoisePipeline parallel() {
+        return parallel(ForkJoinPool.commonPool());
+    }
+
+    /** @param pool execute passes in parallel on pool. null for serial execution */
+    public NoisePipeline parallel(ForkJoinPool pool) {
+        this.pool = pool;
+        return this;
+    }
+
+    /** Overwrite with noise. NoiseFunction must be safe to call concurrently if the pipeline is parallel */
+    public NoisePipeline sample(NoiseFunction noise, float x0, float y0) {
+        return add(new Op(SAMPLE,0,null,noise,x0,y0));
+    }
+
+    /** Overwrite with src resampled to the grid (bilinear). Same as Noise.scale(src,rows,cols) */
+    public NoisePipeline scale(float[][] src) {
+        return add(new Op(SCALE,0,src,null,0,0));
+    }
+
+    public NoisePipeline terraces(float levels) {
+        return levels > 0 ? add(new Op(TERRACES,levels)) : this;
+    }
+
+    /** amount: [-1,1] */
+    public NoisePipeline brighten(float amount) {
+        return amount != 0 ? add(new Op(BRIGHTEN,amount)) : this;
+    }
+
+    /** amount: [-1,1] (Same as Noise.raise) */
+    public NoisePipeline raise(float amount) {
+        return brighten(amount);
+    }
+
+    /** amount: [-1,1] */
+    public NoisePipeline contrast(float amount) {
+        return amount != 0 ? add(new Op(CONTRAST,amount)) : this;
+    }
+
+    public NoisePipeline multiply(float[][] src, float influence) {
+        return add(new Op(MULTIPLY_ARRAY,influence,src,null,0,0));
+    }
+
+    public NoisePipeline multiply(NoiseFunction noise, float x0, float y0, float influence) {
+        return add(new Op(MULTIPLY_NOISE,influence,null,noise,x0,y0));
+    }
+
+    public NoisePipeline mix(float[][] src, float influence) {
+        return add(new Op(MIX_ARRAY,influence,src,null,0,0));
+    }
+
+    public NoisePipeline mix(NoiseFunction noise, float x0, float y0, float influence) {
+        return add(new Op(MIX_NOISE,influence,null,noise,x0,y0));
+    }
+
+    public NoisePipeline clamp() {
+        return add(new Op(CLAMP,0));
+    }
+
+    public NoisePipeline amplify() {
+        return add(new Op(AMPLIFY,0));
+    }
+
+    public NoisePipeline smoothen() {
+        return add(new Op(SMOOTHEN,0));
+    }
+
+    public NoisePipeline smoothen(int n) {
+        for (int i = 0; i < n; i++) smoothen();
+        return this;
+    }
+
+    public NoisePipeline sharpen() {
+        return add(new Op(SHARPEN,0));
+    }
+
+    public NoisePipeline clearOperations() {
+        ops.clear();
+        return this;
+    }
+
+    /** Release the scratch buffer */
+    public void clearScratch() {
+        scratch = null;
+    }
+
+    /**
+     * Execute the pipeline in place on a grid.
+     * The grid is copied to a flat buffer and back. Prefer execute(float[],int,int) for repeated use.
+     * @param grid [rows][cols]
+     * @return grid
+     */
+    public float[][] execute(float[][] grid) {
+        int rows = grid.length;
+        int cols = grid[0].length;
+        float[] data = new float[rows * cols];
+        for (int r = 0; r < rows; r++)
+            System.arraycopy(grid[r],0,data,r * cols,cols);
+        execute(data,rows,cols);
+        for (int r = 0; r < rows; r++)
+            System.arraycopy(data,r * cols,grid[r],0,cols);
+        return grid;
+    }
+
+    /**
+     * Execute the pipeline in place on a flat row-major buffer
+     * @param data row-major data. data[r * cols + c]
+     * @param rows rows
+     * @param cols columns
+     * @return data
+     */
+    public float[] execute(float[] data, int rows, int cols) {
+        if (data.length < rows * cols) throw new IllegalArgumentException("data.length < rows * cols");
+        float[] src = data;
+        boolean normalize = false;
+        float min = 0, max = 0;
+        int i = 0;
+        while (i < ops.size() || normalize) {
+            Pass pass = new Pass(src,rows,cols);
+            if (normalize) {
+                // amplify: normalization with the min / max of the previous pass
+                if (max != min) pass.points.add(new Op(AMPLIFY,min,max));
+                normalize = false;
+            } else {
+                Op op = ops.get(i);
+                if (op.type == SMOOTHEN || op.type == SHARPEN) {
+                    if (scratch == null || scratch.length < rows * cols) {
+                        scratch = new float[rows * cols];
+                    } pass.dst = (src == data) ? scratch : data;
+                    pass.kernel = op;
+                    i++;
+                }
+            } while (i < ops.size()) {
+                Op op = ops.get(i);
+                if (op.type == SMOOTHEN || op.type == SHARPEN) break;
+                i++;
+                if (op.type == AMPLIFY) {
+                    pass.reduce = true;
+                    break;
+                } pass.points.add(op);
+            } if (pass.kernel != null || pass.reduce || !pass.points.isEmpty()) {
+                run(pass);
+                if (pass.reduce) {
+                    normalize = true;
+                    min = pass.min;
+                    max = pass.max;
+                } src = pass.dst;
+            }
+        } if (src != data) {
+            System.arraycopy(src,0,data,0,rows * cols);
+        } return data;
+    }
+
+    private NoisePipeline add(Op op) {
+        ops.add(op);
+        return this;
+    }
+
+    private void run(Pass pass) {
+        if (pool == null || pass.rows <= BAND_ROWS) {
+            pass.band(0,pass.rows);
+        } else {
+            Band band = new Band(pass,0,pass.rows);
+            pool.invoke(band);
+            pass.min = band.min;
+            pass.max = band.max;
+        }
+    }
+
+    private static final class Op {
+        final int type;
+        final float a;
+        final float b;
+        final float[][] src;
+        final NoiseFunction noise;
+        final float x0, y0;
+        Op(int type, float a) {
+            this(type,a,null,null,0,0);
+        }
+        Op(int type, float min, float max) {
+            this.type = type; this.a = min; this.b = max;
+            this.src = null; this.noise = null;
+            this.x0 = 0; this.y0 = 0;
+        }
+        Op(int type, float a, float[][] src, NoiseFunction noise, float x0, float y0) {
+            this.type = type; this.a = a; this.b = 0;
+            this.src = src; this.noise = noise;
+            this.x0 = x0; this.y0 = y0;
+        }
+    }
+
+    private static final class Pass {
+        final float[] src;
+        final int rows, cols;
+        final List<Op> points = new ArrayList<>();
+        float[] dst;
+        Op kernel;
+        boolean reduce;
+        float max = Float.MIN_VALUE;
+        float min = Float.MAX_VALUE;
+        Pass(float[] src, int rows, int cols) {
+            this.src = src; this.dst = src;
+            this.rows = rows; this.cols = cols;
+        }
+
+        /** Process rows [r0,r1). Updates min / max of this pass (serial) */
+        void band(int r0, int r1) {
+            float[] result = band(r0,r1,null);
+            if (result != null) {
+                min = result[0];
+                max = result[1];
+            }
+        }
+
+        /** @return {min,max} if reducing, else null */
+        float[] band(int r0, int r1, float[] tmp) {
+            float[] row = tmp == null || tmp.length < cols ? new float[cols] : tmp;
+            float max = Float.MIN_VALUE;
+            float min = Float.MAX_VALUE;
+            for (int r = r0; r < r1; r++) {
+                int offset = r * cols;
+                if (kernel != null) {
+                    kernel(r,row);
+                } else System.arraycopy(src,offset,row,0,cols);
+                for (Op op : points) {
+                    point(op,row,r);
+                } if (reduce) {
+                    for (int c = 0; c < cols; c++) {
+                        float n = row[c];
+                        max = Math.max(max,n);
+                        min = Math.min(min,n);
+                    }
+                } System.arraycopy(row,0,dst,offset,cols);
+            } return reduce ? new float[] {
+                    Math.min(min,this.min),
+                    Math.max(max,this.max)
+            } : null;
+        }
+
+        // Same summation order and edge handling as U.arraySmoothen / U.arraySharpen
+        private void kernel(int r, float[] row) {
+            final float[] k = kernel.type == SHARPEN ? SHARPEN_KERNEL : SMOOTHEN_KERNEL;
+            final boolean clamp = kernel.type == SHARPEN;
+            final int last_row = rows - 1;
+            final int last_col = cols - 1;
+            final int above = r < last_row ? (r + 1) * cols : -1;
+            final int center = r * cols;
+            final int below = r > 0 ? (r - 1) * cols : -1;
+            for (int c = 0; c < cols; c++) {
+                float original = src[center + c];
+                boolean left = c > 0;
+                boolean right = c < last_col;
+                float v = 0;
+                v += (above < 0 || !left  ? original : src[above + c - 1]) * k[0];
+                v += (above < 0           ? original : src[above + c])     * k[1];
+                v += (above < 0 || !right ? original : src[above + c + 1]) * k[2];
+                v += (!left  ? original : src[center + c - 1]) * k[3];
+                v += original * k[4];
+                v += (!right ? original : src[center + c + 1]) * k[5];
+                v += (below < 0 || !left  ? original : src[below + c - 1]) * k[6];
+                v += (below < 0           ? original : src[below + c])     * k[7];
+                v += (below < 0 || !right ? original : src[below + c + 1]) * k[8];
+                row[c] = clamp ? U.clamp(v) : v;
+            }
+        }
+
+        private void point(Op op, float[] row, int r) {
+            switch (op.type) {
+                case SAMPLE:
+                    op.noise.fill(row,0,op.x0,op.y0 + r,1,0,cols);
+                    break;
+                case SCALE: {
+                    Noise.Sampler2D sampler = new Noise.Sampler2D(op.src);
+                    float v = (float) r / rows;
+                    for (int c = 0; c < cols; c++)
+                        row[c] = sampler.linear((float) c / cols,v);
+                } break;
+                case TERRACES:
+                    for (int c = 0; c < cols; c++)
+                        row[c] = round(row[c] * op.a) / op.a;
+                    break;
+                case BRIGHTEN:
+                    for (int c = 0; c < cols; c++)
+                        row[c] = U.brighten(row[c],op.a);
+                    break;
+                case CONTRAST:
+                    for (int c = 0; c < cols; c++)
+                        row[c] = U.contrast(row[c],op.a);
+                    break;
+                case MULTIPLY_ARRAY: {
+                    float[] src_row = op.src[r];
+                    for (int c = 0; c < cols; c++) {
+                        float n = row[c] * src_row[c];
+                        row[c] = lerp(row[c],n,op.a);
+                    }
+                } break;
+                case MULTIPLY_NOISE:
+                    for (int c = 0; c < cols; c++) {
+                        float n = row[c] * op.noise.get(op.x0 + c,op.y0 + r);
+                        row[c] = lerp(row[c],n,op.a);
+                    } break;
+                case MIX_ARRAY: {
+                    float[] src_row = op.src[r];
+                    for (int c = 0; c < cols; c++)
+                        row[c] = lerp(row[c],src_row[c],op.a);
+                } break;
+                case MIX_NOISE:
+                    for (int c = 0; c < cols; c++)
+                        row[c] = lerp(row[c],op.noise.get(op.x0 + c,op.y0 + r),op.a);
+                    break;
+                case CLAMP:
+                    for (int c = 0; c < cols; c++)
+                        row[c] = U.clamp(row[c]);
+                    break;
+                case AMPLIFY:
+                    for (int c = 0; c < cols; c++)
+                        row[c] = unLerp(op.a,op.b,row[c]);
+                    break;
+            }
+        }
+    }
+
+    private static final class Band extends RecursiveAction {
+        private final Pass pass;
+        private final int r0, r1;
+        float max = Float.MIN_VALUE;
+        float min = Float.MAX_VALUE;
+        Band(Pass pass, int r0, int r1) {
+            this.pass = pass;
+            this.r0 = r0;
+            this.r1 = r1;
+        }
+        protected void compute() {
+            if (r1 - r0 <= BAND_ROWS) {
+                float[] result = pass.band(r0,r1,null);
+                if (result != null) {
+                    min = result[0];
+                    max = result[1];
+                }
+            } else {
+                int mid = (r0 + r1) >>> 1;
+                Band top = new Band(pass,r0,mid);
+                Band bottom = new Band(pass,mid,r1);
+                invokeAll(top,bottom);
+                max = Math.max(top.max,bottom.max);
+                min = Math.min(top.min,bottom.min);
+            }
+        }
+    }
+}
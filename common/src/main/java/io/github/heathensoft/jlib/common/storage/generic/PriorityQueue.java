@@ -59,7 +59,7 @@ public class PriorityQueue<T extends Comparable<T>> {
         } return false;
     }
 
-    private T peak() {
+    public T peak() {
         return nodes[0];
     }
 
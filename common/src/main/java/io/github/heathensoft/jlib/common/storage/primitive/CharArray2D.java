@@ -510,16 +510,8 @@ public class CharArray2D extends PrimitiveArray2D implements ReadableChar2D {
         minY = Math.max(0,minY);
         maxX = Math.min(cols-1,maxX);
         maxY = Math.min(rows-1,maxY);
-        if (writeFunction == WriteFunction.EQU) {
-            for (int r = minY; r <= maxY; r++)
-                for (int c = minX; c <= maxX; c++)
-                    array[r][c] = from.array[r][c];
-        } else { WriteFunction.CharFunc func = writeFunction.charFunc;
-            for (int r = minY; r <= maxY; r++) {
-                for (int c = minX; c <= maxX; c++) {
-                    array[r][c] = func.calc(array[r][c],from.array[r][c]);
-                }
-            }
+        for (int r = minY; r <= maxY; r++) {
+            writeFunction.write(array[r],from.array[r],minX,maxX + 1);
         }
     }
     
@@ -544,16 +536,8 @@ public class CharArray2D extends PrimitiveArray2D implements ReadableChar2D {
         minY = Math.max(0,minY);
         maxX = Math.min(cols-1,maxX);
         maxY = Math.min(rows-1,maxY);
-        if (writeFunction == WriteFunction.EQU) {
-            for (int r = minY; r <= maxY; r++)
-                for (int c = minX; c <= maxX; c++)
-                    array[r][c] = value;
-        } else { WriteFunction.CharFunc func = writeFunction.charFunc;
-            for (int r = minY; r <= maxY; r++) {
-                for (int c = minX; c <= maxX; c++) {
-                    array[r][c] = func.calc(array[r][c],value);
-                }
-            }
+        for (int r = minY; r <= maxY; r++) {
+            writeFunction.write(array[r],value,minX,maxX + 1);
         }
     }
     
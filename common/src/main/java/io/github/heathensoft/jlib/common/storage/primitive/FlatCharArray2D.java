@@ -0,0 +1,659 @@
+package io.github.heathensoft.jlib.common.storage.primitive;
+
+import io.github.heathensoft.jlib.common.storage.primitive.iterators.CharReader;
+import io.github.heathensoft.jlib.common.storage.primitive.iterators.CharReader2D;
+
+import java.nio.CharBuffer;
+
+
+/**
+ * Two-dimensional array of primitive values, backed by a single flat row-major array.
+ * Same API as CharArray2D. value(x,y) = array[y * cols + x]
+ *
+ * One heap object instead of one per row. Rows are contiguous, so area reads / writes
+ * and copies between arrays are done with bulk copies (System.arraycopy / buffer.get(dst,off,len)).
+ * view() wraps the backing array in a buffer (no copy). get(CharBuffer) transfers the entire
+ * array in a single bulk put (i.e. into a direct buffer for GPU upload).
+ *
+ * @author Frederik Dahl
+ * 18/10/2026
+ */
+
+public class FlatCharArray2D extends PrimitiveArray2D implements ReadableChar2D {
+
+    protected final char[] array;
+
+
+    public FlatCharArray2D(int size) {
+        this(size,size);
+    }
+
+    public FlatCharArray2D(int rows, int cols) {
+        this.array = new char[rows * cols];
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    /**
+     * Wraps the array argument (no copy)
+     * @param array row-major array of length >= rows * cols
+     * @param rows rows
+     * @param cols cols
+     */
+    public FlatCharArray2D(char[] array, int rows, int cols) {
+        if (array == null) throw new IllegalArgumentException("array == null");
+        if (array.length < rows * cols) throw new IllegalArgumentException("array.length < rows * cols");
+        this.array = array;
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    /**
+     * Copies the array argument
+     * @param array2D source
+     */
+    public FlatCharArray2D(char[][] array2D) {
+        if (array2D == null) throw new IllegalArgumentException("array2D == null");
+        this.rows = array2D.length;
+        this.cols = array2D[0].length;
+        this.array = new char[rows * cols];
+        for (int r = 0; r < rows; r++) {
+            System.arraycopy(array2D[r],0,array,r * cols,cols);
+        }
+    }
+
+    @Override
+    public int sizeBytes() {
+        return size() * Character.BYTES;
+    }
+
+    /**
+     * Iterates through all values in order row by row: 0 -> num cols
+     * @param itr iterator
+     */
+    @Override
+    public void read(CharReader itr) {
+        final int size = size();
+        for (int i = 0; i < size; i++) {
+            itr.next(array[i]);
+        }
+    }
+    /**
+     * Iterates through all values in order row by row: 0 -> num cols
+     * @param itr iterator
+     */
+    @Override
+    public void read(CharReader2D itr) {
+        int i = 0;
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                itr.next(c,r, array[i++]);
+            }
+        }
+    }
+    /**
+     * Iterates through given row
+     * @param itr iterator
+     * @param row row
+     */
+    @Override
+    public void readRow(CharReader itr, int row) {
+        if (hasRow(row)) {
+            final int offset = row * cols;
+            for (int c = 0; c < cols; c++) {
+                itr.next(array[offset + c]);
+            }
+        }
+    }
+    /**
+     * Iterates through given colon
+     * @param itr iterator
+     * @param col col
+     */
+    @Override
+    public void readCol(CharReader itr, int col) {
+        if (hasCol(col)) {
+            final int size = size();
+            for (int i = col; i < size; i += cols) {
+                itr.next(array[i]);
+            }
+        }
+    }
+
+    /**
+     * Iterate a rectangular portion of array values given by
+     * "min / max" coordinates. Does not matter if min > max. Still a rectangle.
+     * @param itr iterator
+     * @param minX p1.x
+     * @param minY p1.y
+     * @param maxX p2.x
+     * @param maxY p2.y
+     */
+    @Override
+    public void readArea(CharReader itr, int minX, int minY, int maxX, int maxY) {
+        if (minX > maxX) {
+            int tmp = minX;
+            minX = maxX;
+            maxX = tmp;
+        } if (minY > maxY) {
+            int tmp = minY;
+            minY = maxY;
+            maxY = tmp;}
+        minX = Math.max(0,minX);
+        minY = Math.max(0,minY);
+        maxX = Math.min(cols-1,maxX);
+        maxY = Math.min(rows-1,maxY);
+        for (int r = minY; r <= maxY; r++) {
+            final int offset = r * cols;
+            for (int c = minX; c <= maxX; c++) {
+                itr.next(array[offset + c]);
+            }
+        }
+    }
+    /**
+     * Iterate a rectangular portion of array values given by
+     * "min / max" coordinates. Does not matter if min > max. Still a rectangle.
+     * @param itr iterator
+     * @param minX p1.x
+     * @param minY p1.y
+     * @param maxX p2.x
+     * @param maxY p2.y
+     */
+    @Override
+    public void readArea(CharReader2D itr, int minX, int minY, int maxX, int maxY) {
+        if (minX > maxX) {
+            int tmp = minX;
+            minX = maxX;
+            maxX = tmp;
+        } if (minY > maxY) {
+            int tmp = minY;
+            minY = maxY;
+            maxY = tmp;}
+        minX = Math.max(0,minX);
+        minY = Math.max(0,minY);
+        maxX = Math.min(cols-1,maxX);
+        maxY = Math.min(rows-1,maxY);
+        for (int r = minY; r <= maxY; r++) {
+            final int offset = r * cols;
+            for (int c = minX; c <= maxX; c++) {
+                itr.next(c,r, array[offset + c]);
+            }
+        }
+    }
+
+    /**
+     * Writes values stored in buffer to a subregion of the array.
+     * Notes:
+     * Buffer must be in read mode (flipped).
+     * values are "consumed" (uses buffer.get())
+     * buffer.remaining() must be >= area of subregion,
+     * otherwise, write is not executed.
+     * both min and max values are inclusive!
+     * @param buffer buffer
+     * @param minX p1.x
+     * @param minY p1.y
+     * @param maxX p2.x
+     * @param maxY p2.y
+     */
+    public void write(CharBuffer buffer, int minX, int minY, int maxX, int maxY)  {
+        if (buffer == null) throw new IllegalArgumentException("buffer == null");
+        if (minX > maxX) {
+            int tmp = minX;
+            minX = maxX;
+            maxX = tmp;
+        } if (minY > maxY) {
+            int tmp = minY;
+            minY = maxY;
+            maxY = tmp;}
+        minX = Math.max(0,minX);
+        minY = Math.max(0,minY);
+        maxX = Math.min(cols-1,maxX);
+        maxY = Math.min(rows-1,maxY);
+        int width = maxX - minX + 1;
+        int height = maxY - minY + 1;
+        if (width <= 0 || height <= 0) return;
+        int size = width * height;
+        if (buffer.remaining() < size)
+            throw new RuntimeException("buffer remaining won't cover area(width:"+width+",height:"+height+")");
+        if (writeFunction == WriteFunction.EQU) {
+            for (int r = minY; r <= maxY; r++) {
+                buffer.get(array,r * cols + minX,width);
+            }
+        } else { WriteFunction.CharFunc func = writeFunction.charFunc;
+            for (int r = minY; r <= maxY; r++) {
+                final int offset = r * cols;
+                for (int c = minX; c <= maxX; c++) {
+                    array[offset + c] = func.calc(array[offset + c],buffer.get());
+                }
+            }
+        }
+    }
+    /**
+     * Writes values stored in buffer to the array (row by row).
+     * Notes:
+     * Buffer must be in read mode (flipped).
+     * values are "consumed" (uses buffer.get())
+     * buffer.remaining() must be >= array.size(),
+     * otherwise, write is not executed.
+     * @param buffer buffer
+     */
+    public void write(CharBuffer buffer)  {
+        if (buffer == null) throw new IllegalArgumentException("buffer == null");
+        if (buffer.remaining() < size())
+            throw new RuntimeException("buffer remaining won't cover area(width:"+cols+",height:"+rows+")");
+        final int size = size();
+        if (writeFunction == WriteFunction.EQU) {
+            buffer.get(array,0,size);
+        } else { WriteFunction.CharFunc func = writeFunction.charFunc;
+            for (int i = 0; i < size; i++) {
+                array[i] = func.calc(array[i],buffer.get());
+            }
+        }
+    }
+
+    /**
+     * Writes values to a subregion of the array specified by
+     * the min and max values (inclusive).
+     * values.size() must be >= area of subregion
+     * @param values values
+     * @param minX p1.x
+     * @param minY p1.y
+     * @param maxX p2.x
+     * @param maxY p2.y
+     */
+    public void write(CharQueue values, int minX, int minY, int maxX, int maxY) {
+        if (values == null) throw new IllegalArgumentException("values == null");
+        if (minX > maxX) {
+            int tmp = minX;
+            minX = maxX;
+            maxX = tmp;
+        } if (minY > maxY) {
+            int tmp = minY;
+            minY = maxY;
+            maxY = tmp;}
+        minX = Math.max(0,minX);
+        minY = Math.max(0,minY);
+        maxX = Math.min(cols-1,maxX);
+        maxY = Math.min(rows-1,maxY);
+        int width = maxX - minX + 1;
+        int height = maxY - minY + 1;
+        int size = width * height;
+        if (values.size() < size)
+            throw new RuntimeException("queue size won't cover area(width:"+cols+",height:"+rows+")");
+        if (writeFunction == WriteFunction.EQU) {
+            for (int r = minY; r <= maxY; r++) {
+                final int offset = r * cols;
+                for (int c = minX; c <= maxX; c++) {
+                    array[offset + c] = values.dequeue();
+                }
+            }
+        } else { WriteFunction.CharFunc func = writeFunction.charFunc;
+            for (int r = minY; r <= maxY; r++) {
+                final int offset = r * cols;
+                for (int c = minX; c <= maxX; c++) {
+                    array[offset + c] = func.calc(array[offset + c],values.dequeue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes values to cover the entire area of the array.
+     * values.size() must be >= this area.
+     * @param values values
+     */
+    public void write(CharQueue values) {
+        if (values == null) throw new IllegalArgumentException("values == null");
+        if (values.size() < size())
+            throw new RuntimeException("queue size won't cover area(width:"+cols+",height:"+rows+")");
+        final int size = size();
+        if (writeFunction == WriteFunction.EQU) {
+            for (int i = 0; i < size; i++) {
+                array[i] = values.dequeue();
+            }
+        } else { WriteFunction.CharFunc func = writeFunction.charFunc;
+            for (int i = 0; i < size; i++) {
+                array[i] = func.calc(array[i], values.dequeue());
+            }
+        }
+    }
+
+    /**
+     * Writes values to a subregion of the array specified by
+     * the min and max values (inclusive).
+     * values.size() must be >= area of subregion
+     * @param values values
+     * @param minX p1.x
+     * @param minY p1.y
+     * @param maxX p2.x
+     * @param maxY p2.y
+     */
+    public void write(CharStack values, int minX, int minY, int maxX, int maxY) {
+        if (values == null) throw new IllegalArgumentException("values == null");
+        if (minX > maxX) {
+            int tmp = minX;
+            minX = maxX;
+            maxX = tmp;
+        } if (minY > maxY) {
+            int tmp = minY;
+            minY = maxY;
+            maxY = tmp;}
+        minX = Math.max(0,minX);
+        minY = Math.max(0,minY);
+        maxX = Math.min(cols-1,maxX);
+        maxY = Math.min(rows-1,maxY);
+        int width = maxX - minX + 1;
+        int height = maxY - minY + 1;
+        int size = width * height;
+        if (values.size() < size)
+            throw new RuntimeException("stack size won't cover area(width:"+cols+",height:"+rows+")");
+        if (writeFunction == WriteFunction.EQU) {
+            for (int r = minY; r <= maxY; r++) {
+                final int offset = r * cols;
+                for (int c = minX; c <= maxX; c++) {
+                    array[offset + c] = values.pop();
+                }
+            }
+        } else { WriteFunction.CharFunc func = writeFunction.charFunc;
+            for (int r = minY; r <= maxY; r++) {
+                final int offset = r * cols;
+                for (int c = minX; c <= maxX; c++) {
+                    array[offset + c] = func.calc(array[offset + c],values.pop());
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes values to cover the entire area of the array.
+     * values.size() must be >= this area.
+     * @param values values
+     */
+    public void write(CharStack values) {
+        if (values == null) throw new IllegalArgumentException("values == null");
+        if (values.size() < size())
+            throw new RuntimeException("stack size won't cover area(width:"+cols+",height:"+rows+")");
+        final int size = size();
+        if (writeFunction == WriteFunction.EQU) {
+            for (int i = 0; i < size; i++) {
+                array[i] = values.pop();
+            }
+        } else { WriteFunction.CharFunc func = writeFunction.charFunc;
+            for (int i = 0; i < size; i++) {
+                array[i] = func.calc(array[i], values.pop());
+            }
+        }
+    }
+
+    /**
+     * Write value argument to provided array coordinates stored as value-pairs in the queue argument.
+     * Points outside of bounds will be ignored. Queue elements are consumed.
+     * The queue argument size must be dividable by 2.
+     * @param points coordinate value-pairs
+     * @param value value written to array
+     */
+    public void write(IntQueue points, char value) {
+        if (points == null) throw new IllegalArgumentException("points == null");
+        if ((points.size() & 1) == 1)
+            throw new RuntimeException("queue size not dividable by 2");
+        if (writeFunction == WriteFunction.EQU) {
+            while (!points.isEmpty()) {
+                int x = points.dequeue();
+                int y = points.dequeue();
+                if (hasRow(y) && hasCol(x))
+                    array[y * cols + x] = value;
+            }
+        } else { WriteFunction.CharFunc func = writeFunction.charFunc;
+            while (!points.isEmpty()) {
+                int x = points.dequeue();
+                int y = points.dequeue();
+                if (hasRow(y) && hasCol(x)) {
+                    int i = y * cols + x;
+                    array[i] = func.calc(array[i],value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write value argument to provided array coordinates stored as value-pairs in the queue argument.
+     * Queue elements are consumed. The queue argument size must be dividable by 2.
+     * @param points coordinate value-pairs
+     * @param value value written to array
+     */
+    public void writeUnchecked(IntQueue points, char value) {
+        if (points == null) throw new IllegalArgumentException("points == null");
+        if ((points.size() & 1) == 1)
+            throw new RuntimeException("queue size not dividable by 2");
+        if (writeFunction == WriteFunction.EQU) {
+            while (!points.isEmpty()) {
+                int x = points.dequeue();
+                int y = points.dequeue();
+                array[y * cols + x] = value;
+            }
+        } else { WriteFunction.CharFunc func = writeFunction.charFunc;
+            while (!points.isEmpty()) {
+                int x = points.dequeue();
+                int y = points.dequeue();
+                int i = y * cols + x;
+                array[i] = func.calc(array[i],value);
+            }
+        }
+    }
+
+    /**
+     * Write value argument to provided array coordinates stored as value-pairs in the stack argument.
+     * Points outside of bounds will be ignored. Stack elements are consumed.
+     * The stack argument size must be dividable by 2.
+     * @param points coordinate value-pairs
+     * @param value value written to array
+     */
+    public void write(IntStack points, char value) {
+        if (points == null) throw new IllegalArgumentException("points == null");
+        if ((points.size() & 1) == 1)
+            throw new RuntimeException("stack size not dividable by 2");
+        if (writeFunction == WriteFunction.EQU) {
+            while (!points.isEmpty()) {
+                int x = points.pop();
+                int y = points.pop();
+                if (hasRow(y) && hasCol(x))
+                    array[y * cols + x] = value;
+            }
+        } else { WriteFunction.CharFunc func = writeFunction.charFunc;
+            while (!points.isEmpty()) {
+                int x = points.pop();
+                int y = points.pop();
+                if (hasRow(y) && hasCol(x)) {
+                    int i = y * cols + x;
+                    array[i] = func.calc(array[i],value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write value argument to provided array coordinates stored as value-pairs in the stack argument.
+     * Stack elements are consumed.The stack argument size must be dividable by 2.
+     * @param points coordinate value-pairs
+     * @param value value written to array
+     */
+    public void writeUnchecked(IntStack points, char value) {
+        if (points == null) throw new IllegalArgumentException("points == null");
+        if ((points.size() & 1) == 1)
+            throw new RuntimeException("stack size not dividable by 2");
+        if (writeFunction == WriteFunction.EQU) {
+            while (!points.isEmpty()) {
+                int x = points.pop();
+                int y = points.pop();
+                array[y * cols + x] = value;}
+        } else { WriteFunction.CharFunc func = writeFunction.charFunc;
+            while (!points.isEmpty()) {
+                int x = points.pop();
+                int y = points.pop();
+                int i = y * cols + x;
+                array[i] = func.calc(array[i],value);
+            }
+        }
+    }
+
+    /**
+     * Write array values to this. Arrays must be of same dimensions.
+     * @param from source array
+     */
+    public void write(FlatCharArray2D from) {
+        if (!sameDimension(from)) throw new RuntimeException("array is either null or not of same size as the write target array");
+        WriteKernels.write(writeFunction,array,from.array,0,size());
+    }
+
+    /**
+     * Write array values to this. Arrays must be of same dimensions.
+     * min and max values are inclusive and forms the area to write.
+     * @param from source array
+     * @param minX p1.x
+     * @param minY p1.y
+     * @param maxX p2.x
+     * @param maxY p2.y
+     */
+    public void write(FlatCharArray2D from, int minX, int minY, int maxX, int maxY) {
+        if (!sameDimension(from)) throw new RuntimeException("array is either null or not of same size as the write target array");
+        if (minX > maxX) {
+            int tmp = minX;
+            minX = maxX;
+            maxX = tmp;
+        } if (minY > maxY) {
+            int tmp = minY;
+            minY = maxY;
+            maxY = tmp;}
+        minX = Math.max(0,minX);
+        minY = Math.max(0,minY);
+        maxX = Math.min(cols-1,maxX);
+        maxY = Math.min(rows-1,maxY);
+        if (minX > maxX) return;
+        for (int r = minY; r <= maxY; r++) {
+            final int offset = r * cols;
+            WriteKernels.write(writeFunction,array,from.array,offset + minX,offset + maxX + 1);
+        }
+    }
+
+    /**
+     * Write value to all. Arrays must be of same dimensions.
+     * min and max values are inclusive and forms the area to write.
+     * @param minX p1.x
+     * @param minY p1.y
+     * @param maxX p2.x
+     * @param maxY p2.y
+     */
+    public void write(char value, int minX, int minY, int maxX, int maxY) {
+        if (minX > maxX) {
+            int tmp = minX;
+            minX = maxX;
+            maxX = tmp;
+        } if (minY > maxY) {
+            int tmp = minY;
+            minY = maxY;
+            maxY = tmp;}
+        minX = Math.max(0,minX);
+        minY = Math.max(0,minY);
+        maxX = Math.min(cols-1,maxX);
+        maxY = Math.min(rows-1,maxY);
+        for (int r = minY; r <= maxY; r++) {
+            final int offset = r * cols;
+            WriteKernels.write(writeFunction,array,value,offset + minX,offset + maxX + 1);
+        }
+    }
+
+    /**
+     * Write value to all.
+     * @param value value
+     */
+    public void write(char value) {
+        WriteKernels.write(writeFunction,array,value,0,size());
+    }
+
+    /**
+     * Parallel write(from). Arrays must be of same dimensions.
+     * Arrays of WriteFunction.PARALLEL_THRESHOLD or more elements are split across the common ForkJoinPool.
+     * @param from source array
+     */
+    public void writeParallel(FlatCharArray2D from) {
+        if (!sameDimension(from)) throw new RuntimeException("array is either null or not of same size as the write target array");
+        final WriteFunction function = writeFunction;
+        WriteKernels.parallel((i0, i1) -> WriteKernels.write(function,array,from.array,i0,i1),0,size());
+    }
+
+    /**
+     * Parallel write(value).
+     * Arrays of WriteFunction.PARALLEL_THRESHOLD or more elements are split across the common ForkJoinPool.
+     * @param value value
+     */
+    public void writeParallel(char value) {
+        final WriteFunction function = writeFunction;
+        WriteKernels.parallel((i0, i1) -> WriteKernels.write(function,array,value,i0,i1),0,size());
+    }
+
+    /**
+     * Write value to coordinate. unchecked.
+     * @param value value
+     * @param x p.x
+     * @param y p.y
+     */
+    public void write(char value, int x, int y) {
+        int i = y * cols + x;
+        if (writeFunction == WriteFunction.EQU) array[i] = value;
+        else array[i] = writeFunction.charFunc.calc(array[i],value);
+    }
+
+    /**
+     * Set value of array coordinate to value. unchecked.
+     * Equivalent to single write with WriteFunction.EQU. Only this is faster.
+     * (array[y * cols + x] = value)
+     * @param value value
+     * @param x p.x
+     * @param y p.y
+     */
+    public void set(char value, int x, int y) {
+        array[y * cols + x] = value;
+    }
+
+    /**
+     * Get value stored in array at p( row = y, col = x) unchecked;
+     * @param x p.x
+     * @param y p.y
+     * @return value
+     */
+    public char get(int x, int y) {
+        return array[y * cols + x];
+    }
+
+    /**
+     * @return the backing row-major array
+     */
+    public char[] get() {
+        return array;
+    }
+
+    /**
+     * Puts all values (row by row) into buffer in a single bulk transfer
+     * @param buffer destination buffer. remaining() must be >= size()
+     */
+    public void get(CharBuffer buffer) {
+        buffer.put(array,0,size());
+    }
+
+    /**
+     * @return buffer view of the backing array (no copy). position 0, limit size()
+     */
+    public CharBuffer view() {
+        return CharBuffer.wrap(array,0,size()).slice();
+    }
+
+    /**
+     * @return copy as a two-dimensional array
+     */
+    public char[][] toArray2D() {
+        char[][] dst = new char[rows][cols];
+        for (int r = 0; r < rows; r++) {
+            System.arraycopy(array,r * cols,dst[r],0,cols);
+        } return dst;
+    }
+}
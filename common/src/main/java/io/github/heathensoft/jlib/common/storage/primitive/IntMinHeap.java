@@ -0,0 +1,78 @@
+package io.github.heathensoft.jlib.common.storage.primitive;
+
+import java.util.Arrays;
+
+/**
+ * Auto-growing binary min-heap of int values ordered by int priority.
+ * Entries are packed (priority, value) longs: equal priorities pop in order of value (unsigned).
+ * No decrease-key. Push the value again with the lower priority, and skip stale entries when popped.
+ *
+ * @author Frederik Dahl
+ * 18/10/2026
+ */
+
+public class IntMinHeap {
+
+	private long[] h;
+	private int p;
+
+	/**
+	 * @param cap Initial capacity
+	 */
+	public IntMinHeap(int cap) {
+		if (cap < 0) throw new NegativeArraySizeException("cap < 0: " + cap);
+		h = new long[Math.max(1,cap)];
+	}
+
+	public IntMinHeap() {
+		this(16);
+	}
+
+	/**
+	 * If the heap has reached its capacity, the underlying array will double in size
+	 * @param value the value
+	 * @param priority lower priorities pop first
+	 */
+	public void push(int value, int priority) {
+		if (p == h.length) h = Arrays.copyOf(h,p * 2);
+		long key = ((long) priority << 32) | (value & 0xFFFF_FFFFL);
+		int i = p++;
+		while (i > 0) {
+			int parent = (i - 1) >> 1;
+			if (h[parent] <= key) break;
+			h[i] = h[parent];
+			i = parent;
+		} h[i] = key;
+	}
+
+	/**
+	 * Remove the value with the lowest priority. Does not check if empty.
+	 * @return the value
+	 */
+	public int pop() {
+		long top = h[0];
+		long last = h[--p];
+		int i = 0;
+		int half = p >> 1;
+		while (i < half) {
+			int c = (i << 1) + 1;
+			if (c + 1 < p && h[c + 1] < h[c]) c++;
+			if (last <= h[c]) break;
+			h[i] = h[c];
+			i = c;
+		} if (p > 0) h[i] = last;
+		return (int) top;
+	}
+
+	public int size() {
+		return p;
+	}
+
+	public boolean isEmpty() {
+		return p == 0;
+	}
+
+	public void clear() {
+		p = 0;
+	}
+}
@@ -54,7 +54,7 @@ public abstract class PrimitiveArray2D {
     }
     
     protected boolean hasCol(int col) {
-        return (col >= 0 && col < rows);
+        return (col >= 0 && col < cols);
     }
     
     protected boolean sameDimension(PrimitiveArray2D other) {
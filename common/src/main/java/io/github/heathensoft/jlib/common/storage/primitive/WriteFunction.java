@@ -50,6 +50,9 @@ public enum WriteFunction {
     public final LongFunc longFunc;
     public final FloatFunc floatFunc;
     public final DoubleFunc doubleFunc;
+
+    /** writeParallel() splits ranges of at least this many elements across the common ForkJoinPool */
+    public static final int PARALLEL_THRESHOLD = WriteKernels.PARALLEL_THRESHOLD;
     
     /**
      * Writes value to array. The result depends on the WriteFunction used.
@@ -60,14 +63,7 @@ public enum WriteFunction {
      * @param toIndex stop index exclusive
      */
     public final void write(byte[] dest, byte val, int fromIndex, int toIndex) {
-        if (dest != null) {
-            if (this == EQU) {
-                for (int i = fromIndex; i < toIndex; i++) dest[i] = val;
-            } else { for (int i = fromIndex; i < toIndex; i++) {
-                    dest[i] = byteFunc.calc(dest[i],val);
-                }
-            }
-        }
+        if (dest != null) WriteKernels.write(this,dest,val,fromIndex,toIndex);
     }
     /**
      * Writes value to array. The result depends on the WriteFunction used.
@@ -88,12 +84,7 @@ public enum WriteFunction {
      */
     public final void write(byte[] dest, byte[] src, int fromIndex, int toIndex) {
         if (dest != null && src != null && dest.length == src.length) {
-            if (this == EQU) {
-                for (int i = fromIndex; i < toIndex; i++) dest[i] = src[i];
-            } else { for (int i = fromIndex; i < toIndex; i++) {
-                    dest[i] = byteFunc.calc(dest[i],src[i]);
-                }
-            }
+            WriteKernels.write(this,dest,src,fromIndex,toIndex);
         }
     }
     /**
@@ -105,6 +96,38 @@ public enum WriteFunction {
     public final void write(byte[] dest, byte[] src) {
         if (dest != null) write(dest,src,0,dest.length);
     }
+    /**
+     * Parallel write(dest,val,fromIndex,toIndex). Ranges of PARALLEL_THRESHOLD or more
+     * elements are split across the common ForkJoinPool.
+     * @param dest array to be manipulated
+     * @param val value written to array
+     * @param fromIndex start index inclusive
+     * @param toIndex stop index exclusive
+     */
+    public final void writeParallel(byte[] dest, byte val, int fromIndex, int toIndex) {
+        if (dest != null) WriteKernels.parallel((from, to) -> WriteKernels.write(this,dest,val,from,to),fromIndex,toIndex);
+    }
+    /**
+     * Parallel write(dest,src,fromIndex,toIndex). Ranges of PARALLEL_THRESHOLD or more
+     * elements are split across the common ForkJoinPool.
+     * @param dest array to be written to
+     * @param src array to be written from
+     * @param fromIndex start index inclusive
+     * @param toIndex stop index exclusive
+     */
+    public final void writeParallel(byte[] dest, byte[] src, int fromIndex, int toIndex) {
+        if (dest != null && src != null && dest.length == src.length) {
+            WriteKernels.parallel((from, to) -> WriteKernels.write(this,dest,src,from,to),fromIndex,toIndex);
+        }
+    }
+    /**
+     * Parallel write(dest,src).
+     * @param dest array to be written to
+     * @param src array to be written from
+     */
+    public final void writeParallel(byte[] dest, byte[] src) {
+        if (dest != null) writeParallel(dest,src,0,dest.length);
+    }
     /**
      * Writes value to array. The result depends on the WriteFunction used.
      * No checks for out of bounds.
@@ -114,14 +137,7 @@ public enum WriteFunction {
      * @param toIndex stop index exclusive
      */
     public final void write(short[] dest, short val, int fromIndex, int toIndex) {
-        if (dest != null) {
-            if (this == EQU) {
-                for (int i = fromIndex; i < toIndex; i++) dest[i] = val;
-            } else { for (int i = fromIndex; i < toIndex; i++) {
-                    dest[i] = shortFunc.calc(dest[i],val);
-                }
-            }
-        }
+        if (dest != null) WriteKernels.write(this,dest,val,fromIndex,toIndex);
     }
     /**
      * Writes value to array. The result depends on the WriteFunction used.
@@ -142,12 +158,7 @@ public enum WriteFunction {
      */
     public final void write(short[] dest, short[] src, int fromIndex, int toIndex) {
         if (dest != null && src != null && dest.length == src.length) {
-            if (this == EQU) {
-                for (int i = fromIndex; i < toIndex; i++) dest[i] = src[i];
-            } else { for (int i = fromIndex; i < toIndex; i++) {
-                    dest[i] = shortFunc.calc(dest[i],src[i]);
-                }
-            }
+            WriteKernels.write(this,dest,src,fromIndex,toIndex);
         }
     }
     /**
@@ -159,6 +170,38 @@ public enum WriteFunction {
     public final void write(short[] dest, short[] src) {
         if (dest != null) write(dest,src,0,dest.length);
     }
+    /**
+     * Parallel write(dest,val,fromIndex,toIndex). Ranges of PARALLEL_THRESHOLD or more
+     * elements are split across the common ForkJoinPool.
+     * @param dest array to be manipulated
+     * @param val value written to array
+     * @param fromIndex start index inclusive
+     * @param toIndex stop index exclusive
+     */
+    public final void writeParallel(short[] dest, short val, int fromIndex, int toIndex) {
+        if (dest != null) WriteKernels.parallel((from, to) -> WriteKernels.write(this,dest,val,from,to),fromIndex,toIndex);
+    }
+    /**
+     * Parallel write(dest,src,fromIndex,toIndex). Ranges of PARALLEL_THRESHOLD or more
+     * elements are split across the common ForkJoinPool.
+     * @param dest array to be written to
+     * @param src array to be written from
+     * @param fromIndex start index inclusive
+     * @param toIndex stop index exclusive
+     */
+    public final void writeParallel(short[] dest, short[] src, int fromIndex, int toIndex) {
+        if (dest != null && src != null && dest.length == src.length) {
+            WriteKernels.parallel((from, to) -> WriteKernels.write(this,dest,src,from,to),fromIndex,toIndex);
+        }
+    }
+    /**
+     * Parallel write(dest,src).
+     * @param dest array to be written to
+     * @param src array to be written from
+     */
+    public final void writeParallel(short[] dest, short[] src) {
+        if (dest != null) writeParallel(dest,src,0,dest.length);
+    }
     /**
      * Writes value to array. The result depends on the WriteFunction used.
      * No checks for out of bounds.
@@ -168,14 +211,7 @@ public enum WriteFunction {
      * @param toIndex stop index exclusive
      */
     public final void write(char[] dest, char val, int fromIndex, int toIndex) {
-        if (dest != null) {
-            if (this == EQU) {
-                for (int i = fromIndex; i < toIndex; i++) dest[i] = val;
-            } else { for (int i = fromIndex; i < toIndex; i++) {
-                dest[i] = charFunc.calc(dest[i],val);
-            }
-            }
-        }
+        if (dest != null) WriteKernels.write(this,dest,val,fromIndex,toIndex);
     }
     /**
      * Writes value to array. The result depends on the WriteFunction used.
@@ -196,12 +232,7 @@ public enum WriteFunction {
      */
     public final void write(char[] dest, char[] src, int fromIndex, int toIndex) {
         if (dest != null && src != null && dest.length == src.length) {
-            if (this == EQU) {
-                for (int i = fromIndex; i < toIndex; i++) dest[i] = src[i];
-            } else { for (int i = fromIndex; i < toIndex; i++) {
-                dest[i] = charFunc.calc(dest[i],src[i]);
-            }
-            }
+            WriteKernels.write(this,dest,src,fromIndex,toIndex);
         }
     }
     /**
@@ -213,6 +244,38 @@ public enum WriteFunction {
     public final void write(char[] dest, char[] src) {
         if (dest != null) write(dest,src,0,dest.length);
     }
+    /**
+     * Parallel write(dest,val,fromIndex,toIndex). Ranges of PARALLEL_THRESHOLD or more
+     * elements are split across the common ForkJoinPool.
+     * @param dest array to be manipulated
+     * @param val value written to array
+     * @param fromIndex start index inclusive
+     * @param toIndex stop index exclusive
+     */
+    public final void writeParallel(char[] dest, char val, int fromIndex, int toIndex) {
+        if (dest != null) WriteKernels.parallel((from, to) -> WriteKernels.write(this,dest,val,from,to),fromIndex,toIndex);
+    }
+    /**
+     * Parallel write(dest,src,fromIndex,toIndex). Ranges of PARALLEL_THRESHOLD or more
+     * elements are split across the common ForkJoinPool.
+     * @param dest array to be written to
+     * @param src array to be written from
+     * @param fromIndex start index inclusive
+     * @param toIndex stop index exclusive
+     */
+    public final void writeParallel(char[] dest, char[] src, int fromIndex, int toIndex) {
+        if (dest != null && src != null && dest.length == src.length) {
+            WriteKernels.parallel((from, to) -> WriteKernels.write(this,dest,src,from,to),fromIndex,toIndex);
+        }
+    }
+    /**
+     * Parallel write(dest,src).
+     * @param dest array to be written to
+     * @param src array to be written from
+     */
+    public final void writeParallel(char[] dest, char[] src) {
+        if (dest != null) writeParallel(dest,src,0,dest.length);
+    }
     /**
      * Writes value to array. The result depends on the WriteFunction used.
      * No checks for out of bounds.
@@ -222,14 +285,7 @@ public enum WriteFunction {
      * @param toIndex stop index exclusive
      */
     public final void write(int[] dest, int val, int fromIndex, int toIndex) {
-        if (dest != null) {
-            if (this == EQU) {
-                for (int i = fromIndex; i < toIndex; i++) dest[i] = val;
-            } else { for (int i = fromIndex; i < toIndex; i++) {
-                    dest[i] = intFunc.calc(dest[i],val);
-                }
-            }
-        }
+        if (dest != null) WriteKernels.write(this,dest,val,fromIndex,toIndex);
     }
     /**
      * Writes value to array. The result depends on the WriteFunction used.
@@ -250,12 +306,7 @@ public enum WriteFunction {
      */
     public final void write(int[] dest, int[] src, int fromIndex, int toIndex) {
         if (dest != null && src != null && dest.length == src.length) {
-            if (this == EQU) {
-                for (int i = fromIndex; i < toIndex; i++) dest[i] = src[i];
-            } else { for (int i = fromIndex; i < toIndex; i++) {
-                    dest[i] = intFunc.calc(dest[i],src[i]);
-                }
-            }
+            WriteKernels.write(this,dest,src,fromIndex,toIndex);
         }
     }
     /**
@@ -267,6 +318,38 @@ public enum WriteFunction {
     public final void write(int[] dest, int[] src) {
         if (dest != null) write(dest,src,0,dest.length);
     }
+    /**
+     * Parallel write(dest,val,fromIndex,toIndex). Ranges of PARALLEL_THRESHOLD or more
+     * elements are split across the common ForkJoinPool.
+     * @param dest array to be manipulated
+     * @param val value written to array
+     * @param fromIndex start index inclusive
+     * @param toIndex stop index exclusive
+     */
+    public final void writeParallel(int[] dest, int val, int fromIndex, int toIndex) {
+        if (dest != null) WriteKernels.parallel((from, to) -> WriteKernels.write(this,dest,val,from,to),fromIndex,toIndex);
+    }
+    /**
+     * Parallel write(dest,src,fromIndex,toIndex). Ranges of PARALLEL_THRESHOLD or more
+     * elements are split across the common ForkJoinPool.
+     * @param dest array to be written to
+     * @param src array to be written from
+     * @param fromIndex start index inclusive
+     * @param toIndex stop index exclusive
+     */
+    public final void writeParallel(int[] dest, int[] src, int fromIndex, int toIndex) {
+        if (dest != null && src != null && dest.length == src.length) {
+            WriteKernels.parallel((from, to) -> WriteKernels.write(this,dest,src,from,to),fromIndex,toIndex);
+        }
+    }
+    /**
+     * Parallel write(dest,src).
+     * @param dest array to be written to
+     * @param src array to be written from
+     */
+    public final void writeParallel(int[] dest, int[] src) {
+        if (dest != null) writeParallel(dest,src,0,dest.length);
+    }
     /**
      * Writes value to array. The result depends on the WriteFunction used.
      * No checks for out of bounds.
@@ -276,14 +359,7 @@ public enum WriteFunction {
      * @param toIndex stop index exclusive
      */
     public final void write(long[] dest, long val, int fromIndex, int toIndex) {
-        if (dest != null) {
-            if (this == EQU) {
-                for (int i = fromIndex; i < toIndex; i++) dest[i] = val;
-            } else { for (int i = fromIndex; i < toIndex; i++) {
-                    dest[i] = longFunc.calc(dest[i],val);
-                }
-            }
-        }
+        if (dest != null) WriteKernels.write(this,dest,val,fromIndex,toIndex);
     }
     /**
      * Writes value to array. The result depends on the WriteFunction used.
@@ -304,12 +380,7 @@ public enum WriteFunction {
      */
     public final void write(long[] dest, long[] src, int fromIndex, int toIndex) {
         if (dest != null && src != null && dest.length == src.length) {
-            if (this == EQU) {
-                for (int i = fromIndex; i < toIndex; i++) dest[i] = src[i];
-            } else { for (int i = fromIndex; i < toIndex; i++) {
-                    dest[i] = longFunc.calc(dest[i],src[i]);
-                }
-            }
+            WriteKernels.write(this,dest,src,fromIndex,toIndex);
         }
     }
     /**
@@ -321,6 +392,38 @@ public enum WriteFunction {
     public final void write(long[] dest, long[] src) {
         if (dest != null) write(dest,src,0,dest.length);
     }
+    /**
+     * Parallel write(dest,val,fromIndex,toIndex). Ranges of PARALLEL_THRESHOLD or more
+     * elements are split across the common ForkJoinPool.
+     * @param dest array to be manipulated
+     * @param val value written to array
+     * @param fromIndex start index inclusive
+     * @param toIndex stop index exclusive
+     */
+    public final void writeParallel(long[] dest, long val, int fromIndex, int toIndex) {
+        if (dest != null) WriteKernels.parallel((from, to) -> WriteKernels.write(this,dest,val,from,to),fromIndex,toIndex);
+    }
+    /**
+     * Parallel write(dest,src,fromIndex,toIndex). Ranges of PARALLEL_THRESHOLD or more
+     * elements are split across the common ForkJoinPool.
+     * @param dest array to be written to
+     * @param src array to be written from
+     * @param fromIndex start index inclusive
+     * @param toIndex stop index exclusive
+     */
+    public final void writeParallel(long[] dest, long[] src, int fromIndex, int toIndex) {
+        if (dest != null && src != null && dest.length == src.length) {
+            WriteKernels.parallel((from, to) -> WriteKernels.write(this,dest,src,from,to),fromIndex,toIndex);
+        }
+    }
+    /**
+     * Parallel write(dest,src).
+     * @param dest array to be written to
+     * @param src array to be written from
+     */
+    public final void writeParallel(long[] dest, long[] src) {
+        if (dest != null) writeParallel(dest,src,0,dest.length);
+    }
     /**
      * Writes value to array. The result depends on the WriteFunction used.
      * No checks for out of bounds.
@@ -330,14 +433,7 @@ public enum WriteFunction {
      * @param toIndex stop index exclusive
      */
     public final void write(float[] dest, float val, int fromIndex, int toIndex) {
-        if (dest != null) {
-            if (this == EQU) {
-                for (int i = fromIndex; i < toIndex; i++) dest[i] = val;
-            } else { for (int i = fromIndex; i < toIndex; i++) {
-                    dest[i] = floatFunc.calc(dest[i],val);
-                }
-            }
-        }
+        if (dest != null) WriteKernels.write(this,dest,val,fromIndex,toIndex);
     }
     /**
      * Writes value to array. The result depends on the WriteFunction used.
@@ -358,12 +454,7 @@ public enum WriteFunction {
      */
     public final void write(float[] dest, float[] src, int fromIndex, int toIndex) {
         if (dest != null && src != null && dest.length == src.length) {
-            if (this == EQU) {
-                for (int i = fromIndex; i < toIndex; i++) dest[i] = src[i];
-            } else { for (int i = fromIndex; i < toIndex; i++) {
-                    dest[i] = floatFunc.calc(dest[i],src[i]);
-                }
-            }
+            WriteKernels.write(this,dest,src,fromIndex,toIndex);
         }
     }
     /**
@@ -375,6 +466,38 @@ public enum WriteFunction {
     public final void write(float[] dest, float[] src) {
         if (dest != null) write(dest,src,0,dest.length);
     }
+    /**
+     * Parallel write(dest,val,fromIndex,toIndex). Ranges of PARALLEL_THRESHOLD or more
+     * elements are split across the common ForkJoinPool.
+     * @param dest array to be manipulated
+     * @param val value written to array
+     * @param fromIndex start index inclusive
+     * @param toIndex stop index exclusive
+     */
+    public final void writeParallel(float[] dest, float val, int fromIndex, int toIndex) {
+        if (dest != null) WriteKernels.parallel((from, to) -> WriteKernels.write(this,dest,val,from,to),fromIndex,toIndex);
+    }
+    /**
+     * Parallel write(dest,src,fromIndex,toIndex). Ranges of PARALLEL_THRESHOLD or more
+     * elements are split across the common ForkJoinPool.
+     * @param dest array to be written to
+     * @param src array to be written from
+     * @param fromIndex start index inclusive
+     * @param toIndex stop index exclusive
+     */
+    public final void writeParallel(float[] dest, float[] src, int fromIndex, int toIndex) {
+        if (dest != null && src != null && dest.length == src.length) {
+            WriteKernels.parallel((from, to) -> WriteKernels.write(this,dest,src,from,to),fromIndex,toIndex);
+        }
+    }
+    /**
+     * Parallel write(dest,src).
+     * @param dest array to be written to
+     * @param src array to be written from
+     */
+    public final void writeParallel(float[] dest, float[] src) {
+        if (dest != null) writeParallel(dest,src,0,dest.length);
+    }
     /**
      * Writes value to array. The result depends on the WriteFunction used.
      * No checks for out of bounds.
@@ -384,14 +507,7 @@ public enum WriteFunction {
      * @param toIndex stop index exclusive
      */
     public final void write(double[] dest, double val, int fromIndex, int toIndex) {
-        if (dest != null) {
-            if (this == EQU) {
-                for (int i = fromIndex; i < toIndex; i++) dest[i] = val;
-            } else { for (int i = fromIndex; i < toIndex; i++) {
-                    dest[i] = doubleFunc.calc(dest[i],val);
-                }
-            }
-        }
+        if (dest != null) WriteKernels.write(this,dest,val,fromIndex,toIndex);
     }
     /**
      * Writes value to array. The result depends on the WriteFunction used.
@@ -412,12 +528,7 @@ public enum WriteFunction {
      */
     public final void write(double[] dest, double[] src, int fromIndex, int toIndex) {
         if (dest != null && src != null && dest.length == src.length) {
-            if (this == EQU) {
-                for (int i = fromIndex; i < toIndex; i++) dest[i] =src[i];
-            } else { for (int i = fromIndex; i < toIndex; i++) {
-                    dest[i] = doubleFunc.calc(dest[i],src[i]);
-                }
-            }
+            WriteKernels.write(this,dest,src,fromIndex,toIndex);
         }
     }
     /**
@@ -429,6 +540,38 @@ public enum WriteFunction {
     public final void write(double[] dest, double[] src) {
         if (dest != null) write(dest,src,0,dest.length);
     }
+    /**
+     * Parallel write(dest,val,fromIndex,toIndex). Ranges of PARALLEL_THRESHOLD or more
+     * elements are split across the common ForkJoinPool.
+     * @param dest array to be manipulated
+     * @param val value written to array
+     * @param fromIndex start index inclusive
+     * @param toIndex stop index exclusive
+     */
+    public final void writeParallel(double[] dest, double val, int fromIndex, int toIndex) {
+        if (dest != null) WriteKernels.parallel((from, to) -> WriteKernels.write(this,dest,val,from,to),fromIndex,toIndex);
+    }
+    /**
+     * Parallel write(dest,src,fromIndex,toIndex). Ranges of PARALLEL_THRESHOLD or more
+     * elements are split across the common ForkJoinPool.
+     * @param dest array to be written to
+     * @param src array to be written from
+     * @param fromIndex start index inclusive
+     * @param toIndex stop index exclusive
+     */
+    public final void writeParallel(double[] dest, double[] src, int fromIndex, int toIndex) {
+        if (dest != null && src != null && dest.length == src.length) {
+            WriteKernels.parallel((from, to) -> WriteKernels.write(this,dest,src,from,to),fromIndex,toIndex);
+        }
+    }
+    /**
+     * Parallel write(dest,src).
+     * @param dest array to be written to
+     * @param src array to be written from
+     */
+    public final void writeParallel(double[] dest, double[] src) {
+        if (dest != null) writeParallel(dest,src,0,dest.length);
+    }
     
     private static final class ByteFuncEQU implements ByteFunc {
         @Override public byte calc(byte val1, byte val2) {
@@ -0,0 +1,259 @@
+package io.github.heathensoft.jlib.common.storage.primitive;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Bulk loops for WriteFunction. One loop per function and primitive type,
+ * so the inner loop has no interface call (the calc() call site sees every
+ * function and type, and does not inline). The loops are plain counted loops
+ * over arrays that the JIT unrolls and vectorizes.
+ * Results are identical to the per-element WriteFunction functions.
+ * No checks for out of bounds.
+ *
+ * @author Frederik Dahl
+ * 18/10/2026
+ */
+
+
+final class WriteKernels {
+
+    /** Ranges shorter than this are written on the calling thread */
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+    private static final int PARALLEL_CHUNK = 1 << 14;
+
+    @FunctionalInterface
+    interface Range { void write(int fromIndex, int toIndex); }
+
+    static void parallel(Range range, int fromIndex, int toIndex) {
+        if (toIndex - fromIndex < PARALLEL_THRESHOLD) range.write(fromIndex,toIndex);
+        else ForkJoinPool.commonPool().invoke(new Split(range,fromIndex,toIndex));
+    }
+
+    private static final class Split extends RecursiveAction {
+        private final Range range;
+        private final int fromIndex;
+        private final int toIndex;
+        Split(Range range, int fromIndex, int toIndex) {
+            this.range = range;
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+        }
+        protected void compute() {
+            if (toIndex - fromIndex <= PARALLEL_CHUNK) {
+                range.write(fromIndex,toIndex);
+            } else { int mid = (fromIndex + toIndex) >>> 1;
+                invokeAll(new Split(range,fromIndex,mid),new Split(range,mid,toIndex));
+            }
+        }
+    }
+
+    static void write(WriteFunction function, byte[] dest, byte val, int fromIndex, int toIndex) {
+        if (toIndex <= fromIndex) return;
+        switch (function) {
+            case EQU: Arrays.fill(dest,fromIndex,toIndex,val); break;
+            case ADD: for (int i = fromIndex; i < toIndex; i++) dest[i] += val; break;
+            case SUB: for (int i = fromIndex; i < toIndex; i++) dest[i] -= val; break;
+            case MUL: for (int i = fromIndex; i < toIndex; i++) dest[i] *= val; break;
+            case DIV: for (int i = fromIndex; i < toIndex; i++) dest[i] /= val; break;
+            case SET: for (int i = fromIndex; i < toIndex; i++) dest[i] |= val; break;
+            case AND: for (int i = fromIndex; i < toIndex; i++) dest[i] &= val; break;
+            case CLR: for (int i = fromIndex; i < toIndex; i++) dest[i] &= ~val; break;
+        }
+    }
+
+    static void write(WriteFunction function, byte[] dest, byte[] src, int fromIndex, int toIndex) {
+        if (toIndex <= fromIndex) return;
+        switch (function) {
+            case EQU: System.arraycopy(src,fromIndex,dest,fromIndex,toIndex - fromIndex); break;
+            case ADD: for (int i = fromIndex; i < toIndex; i++) dest[i] += src[i]; break;
+            case SUB: for (int i = fromIndex; i < toIndex; i++) dest[i] -= src[i]; break;
+            case MUL: for (int i = fromIndex; i < toIndex; i++) dest[i] *= src[i]; break;
+            case DIV: for (int i = fromIndex; i < toIndex; i++) dest[i] /= src[i]; break;
+            case SET: for (int i = fromIndex; i < toIndex; i++) dest[i] |= src[i]; break;
+            case AND: for (int i = fromIndex; i < toIndex; i++) dest[i] &= src[i]; break;
+            case CLR: for (int i = fromIndex; i < toIndex; i++) dest[i] &= ~src[i]; break;
+        }
+    }
+
+    static void write(WriteFunction function, short[] dest, short val, int fromIndex, int toIndex) {
+        if (toIndex <= fromIndex) return;
+        switch (function) {
+            case EQU: Arrays.fill(dest,fromIndex,toIndex,val); break;
+            case ADD: for (int i = fromIndex; i < toIndex; i++) dest[i] += val; break;
+            case SUB: for (int i = fromIndex; i < toIndex; i++) dest[i] -= val; break;
+            case MUL: for (int i = fromIndex; i < toIndex; i++) dest[i] *= val; break;
+            case DIV: for (int i = fromIndex; i < toIndex; i++) dest[i] /= val; break;
+            case SET: for (int i = fromIndex; i < toIndex; i++) dest[i] |= val; break;
+            case AND: for (int i = fromIndex; i < toIndex; i++) dest[i] &= val; break;
+            case CLR: for (int i = fromIndex; i < toIndex; i++) dest[i] &= ~val; break;
+        }
+    }
+
+    static void write(WriteFunction function, short[] dest, short[] src, int fromIndex, int toIndex) {
+        if (toIndex <= fromIndex) return;
+        switch (function) {
+            case EQU: System.arraycopy(src,fromIndex,dest,fromIndex,toIndex - fromIndex); break;
+            case ADD: for (int i = fromIndex; i < toIndex; i++) dest[i] += src[i]; break;
+            case SUB: for (int i = fromIndex; i < toIndex; i++) dest[i] -= src[i]; break;
+            case MUL: for (int i = fromIndex; i < toIndex; i++) dest[i] *= src[i]; break;
+            case DIV: for (int i = fromIndex; i < toIndex; i++) dest[i] /= src[i]; break;
+            case SET: for (int i = fromIndex; i < toIndex; i++) dest[i] |= src[i]; break;
+            case AND: for (int i = fromIndex; i < toIndex; i++) dest[i] &= src[i]; break;
+            case CLR: for (int i = fromIndex; i < toIndex; i++) dest[i] &= ~src[i]; break;
+        }
+    }
+
+    static void write(WriteFunction function, char[] dest, char val, int fromIndex, int toIndex) {
+        if (toIndex <= fromIndex) return;
+        switch (function) {
+            case EQU: Arrays.fill(dest,fromIndex,toIndex,val); break;
+            case ADD: for (int i = fromIndex; i < toIndex; i++) dest[i] += val; break;
+            case SUB: for (int i = fromIndex; i < toIndex; i++) dest[i] -= val; break;
+            case MUL: for (int i = fromIndex; i < toIndex; i++) dest[i] *= val; break;
+            case DIV: for (int i = fromIndex; i < toIndex; i++) dest[i] /= val; break;
+            case SET: for (int i = fromIndex; i < toIndex; i++) dest[i] |= val; break;
+            case AND: for (int i = fromIndex; i < toIndex; i++) dest[i] &= val; break;
+            case CLR: for (int i = fromIndex; i < toIndex; i++) dest[i] &= ~val; break;
+        }
+    }
+
+    static void write(WriteFunction function, char[] dest, char[] src, int fromIndex, int toIndex) {
+        if (toIndex <= fromIndex) return;
+        switch (function) {
+            case EQU: System.arraycopy(src,fromIndex,dest,fromIndex,toIndex - fromIndex); break;
+            case ADD: for (int i = fromIndex; i < toIndex; i++) dest[i] += src[i]; break;
+            case SUB: for (int i = fromIndex; i < toIndex; i++) dest[i] -= src[i]; break;
+            case MUL: for (int i = fromIndex; i < toIndex; i++) dest[i] *= src[i]; break;
+            case DIV: for (int i = fromIndex; i < toIndex; i++) dest[i] /= src[i]; break;
+            case SET: for (int i = fromIndex; i < toIndex; i++) dest[i] |= src[i]; break;
+            case AND: for (int i = fromIndex; i < toIndex; i++) dest[i] &= src[i]; break;
+            case CLR: for (int i = fromIndex; i < toIndex; i++) dest[i] &= ~src[i]; break;
+        }
+    }
+
+    static void write(WriteFunction function, int[] dest, int val, int fromIndex, int toIndex) {
+        if (toIndex <= fromIndex) return;
+        switch (function) {
+            case EQU: Arrays.fill(dest,fromIndex,toIndex,val); break;
+            case ADD: for (int i = fromIndex; i < toIndex; i++) dest[i] += val; break;
+            case SUB: for (int i = fromIndex; i < toIndex; i++) dest[i] -= val; break;
+            case MUL: for (int i = fromIndex; i < toIndex; i++) dest[i] *= val; break;
+            case DIV: for (int i = fromIndex; i < toIndex; i++) dest[i] /= val; break;
+            case SET: for (int i = fromIndex; i < toIndex; i++) dest[i] |= val; break;
+            case AND: for (int i = fromIndex; i < toIndex; i++) dest[i] &= val; break;
+            case CLR: for (int i = fromIndex; i < toIndex; i++) dest[i] &= ~val; break;
+        }
+    }
+
+    static void write(WriteFunction function, int[] dest, int[] src, int fromIndex, int toIndex) {
+        if (toIndex <= fromIndex) return;
+        switch (function) {
+            case EQU: System.arraycopy(src,fromIndex,dest,fromIndex,toIndex - fromIndex); break;
+            case ADD: for (int i = fromIndex; i < toIndex; i++) dest[i] += src[i]; break;
+            case SUB: for (int i = fromIndex; i < toIndex; i++) dest[i] -= src[i]; break;
+            case MUL: for (int i = fromIndex; i < toIndex; i++) dest[i] *= src[i]; break;
+            case DIV: for (int i = fromIndex; i < toIndex; i++) dest[i] /= src[i]; break;
+            case SET: for (int i = fromIndex; i < toIndex; i++) dest[i] |= src[i]; break;
+            case AND: for (int i = fromIndex; i < toIndex; i++) dest[i] &= src[i]; break;
+            case CLR: for (int i = fromIndex; i < toIndex; i++) dest[i] &= ~src[i]; break;
+        }
+    }
+
+    static void write(WriteFunction function, long[] dest, long val, int fromIndex, int toIndex) {
+        if (toIndex <= fromIndex) return;
+        switch (function) {
+            case EQU: Arrays.fill(dest,fromIndex,toIndex,val); break;
+            case ADD: for (int i = fromIndex; i < toIndex; i++) dest[i] += val; break;
+            case SUB: for (int i = fromIndex; i < toIndex; i++) dest[i] -= val; break;
+            case MUL: for (int i = fromIndex; i < toIndex; i++) dest[i] *= val; break;
+            case DIV: for (int i = fromIndex; i < toIndex; i++) dest[i] /= val; break;
+            case SET: for (int i = fromIndex; i < toIndex; i++) dest[i] |= val; break;
+            case AND: for (int i = fromIndex; i < toIndex; i++) dest[i] &= val; break;
+            case CLR: for (int i = fromIndex; i < toIndex; i++) dest[i] &= ~val; break;
+        }
+    }
+
+    static void write(WriteFunction function, long[] dest, long[] src, int fromIndex, int toIndex) {
+        if (toIndex <= fromIndex) return;
+        switch (function) {
+            case EQU: System.arraycopy(src,fromIndex,dest,fromIndex,toIndex - fromIndex); break;
+            case ADD: for (int i = fromIndex; i < toIndex; i++) dest[i] += src[i]; break;
+            case SUB: for (int i = fromIndex; i < toIndex; i++) dest[i] -= src[i]; break;
+            case MUL: for (int i = fromIndex; i < toIndex; i++) dest[i] *= src[i]; break;
+            case DIV: for (int i = fromIndex; i < toIndex; i++) dest[i] /= src[i]; break;
+            case SET: for (int i = fromIndex; i < toIndex; i++) dest[i] |= src[i]; break;
+            case AND: for (int i = fromIndex; i < toIndex; i++) dest[i] &= src[i]; break;
+            case CLR: for (int i = fromIndex; i < toIndex; i++) dest[i] &= ~src[i]; break;
+        }
+    }
+
+    static void write(WriteFunction function, float[] dest, float val, int fromIndex, int toIndex) {
+        if (toIndex <= fromIndex) return;
+        switch (function) {
+            case EQU: Arrays.fill(dest,fromIndex,toIndex,val); break;
+            case ADD: for (int i = fromIndex; i < toIndex; i++) dest[i] += val; break;
+            case SUB: for (int i = fromIndex; i < toIndex; i++) dest[i] -= val; break;
+            case MUL: for (int i = fromIndex; i < toIndex; i++) dest[i] *= val; break;
+            case DIV: for (int i = fromIndex; i < toIndex; i++) dest[i] /= val; break;
+            case SET: { int bits = (int) val;
+                for (int i = fromIndex; i < toIndex; i++) dest[i] = (float) ((int) dest[i] | bits);
+            } break;
+            case AND: { int bits = (int) val;
+                for (int i = fromIndex; i < toIndex; i++) dest[i] = (float) ((int) dest[i] & bits);
+            } break;
+            case CLR: { int bits = ~((int) val);
+                for (int i = fromIndex; i < toIndex; i++) dest[i] = (float) ((int) dest[i] & bits);
+            } break;
+        }
+    }
+
+    static void write(WriteFunction function, float[] dest, float[] src, int fromIndex, int toIndex) {
+        if (toIndex <= fromIndex) return;
+        switch (function) {
+            case EQU: System.arraycopy(src,fromIndex,dest,fromIndex,toIndex - fromIndex); break;
+            case ADD: for (int i = fromIndex; i < toIndex; i++) dest[i] += src[i]; break;
+            case SUB: for (int i = fromIndex; i < toIndex; i++) dest[i] -= src[i]; break;
+            case MUL: for (int i = fromIndex; i < toIndex; i++) dest[i] *= src[i]; break;
+            case DIV: for (int i = fromIndex; i < toIndex; i++) dest[i] /= src[i]; break;
+            case SET: for (int i = fromIndex; i < toIndex; i++) dest[i] = (float) ((int) dest[i] | (int) src[i]); break;
+            case AND: for (int i = fromIndex; i < toIndex; i++) dest[i] = (float) ((int) dest[i] & (int) src[i]); break;
+            case CLR: for (int i = fromIndex; i < toIndex; i++) dest[i] = (float) ((int) dest[i] & ~((int) src[i])); break;
+        }
+    }
+
+    static void write(WriteFunction function, double[] dest, double val, int fromIndex, int toIndex) {
+        if (toIndex <= fromIndex) return;
+        switch (function) {
+            case EQU: Arrays.fill(dest,fromIndex,toIndex,val); break;
+            case ADD: for (int i = fromIndex; i < toIndex; i++) dest[i] += val; break;
+            case SUB: for (int i = fromIndex; i < toIndex; i++) dest[i] -= val; break;
+            case MUL: for (int i = fromIndex; i < toIndex; i++) dest[i] *= val; break;
+            case DIV: for (int i = fromIndex; i < toIndex; i++) dest[i] /= val; break;
+            case SET: { long bits = (long) val;
+                for (int i = fromIndex; i < toIndex; i++) dest[i] = (double) ((long) dest[i] | bits);
+            } break;
+            case AND: { long bits = (long) val;
+                for (int i = fromIndex; i < toIndex; i++) dest[i] = (double) ((long) dest[i] & bits);
+            } break;
+            case CLR: { long bits = ~((long) val);
+                for (int i = fromIndex; i < toIndex; i++) dest[i] = (double) ((long) dest[i] & bits);
+            } break;
+        }
+    }
+
+    static void write(WriteFunction function, double[] dest, double[] src, int fromIndex, int toIndex) {
+        if (toIndex <= fromIndex) return;
+        switch (function) {
+            case EQU: System.arraycopy(src,fromIndex,dest,fromIndex,toIndex - fromIndex); break;
+            case ADD: for (int i = fromIndex; i < toIndex; i++) dest[i] += src[i]; break;
+            case SUB: for (int i = fromIndex; i < toIndex; i++) dest[i] -= src[i]; break;
+            case MUL: for (int i = fromIndex; i < toIndex; i++) dest[i] *= src[i]; break;
+            case DIV: for (int i = fromIndex; i < toIndex; i++) dest[i] /= src[i]; break;
+            case SET: for (int i = fromIndex; i < toIndex; i++) dest[i] = (double) ((long) dest[i] | (long) src[i]); break;
+            case AND: for (int i = fromIndex; i < toIndex; i++) dest[i] = (double) ((long) dest[i] & (long) src[i]); break;
+            case CLR: for (int i = fromIndex; i < toIndex; i++) dest[i] = (double) ((long) dest[i] & ~((long) src[i])); break;
+        }
+    }
+}
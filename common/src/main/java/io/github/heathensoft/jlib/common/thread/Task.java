@@ -26,14 +26,33 @@ public interface Task {
     
     /**
      * Super Thread
-     * @param e any exception thrown by process() or RejectedExecutionException
-     *          if the task got rejected (Thread pool full)
+     * @param e any exception thrown by process(), an ExecutionException with the Error as cause
+     *          if process() threw an Error, or RejectedExecutionException if the task got rejected (ThreadService disposed)
      * @param status completion status. -1 if the process threw an exception
-     *               or if the task got rejected (Thread pool full)
+     *               or if the task got rejected (ThreadService disposed)
      * @param runtime_ms time spent processing milliseconds
      */
     default void onCompletion(Exception e, int status, long runtime_ms) {}
 
+    /**
+     * Tasks waiting in the ThreadService backlog are dispatched
+     * by priority (highest first). Equal priorities are dispatched in order of submission.
+     * @return scheduling priority
+     */
+    default int priority() { return 0; }
 
+    /**
+     * Concurrency can be limited per category.
+     * See: ThreadService.setCategoryLimit(category, limit)
+     * @return task category
+     */
+    default int category() { return 0; }
+
+    /**
+     * Blocking I/O tasks (file reads, image decoding etc.) should return Mode.VIRTUAL.
+     * Mode.DEFAULT uses the ThreadService default mode.
+     * @return execution mode
+     */
+    default ThreadService.Mode mode() { return ThreadService.Mode.DEFAULT; }
 
 }
@@ -0,0 +1,292 @@
+package io.github.heathensoft.jlib.common.thread;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Directed acyclic graph of Tasks.
+ * Nodes are dispatched to the ThreadService as soon as all their dependencies have completed,
+ * so independent nodes run in parallel. Dependents are dispatched from the super thread
+ * (ThreadService.update()) when a node completes.
+ * If a node fails (throws), its dependents are cancelled (CancellationException, status -1).
+ * The graph callback is called once, on the super thread, when every node has completed or been cancelled.
+ *
+ * Every node records its queue time and runtime. criticalPath() returns the
+ * longest chain of dependent nodes measured by runtime.
+ *
+ * A graph can be executed once.
+ *
+ * @author Frederik Dahl
+ * 18/10/2026
+ */
+
+
+public class TaskGraph {
+
+    @FunctionalInterface
+    public interface Callback {
+        /**
+         * Super Thread
+         * @param graph the completed graph
+         * @param e the first exception thrown by any node, or null if all nodes completed normally
+         */
+        void onCompletion(TaskGraph graph, Exception e);
+    }
+
+    private final List<Node> nodes;
+    private ThreadService service;
+    private Callback callback;
+    private Exception exception;
+    private long start_time;
+    private long runtime;
+    private int remaining;
+    private boolean executed;
+
+    public TaskGraph() {
+        this.nodes = new ArrayList<>();
+    }
+
+    public Node add(String name, Task task) {
+        if (executed) throw new IllegalStateException("TaskGraph already executed");
+        Node node = new Node(this,name,task);
+        nodes.add(node);
+        return node;
+    }
+
+    public Node add(Task task) {
+        return add("node_" + nodes.size(), task);
+    }
+
+    /**
+     * Dispatch every node without dependencies. Must be called from the super thread.
+     * @param service the service handling the tasks
+     * @param callback called once when the graph has completed
+     * @throws IllegalStateException if the graph contains a cycle or has already been executed
+     */
+    public void execute(ThreadService service, Callback callback) {
+        prepare();
+        this.service = service;
+        this.callback = callback;
+        if (remaining == 0) finish();
+        else { // a root can complete in handle() (disposed service) and dispatch its dependents
+            List<Node> roots = new ArrayList<>();
+            for (Node node : nodes) {
+                if (node.waiting == 0) roots.add(node);
+            } for (Node root : roots) service.handle(root);
+        }
+    }
+
+    /**
+     * Execute every node on the calling thread in topological order.
+     * @param callback called once when the graph has completed (can be null)
+     * @throws IllegalStateException if the graph contains a cycle or has already been executed
+     */
+    public void executeDirect(Callback callback) {
+        List<Node> order = prepare();
+        this.callback = callback;
+        if (remaining == 0) finish();
+        else for (Node node : order) {
+            if (!node.cancelled) {
+                ThreadService.handleDirect(node);
+            }
+        }
+    }
+
+    /** @return nodes in the order they were added */
+    public List<Node> nodes() { return Collections.unmodifiableList(nodes); }
+
+    /** @return true if every node has completed or been cancelled */
+    public boolean isComplete() { return executed && remaining == 0; }
+
+    /** @return wall time from execute() until the last node completed, milliseconds */
+    public long runtime() { return runtime; }
+
+    /** @return the first exception thrown by any node, or null */
+    public Exception exception() { return exception; }
+
+    /**
+     * The chain of dependent nodes with the largest accumulated runtime.
+     * The critical path bounds the graph runtime, regardless of the number of threads.
+     * @return critical path from first to last node. Empty if the graph has not completed
+     */
+    public List<Node> criticalPath() {
+        List<Node> path = new ArrayList<>();
+        if (!isComplete()) return path;
+        List<Node> order = topologicalOrder();
+        long[] finish = new long[nodes.size()];
+        Node[] previous = new Node[nodes.size()];
+        Node last = null;
+        for (Node node : order) {
+            long earliest = 0;
+            for (Node dependency : node.dependencies) {
+                if (previous[node.index] == null || finish[dependency.index] > earliest) {
+                    earliest = finish[dependency.index];
+                    previous[node.index] = dependency;
+                }
+            } finish[node.index] = earliest + node.runtime_ms;
+            if (last == null || finish[node.index] > finish[last.index]) last = node;
+        } while (last != null) {
+            path.add(last);
+            last = previous[last.index];
+        } Collections.reverse(path);
+        return path;
+    }
+
+    /** @return accumulated runtime of the critical path, milliseconds */
+    public long criticalPathRuntime() {
+        long sum = 0;
+        for (Node node : criticalPath())
+            sum += node.runtime_ms;
+        return sum;
+    }
+
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("TaskGraph: ").append(nodes.size()).append(" nodes, ");
+        builder.append(runtime).append(" ms, critical path: ");
+        List<Node> path = criticalPath();
+        for (int i = 0; i < path.size(); i++) {
+            if (i > 0) builder.append(" -> ");
+            Node node = path.get(i);
+            builder.append(node.name).append(" (").append(node.runtime_ms).append(" ms)");
+        } return builder.toString();
+    }
+
+    private List<Node> prepare() {
+        if (executed) throw new IllegalStateException("TaskGraph already executed");
+        List<Node> order = topologicalOrder();
+        if (order.size() < nodes.size()) {
+            throw new IllegalStateException("TaskGraph contains a cycle");
+        } for (Node node : nodes) {
+            node.waiting = node.dependencies.size();
+        } remaining = nodes.size();
+        start_time = System.currentTimeMillis();
+        executed = true;
+        return order;
+    }
+
+    private List<Node> topologicalOrder() {
+        int count = nodes.size();
+        int[] in_degree = new int[count];
+        List<Node> order = new ArrayList<>(count);
+        for (Node node : nodes) {
+            in_degree[node.index] = node.dependencies.size();
+            if (in_degree[node.index] == 0) order.add(node);
+        } for (int i = 0; i < order.size(); i++) {
+            for (Node dependent : order.get(i).dependents) {
+                if (--in_degree[dependent.index] == 0) order.add(dependent);
+            }
+        } return order;
+    }
+
+    private void onNodeCompletion(Node node, Exception e) {
+        if (e != null) {
+            if (exception == null) exception = e;
+            cancelDependents(node);
+        } else for (Node dependent : node.dependents) {
+            if (--dependent.waiting == 0 && !dependent.cancelled) {
+                if (service != null) service.handle(dependent);
+            }
+        } if (--remaining == 0) finish();
+    }
+
+    private void cancelDependents(Node node) {
+        for (Node dependent : node.dependents) {
+            if (!dependent.cancelled) {
+                dependent.cancelled = true;
+                dependent.status = -1;
+                cancelDependents(dependent);
+                dependent.task.onCompletion(new CancellationException(
+                "dependency failed: " + node.name),-1,0);
+                remaining--;
+            }
+        }
+    }
+
+    private void finish() {
+        runtime = System.currentTimeMillis() - start_time;
+        if (callback != null) {
+            callback.onCompletion(this,exception);
+        }
+    }
+
+    public static final class Node implements Task {
+
+        private final TaskGraph graph;
+        private final Task task;
+        private final String name;
+        private final int index;
+        private final List<Node> dependencies;
+        private final List<Node> dependents;
+        private boolean cancelled;
+        private long queue_time_ms;
+        private long runtime_ms;
+        private int waiting;
+        private int status;
+
+        private Node(TaskGraph graph, String name, Task task) {
+            if (task == null) throw new IllegalArgumentException("null task");
+            this.dependencies = new ArrayList<>(2);
+            this.dependents = new ArrayList<>(2);
+            this.index = graph.nodes.size();
+            this.graph = graph;
+            this.name = name;
+            this.task = task;
+        }
+
+        /**
+         * This node will not be dispatched before the dependencies have completed.
+         * @param dependencies nodes of the same graph
+         * @return this node
+         */
+        public Node dependsOn(Node ... dependencies) {
+            if (graph.executed) throw new IllegalStateException("TaskGraph already executed");
+            for (Node dependency : dependencies) {
+                if (dependency.graph != graph) {
+                    throw new IllegalArgumentException("dependency belongs to another TaskGraph");
+                } if (dependency == this) {
+                    throw new IllegalArgumentException("node cannot depend on itself");
+                } if (!this.dependencies.contains(dependency)) {
+                    this.dependencies.add(dependency);
+                    dependency.dependents.add(this);
+                }
+            } return this;
+        }
+
+        public int process(long queue_time_ms) throws Exception {
+            this.queue_time_ms = queue_time_ms;
+            return task.process(queue_time_ms);
+        }
+
+        public void onCompletion(Exception e, int status, long runtime_ms) {
+            this.runtime_ms = runtime_ms;
+            this.status = status;
+            task.onCompletion(e,status,runtime_ms);
+            graph.onNodeCompletion(this,e);
+        }
+
+        public int priority() { return task.priority(); }
+
+        public int category() { return task.category(); }
+
+        public ThreadService.Mode mode() { return task.mode(); }
+
+        public String name() { return name; }
+
+        public Task task() { return task; }
+
+        public int status() { return status; }
+
+        public boolean isCancelled() { return cancelled; }
+
+        public long queueTime() { return queue_time_ms; }
+
+        public long runtime() { return runtime_ms; }
+
+        public List<Node> dependencies() { return Collections.unmodifiableList(dependencies); }
+
+        public String toString() { return name + " (" + runtime_ms + " ms)"; }
+    }
+}
@@ -1,60 +1,217 @@
 package io.github.heathensoft.jlib.common.thread;
 
 import io.github.heathensoft.jlib.common.Disposable;
+import io.github.heathensoft.jlib.common.storage.generic.PriorityQueue;
+import io.github.heathensoft.jlib.common.storage.generic.Queue;
 
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
+ * Tasks are never rejected by a full executor queue. The service keeps at most
+ * (max_pool_size + queue_capacity) tasks in the executor. Any excess is deferred to
+ * a backlog and dispatched by priority as executor capacity frees up.
+ * Concurrency can be limited per Task category.
+ * Completion callbacks are run on the super thread in update(),
+ * limited by a per-update budget (count and milliseconds).
+ * Workers push themselves onto a lock-free completion queue when done,
+ * so update() only touches tasks that actually completed.
+ *
+ * Tasks can run in one of two modes. PLATFORM tasks run on the thread pool.
+ * VIRTUAL tasks run on virtual threads (one per task), capped by the virtual concurrency limit.
+ * Use VIRTUAL for blocking I/O (file reads, image decoding etc.) so it does not occupy the pool.
+ * If the runtime does not support virtual threads (java < 21), VIRTUAL tasks
+ * run on a separate cached platform pool with the same concurrency cap.
+ *
  * @author Frederik Dahl
  * 04/11/2022
  */
 
 
 public class ThreadService implements Disposable {
-    
+
+    public enum Mode {
+        /** The ThreadService default mode */
+        DEFAULT,
+        /** Thread pool. For cpu bound tasks */
+        PLATFORM,
+        /** Virtual threads. For blocking I/O */
+        VIRTUAL
+    }
+
+    private static final int default_queue_capacity = 512;
+    private static final int default_virtual_concurrency = 256;
+    private static final int PLATFORM = 0;
+    private static final int VIRTUAL = 1;
+
     private final ExecutorService executor;
-    private final List<Future<Worker>> futures;
-    
+    private ExecutorService virtual_executor;
+    private final ConcurrentLinkedQueue<Worker> done;
+    private final Queue<Worker> completed;
+    private final LongAdder completed_count;
+    private final LongAdder failed_count;
+    private volatile long submitted_count;
+    private final Map<Integer,Category> categories;
+    private final int[] dispatch_limit;
+    private final int[] in_flight;
+    private Mode default_mode;
+    private boolean disposed;
+    private int backlog;
+    private long sequence;
+    private int completion_budget;
+    private float completion_budget_ms;
+
     public ThreadService() {
         this(4,24,3000);
     }
-    
+
     public ThreadService(int core_pool_size, int max_pool_size, int keep_alive_time) {
-        futures = new ArrayList<>();
+        this(core_pool_size,max_pool_size,keep_alive_time,default_queue_capacity);
+    }
+
+    public ThreadService(int core_pool_size, int max_pool_size, int keep_alive_time, int queue_capacity) {
+        this(core_pool_size,max_pool_size,keep_alive_time,queue_capacity,default_virtual_concurrency,Mode.PLATFORM);
+    }
+
+    /**
+     * @param core_pool_size thread pool core size
+     * @param max_pool_size thread pool max size
+     * @param keep_alive_time thread pool keep alive ms
+     * @param queue_capacity thread pool queue capacity
+     * @param virtual_concurrency max number of VIRTUAL tasks running concurrently
+     * @param default_mode mode of tasks returning Mode.DEFAULT
+     */
+    public ThreadService(int core_pool_size, int max_pool_size, int keep_alive_time, int queue_capacity, int virtual_concurrency, Mode default_mode) {
+        done = new ConcurrentLinkedQueue<>();
+        completed = new Queue<>(16);
+        completed_count = new LongAdder();
+        failed_count = new LongAdder();
+        categories = new HashMap<>();
+        in_flight = new int[2];
+        dispatch_limit = new int[2];
+        dispatch_limit[PLATFORM] = max_pool_size + queue_capacity;
+        dispatch_limit[VIRTUAL] = Math.max(1,virtual_concurrency);
+        completion_budget = Integer.MAX_VALUE;
+        completion_budget_ms = Float.MAX_VALUE;
+        setDefaultMode(default_mode);
         executor = new ThreadPoolExecutor(
                 core_pool_size,
                 max_pool_size,
                 keep_alive_time,
                 TimeUnit.MILLISECONDS,
-                new ArrayBlockingQueue<>(512));
+                new ArrayBlockingQueue<>(queue_capacity));
     }
 
     public void update() {
-        if (!executor.isShutdown()) {
-            for (int i = futures.size() - 1; i >= 0; i--) {
-                if (futures.get(i).isDone()) {
-                    Worker worker = null;
-                    try { futures.remove(i).get().finish();
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-                }
+        if (!disposed) {
+            Worker worker;
+            while ((worker = done.poll()) != null) {
+                category(worker.category).running--;
+                in_flight[worker.lane]--;
+                completed.enqueue(worker);
+            } dispatch();
+            long start = System.nanoTime();
+            long budget_ns = (long)(completion_budget_ms * 1_000_000L);
+            int count = 0;
+            while (!completed.isEmpty() && count < completion_budget) {
+                completed.dequeue().finish();
+                count++;
+                if (System.nanoTime() - start >= budget_ns) break;
             }
         }
     }
 
     public void handle(Task task) {
-        if (executor.isShutdown()) handleDirect(task);
-        try { futures.add(executor.submit(new Worker(task)));
-        } catch (RejectedExecutionException e) {
-            task.onCompletion(e,-1,0);
-        }
+        if (disposed) {
+            handleDirect(task);
+            return;
+        } Mode mode = task.mode();
+        if (mode == null || mode == Mode.DEFAULT) mode = default_mode;
+        Worker worker = new Worker(this,task, mode == Mode.VIRTUAL ? VIRTUAL : PLATFORM);
+        submitted_count++;
+        Category category = category(worker.category);
+        category.backlog.get(worker.lane).enqueue(new Pending(worker,sequence++));
+        backlog++;
+        dispatch();
     }
-    
+
     public static void handleDirect(Task task) {
-        new Worker(task).call().finish();
+        new Worker(null,task,PLATFORM).call().finish();
+    }
+
+    /**
+     * Limit the number of tasks of a category that can run concurrently.
+     * Tasks exceeding the limit wait in the backlog.
+     * @param category task category
+     * @param limit max concurrent tasks (at least 1)
+     */
+    public void setCategoryLimit(int category, int limit) {
+        category(category).limit = Math.max(1,limit);
+        dispatch();
+    }
+
+    /**
+     * Limit the number of completion callbacks run per update.
+     * Callbacks exceeding the budget are deferred to the next update.
+     * At least one callback is run per update if any are waiting.
+     * @param max_callbacks max number of callbacks per update
+     * @param max_ms max time spent on callbacks per update in milliseconds
+     */
+    public void setCompletionBudget(int max_callbacks, float max_ms) {
+        completion_budget = Math.max(1,max_callbacks);
+        completion_budget_ms = Math.max(0,max_ms);
+    }
+
+    /**
+     * @param mode mode of tasks returning Mode.DEFAULT. (DEFAULT is treated as PLATFORM)
+     */
+    public void setDefaultMode(Mode mode) {
+        default_mode = (mode == null || mode == Mode.DEFAULT) ? Mode.PLATFORM : mode;
+    }
+
+    /**
+     * @param limit max number of VIRTUAL tasks running concurrently (at least 1)
+     */
+    public void setVirtualConcurrency(int limit) {
+        dispatch_limit[VIRTUAL] = Math.max(1,limit);
+        dispatch();
+    }
+
+    public Mode defaultMode() { return default_mode; }
+
+    /** @return number of tasks waiting in the backlog (not yet handed to an executor) */
+    public int backlog() { return backlog; }
+
+    /** @return number of tasks handed to an executor, not yet collected by update() */
+    public int inFlight() { return in_flight[PLATFORM] + in_flight[VIRTUAL]; }
+
+    /** @return number of VIRTUAL tasks handed to the virtual executor, not yet collected by update() */
+    public int inFlightVirtual() { return in_flight[VIRTUAL]; }
+
+    /** @return total number of tasks submitted through handle() */
+    public long submitted() { return submitted_count; }
+
+    /** @return total number of tasks that finished processing (including failed) */
+    public long completed() { return completed_count.sum(); }
+
+    /** @return total number of tasks that threw an exception while processing */
+    public long failed() { return failed_count.sum(); }
+
+    /** @return number of tasks waiting to start. (backlog + executor queue) */
+    public int queued() { return backlog + executor().getQueue().size(); }
+
+    /** @return number of finished tasks waiting for their completion callback */
+    public int awaitingCompletion() { return completed.size(); }
+
+    /** @return true if there are no tasks in the backlog, in flight or awaiting completion */
+    public boolean isIdle() { return backlog == 0 && inFlight() == 0 && completed.isEmpty(); }
+
+    /** @return true if VIRTUAL tasks run on virtual threads (Requires java 21+) */
+    public static boolean virtualThreadsSupported() {
+        return virtualThreadFactory() != null;
     }
 
     public ThreadPoolExecutor executor() {
@@ -62,6 +219,23 @@ public class ThreadService implements Disposable {
     }
 
     public void dispose() {
+        if (disposed) return;
+        disposed = true;
+        for (Category category : categories.values()) {
+            for (PriorityQueue<Pending> queue : category.backlog) {
+                while (queue.notEmpty()) {
+                    Task task = queue.dequeue().worker.task;
+                    task.onCompletion(new RejectedExecutionException("ThreadService disposed"),-1,0);
+                }
+            }
+        } backlog = 0;
+        shutdown(executor);
+        if (virtual_executor != null) {
+            shutdown(virtual_executor);
+        }
+    }
+
+    private void shutdown(ExecutorService executor) {
         executor.shutdown();
         try {
             if (!executor.awaitTermination(30,TimeUnit.SECONDS)) {
@@ -76,29 +250,142 @@ public class ThreadService implements Disposable {
         }
     }
 
-    private static final class Worker implements Callable<Worker> {
+    private void dispatch() {
+        while (backlog > 0) {
+            Category next = null;
+            int next_lane = PLATFORM;
+            for (Category category : categories.values()) {
+                if (category.running < category.limit) {
+                    for (int lane = PLATFORM; lane <= VIRTUAL; lane++) {
+                        PriorityQueue<Pending> queue = category.backlog.get(lane);
+                        if (queue.notEmpty() && in_flight[lane] < dispatch_limit[lane]) {
+                            if (next == null || queue.peak().compareTo(next.backlog.get(next_lane).peak()) > 0) {
+                                next = category;
+                                next_lane = lane;
+                            }
+                        }
+                    }
+                }
+            } if (next == null) break;
+            Pending pending = next.backlog.get(next_lane).dequeue();
+            ExecutorService service = next_lane == VIRTUAL ? virtualExecutor() : executor;
+            try { service.execute(pending.worker);
+            } catch (RejectedExecutionException e) {
+                next.backlog.get(next_lane).enqueue(pending);
+                break;
+            } in_flight[next_lane]++;
+            next.running++;
+            backlog--;
+        }
+    }
+
+    private ExecutorService virtualExecutor() {
+        if (virtual_executor == null) {
+            ThreadFactory factory = virtualThreadFactory();
+            if (factory == null) factory = Executors.defaultThreadFactory();
+            virtual_executor = new ThreadPoolExecutor(
+                    0, Integer.MAX_VALUE,
+                    1000, TimeUnit.MILLISECONDS,
+                    new SynchronousQueue<>(),
+                    factory);
+        } return virtual_executor;
+    }
+
+    private static ThreadFactory virtualThreadFactory() {
+        // Thread.ofVirtual().factory() through reflection. Compiles and runs on java 17.
+        try { Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) builder.getClass().getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private Category category(int id) {
+        Category category = categories.get(id);
+        if (category == null) {
+            category = new Category();
+            categories.put(id,category);
+        } return category;
+    }
+
+    private static final class Category {
+        final List<PriorityQueue<Pending>> backlog = List.of( // lanes: PLATFORM, VIRTUAL
+                new PriorityQueue<>(16),
+                new PriorityQueue<>(16)
+        ); int limit = Integer.MAX_VALUE;
+        int running;
+    }
+
+    private static final class Pending implements Comparable<Pending> {
+
+        final Worker worker;
+        final int priority;
+        final long sequence;
+
+        Pending(Worker worker, long sequence) {
+            this.priority = worker.task.priority();
+            this.sequence = sequence;
+            this.worker = worker;
+        }
+
+        public int compareTo(Pending o) {
+            if (priority != o.priority) return Integer.compare(priority,o.priority);
+            return Long.compare(o.sequence,sequence);
+        }
+    }
+
+    private static final class Worker implements Runnable {
 
         private Exception exception;
+        private final ThreadService service;
         private final Task task;
+        private final int category;
+        private final int lane;
+        private boolean failed;
         private int status;
         private long time;
 
-        Worker(Task task) {
+        Worker(ThreadService service, Task task, int lane) {
             this.time = System.currentTimeMillis();
+            this.category = task.category();
+            this.service = service;
             this.task = task;
+            this.lane = lane;
+        }
+
+        public void run() {
+            failed = true; // Unless process() returns normally or throws
+            try { call();
+            } finally {
+                service.completed_count.increment();
+                if (failed) service.failed_count.increment();
+                service.done.offer(this);
+            }
         }
 
-        public Worker call() {
+        Worker call() {
             long wait = System.currentTimeMillis() - time;
             try { status = task.process(wait);
+                failed = false;
             } catch (Exception e) {
                 exception = e;
+                failed = true;
+                status = -1;
+            } catch (Throwable t) { // Errors are passed to onCompletion as the cause
+                exception = new ExecutionException(t);
+                failed = true;
                 status = -1;
+                if (fatal(t)) throw (Error) t;
             } finally {
                 time = System.currentTimeMillis() - time - wait;
             } return this;
         }
 
+        /** Errors the JVM may not recover from. Rethrown after the failure is recorded */
+        private static boolean fatal(Throwable t) {
+            return (t instanceof VirtualMachineError && !(t instanceof StackOverflowError)) || t instanceof LinkageError;
+        }
+
         void finish() {
             task.onCompletion(exception, status, time);
         }
@@ -54,6 +54,21 @@ public class SamplerArray {
         }
     }
 
+    /**
+     * @param slot assigned slot
+     * @return texture assigned to slot since the last upload or clear, or null
+     */
+    public Texture texture(int slot) {
+        return slot < next_slot ? slots[slot] : null;
+    }
+
+    /** Clears the assigned slots without uploading or binding (no GL) */
+    public void clear() {
+        for (int slot = 0; slot < next_slot; slot++) {
+            slots[slot] = null;
+        } next_slot = prev_slot = 0;
+    }
+
     public void uploadUniform(String uniform) {
         if (next_slot > 0) {
             try (MemoryStack stack = MemoryStack.stackPush()){
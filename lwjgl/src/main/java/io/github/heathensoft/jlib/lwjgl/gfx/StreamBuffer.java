@@ -0,0 +1,176 @@
+package io.github.heathensoft.jlib.lwjgl.gfx;
+
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL30.GL_MAP_WRITE_BIT;
+import static org.lwjgl.opengl.GL30.glMapBufferRange;
+import static org.lwjgl.opengl.GL32.*;
+import static org.lwjgl.opengl.GL44.*;
+
+/**
+ * Vertex streaming for batches that write a new batch of vertices before every draw.
+ * Write into vertices(), then commit() and draw from the returned byte offset,
+ * then reserve() room for the next batch (it may return a different buffer).
+ *
+ * Persistent (OpenGL 4.4 / ARB_buffer_storage): the buffer is mapped once (coherent) and split
+ * into SEGMENTS segments, each with room for BATCHES_PER_SEGMENT full batches.
+ * vertices() is a view of the mapped segment, so vertices are written directly into the buffer.
+ * Batches are drawn from where they were written. When a segment is full it is fenced,
+ * and the next segment is used when the GPU is done with it (a wait here is counted as a stall).
+ *
+ * Orphaning (fallback): vertices() is client memory of one batch. Every commit orphans
+ * the buffer storage and uploads the batch at offset 0. The driver does the buffering.
+ *
+ * @author Frederik Dahl
+ * 18/10/2026
+ */
+
+
+public class StreamBuffer extends BufferObject {
+
+    public static final int SEGMENTS = 3;
+    public static final int BATCHES_PER_SEGMENT = 16;
+
+    private final long[] fences;
+    private final boolean persistent;
+    private final int segment_floats;
+    private final long mapped_address;
+    private FloatBuffer vertices;
+    private int segment;
+    private int start; // first float of the uncommitted vertices
+    private long bytes_streamed;
+    private int stalls;
+
+    /** Persistent if supported, else orphaning */
+    public StreamBuffer(int target, int batch_bytes) {
+        this(target,batch_bytes,supportsPersistentMapping());
+    }
+
+    /**
+     * @param target i.e. GL_ARRAY_BUFFER
+     * @param batch_bytes bytes of the largest batch. Multiple of the vertex size
+     * @param persistent persistent mapping (must be supported) or orphaning
+     */
+    public StreamBuffer(int target, int batch_bytes, boolean persistent) {
+        super(target,GL_STREAM_DRAW);
+        this.persistent = persistent;
+        this.fences = new long[SEGMENTS];
+        bind();
+        if (persistent) {
+            long segment_bytes = (long) batch_bytes * BATCHES_PER_SEGMENT;
+            long size = segment_bytes * SEGMENTS;
+            int flags = GL_MAP_WRITE_BIT | GL_MAP_PERSISTENT_BIT | GL_MAP_COHERENT_BIT;
+            glBufferStorage(target,size,flags);
+            ByteBuffer mapped = glMapBufferRange(target,0,size,flags);
+            if (mapped == null) throw new IllegalStateException("Unable to map stream buffer");
+            this.mapped_address = MemoryUtil.memAddress(mapped);
+            this.segment_floats = (int) (segment_bytes / Float.BYTES);
+            this.vertices = segmentView(0);
+        } else {
+            glBufferData(target,batch_bytes,usage);
+            this.mapped_address = MemoryUtil.NULL;
+            this.segment_floats = batch_bytes / Float.BYTES;
+            this.vertices = MemoryUtil.memAllocFloat(segment_floats);
+        }
+    }
+
+    /** Where to write the vertices of the current batch. Position is the write position */
+    public FloatBuffer vertices() {
+        return vertices;
+    }
+
+    /**
+     * Makes the vertices written since the last commit available for drawing.
+     * The buffer must be bound.
+     * @return byte offset in the buffer of the first vertex written since the last commit
+     */
+    public long commit() {
+        int end = vertices.position();
+        bytes_streamed += (long) (end - start) * Float.BYTES;
+        if (persistent) { // coherent, nothing to flush
+            long offset = ((long) segment * segment_floats + start) * Float.BYTES;
+            start = end;
+            return offset;
+        } vertices.flip();
+        glBufferData(target,(long) segment_floats * Float.BYTES,usage);
+        glBufferSubData(target,0,vertices);
+        vertices.clear();
+        return 0;
+    }
+
+    /**
+     * Call after drawing committed vertices.
+     * @param floats room needed for the next batch
+     * @return where to write the next batch (could be a new view)
+     */
+    public FloatBuffer reserve(int floats) {
+        if (persistent && vertices.remaining() < floats) {
+            if (floats > segment_floats) throw new IllegalArgumentException("Batch larger than stream segment: " + floats);
+            fences[segment] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE,0);
+            segment = (segment + 1) % SEGMENTS;
+            awaitSegment(segment);
+            vertices = segmentView(segment);
+            start = 0;
+        } return vertices;
+    }
+
+    public boolean isPersistent() {
+        return persistent;
+    }
+
+    /** @return bytes committed since the last reset */
+    public long resetBytesStreamed() {
+        long bytes = bytes_streamed;
+        bytes_streamed = 0;
+        return bytes;
+    }
+
+    /** @return times reserve waited for the GPU since the last reset */
+    public int resetStalls() {
+        int count = stalls;
+        stalls = 0;
+        return count;
+    }
+
+    public static boolean supportsPersistentMapping() {
+        GLCapabilities capabilities = GL.getCapabilities();
+        return capabilities.OpenGL44 || capabilities.GL_ARB_buffer_storage;
+    }
+
+    public void dispose() {
+        if (persistent) {
+            for (int i = 0; i < SEGMENTS; i++) {
+                if (fences[i] != 0L) {
+                    glDeleteSync(fences[i]);
+                    fences[i] = 0L;
+                }
+            } bind();
+            glUnmapBuffer(target);
+        } else MemoryUtil.memFree(vertices);
+        super.dispose();
+    }
+
+    private void awaitSegment(int segment) {
+        long fence = fences[segment];
+        if (fence != 0L) {
+            int status = glClientWaitSync(fence,GL_SYNC_FLUSH_COMMANDS_BIT,0L);
+            if (status == GL_TIMEOUT_EXPIRED) {
+                stalls++;
+                do status = glClientWaitSync(fence,GL_SYNC_FLUSH_COMMANDS_BIT,1_000_000L);
+                while (status == GL_TIMEOUT_EXPIRED);
+            } glDeleteSync(fence);
+            fences[segment] = 0L;
+        }
+    }
+
+    private FloatBuffer segmentView(int segment) {
+        long address = mapped_address + (long) segment * segment_floats * Float.BYTES;
+        return MemoryUtil.memFloatBuffer(address,segment_floats);
+    }
+}
@@ -73,7 +73,11 @@ public class Texture implements Disposable {
     private final int width, height, depth;
 
     private Texture(int target, int width, int height, int depth) {
-        this.id = glGenTextures();
+        this(glGenTextures(),target,width,height,depth);
+    }
+
+    private Texture(int id, int target, int width, int height, int depth) {
+        this.id = id;
         this.target = target;
         this.width = width;
         this.height = height;
@@ -88,6 +92,12 @@ public class Texture implements Disposable {
     public static Texture generate2DArray(int size, int layers) { return generate2DArray(size,size,layers); }
     public static Texture generate3D(int width, int height, int depth) { return new Texture(GL_TEXTURE_3D,width,height,depth); }
 
+    /**
+     * A 2D texture without a GL object (no GL context needed). For recording, sorting and layout in tools and tests,
+     * where textures are compared by identity. Never bound, allocated or disposed.
+     */
+    public static Texture placeholder2D(int width, int height) { return new Texture(0,GL_TEXTURE_2D,width,height,1); }
+
     public void bindToSlot(int slot) { bindToSlot(slot,target, id); }
     public void bindToActiveSlot() { bindToActiveSlot(target, id); }
     public int bindTooAnySlot() { return bindToAny(target, id); }
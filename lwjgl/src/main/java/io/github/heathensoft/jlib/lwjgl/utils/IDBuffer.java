@@ -1,27 +1,12 @@
 package io.github.heathensoft.jlib.lwjgl.utils;
 
 import io.github.heathensoft.jlib.common.Disposable;
-import io.github.heathensoft.jlib.lwjgl.gfx.BufferObject;
 import io.github.heathensoft.jlib.lwjgl.gfx.Framebuffer;
 import io.github.heathensoft.jlib.lwjgl.gfx.Texture;
 import io.github.heathensoft.jlib.lwjgl.gfx.TextureFormat;
 import org.joml.Vector2f;
-import org.lwjgl.system.MemoryUtil;
-
-import java.nio.ByteBuffer;
-import java.nio.IntBuffer;
 
 import static org.lwjgl.opengl.GL11.GL_NEAREST;
-import static org.lwjgl.opengl.GL11.GL_UNSIGNED_INT;
-import static org.lwjgl.opengl.GL11.glReadPixels;
-import static org.lwjgl.opengl.GL15.GL_STREAM_READ;
-import static org.lwjgl.opengl.GL15.glUnmapBuffer;
-import static org.lwjgl.opengl.GL21.GL_PIXEL_PACK_BUFFER;
-import static org.lwjgl.opengl.GL30.GL_COLOR_ATTACHMENT0;
-import static org.lwjgl.opengl.GL30.GL_MAP_READ_BIT;
-import static org.lwjgl.opengl.GL30.GL_RED_INTEGER;
-import static org.lwjgl.opengl.GL30.glMapBufferRange;
-import static org.lwjgl.opengl.GL32.*;
 
 /**
  * Texture can be shared between multiple framebuffers.
@@ -31,6 +16,9 @@ import static org.lwjgl.opengl.GL32.*;
  *
  * If used with interactables, the buffer bust be cleared with 0 value
  *
+ * The id under the mouse is read back without stalling (see PixelReadback).
+ * pixelID() is the id read PixelReadback.LATENCY calls to readID ago.
+ *
  * @author Frederik Dahl
  * 14/01/2023
  */
@@ -39,12 +27,7 @@ import static org.lwjgl.opengl.GL32.*;
 public class IDBuffer extends Framebuffer {
 
     private final Texture uid_texture;
-    private final ByteBuffer pixelBuffer;
-    private final IntBuffer syncBuffer;
-    private final BufferObject pbo;
-    private long syncObject;
-    private int syncStatus;
-    private int pixelID;
+    private final PixelReadback readback;
 
     public IDBuffer(int width, int height) throws Exception {
         super(width, height);
@@ -60,16 +43,7 @@ public class IDBuffer extends Framebuffer {
         readBuffer(0);
         setClearColor(0,0,0,0);
         checkStatus();
-        // prepare pixel read ops
-        syncStatus = GL_UNSIGNALED;
-        syncObject = 0L;
-        pixelID = 0;
-        pixelBuffer = MemoryUtil.memAlloc(Integer.BYTES);
-        syncBuffer = MemoryUtil.memAllocInt(1);
-        pbo = new BufferObject(GL_PIXEL_PACK_BUFFER, GL_STREAM_READ);
-        pbo.bind();
-        pbo.bufferData((long) width * height * Integer.BYTES);
-        BufferObject.bindZERO(GL_PIXEL_PACK_BUFFER);
+        readback = new PixelReadback();
         //Texture.unbindActiveSlot(uid_texture.target());
     }
 
@@ -80,35 +54,13 @@ public class IDBuffer extends Framebuffer {
     public void readID(float mouseViewportX, float mouseViewportY) {
         int x = (int)(mouseViewportX * width);
         int y = (int)(mouseViewportY * height);
-        if (syncStatus == GL_SIGNALED) {
-            syncStatus = GL_UNSIGNALED;
-            glDeleteSync(syncObject);
-            syncObject = 0L;
-            pbo.bind();
-            ByteBuffer pixel = glMapBufferRange(GL_PIXEL_PACK_BUFFER,0,Integer.BYTES,GL_MAP_READ_BIT,pixelBuffer);
-            if (pixel != null) {
-                pixelID = (pixel.get(0)) | (pixel.get(1) << 8) | (pixel.get(2) << 16) | (pixel.get(3) << 24);
-                glUnmapBuffer(GL_PIXEL_PACK_BUFFER);
-            } bindRead(this);
-            readBuffer(GL_COLOR_ATTACHMENT0); // bind uid buffer for read ops
-            glReadPixels(x, y, 1,1, GL_RED_INTEGER, GL_UNSIGNED_INT,0);
-            syncObject = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
-        } else {
-            if (syncObject == 0L) {
-                bindRead(this);
-                readBuffer(GL_COLOR_ATTACHMENT0); // bind uid buffer for read ops
-                pbo.bind();
-                glReadPixels(x, y, 1,1, GL_RED_INTEGER, GL_UNSIGNED_INT,0);
-                syncObject = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
-            } else {
-                glGetSynciv(syncObject,GL_SYNC_STATUS,null,syncBuffer);
-                syncStatus = syncBuffer.get(0);
-            }
-        }
+        bindRead(this);
+        readBuffer(0); // bind uid buffer for read ops
+        readback.read(x,y,width,height);
     }
 
     public int pixelID() {
-        return pixelID;
+        return readback.pixelID();
     }
 
     public Texture texture() {
@@ -122,8 +74,6 @@ public class IDBuffer extends Framebuffer {
     @Override
     public void dispose() {
         super.dispose();
-        if (syncBuffer != null) MemoryUtil.memFree(syncBuffer);
-        if (pixelBuffer != null) MemoryUtil.memFree(pixelBuffer);
-        Disposable.dispose(pbo);
+        Disposable.dispose(readback);
     }
 }
@@ -0,0 +1,174 @@
+package io.github.heathensoft.jlib.lwjgl.utils;
+
+import io.github.heathensoft.jlib.common.Disposable;
+import io.github.heathensoft.jlib.lwjgl.gfx.BufferObject;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.system.MemoryStack;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+import static org.lwjgl.opengl.GL11.GL_UNSIGNED_INT;
+import static org.lwjgl.opengl.GL11.glReadPixels;
+import static org.lwjgl.opengl.GL15.GL_STREAM_READ;
+import static org.lwjgl.opengl.GL15.glUnmapBuffer;
+import static org.lwjgl.opengl.GL21.GL_PIXEL_PACK_BUFFER;
+import static org.lwjgl.opengl.GL30.GL_MAP_READ_BIT;
+import static org.lwjgl.opengl.GL30.GL_RED_INTEGER;
+import static org.lwjgl.opengl.GL30.glMapBufferRange;
+import static org.lwjgl.opengl.GL32.*;
+
+/**
+ * Pipelined readback of a single integer pixel (i.e. the pixel id under the mouse).
+ * Call read once per frame, with the id framebuffer bound for reading and its read buffer set.
+ *
+ * The pixel read in frame N is the pixelID() of frame N + LATENCY. The read is queued into one of
+ * LATENCY + 1 pixel-pack buffer slots and fenced. It is only mapped when its fence has signaled,
+ * so reading never waits for the GPU. If the GPU falls further behind, results are delivered
+ * as soon as they are ready (never out of order), and frames with no free slot are dropped.
+ *
+ * Without sync objects (OpenGL 3.2 / ARB_sync) the Synchronous device reads with glReadPixels directly.
+ * It has the same latency, so the ids seen by the GUI do not depend on the device.
+ *
+ * @author Frederik Dahl
+ * 18/10/2026
+ */
+
+
+public class PixelReadback implements Disposable {
+
+    /** Frames from a read to its result */
+    public static final int LATENCY = 2;
+    private static final int SLOTS = LATENCY + 1;
+
+    /** Where the pixels are read. Slots are used in ring order */
+    public interface Device extends Disposable {
+        /** Queue a read of pixel (x, y) of the bound read buffer into the slot */
+        void read(int slot, int x, int y);
+        /** @return true if the slot's read is complete. Must not block */
+        boolean ready(int slot);
+        /** @return the value of a ready slot. The slot is free after this */
+        int fetch(int slot);
+    }
+
+    private final Device device;
+    private final long[] issued; // frame each slot was read in
+    private final boolean[] outside; // slot read outside the framebuffer (value 0, device not used)
+    private long frame;
+    private long pixel_frame;
+    private int pixel_id;
+    private int head; // oldest pending slot
+    private int pending;
+    private int dropped;
+
+    /** Pixel-pack buffer ring if sync objects are supported, else the synchronous fallback */
+    public PixelReadback() {
+        this(supportsSync() ? new Buffered() : new Synchronous());
+    }
+
+    public PixelReadback(Device device) {
+        this.device = device;
+        this.issued = new long[SLOTS];
+        this.outside = new boolean[SLOTS];
+        this.pixel_frame = -1;
+    }
+
+    /**
+     * Delivers the results of frame - LATENCY (and any late results before it), then reads pixel (x, y).
+     * Pixels outside [0, width) x [0, height) read as 0.
+     */
+    public void read(int x, int y, int width, int height) {
+        while (pending > 0 && frame - issued[head] >= LATENCY) {
+            if (outside[head]) pixel_id = 0;
+            else if (device.ready(head)) pixel_id = device.fetch(head);
+            else break;
+            pixel_frame = issued[head];
+            head = (head + 1) % SLOTS;
+            pending--;
+        } if (pending < SLOTS) {
+            int slot = (head + pending) % SLOTS;
+            outside[slot] = x < 0 || y < 0 || x >= width || y >= height;
+            if (!outside[slot]) device.read(slot,x,y);
+            issued[slot] = frame;
+            pending++;
+        } else dropped++;
+        frame++;
+    }
+
+    /** @return the latest delivered pixel (0 before the first) */
+    public int pixelID() { return pixel_id; }
+
+    /** @return the frame the latest delivered pixel was read in, -1 before the first */
+    public long pixelFrame() { return pixel_frame; }
+
+    /** @return number of read calls */
+    public long frame() { return frame; }
+
+    /** @return reads dropped because every slot was waiting for the GPU */
+    public int dropped() { return dropped; }
+
+    public void dispose() {
+        Disposable.dispose(device);
+    }
+
+    public static boolean supportsSync() {
+        GLCapabilities capabilities = GL.getCapabilities();
+        return capabilities.OpenGL32 || capabilities.GL_ARB_sync;
+    }
+
+    /** Pixel-pack buffer with a 4 byte region and a fence per slot */
+    public static final class Buffered implements Device {
+        private final BufferObject pbo;
+        private final long[] fences;
+        public Buffered() {
+            fences = new long[SLOTS];
+            pbo = new BufferObject(GL_PIXEL_PACK_BUFFER,GL_STREAM_READ);
+            pbo.bind().bufferData((long) SLOTS * Integer.BYTES);
+            BufferObject.bindZERO(GL_PIXEL_PACK_BUFFER);
+        }
+        public void read(int slot, int x, int y) {
+            pbo.bind();
+            glReadPixels(x,y,1,1,GL_RED_INTEGER,GL_UNSIGNED_INT,(long) slot * Integer.BYTES);
+            BufferObject.bindZERO(GL_PIXEL_PACK_BUFFER);
+            fences[slot] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE,0);
+        }
+        public boolean ready(int slot) {
+            int status = glClientWaitSync(fences[slot],0,0);
+            return status == GL_ALREADY_SIGNALED || status == GL_CONDITION_SATISFIED;
+        }
+        public int fetch(int slot) {
+            glDeleteSync(fences[slot]);
+            fences[slot] = 0L;
+            int value = 0;
+            pbo.bind();
+            ByteBuffer pixel = glMapBufferRange(GL_PIXEL_PACK_BUFFER,(long) slot * Integer.BYTES,Integer.BYTES,GL_MAP_READ_BIT);
+            if (pixel != null) {
+                value = pixel.order(ByteOrder.nativeOrder()).getInt(0);
+                glUnmapBuffer(GL_PIXEL_PACK_BUFFER);
+            } BufferObject.bindZERO(GL_PIXEL_PACK_BUFFER);
+            return value;
+        }
+        public void dispose() {
+            for (long fence : fences) {
+                if (fence != 0L) glDeleteSync(fence);
+            } Disposable.dispose(pbo);
+        }
+    }
+
+    /** Fallback. glReadPixels to client memory (stalls), the value is kept until fetched */
+    public static final class Synchronous implements Device {
+        private final int[] values = new int[SLOTS];
+        public void read(int slot, int x, int y) {
+            try (MemoryStack stack = MemoryStack.stackPush()){
+                IntBuffer buffer = stack.callocInt(1);
+                glReadPixels(x,y,1,1,GL_RED_INTEGER,GL_UNSIGNED_INT,buffer);
+                values[slot] = buffer.get(0);
+            }
+        }
+        public boolean ready(int slot) { return true; }
+        public int fetch(int slot) { return values[slot]; }
+        public void dispose() { }
+    }
+}
@@ -28,6 +28,8 @@ public final class Engine {
     private static final int service_core_pool_size = 4;
     private static final int service_max_pool_size = 24;
     private static final int service_keep_alive_time_ms = 3000;
+    private static final int service_queue_capacity = 512;
+    private static final int service_virtual_concurrency = 256;
     
     private Engine() {}
     
@@ -204,10 +206,24 @@ public final class Engine {
             threadPool = new ThreadService(
             service_core_pool_size,
             service_max_pool_size,
-            service_keep_alive_time_ms);
+            service_keep_alive_time_ms,
+            service_queue_capacity,
+            service_virtual_concurrency,
+            ThreadService.Mode.PLATFORM);
         } return threadPool;
     }
 
+    /**
+     * @param default_mode execution mode of tasks returning Mode.DEFAULT.
+     *                     Mode.VIRTUAL runs tasks on virtual threads. (I/O heavy loading)
+     * @return the thread pool
+     */
+    public ThreadService threadPool(ThreadService.Mode default_mode) {
+        ThreadService service = threadPool();
+        service.setDefaultMode(default_mode);
+        return service;
+    }
+
     public static Engine get() {
         return instance == null ? (instance = new Engine()) : instance;
     }
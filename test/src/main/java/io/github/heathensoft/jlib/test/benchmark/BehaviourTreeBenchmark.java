@@ -0,0 +1,136 @@
+package io.github.heathensoft.jlib.test.benchmark;
+
+import io.github.heathensoft.jlib.ai.btree.*;
+import io.github.heathensoft.jlib.ai.btree.time.BTime;
+import org.tinylog.Logger;
+
+/**
+ * Ticking N agents: one object tree (BTree) per agent vs one SharedTree and an AgentStates block.
+ * Both run the same tree with the same leaf logic.
+ * Then the same ticks on worker threads: SharedTree.tickParallel and BTreeShard.tickParallel.
+ *
+ * @author Frederik Dahl
+ * 18/10/2026
+ */
+
+
+public class BehaviourTreeBenchmark {
+
+    private static final int AGENTS = 10_000;
+    private static final int SHARDS = 8;
+
+    public static void main(String[] args) {
+        Agents object_agents = new Agents(AGENTS);
+        Agents shared_agents = new Agents(AGENTS);
+
+        long heap = usedHeap();
+        BTree[] trees = new BTree[AGENTS];
+        for (int agent = 0; agent < AGENTS; agent++) {
+            trees[agent] = objectTree(object_agents,agent,null);
+        } long object_heap = usedHeap() - heap;
+
+        heap = usedHeap();
+        SharedTree shared = new SharedTree(sharedTree(shared_agents));
+        AgentStates states = shared.newStates(AGENTS,1337);
+        long shared_heap = usedHeap() - heap;
+
+        Logger.info("{} agents, {} nodes per tree", AGENTS, shared.nodeCount());
+        Logger.info("object trees heap: ~{} KB, shared tree heap: ~{} KB ({} bytes per agent)",
+                object_heap / 1024, shared_heap / 1024, states.bytesPerAgent());
+
+        Benchmark.run("BTree per agent (tick all)", 50, 200, () -> {
+            for (BTree tree : trees) tree.tick();
+            BTree.updateInternalTime(0.016f);
+        });
+        Benchmark.run("SharedTree (tick all)", 50, 200, () -> {
+            shared.tick(states);
+            states.update(0.016f);
+        });
+        Benchmark.sink = trees;
+
+        Agents shard_agents = new Agents(AGENTS);
+        BTreeShard[] shards = new BTreeShard[SHARDS];
+        for (int i = 0; i < SHARDS; i++) shards[i] = new BTreeShard(AGENTS / SHARDS);
+        for (int agent = 0; agent < AGENTS; agent++) {
+            BTreeShard shard = shards[agent % SHARDS];
+            shard.add(objectTree(shard_agents,agent,shard.time()));
+        }
+        Logger.info("worker threads: {}", java.util.concurrent.ForkJoinPool.getCommonPoolParallelism());
+        Benchmark.run("BTreeShard x " + SHARDS + " (tickParallel)", 50, 200, () ->
+                Benchmark.sink = BTreeShard.tickParallel(0.016f,shards));
+        Benchmark.run("SharedTree (tickParallel)", 50, 200, () -> {
+            Benchmark.sink = shared.tickParallel(states);
+            states.update(0.016f);
+        });
+    }
+
+    private static BTree objectTree(Agents agents, int agent, BTime time) {
+        BTree tree = new BTree() { };
+        tree.setRoot(build(
+                new Action<Agents>(agents) {
+                    protected void initialize() { }
+                    protected Status update() { return context.eat(agent); }
+                    protected void terminate(Status status) { } },
+                new Action<Agents>(agents) {
+                    protected void initialize() { }
+                    protected Status update() { return context.wander(agent); }
+                    protected void terminate(Status status) { } },
+                new Condition<Agents>(agents) {
+                    protected boolean query() { return context.hungry(agent); } },
+                new Condition<Agents>(agents) {
+                    protected boolean query() { return context.tired(agent); } },
+                time));
+        return tree;
+    }
+
+    /** time: null for the static BTree time */
+    private static Selector build(TreeNode eat, TreeNode wander, TreeNode hungry, TreeNode tired, BTime time) {
+        return BTree.reactiveSelector(
+                BTree.passiveSequence(hungry, eat, time == null ? BTree.wait(0.5f) : BTree.wait(time,0.5f)),
+                BTree.passiveSequence(tired, time == null ? BTree.wait(2.0f) : BTree.wait(time,2.0f)),
+                time == null ? BTree.rememberSuccess(BTree.repeat(wander,3),1.0f)
+                        : BTree.rememberSuccess(BTree.repeat(wander,3),time,1.0f),
+                BTree.succeed());
+    }
+
+    /** The tree of build(), as a SharedTree definition */
+    private static SharedNode sharedTree(Agents agents) {
+        return SharedNode.reactiveSelector(
+                SharedNode.passiveSequence(SharedNode.condition(agents::hungry), SharedNode.action(agents::eat), SharedNode.wait(0.5f)),
+                SharedNode.passiveSequence(SharedNode.condition(agents::tired), SharedNode.wait(2.0f)),
+                SharedNode.rememberSuccess(SharedNode.repeat(SharedNode.action(agents::wander),3),1.0f),
+                SharedNode.succeed());
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static final class Agents {
+        final int[] hunger;
+        final int[] energy;
+        final int[] steps;
+        Agents(int count) {
+            hunger = new int[count];
+            energy = new int[count];
+            steps = new int[count];
+            for (int i = 0; i < count; i++) {
+                hunger[i] = i % 100;
+                energy[i] = 100 - (i % 50);
+            }
+        }
+        boolean hungry(int agent) { return hunger[agent] > 80; }
+        boolean tired(int agent) { return energy[agent] < 20; }
+        Status eat(int agent) {
+            hunger[agent] = Math.max(0,hunger[agent] - 10);
+            return hunger[agent] > 20 ? Status.RUNNING : Status.SUCCESS;
+        }
+        Status wander(int agent) {
+            hunger[agent]++;
+            energy[agent] = energy[agent] > 0 ? energy[agent] - 1 : 100;
+            return (++steps[agent] & 3) == 0 ? Status.SUCCESS : Status.RUNNING;
+        }
+    }
+}
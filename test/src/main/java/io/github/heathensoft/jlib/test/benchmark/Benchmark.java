@@ -0,0 +1,37 @@
+package io.github.heathensoft.jlib.test.benchmark;
+
+import org.tinylog.Logger;
+
+/**
+ * Minimal micro-benchmark harness. (No JMH dependency in this project)
+ * Runs warmup rounds, then measured rounds, and logs the average time per operation.
+ *
+ * @author Frederik Dahl
+ * 18/10/2026
+ */
+
+
+public final class Benchmark {
+
+    private Benchmark() {}
+
+    /**
+     * @param name logged name
+     * @param warmup warmup iterations (not measured)
+     * @param iterations measured iterations
+     * @param operation the operation
+     * @return average milliseconds per operation
+     */
+    public static double run(String name, int warmup, int iterations, Runnable operation) {
+        for (int i = 0; i < warmup; i++) operation.run();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) operation.run();
+        double ms = (System.nanoTime() - start) / 1_000_000d / iterations;
+        Logger.info("{}: {} ms/op", name, String.format("%.4f",ms));
+        return ms;
+    }
+
+    /** Prevents the JIT from eliminating benchmarked work */
+    public static volatile Object sink;
+
+}
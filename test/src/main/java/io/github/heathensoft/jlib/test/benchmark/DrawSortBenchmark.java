@@ -0,0 +1,345 @@
+package io.github.heathensoft.jlib.test.benchmark;
+
+import io.github.heathensoft.jlib.lwjgl.gfx.Texture;
+import io.github.heathensoft.jlib.lwjgl.gfx.TextureRegion;
+import io.github.heathensoft.jlib.test.gfx.Harness;
+import io.github.heathensoft.jlib.ui.gfx.CommandBufferGUI;
+import io.github.heathensoft.jlib.ui.gfx.DrawSorterGUI;
+import io.github.heathensoft.jlib.ui.gfx.FontsGUI;
+import io.github.heathensoft.jlib.ui.gfx.RendererGUI;
+import io.github.heathensoft.jlib.ui.gfx.SpriteBatchGUI;
+import io.github.heathensoft.jlib.ui.text.TextAlignment;
+import org.joml.primitives.Rectanglef;
+import org.tinylog.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+import static io.github.heathensoft.jlib.test.gfx.Harness.check;
+
+/**
+ * Draw calls and shader swaps of a GUI scene drawn in recorded order vs. reordered by DrawSorterGUI, without a GL context.
+ * The scene is overlapping windows of panels, title bars, buttons, scrolled lists with icons and labels, and tooltips.
+ * Counts are those of the renderer's batches (flush on batch switch, scissor, full texture slots or capacity).
+ *
+ * Both orders are "rasterized" (quad bounds and glyph quads, scissored) into per-pixel hashes of what was drawn,
+ * in order. They must be equal: reordering may not change what is drawn over what. Random scenes are checked too.
+ * Textures are placeholders (no GL objects). Font metrics are the default fonts'.
+ *
+ * @author Frederik Dahl
+ * 18/10/2026
+ */
+
+
+public class DrawSortBenchmark {
+
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 720;
+    private static final String WORDS = "inventory settings quest log map crafting potion sword shield armor gold silver copper ore wood stone";
+    private static FontsGUI fonts;
+
+    public static void main(String[] args) throws Exception {
+        fonts = Harness.fonts();
+        Texture[] textures = Harness.textures(24);
+        DrawSorterGUI sorter = new DrawSorterGUI(fonts);
+        List<CommandBufferGUI> buffers = new ArrayList<>();
+        long[] totals = new long[4]; // draw calls, sorted draw calls, shader swaps, sorted shader swaps
+        for (int frame = 0; frame < 10; frame++) {
+            Random random = new Random(0x9E3779B97F4A7C15L * (frame + 1)); // nearby seeds start alike
+            record(buffers,8 + random.nextInt(8),w -> guiWindow(w,new Random(random.nextLong()),textures));
+            compare("gui scene " + frame,buffers,sorter,totals);
+        } Logger.info("gui scenes: draw calls {} -> {}, shader swaps {} -> {}", totals[0], totals[1], totals[2], totals[3]);
+        Arrays.fill(totals,0);
+        for (int frame = 0; frame < 20; frame++) {
+            Random random = new Random(0x9E3779B97F4A7C15L * (frame + 101));
+            record(buffers,1 + random.nextInt(16),w -> randomWindow(w,new Random(random.nextLong()),textures));
+            compare("random scene " + frame,buffers,sorter,totals);
+        } Logger.info("random scenes: draw calls {} -> {}, shader swaps {} -> {}", totals[0], totals[1], totals[2], totals[3]);
+        Random random = new Random(7);
+        record(buffers,12,w -> guiWindow(w,new Random(random.nextLong()),textures));
+        Benchmark.run("DrawSorterGUI (12 windows)", 50, 200, () -> {
+            sorter.begin(WIDTH,HEIGHT);
+            for (CommandBufferGUI buffer : buffers) buffer.submit(sorter);
+            sorter.submit(new Counter());
+        }); Benchmark.run("Recorded order (12 windows)", 50, 200, () -> {
+            Counter counter = new Counter();
+            for (CommandBufferGUI buffer : buffers) buffer.submit(counter);
+        });
+        for (CommandBufferGUI buffer : buffers) buffer.dispose();
+        Harness.finish("DrawSorterGUI");
+    }
+
+    private interface Window extends Consumer<CommandBufferGUI> { }
+
+    private static void record(List<CommandBufferGUI> buffers, int num_windows, IntFunction<Window> factory) {
+        List<Window> windows = new ArrayList<>(num_windows);
+        for (int w = 0; w < num_windows; w++) windows.add(factory.apply(w));
+        Harness.record(buffers,fonts,windows,WIDTH,HEIGHT,false);
+    }
+
+    private static void compare(String name, List<CommandBufferGUI> buffers, DrawSorterGUI sorter, long[] totals) {
+        Counter before = new Counter();
+        Raster expected = new Raster();
+        for (CommandBufferGUI buffer : buffers) {
+            buffer.submit(before);
+            buffer.submit(expected);
+            before.finish();
+        } before.end();
+        sorter.begin(WIDTH,HEIGHT);
+        for (CommandBufferGUI buffer : buffers) buffer.submit(sorter);
+        Counter after = new Counter();
+        Raster sorted = new Raster();
+        sorter.submit(after);
+        sorter.submit(sorted);
+        after.finish();
+        after.end();
+        check(expected.drawn > 0,name + ": nothing drawn");
+        check(expected.drawn == sorted.drawn,name + ": drawn " + expected.drawn + ", sorted " + sorted.drawn);
+        check(Arrays.equals(expected.pixels,sorted.pixels),name + ": " + expected.difference(sorted) + " pixels drawn in another order");
+        check(after.scissor_depth == 0,name + ": scissors left on the stack");
+        Logger.debug("{}: {} windows, {} quads and glyph runs. draw calls {} -> {}, shader swaps {} -> {} ({} batches)",
+        name, buffers.size(), sorter.itemCount(), before.draw_calls, after.draw_calls, before.shader_swaps, after.shader_swaps, sorter.batchCount());
+        totals[0] += before.draw_calls; totals[1] += after.draw_calls;
+        totals[2] += before.shader_swaps; totals[3] += after.shader_swaps;
+    }
+
+    /** A window of the GUI: panel, title bar, buttons, a scrolled list of items (icons and labels) and a tooltip */
+    private static Window guiWindow(int w, Random random, Texture[] textures) {
+        float width = 260 + random.nextInt(200), height = 220 + random.nextInt(260);
+        float x = random.nextFloat() * (WIDTH - width), y = random.nextFloat() * (HEIGHT - height);
+        int rows = 6 + random.nextInt(20);
+        int buttons = 2 + random.nextInt(4);
+        float scroll = random.nextFloat() * 40;
+        Texture panel = textures[random.nextInt(4)];
+        String title = words(random,2);
+        String[] labels = new String[rows], values = new String[rows], captions = new String[buttons];
+        Texture[] icons = new Texture[rows];
+        for (int r = 0; r < rows; r++) {
+            labels[r] = words(random,2);
+            values[r] = Integer.toString(random.nextInt(10000));
+            icons[r] = textures[4 + random.nextInt(textures.length - 4)];
+        } for (int b = 0; b < buttons; b++) captions[b] = words(random,1);
+        boolean tooltip = random.nextInt(3) == 0;
+        TextureRegion region = new TextureRegion(0,0,32,32,128,128);
+        int id = 1 + w * 1000;
+        return buffer -> {
+            Rectanglef bounds = new Rectanglef(x,y,x + width,y + height);
+            buffer.drawElement(panel,null,region,bounds,0xFF202020,id,0,true);
+            buffer.drawBorders(bounds,2,0xFF808080,id,0,true);
+            Rectanglef bar = new Rectanglef(x,y + height - 24,x + width,y + height);
+            buffer.drawElement(bar,0xFF404040,id + 1);
+            buffer.drawStringDynamicVerticalCentered(title,TextAlignment.LEFT,bar,0,0xFFFFFFFF,4,0);
+            buffer.drawRound(new Rectanglef(bar.maxX - 20,bar.minY + 4,bar.maxX - 4,bar.maxY - 4),0xFF0000C0,id + 2,0,true);
+            Rectanglef list = new Rectanglef(x + 4,y + 40,x + width - 4,y + height - 28);
+            if (buffer.pushScissor(list)) {
+                for (int r = 0; r < labels.length; r++) {
+                    float row_y = list.maxY - (r + 1) * 22 + scroll;
+                    Rectanglef row = new Rectanglef(list.minX,row_y,list.maxX,row_y + 20);
+                    buffer.drawElement(row,r % 2 == 0 ? 0xFF303030 : 0xFF2A2A2A,id + 10 + r);
+                    buffer.drawElement(icons[r],null,region,new Rectanglef(row.minX + 2,row.minY + 2,row.minX + 18,row.maxY - 2),0xFFFFFFFF,id + 10 + r,0,true);
+                    buffer.drawStringFixedSize(labels[r],TextAlignment.LEFT,1,0xFFE0E0E0,row.minX + 22,row.maxY - 2,row.lengthX() - 80,14,0);
+                    buffer.drawStringFixedSize(values[r],TextAlignment.RIGHT,1,0xFF80FFFF,row.maxX - 60,row.maxY - 2,56,14,0);
+                } buffer.popScissor();
+            } float button_width = (width - 8) / captions.length;
+            for (int b = 0; b < captions.length; b++) {
+                Rectanglef button = new Rectanglef(x + 4 + b * button_width,y + 6,x + (b + 1) * button_width,y + 34);
+                buffer.drawElement(button,0xFF505050,id + 500 + b);
+                buffer.drawBorders(button,1,0xFFA0A0A0,id + 500 + b,0,true);
+                buffer.drawStringDynamicVerticalCentered(captions[b],TextAlignment.CENTERED,button,0,0xFFFFFFFF,2,0);
+            } if (tooltip) {
+                Rectanglef tip = new Rectanglef(x + width / 2,y + height / 2,x + width / 2 + 140,y + height / 2 + 26);
+                buffer.drawElement(tip,0xE0000000,RendererGUI.SKIP_ID);
+                buffer.drawStringDynamicVerticalCentered(captions[0],TextAlignment.LEFT,tip,2,0xFFFFFFFF,3,0);
+            }
+        };
+    }
+
+    /** Random quads, textures, text and nested scissors anywhere on the screen */
+    private static Window randomWindow(int w, Random random, Texture[] textures) {
+        List<Window> commands = new ArrayList<>();
+        int depth = 0;
+        for (int c = 0, n = 50 + random.nextInt(300); c < n; c++) {
+            float x = random.nextFloat() * (WIDTH + 100) - 50, y = random.nextFloat() * (HEIGHT + 100) - 50;
+            Rectanglef quad = new Rectanglef(x,y,x + 2 + random.nextFloat() * 300,y + 2 + random.nextFloat() * 200);
+            int abgr = random.nextInt();
+            int id = random.nextInt(6) == 0 ? RendererGUI.SKIP_ID : random.nextInt(60000);
+            Texture diffuse = random.nextInt(3) == 0 ? null : textures[random.nextInt(textures.length)];
+            Texture normals = random.nextInt(2) == 0 ? null : textures[random.nextInt(textures.length)];
+            TextureRegion region = new TextureRegion(0,0,16,16,128,128);
+            float rotation = random.nextFloat() * 6.28f;
+            float size = 8 + random.nextFloat() * 40;
+            int font = random.nextInt(Harness.FONTS.length);
+            String string = words(random,1 + random.nextInt(8));
+            switch (random.nextInt(8)) {
+                case 0 -> commands.add(b -> b.drawElement(quad,abgr,id));
+                case 1 -> commands.add(b -> b.drawRound(quad,abgr,id,0,true));
+                case 2 -> commands.add(b -> b.drawRotated(new Rectanglef(quad),rotation,abgr,id,0,true));
+                case 3 -> commands.add(b -> b.drawElement(diffuse,normals,region,quad,abgr,id,0,true));
+                case 4 -> commands.add(b -> b.drawStringDynamicSize(string,TextAlignment.LEFT,font,abgr,quad.minX,quad.maxY,quad.lengthX(),size,0));
+                case 5 -> commands.add(b -> b.drawStringFixedSize(string,TextAlignment.CENTERED,font,abgr,quad.minX,quad.maxY,quad.lengthX(),size,0));
+                default -> {
+                    if (depth > 0 && random.nextBoolean()) {
+                        commands.add(CommandBufferGUI::popScissor);
+                        depth--;
+                    } else if (depth < 6) {
+                        boolean[] valid = new boolean[1];
+                        commands.add(b -> valid[0] = b.pushScissor(quad));
+                        commands.add(b -> { if (!valid[0]) b.pushScissor(0,0,WIDTH,HEIGHT); });
+                        depth++;
+                    }
+                }
+            }
+        } for (; depth > 0; depth--) commands.add(CommandBufferGUI::popScissor);
+        return buffer -> { for (Window command : commands) command.accept(buffer); };
+    }
+
+    private static String words(Random random, int count) {
+        String[] words = WORDS.split(" ");
+        StringBuilder string = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) string.append(' ');
+            string.append(words[random.nextInt(words.length)]);
+        } return string.toString();
+    }
+
+    /** Scissor stack of the renderer (whole pixels, inside the previous scissor and the screen) */
+    private abstract static class Scissors implements CommandBufferGUI.Target {
+        final int[] scissors = new int[64 * 4];
+        int scissor_depth;
+        public boolean pushScissor(float x1, float y1, float x2, float y2) {
+            int s = (scissor_depth - 1) * 4;
+            int minX = Math.max((int) Math.floor(x1),scissor_depth == 0 ? 0 : scissors[s]);
+            int minY = Math.max((int) Math.floor(y1),scissor_depth == 0 ? 0 : scissors[s + 1]);
+            int maxX = Math.min((int) Math.ceil(x2),scissor_depth == 0 ? WIDTH : scissors[s + 2]);
+            int maxY = Math.min((int) Math.ceil(y2),scissor_depth == 0 ? HEIGHT : scissors[s + 3]);
+            if (minX < maxX && minY < maxY) {
+                scissorChanged();
+                s = scissor_depth++ * 4;
+                scissors[s] = minX; scissors[s + 1] = minY;
+                scissors[s + 2] = maxX; scissors[s + 3] = maxY;
+                return true;
+            } return false;
+        }
+        public void popScissor() {
+            if (scissor_depth > 0) {
+                scissorChanged();
+                scissor_depth--;
+            }
+        }
+        void scissorChanged() { }
+        int clipMinX() { return scissor_depth == 0 ? 0 : scissors[(scissor_depth - 1) * 4]; }
+        int clipMinY() { return scissor_depth == 0 ? 0 : scissors[(scissor_depth - 1) * 4 + 1]; }
+        int clipMaxX() { return scissor_depth == 0 ? WIDTH : scissors[(scissor_depth - 1) * 4 + 2]; }
+        int clipMaxY() { return scissor_depth == 0 ? HEIGHT : scissors[(scissor_depth - 1) * 4 + 3]; }
+    }
+
+    /** Draw calls and shader swaps of the renderer's CommandTarget and batches */
+    private static final class Counter extends Scissors {
+        static final int NULL_BATCH = 0, TEXT_BATCH = 1, SPRITE_BATCH = 2;
+        final List<Texture> diffuse = new ArrayList<>();
+        final List<Texture> normals = new ArrayList<>();
+        int active_batch;
+        boolean skip_ids;
+        int sprites, glyphs;
+        int draw_calls, shader_swaps;
+        public void sprite(float[] vertices, int offset, Texture diffuse, Texture normals, int id, boolean ellipse, float minX, float minY, float maxX, float maxY) {
+            if (active_batch != SPRITE_BATCH) {
+                if (active_batch == TEXT_BATCH) {
+                    flushText();
+                    shader_swaps++;
+                } active_batch = SPRITE_BATCH;
+                skip_ids = false;
+            } if ((id == RendererGUI.SKIP_ID) != skip_ids) {
+                flushSprites();
+                skip_ids = !skip_ids;
+            } if (sprites == 512) flushSprites();
+            if (diffuse != null && !this.diffuse.contains(diffuse)) {
+                if (this.diffuse.size() == SpriteBatchGUI.NUM_TEXTURE_SLOTS) flushSprites();
+                this.diffuse.add(diffuse);
+            } if (normals != null && !this.normals.contains(normals)) {
+                if (this.normals.size() == SpriteBatchGUI.NUM_TEXTURE_SLOTS) {
+                    flushSprites();
+                    if (diffuse != null) this.diffuse.add(diffuse);
+                } this.normals.add(normals);
+            } sprites++;
+        }
+        public void glyphs(float[] vertices, int offset, int count) {
+            if (active_batch != TEXT_BATCH) {
+                if (active_batch == SPRITE_BATCH) {
+                    flushSprites();
+                    shader_swaps++;
+                } active_batch = TEXT_BATCH;
+                skip_ids = false;
+            } while (count > 0) {
+                if (glyphs == 2048) flushText();
+                int n = Math.min(count,2048 - glyphs);
+                glyphs += n;
+                count -= n;
+            }
+        }
+        void scissorChanged() {
+            if (active_batch == SPRITE_BATCH) flushSprites();
+            else if (active_batch == TEXT_BATCH) flushText();
+        }
+        void finish() { if (skip_ids) { flushSprites(); skip_ids = false; } }
+        void end() { flushSprites(); flushText(); active_batch = NULL_BATCH; }
+        void flushSprites() {
+            if (sprites > 0) draw_calls++;
+            sprites = 0;
+            diffuse.clear();
+            normals.clear();
+        }
+        void flushText() {
+            if (glyphs > 0) draw_calls++;
+            glyphs = 0;
+        }
+    }
+
+    /** Per pixel hash of the quads and glyph boxes covering it, in draw order */
+    private static final class Raster extends Scissors {
+        final int[] pixels = new int[WIDTH * HEIGHT];
+        final Rectanglef glyph = new Rectanglef();
+        int drawn;
+        public void sprite(float[] vertices, int offset, Texture diffuse, Texture normals, int id, boolean ellipse, float minX, float minY, float maxX, float maxY) {
+            float x0 = Float.MAX_VALUE, y0 = Float.MAX_VALUE, x1 = -Float.MAX_VALUE, y1 = -Float.MAX_VALUE;
+            int hash = 1;
+            for (int i = offset; i < offset + 24; i++) {
+                if ((i - offset) % 6 == 0) {
+                    x0 = Math.min(x0,vertices[i]); y0 = Math.min(y0,vertices[i + 1]);
+                    x1 = Math.max(x1,vertices[i]); y1 = Math.max(y1,vertices[i + 1]);
+                } if ((i - offset) % 6 != 5) hash = hash * 31 + Float.floatToRawIntBits(vertices[i]); // not the slot bits
+            } fill(x0,y0,x1,y1,hash * 31 + id);
+        }
+        public void glyphs(float[] vertices, int offset, int count) {
+            for (int g = 0; g < count; g++) {
+                int i = offset + g * 4;
+                fonts.glyphBounds(vertices[i],vertices[i + 1],Float.floatToRawIntBits(vertices[i + 2]),glyph);
+                int hash = Arrays.hashCode(Arrays.copyOfRange(vertices,i,i + 4));
+                fill(glyph.minX,glyph.minY,glyph.maxX,glyph.maxY,hash);
+            }
+        }
+        void fill(float minX, float minY, float maxX, float maxY, int hash) {
+            int x0 = Math.max((int) Math.floor(minX),clipMinX()), y0 = Math.max((int) Math.floor(minY),clipMinY());
+            int x1 = Math.min((int) Math.ceil(maxX),clipMaxX()), y1 = Math.min((int) Math.ceil(maxY),clipMaxY());
+            for (int y = y0; y < y1; y++) {
+                float py = y + 0.5f;
+                if (py < minY || py >= maxY) continue;
+                for (int x = x0; x < x1; x++) {
+                    float px = x + 0.5f;
+                    if (px < minX || px >= maxX) continue;
+                    pixels[y * WIDTH + x] = pixels[y * WIDTH + x] * 31 + hash;
+                }
+            } if (x0 < x1 && y0 < y1) drawn++;
+        }
+        int difference(Raster other) {
+            int count = 0;
+            for (int i = 0; i < pixels.length; i++) {
+                if (pixels[i] != other.pixels[i]) count++;
+            } return count;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package io.github.heathensoft.jlib.test.benchmark;
+
+import io.github.heathensoft.jlib.common.noise.FastNoiseLite;
+import io.github.heathensoft.jlib.common.utils.Area;
+import io.github.heathensoft.jlib.tiles.physics.BlockType;
+import io.github.heathensoft.jlib.tiles.physics.Geometry;
+import io.github.heathensoft.jlib.tiles.physics.Light2D;
+import io.github.heathensoft.jlib.tiles.structure.TMap;
+import io.github.heathensoft.jlib.tiles.terrain.TerrainType;
+import org.joml.Vector2f;
+import org.tinylog.Logger;
+
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import static io.github.heathensoft.jlib.test.gfx.Harness.check;
+import static io.github.heathensoft.jlib.test.gfx.Harness.finish;
+
+/**
+ * Light2D geometry on a TMap.Size.MEDIUM map: lights at random open tiles, radius 8 to 24.
+ * Angular sweep (Light2D.updateGeometry) vs. the former ray casting (Geometry.buildLightRaycast).
+ *
+ * Blocks are thresholded noise (squares), with scattered circles.
+ * Checks that both build the same light: the polygons are sampled on a half-tile grid over each light area.
+ * On a scene of squares only, at most 1 in 200 samples may differ (the ray casting nudges its rays off the vertices).
+ * With circles, 1 in 50: the ray casting approximates a circle's shadow from rays through its perpendicular
+ * diameter, while the sweep uses the exact tangent points.
+ *
+ * @author Frederik Dahl
+ * 18/10/2026
+ */
+
+
+public class LightBenchmark {
+
+    private static final int LIGHTS = 1000;
+    private static final float SAMPLE_STEP = 0.5f;
+
+    public static void main(String[] args) {
+        Grid grid = new Grid(TMap.Size.MEDIUM,1337,true);
+        Logger.info("{} ({} x {})", grid.dimension().descriptor(), grid.cols(), grid.rows());
+        Geometry geometry = new Geometry(grid);
+        Light2D[] lights = lights(grid,geometry);
+        double sweep = Benchmark.run("Angular sweep (" + LIGHTS + " lights)", 20, 50, () -> {
+            for (Light2D light : lights) light.updateGeometry();
+        });
+        long vertices = 0;
+        for (Light2D light : lights) vertices += light.vertices();
+        double raycast = Benchmark.run("Ray casting (" + LIGHTS + " lights)", 2, 5, () -> {
+            for (Light2D light : lights) geometry.buildLightRaycast(light);
+        });
+        Logger.info("angular sweep: {} lights/ms, {} vertices per light", String.format("%.1f",LIGHTS / sweep), vertices / LIGHTS);
+        Logger.info("ray casting: {} lights/ms", String.format("%.2f",LIGHTS / raycast));
+        Grid squares = new Grid(TMap.Size.MEDIUM,1337,false);
+        Geometry squares_geometry = new Geometry(squares);
+        validate("squares",squares_geometry,lights(squares,squares_geometry),1 / 200d);
+        validate("squares and circles",geometry,lights,1 / 50d);
+        finish("LightBenchmark");
+    }
+
+    /** @return LIGHTS lights at random open tiles (same seed for every grid), radius 8 to 24 */
+    private static Light2D[] lights(Grid grid, Geometry geometry) {
+        Light2D[] lights = new Light2D[LIGHTS];
+        Random random = new Random(42);
+        for (int i = 0; i < LIGHTS; i++) {
+            int x, y; do { x = random.nextInt(grid.cols());
+                y = random.nextInt(grid.rows());
+            } while (grid.isBlock(x,y));
+            lights[i] = geometry.newLight(new Vector2f(x + 0.5f,y + 0.5f),8 + random.nextInt(17));
+        } return lights;
+    }
+
+    /** Sweep vs. ray casting. At most tolerance of the samples may differ */
+    private static void validate(String scene, Geometry geometry, Light2D[] lights, double tolerance) {
+        float[][] swept = new float[lights.length][];
+        for (int i = 0; i < lights.length; i++) {
+            lights[i].updateGeometry();
+            swept[i] = polygon(lights[i]);
+        } long samples = 0, mismatched = 0;
+        for (int i = 0; i < lights.length; i++) {
+            Light2D light = lights[i];
+            geometry.buildLightRaycast(light);
+            float[] cast = polygon(light);
+            check(swept[i].length > 6 && cast.length > 6, scene + ": empty light polygon at " + light.origin());
+            int n = (int)(2 * light.radius() / SAMPLE_STEP);
+            float x0 = light.x() - light.radius();
+            float y0 = light.y() - light.radius();
+            for (int r = 0; r < n; r++) {
+                float y = y0 + (r + 0.5f) * SAMPLE_STEP;
+                for (int c = 0; c < n; c++) {
+                    float x = x0 + (c + 0.5f) * SAMPLE_STEP;
+                    if (inside(swept[i],x,y) != inside(cast,x,y)) mismatched++;
+                    samples++;
+                }
+            }
+        } Logger.info("sweep vs. ray casting ({}): {} of {} samples differ", scene, mismatched, samples);
+        check(mismatched <= samples * tolerance, scene + ": light maps differ in " + mismatched + " of " + samples + " samples");
+    }
+
+    /** @return the light's polygon (x,y pairs, origin excluded) */
+    private static float[] polygon(Light2D light) {
+        FloatBuffer buffer = FloatBuffer.allocate(light.sizeFloat());
+        light.get(buffer);
+        float[] polygon = new float[buffer.position() - 2];
+        buffer.position(2);
+        buffer.get(polygon);
+        return polygon;
+    }
+
+    /** Even-odd rule, the polygon closes from its last vertex to its first */
+    private static boolean inside(float[] polygon, float x, float y) {
+        boolean inside = false;
+        for (int i = 0, j = polygon.length - 2; i < polygon.length; j = i, i += 2) {
+            float xi = polygon[i], yi = polygon[i + 1];
+            float xj = polygon[j], yj = polygon[j + 1];
+            if ((yi > y) != (yj > y) && x < (xj - xi) * (y - yi) / (yj - yi) + xi) inside = !inside;
+        } return inside;
+    }
+
+    private static final class Grid extends TMap {
+        private final BlockType[] blocks;
+        Grid(Size size, int seed, boolean circles) {
+            super(size);
+            int length = size.size();
+            this.blocks = new BlockType[length * length];
+            FastNoiseLite noise = new FastNoiseLite(seed);
+            noise.SetFrequency(0.05f);
+            Random random = new Random(seed);
+            for (int y = 0; y < length; y++) {
+                for (int x = 0; x < length; x++) {
+                    BlockType block = BlockType.NONE;
+                    if (noise.GetNoise(x,y) > 0.3f) block = BlockType.SQUARE;
+                    else if (random.nextInt(64) == 0 && circles) block = BlockType.CIRCLE_M;
+                    blocks[y * length + x] = block;
+                }
+            }
+        }
+        public int get(int x, int y) { return array.get(x,y); }
+        protected void set(int x, int y, int value) { array.set(value,x,y); }
+        public void setObstacle(int x, int y) { }
+        public void setObstacle(Area area) { }
+        public void removeObstacle(int x, int y) { }
+        public void removeObstacle(Area area) { }
+        public BlockType block(int x, int y) { return blocks[y * cols() + x]; }
+        public void setBlock(BlockType type, int x, int y) { blocks[y * cols() + x] = type; }
+        public void setBlock(BlockType type, Area area) { }
+        public TerrainType terrain(int x, int y) { return null; }
+        public void setTerrain(TerrainType type, int x, int y) { }
+        public void setTerrain(TerrainType type, Area area) { }
+        public int roomID(int x, int y) { return 0; }
+        public int movementPenalty(int x, int y) { return 0; }
+        public boolean isObstacle(int x, int y) { return blocks[y * cols() + x] == BlockType.SQUARE; }
+    }
+}
@@ -0,0 +1,81 @@
+package io.github.heathensoft.jlib.test.benchmark;
+
+import io.github.heathensoft.jlib.common.noise.FastNoiseLite;
+import io.github.heathensoft.jlib.common.noise.Noise;
+import io.github.heathensoft.jlib.common.noise.NoiseFunction;
+import io.github.heathensoft.jlib.common.noise.NoisePipeline;
+
+/**
+ * Per-point vs batch noise sampling.
+ * Chained Noise post-processing vs NoisePipeline.
+ *
+ * @author Frederik Dahl
+ * 18/10/2026
+ */
+
+
+public class NoiseBenchmark {
+
+    private static final int SIZE = 512;
+
+    public static void main(String[] args) {
+        FastNoiseLite.NoiseType[] types = {
+                FastNoiseLite.NoiseType.OpenSimplex2,
+                FastNoiseLite.NoiseType.Perlin,
+                FastNoiseLite.NoiseType.Cellular };
+        for (FastNoiseLite.NoiseType type : types) {
+            NoiseFunction.Classic function = new NoiseFunction.Classic(0.02f,1337);
+            function.noise.SetNoiseType(type);
+            NoiseFunction per_point = function::get;
+            float[] row = new float[SIZE];
+            Benchmark.run(type + " per point", 5, 20, () -> {
+                for (int r = 0; r < SIZE; r++)
+                    for (int c = 0; c < SIZE; c++)
+                        row[c] = per_point.get(c,r);
+                Benchmark.sink = row;
+            });
+            Benchmark.run(type + " batch", 5, 20, () -> {
+                for (int r = 0; r < SIZE; r++)
+                    function.fill(row,0,0,r,1,0,SIZE);
+                Benchmark.sink = row;
+            });
+            Benchmark.run(type + " Noise.generate", 5, 20, () ->
+                    Benchmark.sink = Noise.generate(function,SIZE,SIZE,0,0));
+            Benchmark.run(type + " Noise.generate_parallel", 5, 20, () ->
+                    Benchmark.sink = Noise.generate_parallel(function,SIZE,SIZE,0,0));
+        }
+        NoiseFunction.Classic function = new NoiseFunction.Classic(0.02f,1337);
+        float[][] source = Noise.generate(function,SIZE,SIZE,0,0);
+        float[][] mix = Noise.generate(function,SIZE,SIZE,SIZE,SIZE);
+        Benchmark.run("Noise chained post-processing", 5, 20, () -> {
+            float[][] grid = Noise.terraces(copy(source),12);
+            Noise.brighten(grid,0.2f);
+            Noise.contrast(grid,0.3f);
+            Noise.mix(grid,mix,0.33f);
+            Noise.amplify(grid);
+            grid = Noise.smoothen(grid,2);
+            Benchmark.sink = Noise.amplify(grid);
+        });
+        NoisePipeline pipeline = new NoisePipeline().terraces(12).brighten(0.2f)
+                .contrast(0.3f).mix(mix,0.33f).amplify().smoothen(2).amplify();
+        float[] flat = new float[SIZE * SIZE];
+        Benchmark.run("NoisePipeline", 5, 20, () -> {
+            for (int r = 0; r < SIZE; r++)
+                System.arraycopy(source[r],0,flat,r * SIZE,SIZE);
+            Benchmark.sink = pipeline.execute(flat,SIZE,SIZE);
+        });
+        pipeline.parallel();
+        Benchmark.run("NoisePipeline parallel", 5, 20, () -> {
+            for (int r = 0; r < SIZE; r++)
+                System.arraycopy(source[r],0,flat,r * SIZE,SIZE);
+            Benchmark.sink = pipeline.execute(flat,SIZE,SIZE);
+        });
+    }
+
+    private static float[][] copy(float[][] src) {
+        float[][] dst = new float[src.length][];
+        for (int r = 0; r < src.length; r++)
+            dst[r] = src[r].clone();
+        return dst;
+    }
+}
@@ -0,0 +1,208 @@
+package io.github.heathensoft.jlib.test.benchmark;
+
+import io.github.heathensoft.jlib.ai.pathfinding.AStarGrid;
+import io.github.heathensoft.jlib.ai.pathfinding.AStarNode;
+import io.github.heathensoft.jlib.ai.pathfinding.AStarSearch;
+import io.github.heathensoft.jlib.ai.pathfinding.NodeChain;
+import io.github.heathensoft.jlib.common.noise.FastNoiseLite;
+import io.github.heathensoft.jlib.common.storage.generic.HeapSet;
+import io.github.heathensoft.jlib.tiles.neo.MapSize;
+import io.github.heathensoft.jlib.tiles.neo.Network;
+import io.github.heathensoft.jlib.tiles.neo.Pathfinder;
+import io.github.heathensoft.jlib.tiles.neo.Tile;
+import org.tinylog.Logger;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Pathfinding on MapSize.MEDIUM, LARGE and HUGE maps:
+ * AStarNode / HeapSet / HashSet A* (as used by the world generators),
+ * primitive AStarSearch over the whole map, and the hierarchical Pathfinder.
+ * The AStarNode search is skipped on HUGE maps (does not finish in minutes).
+ *
+ * The map has no Tilemap (needs a GL context). Obstacles are thresholded noise,
+ * rooms are the connected regions of each chunk, connected across chunk borders.
+ *
+ * @author Frederik Dahl
+ * 18/10/2026
+ */
+
+
+public class PathfinderBenchmark {
+
+    private static final int QUERIES = 16;
+
+    public static void main(String[] args) {
+        run(MapSize.MEDIUM);
+        run(MapSize.LARGE);
+        run(MapSize.HUGE);
+    }
+
+    private static void run(MapSize map_size) {
+        Logger.info("{} ({} x {})", map_size.descriptor, map_size.length_tiles, map_size.length_tiles);
+        Grid grid = new Grid(map_size,1337);
+        int[][] layout = new int[grid.rows()][grid.cols()];
+        Network network = new Network(map_size);
+        build_rooms(map_size,grid,layout,network);
+        Pathfinder pathfinder = new Pathfinder(map_size,grid,layout,network);
+        AStarSearch search = new AStarSearch(grid);
+
+        Random random = new Random(42);
+        int[] queries = new int[QUERIES * 4];
+        for (int i = 0; i < QUERIES; ) { // endpoints in the same connected region
+            int x0 = random.nextInt(grid.cols()), y0 = random.nextInt(grid.rows());
+            int x1 = random.nextInt(grid.cols()), y1 = random.nextInt(grid.rows());
+            if (Math.abs(x1 - x0) + Math.abs(y1 - y0) < grid.cols() / 2) continue;
+            if (!search.search(grid,x0,y0,x1,y1)) continue;
+            queries[i * 4] = x0; queries[i * 4 + 1] = y0;
+            queries[i * 4 + 2] = x1; queries[i * 4 + 3] = y1;
+            i++;
+        }
+        long optimal = 0, hierarchical = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            search.search(grid,queries[i*4],queries[i*4+1],queries[i*4+2],queries[i*4+3]);
+            optimal += search.cost();
+            int[] path = pathfinder.find(queries[i*4],queries[i*4+1],queries[i*4+2],queries[i*4+3],false);
+            hierarchical += path_cost(grid,path);
+        } Logger.info("HPA* path cost / optimal path cost: {}", String.format("%.3f",(double) hierarchical / optimal));
+
+        if (map_size != MapSize.HUGE) {
+            Benchmark.run("AStarNode + HeapSet + HashSet (" + QUERIES + " paths)", 1, 3, () -> {
+                for (int i = 0; i < QUERIES; i++)
+                    Benchmark.sink = object_search(grid,queries[i*4],queries[i*4+1],queries[i*4+2],queries[i*4+3]);
+            });
+        }
+        Benchmark.run("AStarSearch (" + QUERIES + " paths)", 3, 10, () -> {
+            for (int i = 0; i < QUERIES; i++) {
+                search.search(grid,queries[i*4],queries[i*4+1],queries[i*4+2],queries[i*4+3]);
+                Benchmark.sink = search.path(false);
+            }
+        });
+        Benchmark.run("Pathfinder HPA* (" + QUERIES + " paths)", 3, 10, () -> {
+            for (int i = 0; i < QUERIES; i++)
+                Benchmark.sink = pathfinder.find(queries[i*4],queries[i*4+1],queries[i*4+2],queries[i*4+3],false);
+        });
+    }
+
+    private static int path_cost(AStarGrid grid, int[] path) {
+        int cost = 0;
+        for (int i = 2; i < path.length; i += 2) {
+            boolean diagonal = path[i] != path[i-2] && path[i+1] != path[i-1];
+            cost += (diagonal ? 14 : 10) + grid.movementPenalty(path[i],path[i+1]);
+        } return cost;
+    }
+
+    private static int[] object_search(AStarGrid grid, int x0, int y0, int x1, int y1) {
+        HeapSet<AStarNode> open = new HeapSet<>(1024);
+        Set<AStarNode> closed = new HashSet<>(1024);
+        AStarNode target_node = new AStarNode(x1,y1);
+        AStarNode tmp_node = new AStarNode(0,0);
+        open.set(new AStarNode(x0,y0));
+        while (open.notEmpty()) {
+            AStarNode current_node = open.pop();
+            if (current_node.equals(target_node)) {
+                return new NodeChain(current_node).retracePath(false);
+            } closed.add(current_node);
+            for (int[] offset : Tile.adjacent8) {
+                int adjacent_x = current_node.x + offset[0];
+                int adjacent_y = current_node.y + offset[1];
+                if (grid.contains(adjacent_x,adjacent_y) && !grid.isObstacle(adjacent_x,adjacent_y)) {
+                    if (offset[0] != 0 && offset[1] != 0) {
+                        if (grid.isObstacle(current_node.x + offset[0],current_node.y)) continue;
+                        if (grid.isObstacle(current_node.x,current_node.y + offset[1])) continue;
+                    } tmp_node.set(adjacent_x,adjacent_y);
+                    if (!closed.contains(tmp_node)) {
+                        int g_cost = current_node.getGCost() + current_node.getDistanceCost(tmp_node)
+                                + grid.movementPenalty(adjacent_x,adjacent_y);
+                        AStarNode adjacent_node = open.get(tmp_node);
+                        if (adjacent_node == null) {
+                            adjacent_node = new AStarNode(tmp_node);
+                            adjacent_node.setGCost(g_cost);
+                            adjacent_node.setHCost(adjacent_node.getDistanceCost(target_node));
+                            adjacent_node.setParent(current_node);
+                            open.set(adjacent_node);
+                        } else if (g_cost < adjacent_node.getGCost()) {
+                            adjacent_node.setGCost(g_cost);
+                            adjacent_node.setParent(current_node);
+                            open.set(adjacent_node);
+                        }
+                    }
+                }
+            }
+        } return new int[0];
+    }
+
+    /** Rooms: 4-connected regions within each chunk. Adjacent rooms across chunk borders are connected */
+    private static void build_rooms(MapSize map_size, Grid grid, int[][] layout, Network network) {
+        int length_chunks = map_size.length_chunks;
+        int[] stack = new int[256 * 2];
+        for (int cy = 0; cy < length_chunks; cy++) {
+            for (int cx = 0; cx < length_chunks; cx++) {
+                int ox = cx * 16, oy = cy * 16;
+                for (int y = oy; y < oy + 16; y++)
+                    for (int x = ox; x < ox + 16; x++)
+                        layout[y][x] = grid.isObstacle(x,y) ? Tile.room_obstacle() : Integer.MAX_VALUE;
+                int local_id = 0;
+                for (int y = oy; y < oy + 16; y++) {
+                    for (int x = ox; x < ox + 16; x++) {
+                        if (layout[y][x] != Integer.MAX_VALUE) continue;
+                        int room = Tile.room_create(local_id++,cx,cy,0);
+                        int size = 0;
+                        layout[y][x] = room;
+                        stack[size++] = x; stack[size++] = y;
+                        while (size > 0) {
+                            int ty = stack[--size], tx = stack[--size];
+                            for (int i = 0; i < 4; i++) {
+                                int nx = tx + (i == 0 ? 1 : i == 1 ? -1 : 0);
+                                int ny = ty + (i == 2 ? 1 : i == 3 ? -1 : 0);
+                                if (nx < ox || ny < oy || nx >= ox + 16 || ny >= oy + 16) continue;
+                                if (layout[ny][nx] == Integer.MAX_VALUE) {
+                                    layout[ny][nx] = room;
+                                    stack[size++] = nx; stack[size++] = ny;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        Set<Long> connections = new HashSet<>();
+        for (int y = 0; y < grid.rows(); y++) {
+            for (int x = 0; x < grid.cols(); x++) {
+                int room = layout[y][x];
+                if (Tile.room_is_obstacle(room)) continue;
+                if ((x & 15) == 15 && x + 1 < grid.cols() && Tile.room_not_obstacle(layout[y][x + 1]))
+                    connections.add(Tile.room_connection_key(room,layout[y][x + 1]));
+                if ((y & 15) == 15 && y + 1 < grid.rows() && Tile.room_not_obstacle(layout[y + 1][x]))
+                    connections.add(Tile.room_connection_key(room,layout[y + 1][x]));
+            }
+        } network.connect(connections);
+    }
+
+    private static final class Grid implements AStarGrid {
+        private final int size;
+        private final boolean[] obstacles;
+        private final byte[] penalty;
+        Grid(MapSize map_size, int seed) {
+            this.size = map_size.length_tiles;
+            this.obstacles = new boolean[size * size];
+            this.penalty = new byte[size * size];
+            FastNoiseLite noise = new FastNoiseLite(seed);
+            noise.SetFrequency(0.02f);
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    float n = noise.GetNoise(x,y);
+                    obstacles[y * size + x] = n > 0.45f;
+                    penalty[y * size + x] = (byte) (n > 0.2f ? 8 : 0);
+                }
+            }
+        }
+        public int rows() { return size; }
+        public int cols() { return size; }
+        public int movementPenalty(int x, int y) { return penalty[y * size + x]; }
+        public boolean isObstacle(int x, int y) { return obstacles[y * size + x]; }
+        public boolean contains(int x, int y) { return x >= 0 && x < size && y >= 0 && y < size; }
+    }
+}
@@ -0,0 +1,113 @@
+package io.github.heathensoft.jlib.test.benchmark;
+
+import io.github.heathensoft.jlib.common.noise.FastNoiseLite;
+import io.github.heathensoft.jlib.common.utils.Area;
+import io.github.heathensoft.jlib.tiles.physics.BlockType;
+import io.github.heathensoft.jlib.tiles.structure.Rooms;
+import io.github.heathensoft.jlib.tiles.structure.TMap;
+import io.github.heathensoft.jlib.tiles.terrain.TerrainType;
+import org.tinylog.Logger;
+
+import java.util.Random;
+
+/**
+ * Rooms on a TMap.Size.HUGE (1024 x 1024) map: walls placed and removed at random.
+ * Incremental updates (Rooms.place / Rooms.remove) vs. rebuilding the rooms from scratch.
+ * After the updates, the rooms are checked against a rebuild (same tiles connected).
+ *
+ * Obstacles are thresholded noise. Walls are horizontal or vertical, 1 to 8 tiles long.
+ *
+ * @author Frederik Dahl
+ * 18/10/2026
+ */
+
+
+public class RoomsBenchmark {
+
+    private static final int UPDATES = 10_000;
+
+    public static void main(String[] args) {
+        Grid grid = new Grid(TMap.Size.HUGE,1337);
+        Logger.info("{} ({} x {})", grid.dimension().descriptor(), grid.cols(), grid.rows());
+        Rooms rooms = new Rooms(grid);
+        Area[] walls = new Area[UPDATES];
+        boolean[] place = new boolean[UPDATES];
+        Random random = new Random(42);
+        for (int i = 0; i < UPDATES; i++) {
+            int x = random.nextInt(grid.cols());
+            int y = random.nextInt(grid.rows());
+            int length = 1 + random.nextInt(8);
+            walls[i] = random.nextBoolean() ? new Area(x,y,x + length - 1,y) : new Area(x,y,x,y + length - 1);
+            place[i] = random.nextBoolean();
+        }
+        Benchmark.run("Rooms rebuild", 1, 3, () -> Benchmark.sink = new Rooms(grid));
+        Benchmark.run("Rooms place / remove (" + UPDATES + " walls)", 1, 5, () -> {
+            for (int i = 0; i < UPDATES; i++) {
+                if (place[i]) rooms.place(walls[i]);
+                else rooms.remove(walls[i]);
+            }
+        });
+        // the map is updated after timing (rooms do not read the map after construction)
+        for (int i = 0; i < UPDATES; i++) {
+            if (place[i]) grid.setObstacle(walls[i]);
+            else grid.removeObstacle(walls[i]);
+        } Logger.info("consistent with rebuild: {}", equivalent(rooms,new Rooms(grid),grid));
+    }
+
+    /** @return true if the same tiles are obstacles and the same tiles are connected in both */
+    private static boolean equivalent(Rooms a, Rooms b, Grid grid) {
+        int[] a_to_b = new int[grid.dimension().tileCount() + 1];
+        int[] b_to_a = new int[grid.dimension().tileCount() + 1];
+        for (int y = 0; y < grid.rows(); y++) {
+            for (int x = 0; x < grid.cols(); x++) {
+                int room_a = a.getID(x,y);
+                int room_b = b.getID(x,y);
+                if (room_a >= a_to_b.length || room_b >= b_to_a.length) return false;
+                if (a_to_b[room_a] == 0 && b_to_a[room_b] == 0) {
+                    a_to_b[room_a] = room_b + 1;
+                    b_to_a[room_b] = room_a + 1;
+                } else if (a_to_b[room_a] != room_b + 1 || b_to_a[room_b] != room_a + 1) return false;
+                if ((room_a == Rooms.OBSTACLE) != (room_b == Rooms.OBSTACLE)) return false;
+                if (room_a != Rooms.OBSTACLE && a.size(room_a) != b.size(room_b)) return false;
+            }
+        } return true;
+    }
+
+    private static final class Grid extends TMap {
+        private final boolean[] obstacles;
+        Grid(Size size, int seed) {
+            super(size);
+            int length = size.size();
+            this.obstacles = new boolean[length * length];
+            FastNoiseLite noise = new FastNoiseLite(seed);
+            noise.SetFrequency(0.02f);
+            for (int y = 0; y < length; y++) {
+                for (int x = 0; x < length; x++) {
+                    obstacles[y * length + x] = noise.GetNoise(x,y) > 0.45f;
+                }
+            }
+        }
+        public int get(int x, int y) { return array.get(x,y); }
+        protected void set(int x, int y, int value) { array.set(value,x,y); }
+        public void setObstacle(int x, int y) { obstacles[y * cols() + x] = true; }
+        public void setObstacle(Area area) { fill(area,true); }
+        public void removeObstacle(int x, int y) { obstacles[y * cols() + x] = false; }
+        public void removeObstacle(Area area) { fill(area,false); }
+        public BlockType block(int x, int y) { return null; }
+        public void setBlock(BlockType type, int x, int y) { }
+        public void setBlock(BlockType type, Area area) { }
+        public TerrainType terrain(int x, int y) { return null; }
+        public void setTerrain(TerrainType type, int x, int y) { }
+        public void setTerrain(TerrainType type, Area area) { }
+        public int roomID(int x, int y) { return 0; }
+        public int movementPenalty(int x, int y) { return 0; }
+        public boolean isObstacle(int x, int y) { return obstacles[y * cols() + x]; }
+        private void fill(Area area, boolean obstacle) {
+            for (int y = Math.max(0,area.minY()); y <= Math.min(rows() - 1,area.maxY()); y++) {
+                for (int x = Math.max(0,area.minX()); x <= Math.min(cols() - 1,area.maxX()); x++) {
+                    obstacles[y * cols() + x] = obstacle;
+                }
+            }
+        }
+    }
+}
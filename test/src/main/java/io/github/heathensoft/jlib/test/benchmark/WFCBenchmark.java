@@ -0,0 +1,65 @@
+package io.github.heathensoft.jlib.test.benchmark;
+
+import io.github.heathensoft.jlib.ai.wfc.ChunkedWFC;
+import io.github.heathensoft.jlib.ai.wfc.FlatWFC;
+import io.github.heathensoft.jlib.ai.wfc.WFC;
+import org.tinylog.Logger;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * WFC (Cell objects, HeapSet, bitset unions) vs FlatWFC (bitset wave, AC-4 support counts, int heap).
+ * Same training input as the landmass generation in WorldGen. Each engine is constructed once,
+ * the measured operation is generate(). Also logs the bytes allocated by one generate().
+ * FlatWFC is measured restarting on contradictions and backtracking (undo to the last choice point).
+ * Last, a 256 x 256 map in one FlatWFC vs 8 x 8 chunks of ChunkedWFC on the common pool.
+ *
+ * @author Frederik Dahl
+ * 18/10/2026
+ */
+
+
+public class WFCBenchmark {
+
+    private static final int[][] TRAINING_DATA = new int[][] {
+            {0,0,0,0,1,1,0,0,0}, {0,1,1,0,1,1,1,0,0}, {0,1,1,1,1,1,0,0,0},
+            {0,1,1,1,1,1,1,0,0}, {0,0,1,1,1,1,1,1,1}, {0,1,1,1,1,1,1,1,1},
+            {0,1,1,1,1,1,1,1,0}, {0,0,1,0,1,1,1,1,0}, {1,1,1,0,1,0,0,0,0}};
+
+    private static final int FAILURE_LIMIT = 1000;
+    private static final int BACKTRACK_LIMIT = 10_000;
+
+    public static void main(String[] args) {
+        WFC wfc = new WFC(TRAINING_DATA,1337,true);
+        FlatWFC flat = new FlatWFC(TRAINING_DATA,1337,true);
+        Logger.info("{} patterns", flat.pattern_count());
+        for (int size : new int[] {17, 33, 65, 129}) {
+            int[][] output = new int[size][size];
+            int iterations = Math.max(3, 8192 / (size * size) * 10);
+            Logger.info("{} x {}", size, size);
+            Logger.info("WFC allocated: ~{} KB per generate", allocated(() -> wfc.generate(output,FAILURE_LIMIT,false)) / 1024);
+            Logger.info("FlatWFC allocated: ~{} KB per generate", allocated(() -> flat.generate(output,FAILURE_LIMIT,false)) / 1024);
+            Benchmark.run("WFC", 3, iterations, () -> Benchmark.sink = wfc.generate(output,FAILURE_LIMIT,false));
+            Benchmark.run("FlatWFC", 3, iterations, () -> Benchmark.sink = flat.generate(output,FAILURE_LIMIT,false));
+            Logger.info("FlatWFC restarts: {}", flat.contradictions());
+            Benchmark.run("FlatWFC backtracking", 3, iterations, () -> Benchmark.sink = flat.generate(output,FAILURE_LIMIT,BACKTRACK_LIMIT,false));
+            Logger.info("FlatWFC backtracking restarts: {}, backtracks: {}", flat.contradictions(), flat.backtracks());
+        }
+        int[][] map = new int[256][256];
+        ChunkedWFC chunked = new ChunkedWFC(TRAINING_DATA,1337,true,32);
+        Logger.info("256 x 256, {} workers", ForkJoinPool.commonPool().getParallelism());
+        Benchmark.run("FlatWFC", 1, 3, () -> Benchmark.sink = flat.generate(map,FAILURE_LIMIT,BACKTRACK_LIMIT,false));
+        Benchmark.run("ChunkedWFC", 1, 3, () -> Benchmark.sink = chunked.generate(8,8,FAILURE_LIMIT,BACKTRACK_LIMIT,
+                (x, y, chunk) -> { for (int r = 0; r < 32; r++) System.arraycopy(chunk[r],0,map[y * 32 + r],x * 32,32); }));
+    }
+
+    /** bytes allocated by the thread during the second run (the first may allocate buffers) */
+    private static long allocated(Runnable operation) {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        operation.run();
+        long before = bean.getCurrentThreadAllocatedBytes();
+        operation.run();
+        return bean.getCurrentThreadAllocatedBytes() - before;
+    }
+}
@@ -0,0 +1,257 @@
+package io.github.heathensoft.jlib.test.gfx;
+
+import io.github.heathensoft.jlib.lwjgl.gfx.Texture;
+import io.github.heathensoft.jlib.lwjgl.gfx.TextureRegion;
+import io.github.heathensoft.jlib.ui.gfx.CommandBufferGUI;
+import io.github.heathensoft.jlib.ui.gfx.FontsGUI;
+import io.github.heathensoft.jlib.ui.gfx.RendererGUI;
+import io.github.heathensoft.jlib.ui.text.Paragraph;
+import io.github.heathensoft.jlib.ui.text.Text;
+import io.github.heathensoft.jlib.ui.text.TextAlignment;
+import org.joml.primitives.Rectanglef;
+import org.tinylog.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import static io.github.heathensoft.jlib.test.gfx.Harness.check;
+
+/**
+ * Checks CommandBufferGUI recording on worker threads against recording on one thread, without a GL context.
+ * Random windows of elements, textures, text, skipped ids and nested scissors are drawn two ways:
+ * all windows in order into one buffer (the draw calls the render thread makes today), and each window
+ * into its own buffer on a ForkJoinPool, submitted in window order. Both are submitted to a target that
+ * logs every quad, glyph and scissor. The logs must be equal, and every quad must keep its textures.
+ *
+ * Replay: the window buffers are also submitted to one buffer (asTarget), replaying every quad through
+ * SpriteBatchGUI.push(float[],..) and the glyphs through TextBatchGUI.push(float[],..), as the renderer does.
+ * Its log must equal the log of the direct draw calls: vertices, picking entries, and the textures
+ * the reassigned slots resolve to in their flushed batch (a wrong slot gives another texture or none).
+ * Textures are placeholders (no GL objects). Font metrics are the default fonts'.
+ *
+ * @author Frederik Dahl
+ * 18/10/2026
+ */
+
+
+public class CommandBufferHarness {
+
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 720;
+    private static final String WORDS = "the quick brown fox jumps over a lazy dog while 42 windows record draw commands in parallel";
+
+    public static void main(String[] args) throws Exception {
+        FontsGUI fonts = Harness.fonts();
+        Texture[] textures = Harness.textures(40);
+        CommandBufferGUI sequential = new CommandBufferGUI(fonts);
+        CommandBufferGUI replayed = new CommandBufferGUI(fonts);
+        List<CommandBufferGUI> buffers = new ArrayList<>();
+        for (int frame = 0; frame < 20; frame++) {
+            Random random = new Random(frame);
+            List<Scene> windows = new ArrayList<>();
+            int num_windows = 1 + random.nextInt(24);
+            for (int w = 0; w < num_windows; w++) {
+                windows.add(new Scene(new Random(random.nextLong()),textures,100 + random.nextInt(400)));
+            } Log expected = new Log();
+            sequential.begin(WIDTH,HEIGHT);
+            for (Scene window : windows) {
+                window.accept(sequential);
+                expected.drawn.addAll(window.drawn);
+            } sequential.submit(expected);
+            Log merged = new Log();
+            Harness.record(buffers,fonts,windows,WIDTH,HEIGHT,true);
+            replayed.begin(WIDTH,HEIGHT);
+            for (int w = 0; w < num_windows; w++) {
+                buffers.get(w).submit(merged);
+                buffers.get(w).submit(replayed.asTarget());
+            } Log replay = new Log();
+            replayed.submit(replay);
+            check(expected.events.size() > 0,"frame " + frame + ": nothing drawn");
+            check(expected.events.equals(merged.events),"frame " + frame + ": " + firstDifference(expected.events,merged.events));
+            check(expected.textures.equals(expected.drawn),"frame " + frame + ": quad textures do not match the draw calls");
+            check(expected.events.equals(replay.events),"frame " + frame + ": replayed " + firstDifference(expected.events,replay.events));
+            check(replay.textures.equals(expected.drawn),"frame " + frame + ": replayed quad textures do not match the draw calls");
+            check(merged.scissor_depth == 0 && expected.scissor_depth == 0 && replay.scissor_depth == 0,"frame " + frame + ": scissors left on the stack");
+            Logger.info("frame {}: {} windows, {} events equal, {} quads replayed", frame, num_windows, expected.events.size(), replayed.spriteCount());
+        } timing(fonts,textures,buffers,sequential);
+        sequential.dispose();
+        replayed.dispose();
+        for (CommandBufferGUI buffer : buffers) buffer.dispose();
+        Harness.finish("CommandBufferGUI");
+    }
+
+    private static void timing(FontsGUI fonts, Texture[] textures, List<CommandBufferGUI> buffers, CommandBufferGUI sequential) {
+        Random random = new Random(7);
+        List<Scene> windows = new ArrayList<>();
+        for (int w = 0; w < 16; w++) windows.add(new Scene(random,textures,2000));
+        Copy copy = new Copy();
+        long best_sequential = Long.MAX_VALUE, best_parallel = Long.MAX_VALUE, best_submit = Long.MAX_VALUE;
+        for (int i = 0; i < 30; i++) {
+            long t0 = System.nanoTime();
+            sequential.begin(WIDTH,HEIGHT);
+            for (Scene window : windows) window.accept(sequential);
+            long t1 = System.nanoTime();
+            Harness.record(buffers,fonts,windows,WIDTH,HEIGHT,true);
+            long t2 = System.nanoTime();
+            copy.floats = 0;
+            for (int w = 0; w < windows.size(); w++) buffers.get(w).submit(copy);
+            long t3 = System.nanoTime();
+            best_sequential = Math.min(best_sequential,t1 - t0);
+            best_parallel = Math.min(best_parallel,t2 - t1);
+            best_submit = Math.min(best_submit,t3 - t2);
+        } Logger.info("16 windows, {} quads, {} glyphs: one thread {} us, {} workers {} us, submit (copied) {} us",
+                sequential.spriteCount(), sequential.glyphCount(), best_sequential / 1000,
+                ForkJoinPool.commonPool().getParallelism(), best_parallel / 1000, best_submit / 1000);
+    }
+
+    private static String firstDifference(List<String> a, List<String> b) {
+        for (int i = 0; i < Math.min(a.size(),b.size()); i++) {
+            if (!a.get(i).equals(b.get(i))) return "event " + i + ": " + a.get(i) + " / " + b.get(i);
+        } return "event count " + a.size() + " / " + b.size();
+    }
+
+    /** Copies the vertices like the renderer's batches, without GL */
+    private static final class Copy implements CommandBufferGUI.Target {
+        final float[] batch = new float[2048 * 24];
+        int floats;
+        public void sprite(float[] vertices, int offset, Texture diffuse, Texture normals, int id, boolean ellipse, float minX, float minY, float maxX, float maxY) {
+            System.arraycopy(vertices,offset,batch,floats % (batch.length - 24),24);
+            floats += 24;
+        }
+        public void glyphs(float[] vertices, int offset, int count) {
+            for (int n = Math.min(count,2048); count > 0; count -= n, offset += n * 4, n = Math.min(count,2048)) {
+                System.arraycopy(vertices,offset,batch,0,n * 4);
+                floats += n * 4;
+            }
+        }
+        public boolean pushScissor(float x1, float y1, float x2, float y2) { return true; }
+        public void popScissor() { }
+    }
+
+    /** Every submitted quad, glyph span and scissor. Quads without their texture slot bits, textures by identity */
+    private static final class Log implements CommandBufferGUI.Target {
+        final List<String> events = new ArrayList<>();
+        final List<Texture> textures = new ArrayList<>();
+        final List<Texture> drawn = new ArrayList<>();
+        final int[] scissors = new int[64 * 4];
+        int scissor_depth;
+        public void sprite(float[] vertices, int offset, Texture diffuse, Texture normals, int id, boolean ellipse, float minX, float minY, float maxX, float maxY) {
+            StringBuilder event = new StringBuilder("sprite ");
+            for (int i = offset; i < offset + 24; i++) {
+                int bits = Float.floatToRawIntBits(vertices[i]);
+                if ((i - offset) % 6 == 5) bits &= ~0xFF;
+                event.append(Integer.toHexString(bits)).append(' ');
+            } event.append(System.identityHashCode(diffuse)).append(' ').append(System.identityHashCode(normals));
+            event.append(" id ").append(id).append(ellipse ? " ellipse " : " ").append(minX).append(' ').append(minY);
+            event.append(' ').append(maxX).append(' ').append(maxY);
+            events.add(event.toString());
+            textures.add(diffuse);
+            textures.add(normals);
+        }
+        public void glyphs(float[] vertices, int offset, int count) {
+            for (int g = 0; g < count; g++) { // spans are joined differently, glyphs are compared one by one
+                int i = offset + g * 4;
+                events.add("glyph " + Integer.toHexString(Float.floatToRawIntBits(vertices[i])) + " " + Integer.toHexString(Float.floatToRawIntBits(vertices[i + 1]))
+                + " " + Integer.toHexString(Float.floatToRawIntBits(vertices[i + 2])) + " " + Integer.toHexString(Float.floatToRawIntBits(vertices[i + 3])));
+            }
+        }
+        public boolean pushScissor(float x1, float y1, float x2, float y2) { // as the renderer's scissor stack
+            int minX = (int) Math.floor(x1), minY = (int) Math.floor(y1);
+            int maxX = (int) Math.ceil(x2), maxY = (int) Math.ceil(y2);
+            int s = (scissor_depth - 1) * 4;
+            minX = Math.max(minX,scissor_depth == 0 ? 0 : scissors[s]);
+            minY = Math.max(minY,scissor_depth == 0 ? 0 : scissors[s + 1]);
+            maxX = Math.min(maxX,scissor_depth == 0 ? WIDTH : scissors[s + 2]);
+            maxY = Math.min(maxY,scissor_depth == 0 ? HEIGHT : scissors[s + 3]);
+            if (minX < maxX && minY < maxY) {
+                s = scissor_depth++ * 4;
+                scissors[s] = minX; scissors[s + 1] = minY;
+                scissors[s + 2] = maxX; scissors[s + 3] = maxY;
+                events.add("scissor " + minX + " " + minY + " " + maxX + " " + maxY);
+                return true;
+            } events.add("scissor rejected");
+            return false;
+        }
+        public void popScissor() {
+            scissor_depth--;
+            events.add("pop scissor");
+        }
+    }
+
+    /** A window's draw calls. Drawn quads are listed with their textures (null if none) */
+    private static final class Scene implements Consumer<CommandBufferGUI> {
+        final List<Consumer<CommandBufferGUI>> commands = new ArrayList<>();
+        final List<Texture> drawn = new ArrayList<>();
+        final List<Texture> drawn_last = new ArrayList<>();
+        /** Rotated quads are copied, the batch translates them in place */
+        Scene(Random random, Texture[] textures, int num_commands) {
+            int depth = 0;
+            for (int c = 0; c < num_commands; c++) {
+                Rectanglef quad = quad(random);
+                int abgr = random.nextInt();
+                int id = random.nextInt(6) == 0 ? RendererGUI.SKIP_ID : random.nextInt(3) == 0 ? 0 : 1 + random.nextInt(60000);
+                float glow = random.nextFloat();
+                boolean invisible_id = random.nextBoolean();
+                int font = random.nextInt(Harness.FONTS.length);
+                float size = 8 + random.nextFloat() * 40;
+                Texture diffuse = random.nextInt(4) == 0 ? null : textures[random.nextInt(textures.length)];
+                Texture normals = random.nextInt(3) == 0 ? null : textures[random.nextInt(textures.length)];
+                TextureRegion region = new TextureRegion(random.nextInt(64),random.nextInt(64),1 + random.nextInt(64),1 + random.nextInt(64),128,128);
+                float rotation = random.nextInt(3) == 0 ? (float) (Math.PI / 2 * random.nextInt(4)) : random.nextFloat() * 6.28f;
+                int thickness = 1 + random.nextInt(4);
+                int padding = random.nextInt(3);
+                String string = words(random);
+                TextAlignment alignment = TextAlignment.values()[random.nextInt(TextAlignment.values().length)];
+                switch (random.nextInt(12)) {
+                    case 0 -> commands.add(b -> { b.drawElement(quad,abgr,id,glow,invisible_id); none(); });
+                    case 1 -> commands.add(b -> { b.drawRound(quad,abgr,id,glow,invisible_id); none(); });
+                    case 2 -> commands.add(b -> { b.drawRotated(new Rectanglef(quad),rotation,abgr,id,glow,invisible_id); none(); });
+                    case 3 -> commands.add(b -> { b.drawElement(diffuse,normals,region,quad,abgr,id,glow,invisible_id); textured(diffuse,normals); });
+                    case 4 -> commands.add(b -> { b.drawRotated(diffuse,normals,region,new Rectanglef(quad),rotation,abgr,id,glow,invisible_id); textured(diffuse,normals); });
+                    case 5 -> commands.add(b -> { b.drawBorders(quad,thickness,abgr,id,glow,invisible_id); for (int i = 0; i < 4; i++) none(); });
+                    case 6 -> commands.add(b -> b.drawStringFixedSize(string,alignment,font,abgr,quad.minX,quad.maxY,quad.lengthX(),size,glow));
+                    case 7 -> commands.add(b -> b.drawStringDynamicSize(string,alignment,font,abgr,quad.minX,quad.maxY,quad.lengthX(),size,glow));
+                    case 8 -> commands.add(b -> b.drawStringDynamicVerticalCentered(string,alignment,quad,font,abgr,padding,glow));
+                    case 9 -> { Text text = new Text(string + "\n" + words(random) + "\n" + words(random));
+                        boolean wrap = random.nextBoolean();
+                        commands.add(b -> b.drawText(text,quad,0,font,2,size,glow,wrap,false)); }
+                    case 10 -> { Paragraph paragraph = new Paragraph(string);
+                        commands.add(b -> b.drawParagraphDynamicSize(paragraph,font,quad.minX,quad.maxY,quad.lengthX(),size,glow,1)); }
+                    default -> {
+                        if (depth > 0 && random.nextBoolean()) {
+                            commands.add(CommandBufferGUI::popScissor);
+                            depth--;
+                        } else if (depth < 6) {
+                            boolean[] valid = new boolean[1];
+                            commands.add(b -> valid[0] = b.pushScissor(quad));
+                            commands.add(b -> { if (!valid[0]) b.pushScissor(0,0,WIDTH,HEIGHT); }); // balanced either way
+                            depth++;
+                        }
+                    }
+                }
+            } for (; depth > 0; depth--) commands.add(CommandBufferGUI::popScissor);
+        }
+        public void accept(CommandBufferGUI buffer) {
+            drawn_last.clear();
+            for (Consumer<CommandBufferGUI> command : commands) command.accept(buffer);
+            drawn.clear();
+            drawn.addAll(drawn_last);
+        }
+        void none() { drawn_last.add(null); drawn_last.add(null); }
+        void textured(Texture diffuse, Texture normals) { drawn_last.add(diffuse); drawn_last.add(normals); }
+        static Rectanglef quad(Random random) {
+            float x = random.nextFloat() * (WIDTH + 100) - 50, y = random.nextFloat() * (HEIGHT + 100) - 50;
+            return new Rectanglef(x,y,x + 2 + random.nextFloat() * 300,y + 2 + random.nextFloat() * 200);
+        }
+        static String words(Random random) {
+            String[] words = WORDS.split(" ");
+            StringBuilder string = new StringBuilder();
+            for (int i = 0, n = 1 + random.nextInt(12); i < n; i++) {
+                string.append(words[random.nextInt(words.length)]).append(' ');
+            } return string.toString().trim();
+        }
+    }
+}
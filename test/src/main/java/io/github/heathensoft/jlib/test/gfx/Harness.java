@@ -0,0 +1,77 @@
+package io.github.heathensoft.jlib.test.gfx;
+
+import io.github.heathensoft.jlib.lwjgl.gfx.Texture;
+import io.github.heathensoft.jlib.lwjgl.utils.Repository;
+import io.github.heathensoft.jlib.ui.gfx.CommandBufferGUI;
+import io.github.heathensoft.jlib.ui.gfx.FontsGUI;
+import org.tinylog.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * Checks and GUI setup shared by the harnesses and benchmarks that run without a GL context.
+ * Failed checks are counted, and the first 10 are logged. finish() exits with 1 if any failed.
+ *
+ * @author Frederik Dahl
+ * 18/10/2026
+ */
+
+
+public final class Harness {
+
+    /** The default fonts, in font slots 0 to 3 of fonts() */
+    public static final String[] FONTS = { "BaiJamjuree64", "LiberationMono64", "Gotu64", "Play64" };
+
+    private static int failures;
+
+    private Harness() {}
+
+    public static void check(boolean condition, String message) {
+        if (!condition) {
+            if (failures++ < 10) Logger.error(message);
+        }
+    }
+
+    /** Logs the result of the checks. Exits with 1 if any failed */
+    public static void finish(String name) {
+        if (failures == 0) Logger.info("{}: all checks passed", name);
+        else { Logger.error("{}: {} checks failed", name, failures); System.exit(1); }
+    }
+
+    /** @return metrics of the default fonts (FONTS), no textures */
+    public static FontsGUI fonts() throws Exception {
+        FontsGUI fonts = FontsGUI.metricsOnly();
+        for (int i = 0; i < FONTS.length; i++) {
+            Repository repo = Repository.loadFromResources("res/jlib/ui/fonts/" + FONTS[i] + ".repo",64 * 1024);
+            fonts.uploadFontMetrics(repo.getString(FONTS[i] + ".txt"),i);
+        } return fonts;
+    }
+
+    /** @return distinct placeholder textures (no GL objects) */
+    public static Texture[] textures(int count) {
+        Texture[] textures = new Texture[count];
+        for (int i = 0; i < count; i++) textures[i] = Texture.placeholder2D(128,128);
+        return textures;
+    }
+
+    /**
+     * Records each window into its own buffer, buffer w for window w. Buffers are added or disposed to match.
+     * @param parallel record on the common ForkJoinPool (as the renderer records windows)
+     */
+    public static void record(List<CommandBufferGUI> buffers, FontsGUI fonts, List<? extends Consumer<CommandBufferGUI>> windows, int width, int height, boolean parallel) {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int w = 0; w < windows.size(); w++) {
+            if (buffers.size() == w) buffers.add(new CommandBufferGUI(fonts));
+            CommandBufferGUI buffer = buffers.get(w);
+            Consumer<CommandBufferGUI> window = windows.get(w);
+            buffer.begin(width,height);
+            if (parallel) tasks.add(ForkJoinPool.commonPool().submit(() -> window.accept(buffer)));
+            else window.accept(buffer);
+        } for (ForkJoinTask<?> task : tasks) task.join();
+        while (buffers.size() > windows.size()) buffers.remove(buffers.size() - 1).dispose();
+    }
+}
@@ -0,0 +1,208 @@
+package io.github.heathensoft.jlib.test.gfx;
+
+import io.github.heathensoft.jlib.common.storage.primitive.IntBag;
+import io.github.heathensoft.jlib.ui.gfx.PickingIndex;
+import org.joml.primitives.Rectanglef;
+import org.tinylog.Logger;
+
+import java.util.Random;
+
+import static io.github.heathensoft.jlib.test.gfx.Harness.check;
+
+/**
+ * Checks PickingIndex against a software id buffer, without a GL context.
+ * Random frames of quads and ellipses with nested scissors are "rasterized" like the id buffer
+ * (pixel centers, scissor in whole pixels, later quads on top) and every pixel is picked.
+ * Rectangle and lasso queries are checked against brute force.
+ *
+ * @author Frederik Dahl
+ * 18/10/2026
+ */
+
+
+public class PickingHarness {
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 360;
+
+    public static void main(String[] args) {
+        Random random = new Random(1337);
+        PickingIndex index = new PickingIndex(WIDTH,HEIGHT);
+        int[] id_buffer = new int[WIDTH * HEIGHT];
+        Frame frame = new Frame();
+        for (int f = 0; f < 50; f++) {
+            frame.generate(random,200 + random.nextInt(800));
+            frame.record(index);
+            frame.rasterize(id_buffer);
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    int id = index.pickPixel(x,y);
+                    check(id == id_buffer[y * WIDTH + x],"frame " + f + ", pixel (" + x + ", " + y + "): " + id + ", id buffer " + id_buffer[y * WIDTH + x]);
+                }
+            } check(index.pickPixel(-1,0) == 0 && index.pickPixel(WIDTH,0) == 0,"frame " + f + ": picked outside");
+            for (int q = 0; q < 100; q++) {
+                float x0 = random.nextFloat() * WIDTH, y0 = random.nextFloat() * HEIGHT;
+                Rectanglef area = new Rectanglef(x0,y0,x0 + random.nextFloat() * 200,y0 + random.nextFloat() * 200);
+                IntBag found = index.query(area,new IntBag()); found.sort();
+                IntBag expected = frame.bruteArea(area); expected.sort();
+                check(equal(found,expected),"frame " + f + ": rectangle query " + area);
+                float[] lasso = lasso(random);
+                found = index.query(lasso,lasso.length / 2,new IntBag()); found.sort();
+                expected = frame.bruteLasso(lasso); expected.sort();
+                check(equal(found,expected),"frame " + f + ": lasso query");
+            }
+        } Logger.info("{} frames picked per pixel, {} rectangle and lasso queries", 50, 50 * 100);
+        timing(random,index,frame);
+        Harness.finish("PickingIndex");
+    }
+
+    private static void timing(Random random, PickingIndex index, Frame frame) {
+        frame.generate(random,2000);
+        int picks = 100_000;
+        long sink = 0;
+        long t0 = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            frame.record(index);
+            sink += index.pickPixel(WIDTH / 2,HEIGHT / 2);
+        } long t1 = System.nanoTime();
+        for (int i = 0; i < picks; i++) {
+            sink += index.pickPixel(random.nextInt(WIDTH),random.nextInt(HEIGHT));
+        } long t2 = System.nanoTime();
+        Logger.info("2000 quads: record + build {} us, pick {} ns ({})",
+                String.format("%.1f",(t1 - t0) / 100 / 1000.0), (t2 - t1) / picks, sink & 1);
+    }
+
+    private static float[] lasso(Random random) {
+        int vertices = 3 + random.nextInt(10);
+        float cx = random.nextFloat() * WIDTH, cy = random.nextFloat() * HEIGHT;
+        float[] polygon = new float[vertices * 2];
+        for (int v = 0; v < vertices; v++) {
+            double angle = 2 * Math.PI * v / vertices;
+            float radius = 20 + random.nextFloat() * 150;
+            polygon[v * 2] = cx + (float) Math.cos(angle) * radius;
+            polygon[v * 2 + 1] = cy + (float) Math.sin(angle) * radius;
+        } return polygon;
+    }
+
+    private static boolean equal(IntBag a, IntBag b) {
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i) != b.get(i)) return false;
+        } return true;
+    }
+
+    /** Quads in draw order, each with the scissor (whole pixels) it was drawn in */
+    private static final class Frame {
+        float[] quads = new float[0];
+        int[] clips = new int[0];
+        int[] ids = new int[0];
+        boolean[] ellipse = new boolean[0];
+        int count;
+
+        void generate(Random random, int quads) {
+            this.quads = new float[quads * 4];
+            this.clips = new int[quads * 4];
+            this.ids = new int[quads];
+            this.ellipse = new boolean[quads];
+            this.count = quads;
+            int[] stack = new int[32]; int depth = 0;
+            int clip_minX = 0, clip_minY = 0, clip_maxX = WIDTH, clip_maxY = HEIGHT;
+            for (int i = 0; i < quads; i++) {
+                if (random.nextInt(20) == 0 && depth < 8) { // push scissor (floor / ceil, intersected)
+                    float x = random.nextFloat() * WIDTH, y = random.nextFloat() * HEIGHT;
+                    int minX = (int) Math.floor(x), minY = (int) Math.floor(y);
+                    int maxX = (int) Math.ceil(x + random.nextFloat() * 300), maxY = (int) Math.ceil(y + random.nextFloat() * 200);
+                    stack[depth * 4] = clip_minX; stack[depth * 4 + 1] = clip_minY;
+                    stack[depth * 4 + 2] = clip_maxX; stack[depth * 4 + 3] = clip_maxY;
+                    depth++;
+                    clip_minX = Math.max(clip_minX,minX); clip_minY = Math.max(clip_minY,minY);
+                    clip_maxX = Math.min(clip_maxX,maxX); clip_maxY = Math.min(clip_maxY,maxY);
+                } else if (random.nextInt(20) == 0 && depth > 0) { // pop
+                    depth--;
+                    clip_minX = stack[depth * 4]; clip_minY = stack[depth * 4 + 1];
+                    clip_maxX = stack[depth * 4 + 2]; clip_maxY = stack[depth * 4 + 3];
+                } float x = random.nextFloat() * (WIDTH + 100) - 50, y = random.nextFloat() * (HEIGHT + 100) - 50;
+                float w = 1 + random.nextFloat() * (random.nextInt(10) == 0 ? 400 : 60);
+                float h = 1 + random.nextFloat() * (random.nextInt(10) == 0 ? 300 : 40);
+                this.quads[i * 4] = x; this.quads[i * 4 + 1] = y;
+                this.quads[i * 4 + 2] = x + w; this.quads[i * 4 + 3] = y + h;
+                this.clips[i * 4] = clip_minX; this.clips[i * 4 + 1] = clip_minY;
+                this.clips[i * 4 + 2] = clip_maxX; this.clips[i * 4 + 3] = clip_maxY;
+                this.ids[i] = random.nextInt(8) == 0 ? 0 : 1 + random.nextInt(500);
+                this.ellipse[i] = random.nextInt(5) == 0;
+            }
+        }
+
+        void record(PickingIndex index) {
+            index.clear();
+            for (int i = 0; i < count; i++) {
+                index.setClip(clips[i * 4],clips[i * 4 + 1],clips[i * 4 + 2],clips[i * 4 + 3]);
+                index.add(quads[i * 4],quads[i * 4 + 1],quads[i * 4 + 2],quads[i * 4 + 3],ids[i],ellipse[i]);
+            }
+        }
+
+        void rasterize(int[] id_buffer) {
+            java.util.Arrays.fill(id_buffer,0);
+            for (int i = 0; i < count; i++) {
+                float minX = quads[i * 4], minY = quads[i * 4 + 1];
+                float maxX = quads[i * 4 + 2], maxY = quads[i * 4 + 3];
+                int x0 = Math.max(clips[i * 4],0), y0 = Math.max(clips[i * 4 + 1],0);
+                int x1 = Math.min(clips[i * 4 + 2],WIDTH), y1 = Math.min(clips[i * 4 + 3],HEIGHT);
+                for (int y = y0; y < y1; y++) {
+                    float py = y + 0.5f;
+                    if (py < minY || py >= maxY) continue;
+                    for (int x = x0; x < x1; x++) {
+                        float px = x + 0.5f;
+                        if (px < minX || px >= maxX) continue;
+                        if (ellipse[i]) {
+                            float hw = (maxX - minX) * 0.5f, hh = (maxY - minY) * 0.5f;
+                            float dx = (px - minX - hw) / hw, dy = (py - minY - hh) / hh;
+                            if (dx * dx + dy * dy > 1.0f) continue;
+                        } id_buffer[y * WIDTH + x] = ids[i];
+                    }
+                }
+            }
+        }
+
+        IntBag bruteArea(Rectanglef area) {
+            IntBag ids = new IntBag();
+            for (int i = 0; i < count; i++) {
+                float[] v = visible(i);
+                if (v != null && this.ids[i] != 0 && v[0] < area.maxX && v[2] > area.minX && v[1] < area.maxY && v[3] > area.minY) {
+                    if (!contains(ids,this.ids[i])) ids.push(this.ids[i]);
+                }
+            } return ids;
+        }
+
+        IntBag bruteLasso(float[] polygon) {
+            IntBag ids = new IntBag();
+            int vertices = polygon.length / 2;
+            for (int i = 0; i < count; i++) {
+                float[] v = visible(i);
+                if (v != null && this.ids[i] != 0) {
+                    float x = (v[0] + v[2]) * 0.5f, y = (v[1] + v[3]) * 0.5f;
+                    boolean inside = false;
+                    for (int a = 0, b = vertices - 1; a < vertices; b = a++) {
+                        float xa = polygon[a * 2], ya = polygon[a * 2 + 1];
+                        float xb = polygon[b * 2], yb = polygon[b * 2 + 1];
+                        if ((ya > y) != (yb > y) && x < (xb - xa) * (y - ya) / (yb - ya) + xa) inside = !inside;
+                    } if (inside && !contains(ids,this.ids[i])) ids.push(this.ids[i]);
+                }
+            } return ids;
+        }
+
+        float[] visible(int i) {
+            float x0 = Math.max(quads[i * 4],Math.max(clips[i * 4],0));
+            float y0 = Math.max(quads[i * 4 + 1],Math.max(clips[i * 4 + 1],0));
+            float x1 = Math.min(quads[i * 4 + 2],Math.min(clips[i * 4 + 2],WIDTH));
+            float y1 = Math.min(quads[i * 4 + 3],Math.min(clips[i * 4 + 3],HEIGHT));
+            return x0 < x1 && y0 < y1 ? new float[] {x0,y0,x1,y1} : null;
+        }
+
+        static boolean contains(IntBag bag, int value) {
+            for (int i = 0; i < bag.size(); i++) {
+                if (bag.get(i) == value) return true;
+            } return false;
+        }
+    }
+}
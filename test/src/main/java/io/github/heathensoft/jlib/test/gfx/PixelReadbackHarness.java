@@ -0,0 +1,131 @@
+package io.github.heathensoft.jlib.test.gfx;
+
+import io.github.heathensoft.jlib.lwjgl.utils.PixelReadback;
+import org.tinylog.Logger;
+
+import java.util.Random;
+
+import static io.github.heathensoft.jlib.test.gfx.Harness.check;
+
+/**
+ * Deterministic checks of PixelReadback latency and ordering, without a GL context.
+ * A mocked device completes each read a scripted number of frames after it was queued.
+ * The pixel at (x, y) in frame f has the value value(f, x, y).
+ *
+ * @author Frederik Dahl
+ * 18/10/2026
+ */
+
+
+public class PixelReadbackHarness {
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 360;
+
+    public static void main(String[] args) {
+        latency();
+        ordering(1,2);
+        ordering(2,6);
+        ordering(3,1);
+        outside();
+        Harness.finish("PixelReadback");
+    }
+
+    /** GPU at most LATENCY frames behind: the id of frame N is delivered in frame N + LATENCY exactly */
+    private static void latency() {
+        for (int lag = 0; lag <= PixelReadback.LATENCY; lag++) {
+            MockDevice device = new MockDevice(new Random(lag),lag,lag);
+            PixelReadback readback = new PixelReadback(device);
+            for (int frame = 0; frame < 1000; frame++) {
+                device.frame = frame;
+                readback.read(frame % WIDTH,frame % HEIGHT,WIDTH,HEIGHT);
+                long expected = frame - PixelReadback.LATENCY;
+                if (expected < 0) check(readback.pixelFrame() == -1 && readback.pixelID() == 0,"no id before frame " + PixelReadback.LATENCY);
+                else {
+                    check(readback.pixelFrame() == expected,"lag " + lag + ", frame " + frame + ": read in frame " + readback.pixelFrame() + ", expected " + expected);
+                    check(readback.pixelID() == value(expected,(int) expected % WIDTH,(int) expected % HEIGHT),"lag " + lag + ", frame " + frame + ": wrong id");
+                }
+            } check(readback.dropped() == 0,"lag " + lag + ": dropped reads");
+            check(device.blocked == 0,"lag " + lag + ": waited for the GPU");
+            Logger.info("latency, GPU lag {}: {} frames", lag, PixelReadback.LATENCY);
+        }
+    }
+
+    /** Random GPU lag: ids are delivered in frame order, never early, never blocking, with at most 3 reads in flight */
+    private static void ordering(int seed, int max_lag) {
+        MockDevice device = new MockDevice(new Random(seed),0,max_lag);
+        PixelReadback readback = new PixelReadback(device);
+        long previous = -1;
+        int delivered = 0;
+        for (int frame = 0; frame < 10_000; frame++) {
+            device.frame = frame;
+            readback.read(frame % WIDTH,(frame * 7) % HEIGHT,WIDTH,HEIGHT);
+            long read_frame = readback.pixelFrame();
+            check(read_frame >= previous,"frame " + frame + ": id of frame " + read_frame + " after frame " + previous);
+            check(read_frame < 0 || read_frame <= frame - PixelReadback.LATENCY,"frame " + frame + ": id of frame " + read_frame + " delivered early");
+            if (read_frame >= 0) {
+                int expected = value(read_frame,(int) read_frame % WIDTH,(int) ((read_frame * 7) % HEIGHT));
+                check(readback.pixelID() == expected,"frame " + frame + ": wrong id");
+            } if (read_frame != previous) delivered++;
+            previous = read_frame;
+        } check(device.blocked == 0,"waited for the GPU");
+        check(device.max_in_flight <= PixelReadback.LATENCY + 1,"more reads in flight than slots");
+        Logger.info("ordering, GPU lag 0 - {}: {} ids delivered in order, {} reads dropped", max_lag, delivered, readback.dropped());
+    }
+
+    /** Reads outside the framebuffer deliver 0 in order, without using the device */
+    private static void outside() {
+        MockDevice device = new MockDevice(new Random(0),0,0);
+        PixelReadback readback = new PixelReadback(device);
+        for (int frame = 0; frame < 100; frame++) {
+            device.frame = frame;
+            boolean out = frame % 3 == 0;
+            readback.read(out ? -1 : 10,out ? 10 : 20,WIDTH,HEIGHT);
+            long expected = frame - PixelReadback.LATENCY;
+            if (expected >= 0) {
+                int id = expected % 3 == 0 ? 0 : value(expected,10,20);
+                check(readback.pixelID() == id,"frame " + frame + ": wrong id outside / inside");
+            }
+        } check(device.reads == 100 - 34,"device used for reads outside the framebuffer");
+        Logger.info("outside reads: 0, device skipped");
+    }
+
+    private static int value(long frame, int x, int y) {
+        return (int) (frame * 31 + x * 7 + y * 13 + 1);
+    }
+
+    /** A read queued in frame f is ready from frame f + lag, lag in [min_lag, max_lag] */
+    private static final class MockDevice implements PixelReadback.Device {
+        final Random random;
+        final int min_lag, max_lag;
+        final long[] complete_frame = new long[PixelReadback.LATENCY + 1];
+        final int[] values = new int[PixelReadback.LATENCY + 1];
+        final boolean[] busy = new boolean[PixelReadback.LATENCY + 1];
+        long frame;
+        int reads, blocked, in_flight, max_in_flight;
+        MockDevice(Random random, int min_lag, int max_lag) {
+            this.random = random;
+            this.min_lag = min_lag;
+            this.max_lag = max_lag;
+        }
+        public void read(int slot, int x, int y) {
+            check(!busy[slot],"slot " + slot + " reused before fetch");
+            busy[slot] = true;
+            values[slot] = value(frame,x,y);
+            complete_frame[slot] = frame + min_lag + random.nextInt(max_lag - min_lag + 1);
+            max_in_flight = Math.max(max_in_flight,++in_flight);
+            reads++;
+        }
+        public boolean ready(int slot) {
+            return frame >= complete_frame[slot];
+        }
+        public int fetch(int slot) {
+            if (!ready(slot)) blocked++;
+            check(busy[slot],"fetch of an empty slot " + slot);
+            busy[slot] = false;
+            in_flight--;
+            return values[slot];
+        }
+        public void dispose() { }
+    }
+}
@@ -1,17 +1,13 @@
 package io.github.heathensoft.jlib.tiles.neo;
 
 import io.github.heathensoft.jlib.common.Disposable;
-import io.github.heathensoft.jlib.common.storage.primitive.BitSet;
-import io.github.heathensoft.jlib.common.storage.primitive.IntQueue;
-import io.github.heathensoft.jlib.common.storage.primitive.IntStack;
-import io.github.heathensoft.jlib.common.utils.U;
 import io.github.heathensoft.jlib.lwjgl.gfx.BufferObject;
 import io.github.heathensoft.jlib.lwjgl.gfx.VertexAttributes;
 import org.lwjgl.system.MemoryStack;
 
 import java.nio.IntBuffer;
-import java.util.HashSet;
-import java.util.Set;
+import java.nio.LongBuffer;
+import java.util.Arrays;
 
 import static io.github.heathensoft.jlib.tiles.neo.Tile.*;
 import static org.lwjgl.opengl.GL11.*;
@@ -31,13 +27,13 @@ import static org.lwjgl.opengl.GL30.glVertexAttribIPointer;
 
 public class Chunk implements Disposable {
 
-    private IntBuffer rooms;
+    private volatile int[] rooms; // replaced on publish, never modified
     private final VertexAttributes gfx_tiles_vao;
     private final BufferObject gfx_tiles_vbo;
 
 
     public Chunk() {
-        rooms = IntBuffer.allocate(4).flip(); // Not allocating max (256). Auto-grows if needed. (read-mode on init)
+        rooms = new int[0];
         gfx_tiles_vao = new VertexAttributes().bind();
         gfx_tiles_vbo = new BufferObject(GL_ARRAY_BUFFER,GL_DYNAMIC_DRAW).bind();
         gfx_tiles_vbo.bufferData((long) 256 * Integer.BYTES);
@@ -136,9 +132,21 @@ public class Chunk implements Disposable {
     }
 
 
-    //Shared temp-buffer, Main-Thread only. 256 is the maximum possible number of rooms that can be placed on a chunk.
-    private static final IntBuffer TMP_ROOMS = IntBuffer.allocate(256); //(Theoretically you could place 256 doors)
+    /** 4 connections per door + 16 per chunk edge (at most). Duplicates are ignored by the network */
+    static final int MAX_CONNECTIONS = 256 * 4 + 64;
 
+    private static final int UNVISITED = Integer.MAX_VALUE; // not a room id (room bits 24 - 28 are unused)
+
+    //Shared temp-buffers, Main-Thread only (update_layout). Never touch them from the layout workers (Tilemap.LayoutJob),
+    //they have their own buffers. 256 is the maximum possible number of rooms that can be placed on a chunk.
+    private static final int[] TMP_TILES = new int[256];
+    private static final int[] TMP_LAYOUT = new int[256];
+    private static final int[] TMP_ROOMS = new int[256]; //(Theoretically you could place 256 doors)
+    private static final int[] TMP_STACK = new int[256];
+    private static final IntBuffer TMP_ROOMS_OLD = IntBuffer.allocate(256);
+    private static final LongBuffer TMP_CONNECTIONS = LongBuffer.allocate(MAX_CONNECTIONS);
+
+    /** Main thread only. Rebuilds the layout in place, using the static TMP_ buffers (not thread safe) */
     protected void update_layout(Tilemap tilemap, int chunk_x, int chunk_y) {
         // When to update:
         // Obstacles are placed or removed
@@ -148,192 +156,178 @@ public class Chunk implements Disposable {
         // Has to be updated, even if not in view
 
         // On Update:
-        // 1. Synchronized network disconnect
-        // 2. Rebuild layout
-        // 3. Synchronized network connect
-
-        Network network = tilemap.network();
-        int[][] tile_data = tilemap.tiles();
-        int[][] room_layout = tilemap.layout();
-
-        {
-            // While rebuilding the chunk's room layout, the old layout is available to the pathfinding.
-            if (getRooms(TMP_ROOMS.clear()) > 0) { // synchronized on this
-                network.disconnect(TMP_ROOMS.flip()); // synchronized on Network
-                TMP_ROOMS.clear();
-            }
-        }
-        // rebuild layout
+        // 1. Rebuild layout (from a snapshot of the chunk's tiles)
+        // 2. Publish layout and rooms
+        // 3. Network update (disconnect old rooms, connect new rooms) in one batch
+        // Tilemap.refresh runs step 1 on the worker pool instead (coalesced per chunk).
+
+        snapshot_tiles(tilemap.tiles(),chunk_x,chunk_y,TMP_TILES);
+        int num_rooms = build_layout(TMP_TILES,chunk_x,chunk_y,TMP_LAYOUT,TMP_ROOMS,TMP_STACK);
+        getRooms(TMP_ROOMS_OLD.clear());
+        publish_layout(tilemap.layout(),chunk_x,chunk_y,TMP_LAYOUT,TMP_ROOMS,num_rooms);
+        collect_connections(tilemap.layout(),chunk_x,chunk_y,TMP_CONNECTIONS.clear());
+        tilemap.network().update(TMP_ROOMS_OLD.flip(),TMP_CONNECTIONS.flip()); // single write, reads never block
+    }
 
+    /**
+     * Copy the tiles of a chunk
+     * @param tiles tile data [y][x]
+     * @param dst the chunk's tiles [local_y * 16 + local_x]
+     */
+    static void snapshot_tiles(int[][] tiles, int chunk_x, int chunk_y, int[] dst) {
         int chunk_origin_x = chunk_x * 16;
         int chunk_origin_y = chunk_y * 16;
-        int[][] adj = new int[][] {{-1, 0},{ 0,-1},{ 0, 1},{ 1, 0}};
-        IntStack doors = new IntStack(16 * 3);
-        {
-            IntQueue search_queue = new IntQueue(16);
-            BitSet visited = new BitSet(256);
-            int local_id = 0;
-            for (int r = 0; r < 16; r++) {
-                for (int c = 0; c < 16; c++) {
-                    int v_idx = c + r * 16;
-                    if (!visited.get(v_idx)) {
-                        visited.set(v_idx);
-                        int tile_y = chunk_origin_y + r;
-                        int tile_x = chunk_origin_x + c;
-                        int current_tile = tile_data[tile_y][tile_x];
-                        if (tile_is_obstacle(current_tile)) { // obstacle
-                            room_layout[tile_y][tile_x] = room_obstacle();
-                        }  else if (tile_clearance_level(current_tile) > 0) { // door
-                            int door = room_create(local_id++,chunk_x,chunk_y,
-                            tile_clearance_level(current_tile));
-                            room_layout[tile_y][tile_x] = door;
-                            doors.push(tile_y);
-                            doors.push(tile_x);
-                            doors.push(door);
-                            TMP_ROOMS.put(door);
-                        } else { // regular room
-                            int room = room_create( local_id++,chunk_x,chunk_y,0);
-                            TMP_ROOMS.put(room);
-                            search_queue.enqueue(c);
-                            search_queue.enqueue(r);
-                            while (!search_queue.isEmpty()) {
-                                int local_x = search_queue.dequeue();
-                                int local_y = search_queue.dequeue();
-                                room_layout[local_y + chunk_origin_y][local_x + chunk_origin_x] = room;
-                                for (int i = 0; i < 4; i++) {
-                                    int adj_local_x = local_x + adj[i][0];
-                                    int adj_local_y = local_y + adj[i][1];
-                                    if (adj_local_x >= 0 && adj_local_x < 16
-                                            && adj_local_y >= 0 && adj_local_y < 16) {
-                                        v_idx = adj_local_x + adj_local_y * 16;
-                                        if (!visited.get(v_idx)) {
-                                            visited.set(v_idx);
-                                            int adj_map_x = chunk_origin_x + adj_local_x;
-                                            int adj_map_y = chunk_origin_y + adj_local_y;
-                                            int tile = tile_data[adj_map_y][adj_map_x];
-                                            if (Tile.tile_is_obstacle(tile)) { // obstacle
-                                                room_layout[adj_map_y][adj_map_x] = room_obstacle();
-                                            }  else if (tile_clearance_level(tile) > 0) { // door
-                                                int door = room_create(local_id++,chunk_x,chunk_y, tile_clearance_level(tile));
-                                                room_layout[adj_map_y][adj_map_x] = door;
-                                                doors.push(adj_map_y);
-                                                doors.push(adj_map_x);
-                                                doors.push(door);
-                                                TMP_ROOMS.put(door);
-                                            } else { // regular room
-                                                search_queue.enqueue(adj_local_x);
-                                                search_queue.enqueue(adj_local_y);
-                                            }
-                                        }
-                                    }
-                                }
+        for (int r = 0; r < 16; r++) {
+            System.arraycopy(tiles[chunk_origin_y + r],chunk_origin_x,dst,r * 16,16);
+        }
+    }
+
+    /**
+     * Flood fill the room layout of a chunk from a snapshot of its tiles.
+     * Only reads and writes the arrays passed in. Thread-safe.
+     * Obstacles are room_obstacle(). Doors are single tile rooms (clearance level > 0).
+     * @param tiles the chunk's tiles [local_y * 16 + local_x]
+     * @param layout receives the room of every tile [local_y * 16 + local_x]
+     * @param rooms receives the rooms of the chunk
+     * @param stack scratch (256)
+     * @return number of rooms
+     */
+    static int build_layout(int[] tiles, int chunk_x, int chunk_y, int[] layout, int[] rooms, int[] stack) {
+        Arrays.fill(layout,0,256,UNVISITED);
+        int local_id = 0;
+        for (int i = 0; i < 256; i++) {
+            if (layout[i] != UNVISITED) continue;
+            int tile = tiles[i];
+            if (tile_is_obstacle(tile)) { // obstacle
+                layout[i] = room_obstacle();
+            } else if (tile_clearance_level(tile) > 0) { // door
+                int door = room_create(local_id,chunk_x,chunk_y,tile_clearance_level(tile));
+                rooms[local_id++] = door;
+                layout[i] = door;
+            } else { // regular room
+                int room = room_create(local_id,chunk_x,chunk_y,0);
+                rooms[local_id++] = room;
+                layout[i] = room;
+                int size = 0;
+                stack[size++] = i;
+                while (size > 0) {
+                    int idx = stack[--size];
+                    int local_x = idx & 15;
+                    int local_y = idx >> 4;
+                    for (int j = 0; j < 4; j++) {
+                        int adj_local_x = local_x + (j == 0 ? -1 : j == 3 ? 1 : 0);
+                        int adj_local_y = local_y + (j == 1 ? -1 : j == 2 ? 1 : 0);
+                        if (adj_local_x >= 0 && adj_local_x < 16 && adj_local_y >= 0 && adj_local_y < 16) {
+                            int adj = adj_local_x + adj_local_y * 16;
+                            int adj_tile = tiles[adj];
+                            if (layout[adj] == UNVISITED && !tile_is_obstacle(adj_tile) && tile_clearance_level(adj_tile) == 0) {
+                                layout[adj] = room;
+                                stack[size++] = adj;
                             }
                         }
                     }
                 }
             }
-        }
-
-        if (TMP_ROOMS.flip().hasRemaining()) { // If the chunk has rooms in it (not filled with obstacles)
-
-            // connect doors and edges
-
-            Set<Long> connections = new HashSet<>(32);
+        } return local_id;
+    }
 
+    /**
+     * Main thread. Write a built layout to the room layout, and replace the chunk's rooms.
+     * @param room_layout the tilemap's room layout [y][x]
+     * @param layout the chunk's layout [local_y * 16 + local_x]
+     * @param rooms the chunk's rooms
+     * @param num_rooms number of rooms
+     */
+    void publish_layout(int[][] room_layout, int chunk_x, int chunk_y, int[] layout, int[] rooms, int num_rooms) {
+        int chunk_origin_x = chunk_x * 16;
+        int chunk_origin_y = chunk_y * 16;
+        for (int r = 0; r < 16; r++) {
+            System.arraycopy(layout,r * 16,room_layout[chunk_origin_y + r],chunk_origin_x,16);
+        } this.rooms = Arrays.copyOf(rooms,num_rooms);
+    }
 
-            // Connect doors to adjacent rooms
-            // (All doors are single tile rooms)
+    /**
+     * Collect the connections of a chunk's rooms: doors to adjacent rooms, and rooms across the chunk edges.
+     * Reads the room layout, so neighbouring chunks should be published first.
+     * @param room_layout the tilemap's room layout [y][x]
+     * @param dst receives up to MAX_CONNECTIONS connection keys
+     */
+    static void collect_connections(int[][] room_layout, int chunk_x, int chunk_y, LongBuffer dst) {
+        int length_tiles = room_layout.length;
+        int chunk_origin_x = chunk_x * 16;
+        int chunk_origin_y = chunk_y * 16;
+        int[][] adj = new int[][] {{-1, 0},{ 0,-1},{ 0, 1},{ 1, 0}};
 
-            while (!doors.isEmpty()) {
-                int door = doors.pop();
-                int door_x = doors.pop();
-                int door_y = doors.pop();
-                for (int i = 0; i < 4; i++) {
-                    int adj_x = door_x + adj[i][0];
-                    int adj_y = door_y + adj[i][1];
-                    if (adj_x >= 0 && adj_x < tile_data.length
-                            && adj_y >= 0 && adj_y < tile_data.length) {
-                        int adj_room = room_layout[adj_y][adj_x];
-                        if (room_not_obstacle(adj_room)) {
-                            long connection = room_connection_key(door,adj_room);
-                            connections.add(connection);
+        // Connect doors to adjacent rooms
+        // (All doors are single tile rooms)
+
+        for (int r = 0; r < 16; r++) {
+            for (int c = 0; c < 16; c++) {
+                int door_x = chunk_origin_x + c;
+                int door_y = chunk_origin_y + r;
+                int door = room_layout[door_y][door_x];
+                if (room_not_obstacle(door) && room_clearance_level(door) > 0) {
+                    for (int i = 0; i < 4; i++) {
+                        int adj_x = door_x + adj[i][0];
+                        int adj_y = door_y + adj[i][1];
+                        if (adj_x >= 0 && adj_x < length_tiles
+                                && adj_y >= 0 && adj_y < length_tiles) {
+                            int adj_room = room_layout[adj_y][adj_x];
+                            if (room_not_obstacle(adj_room) && adj_room != door) {
+                                dst.put(room_connection_key(door,adj_room));
+                            }
                         }
                     }
                 }
             }
+        }
 
-            // Trace the edges of the chunk for connections.
-            // Skip edges that lay on the edges of the tile map
-
-            if (chunk_x > 0) {
-                for (int i = 0; i < 16; i++) {
-                    int y = i + chunk_origin_y;
-                    int room_1 = room_layout[y][chunk_origin_x];
-                    int room_2 = room_layout[y][chunk_origin_x - 1];
-                    if (room_not_obstacle(room_1) && room_not_obstacle(room_2)) {
-                        long connection = room_connection_key(room_1,room_2);
-                        connections.add(connection);
-                    }
-                }
-            } if (chunk_x < ((tile_data.length) / 16) - 1) {
-                for (int i = 0; i < 16; i++) {
-                    int y = i + chunk_origin_y;
-                    int room_1 = room_layout[y][chunk_origin_x + 16];
-                    int room_2 = room_layout[y][chunk_origin_x + 15];
-                    if (room_not_obstacle(room_1) && room_not_obstacle(room_2)) {
-                        long connection = room_connection_key(room_1,room_2);
-                        connections.add(connection);
-                    }
-                }
-            } if (chunk_y > 0) {
-                for (int i = 0; i < 16; i++) {
-                    int x = i + chunk_origin_x;
-                    int room_1 = room_layout[chunk_origin_y][x];
-                    int room_2 = room_layout[chunk_origin_y - 1][x];
-                    if (room_not_obstacle(room_1) && room_not_obstacle(room_2)) {
-                        long connection = room_connection_key(room_1,room_2);
-                        connections.add(connection);
-                    }
+        // Trace the edges of the chunk for connections.
+        // Skip edges that lay on the edges of the tile map
+
+        if (chunk_x > 0) {
+            for (int i = 0; i < 16; i++) {
+                int y = i + chunk_origin_y;
+                int room_1 = room_layout[y][chunk_origin_x];
+                int room_2 = room_layout[y][chunk_origin_x - 1];
+                if (room_not_obstacle(room_1) && room_not_obstacle(room_2)) {
+                    dst.put(room_connection_key(room_1,room_2));
                 }
-            } if (chunk_y < ((tile_data.length) / 16) - 1) {
-                for (int i = 0; i < 16; i++) {
-                    int x = i + chunk_origin_x;
-                    int room_1 = room_layout[chunk_origin_y + 16][x];
-                    int room_2 = room_layout[chunk_origin_y + 15][x];
-                    if (room_not_obstacle(room_1) && room_not_obstacle(room_2)) {
-                        long connection = room_connection_key(room_1,room_2);
-                        connections.add(connection);
-                    }
+            }
+        } if (chunk_x < ((length_tiles) / 16) - 1) {
+            for (int i = 0; i < 16; i++) {
+                int y = i + chunk_origin_y;
+                int room_1 = room_layout[y][chunk_origin_x + 16];
+                int room_2 = room_layout[y][chunk_origin_x + 15];
+                if (room_not_obstacle(room_1) && room_not_obstacle(room_2)) {
+                    dst.put(room_connection_key(room_1,room_2));
                 }
             }
-
-            if (!connections.isEmpty()) network.connect(connections); // synchronized
-
-            synchronized (this) {
-                rooms.clear();
-                if (rooms.capacity() < TMP_ROOMS.remaining()) {
-                    int size = U.nextPowerOfTwo(TMP_ROOMS.remaining());
-                    rooms = IntBuffer.allocate(size);
-                } rooms.put(TMP_ROOMS);
-                rooms.flip();
+        } if (chunk_y > 0) {
+            for (int i = 0; i < 16; i++) {
+                int x = i + chunk_origin_x;
+                int room_1 = room_layout[chunk_origin_y][x];
+                int room_2 = room_layout[chunk_origin_y - 1][x];
+                if (room_not_obstacle(room_1) && room_not_obstacle(room_2)) {
+                    dst.put(room_connection_key(room_1,room_2));
+                }
             }
-
-
-        } else {
-
-            synchronized (this) {
-                rooms.clear().flip(); // sets remaining to 0, instead of capacity
+        } if (chunk_y < ((length_tiles) / 16) - 1) {
+            for (int i = 0; i < 16; i++) {
+                int x = i + chunk_origin_x;
+                int room_1 = room_layout[chunk_origin_y + 16][x];
+                int room_2 = room_layout[chunk_origin_y + 15][x];
+                if (room_not_obstacle(room_1) && room_not_obstacle(room_2)) {
+                    dst.put(room_connection_key(room_1,room_2));
+                }
             }
         }
-        TMP_ROOMS.clear();
     }
 
-    public synchronized int getRooms(IntBuffer dst) {
-        int num_rooms = rooms.remaining();
-        if (num_rooms > 0) {
-            dst.put(rooms);
-            rooms.rewind();
-        } return num_rooms;
+    public int getRooms(IntBuffer dst) {
+        int[] rooms = this.rooms; // replaced on publish, never modified
+        dst.put(rooms);
+        return rooms.length;
     }
 
     public void draw_tiles() {
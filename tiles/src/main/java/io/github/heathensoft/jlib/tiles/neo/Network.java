@@ -1,9 +1,10 @@
 package io.github.heathensoft.jlib.tiles.neo;
 
+import io.github.heathensoft.jlib.common.storage.primitive.IntBag;
+
 import java.nio.IntBuffer;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
+import java.nio.LongBuffer;
+import java.util.Arrays;
 import java.util.Set;
 
 /**
@@ -11,6 +12,14 @@ import java.util.Set;
  *
  * Top level of the hierarchical pathfinding.
  *
+ * Reads never block. The network is a snapshot: one immutable node per chunk,
+ * holding the adjacent rooms of the chunk's rooms, and the connection keys of the chunk's rooms
+ * (open addressing, no boxing). Writes are synchronized with each other. A write copies the nodes of
+ * the chunks it touches, and publishes them all at once (copy-on-write). A reader sees the network
+ * either before or after a write, never in between.
+ *
+ * Write a chunk update as a single batch with update(). It disconnects the chunk's old rooms
+ * and connects the new connections, so readers never see the chunk disconnected.
  *
  * @author Frederik Dahl
  * 25/03/2023
@@ -19,52 +28,87 @@ import java.util.Set;
 
 public class Network {
 
-    private final Map<Integer,IntBuffer> room_adjacent; // writing mode by default
-    private final Set<Long> connection_hash;
-    private final Set<Long> tmp_set;
+    private static final int EMPTY_ROOM = Tile.room_obstacle();
+    private static final long EMPTY_KEY = 0L; // (room 0 connected to itself. No room connects to itself)
+
+    private volatile Node[] nodes; // chunk -> node (null if the chunk's rooms have no connections)
+    private final int length_chunks;
+
+    // writer scratch (synchronized)
+    private final LongSet removed;
+    private final LongSet added;
+    private final IntBag touched;
+    private final int[] touched_index; // chunk -> index in touched + 1 (0 if untouched)
+    private int[] group_offsets;
+    private long[] grouped; // added keys, grouped by touched chunk
+    private long[] edges;
+    private int[] rooms;
+    private int[] counts;
 
 
     public Network(MapSize mapSize) {
-        connection_hash = new HashSet<>(mapSize.chunks_count * 4);
-        room_adjacent = new HashMap<>(mapSize.chunks_count * 2);
-        tmp_set = new HashSet<>(256);
+        nodes = new Node[mapSize.chunks_count];
+        length_chunks = mapSize.length_chunks;
+        removed = new LongSet();
+        added = new LongSet();
+        touched = new IntBag(16);
+        touched_index = new int[mapSize.chunks_count];
+        group_offsets = new int[17];
+        grouped = new long[64];
+        edges = new long[64];
+        rooms = new int[64];
+        counts = new int[64];
+    }
+
+    /**
+     * Disconnect rooms and connect rooms in a single write.
+     * Connections of the rooms are removed before the connections are added.
+     * @param rooms rooms to disconnect [position, limit). Positions are not changed
+     * @param connections connection keys (Tile.room_connection_key) to connect [position, limit)
+     */
+    public synchronized void update(IntBuffer rooms, LongBuffer connections) {
+        Node[] current = nodes;
+        begin();
+        for (int i = rooms.position(); i < rooms.limit(); i++) {
+            remove_room(current,rooms.get(i));
+        } for (int i = connections.position(); i < connections.limit(); i++) {
+            add_connection(connections.get(i));
+        } commit(current);
     }
 
     public synchronized void connect(Set<Long> connections) {
-        for (var connection : connections) connect(connection);
+        Node[] current = nodes;
+        begin();
+        for (var connection : connections) add_connection(connection);
+        commit(current);
     }
 
     public synchronized void disconnect(Set<Long> connections) {
-        for (var connection : connections) disconnect(connection);
+        Node[] current = nodes;
+        begin();
+        for (var connection : connections) remove_connection(current,connection);
+        commit(current);
     }
 
     public synchronized void disconnect(IntBuffer rooms) {
         if (rooms.hasRemaining()) {
-            tmp_set.clear();
+            Node[] current = nodes;
+            begin();
             for (int i = rooms.position(); i < rooms.limit(); i++) {
-                int room = rooms.get(i);
-                IntBuffer connected = room_adjacent.get(room);
-                if (connected != null) {
-                    if (connected.position() > 0) {
-                        connected.flip();
-                        while (connected.hasRemaining()) {
-                            tmp_set.add(Tile.room_connection_key(room,connected.get()));
-                        } connected.limit(connected.capacity());
-
-                    }
-                }
-            } disconnect(tmp_set);
+                remove_room(current,rooms.get(i));
+            } commit(current);
         }
     }
 
-    public synchronized int getAdjacent(int room, IntBuffer dst) {
-        IntBuffer connected = room_adjacent.get(room);
-        if (connected != null) {
-            connected.flip();
-            int remaining = connected.remaining();
-            dst.put(connected);
-            connected.limit(connected.capacity());
-            return remaining;
+    public int getAdjacent(int room, IntBuffer dst) {
+        Node node = node(nodes,room);
+        if (node != null) {
+            int slot = node.find(room);
+            if (slot >= 0) {
+                int count = node.counts[slot];
+                dst.put(node.adjacent,node.offsets[slot],count);
+                return count;
+            }
         } return 0;
     }
 
@@ -73,65 +117,301 @@ public class Network {
 
      */
     public boolean areAdjacent(int room1, int room2) {
-        return connection_hash.contains(Tile.room_connection_key(room1,room2));
+        if (room1 == room2) return false;
+        Node node = node(nodes,room1);
+        return node != null && node.contains(Tile.room_connection_key(room1,room2));
     }
 
-    public synchronized boolean areAdjacentSynchronized(int room1, int room2) {
-        return connection_hash.contains(Tile.room_connection_key(room1,room2));
+    /** Equivalent to areAdjacent (reads are consistent without synchronization) */
+    public boolean areAdjacentSynchronized(int room1, int room2) {
+        return areAdjacent(room1,room2);
     }
 
     public boolean areAdjacentOrEqual(int room1, int room2) {
-        return room1 == room2 || connection_hash.contains(Tile.room_connection_key(room1,room2));
+        return room1 == room2 || areAdjacent(room1,room2);
+    }
+
+    private Node node(Node[] nodes, int room) {
+        if (Tile.room_is_obstacle(room)) return null;
+        int chunk = chunk(room);
+        return chunk < nodes.length ? nodes[chunk] : null;
+    }
+
+    private int chunk(int room) {
+        return Tile.room_chunk_x(room) + Tile.room_chunk_y(room) * length_chunks;
+    }
+
+    private void begin() {
+        // a batch that threw before commit leaves its touched chunks indexed
+        for (int i = 0; i < touched.size(); i++) {
+            touched_index[touched.get(i)] = 0;
+        } removed.clear();
+        added.clear();
+        touched.clear();
     }
 
-    private void connect(long connection) {
+    private void touch(int chunk) {
+        if (touched_index[chunk] == 0) {
+            touched.push(chunk);
+            touched_index[chunk] = touched.size();
+        }
+    }
+
+    private void remove_room(Node[] current, int room) {
+        Node node = node(current,room);
+        if (node != null) {
+            int slot = node.find(room);
+            if (slot >= 0) {
+                touch(chunk(room));
+                int end = node.offsets[slot] + node.counts[slot];
+                for (int i = node.offsets[slot]; i < end; i++) {
+                    int adjacent = node.adjacent[i];
+                    removed.add(Tile.room_connection_key(room,adjacent));
+                    touch(chunk(adjacent));
+                }
+            }
+        }
+    }
+
+    private void remove_connection(Node[] current, long connection) {
         int r1 = (int)((connection)       & 0xFFFF_FFFFL);
         int r2 = (int)((connection >> 32) & 0xFFFF_FFFFL);
         if (r1 == r2) throw new IllegalStateException(
-                "attempting to connect room to itself");
-        if (connection_hash.add(connection)) {
-            int rr = r1;
-            for (int i = 0; i < 2; i++) {
-                r1 = i == 0 ? r1 : r2;
-                r2 = i == 0 ? r2 : rr;
-                IntBuffer connections = room_adjacent.get(r1);
-                if (connections == null) {
-                    connections = IntBuffer.allocate(4);
-                    room_adjacent.put(r1,connections);
-                } else if (!connections.hasRemaining()) {
-                    IntBuffer tmp = IntBuffer.allocate(connections.capacity() * 2);
-                    tmp.put(connections.flip());
-                    connections = tmp;
-                } connections.put(r2);
-            }
+                "attempting to disconnect room from itself");
+        Node node = node(current,r1);
+        if (node != null && node.contains(connection)) {
+            removed.add(connection);
+            touch(chunk(r1));
+            touch(chunk(r2));
         }
     }
 
-    private void disconnect(long connection) {
+    private void add_connection(long connection) {
         int r1 = (int)((connection)       & 0xFFFF_FFFFL);
         int r2 = (int)((connection >> 32) & 0xFFFF_FFFFL);
         if (r1 == r2) throw new IllegalStateException(
-                "attempting to disconnect room from itself");
-        if (connection_hash.remove(connection)) {
-            int rr = r1;
-            for (int i = 0; i < 2; i++) {
-                r1 = i == 0 ? r1 : r2;
-                r2 = i == 0 ? r2 : rr;
-                IntBuffer connections = room_adjacent.get(r1);
-                int pos = connections.position();
-                for (int j = 0; j < pos; j++) {
-                    if (connections.get(j) == r2) {
-                        connections.put(j,connections.get(pos - 1));
-                        connections.position(pos - 1);
-                        if (connections.position() == 0) {
-                            room_adjacent.remove(r1);
-                        } break;
-                    }
-                }
+                "attempting to connect room to itself");
+        if (added.add(connection)) {
+            touch(chunk(r1));
+            touch(chunk(r2));
+        }
+    }
+
+    /** Rebuild the touched nodes and publish */
+    private void commit(Node[] current) {
+        if (!touched.isEmpty()) {
+            group_added();
+            Node[] next = current.clone();
+            for (int i = 0; i < touched.size(); i++) {
+                int chunk = touched.get(i);
+                next[chunk] = build(chunk,current[chunk],group_offsets[i],group_offsets[i + 1]);
+                touched_index[chunk] = 0;
+            } nodes = next;
+        }
+    }
+
+    /** Counting sort of the added keys by the touched chunks of their rooms (a key is in one or two groups) */
+    private void group_added() {
+        int groups = touched.size();
+        if (group_offsets.length < groups + 1) group_offsets = new int[groups * 2 + 1];
+        Arrays.fill(group_offsets,0,groups + 1,0);
+        int entries = 0;
+        for (int i = 0; i < added.size(); i++) {
+            long key = added.get(i);
+            int c1 = chunk((int)((key)       & 0xFFFF_FFFFL));
+            int c2 = chunk((int)((key >> 32) & 0xFFFF_FFFFL));
+            group_offsets[touched_index[c1]]++;
+            entries++;
+            if (c2 != c1) {
+                group_offsets[touched_index[c2]]++;
+                entries++;
             }
+        } for (int i = 0, offset = 0; i <= groups; i++) {
+            int count = group_offsets[i];
+            group_offsets[i] = offset;
+            offset += count;
+        } if (grouped.length < entries) grouped = new long[entries * 2];
+        // group_offsets[g] is the start of group g - 1. Filling advances it to the start of group g
+        for (int i = 0; i < added.size(); i++) {
+            long key = added.get(i);
+            int c1 = chunk((int)((key)       & 0xFFFF_FFFFL));
+            int c2 = chunk((int)((key >> 32) & 0xFFFF_FFFFL));
+            grouped[group_offsets[touched_index[c1]]++] = key;
+            if (c2 != c1) grouped[group_offsets[touched_index[c2]]++] = key;
         }
     }
 
+    /** @return a new node with the chunk's connections: (old - removed) + added [from, to). Null if none */
+    private Node build(int chunk, Node old, int from, int to) {
+        int num_edges = 0;
+        if (old != null) {
+            for (long key : old.keys) {
+                if (key != EMPTY_KEY && !removed.contains(key) && !added.contains(key)) {
+                    num_edges = push_edge(num_edges,key);
+                }
+            }
+        } for (int i = from; i < to; i++) {
+            num_edges = push_edge(num_edges,grouped[i]);
+        } if (num_edges == 0) return null;
+        // count adjacent per room of the chunk (open addressing, load <= 0.5)
+        int capacity = Integer.highestOneBit(num_edges * 2) << 2;
+        if (rooms.length < capacity) {
+            rooms = new int[capacity];
+            counts = new int[capacity];
+        } Arrays.fill(rooms,0,capacity,EMPTY_ROOM);
+        Arrays.fill(counts,0,capacity,0);
+        int mask = capacity - 1;
+        int num_adjacent = 0;
+        for (int i = 0; i < num_edges; i++) {
+            long key = edges[i];
+            int r1 = (int)((key)       & 0xFFFF_FFFFL);
+            int r2 = (int)((key >> 32) & 0xFFFF_FFFFL);
+            if (chunk(r1) == chunk) { counts[slot(rooms,mask,r1)]++; num_adjacent++; }
+            if (chunk(r2) == chunk) { counts[slot(rooms,mask,r2)]++; num_adjacent++; }
+        } int num_rooms = 0;
+        for (int i = 0; i < capacity; i++) {
+            if (rooms[i] != EMPTY_ROOM) num_rooms++;
+        } Node node = new Node(num_rooms,num_edges,num_adjacent);
+        int node_mask = node.rooms.length - 1;
+        int offset = 0;
+        for (int i = 0; i < capacity; i++) {
+            if (rooms[i] != EMPTY_ROOM) {
+                int slot = slot(node.rooms,node_mask,rooms[i]);
+                node.offsets[slot] = offset;
+                offset += counts[i];
+            }
+        } for (int i = 0; i < num_edges; i++) {
+            long key = edges[i];
+            int r1 = (int)((key)       & 0xFFFF_FFFFL);
+            int r2 = (int)((key >> 32) & 0xFFFF_FFFFL);
+            if (chunk(r1) == chunk) node.put(r1,r2);
+            if (chunk(r2) == chunk) node.put(r2,r1);
+            node.insert(key);
+        } return node;
+    }
+
+    private int push_edge(int num_edges, long key) {
+        if (num_edges == edges.length) {
+            edges = Arrays.copyOf(edges,num_edges * 2);
+        } edges[num_edges] = key;
+        return num_edges + 1;
+    }
+
+    /** @return the slot of the room in the table, inserting it if absent */
+    private static int slot(int[] table, int mask, int room) {
+        int i = hash(room) & mask;
+        while (table[i] != room) {
+            if (table[i] == EMPTY_ROOM) {
+                table[i] = room;
+                return i;
+            } i = (i + 1) & mask;
+        } return i;
+    }
+
+    private static int hash(int room) {
+        int h = room * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
 
+    /** Immutable once published */
+    private static final class Node {
+        final int[] rooms;    // open addressing (EMPTY_ROOM)
+        final int[] offsets;  // room slot -> first adjacent room
+        final int[] counts;   // room slot -> adjacent rooms
+        final int[] adjacent;
+        final long[] keys;    // open addressing (EMPTY_KEY)
+        Node(int num_rooms, int num_edges, int num_adjacent) {
+            int room_capacity = Integer.highestOneBit(num_rooms) << 2;
+            int key_capacity = Integer.highestOneBit(num_edges) << 2;
+            rooms = new int[room_capacity];
+            offsets = new int[room_capacity];
+            counts = new int[room_capacity];
+            adjacent = new int[num_adjacent];
+            keys = new long[key_capacity];
+            Arrays.fill(rooms,EMPTY_ROOM);
+        }
+        int find(int room) {
+            int mask = rooms.length - 1;
+            int i = hash(room) & mask;
+            int r;
+            while ((r = rooms[i]) != room) {
+                if (r == EMPTY_ROOM) return -1;
+                i = (i + 1) & mask;
+            } return i;
+        }
+        boolean contains(long key) {
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            long k;
+            while ((k = keys[i]) != key) {
+                if (k == EMPTY_KEY) return false;
+                i = (i + 1) & mask;
+            } return true;
+        }
+        void put(int room, int adjacent_room) {
+            int slot = find(room);
+            adjacent[offsets[slot] + counts[slot]++] = adjacent_room;
+        }
+        void insert(long key) {
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            while (keys[i] != EMPTY_KEY) {
+                i = (i + 1) & mask;
+            } keys[i] = key;
+        }
+    }
 
+    /** Writer scratch. Open addressing set of connection keys, with the keys in insertion order */
+    private static final class LongSet {
+        private long[] table = new long[64];
+        private long[] list = new long[32];
+        private int size;
+        boolean add(long key) {
+            if (size * 2 >= table.length) grow();
+            int mask = table.length - 1;
+            int i = hash(key) & mask;
+            long k;
+            while ((k = table[i]) != key) {
+                if (k == EMPTY_KEY) {
+                    table[i] = key;
+                    if (size == list.length) list = Arrays.copyOf(list,size * 2);
+                    list[size++] = key;
+                    return true;
+                } i = (i + 1) & mask;
+            } return false;
+        }
+        boolean contains(long key) {
+            int mask = table.length - 1;
+            int i = hash(key) & mask;
+            long k;
+            while ((k = table[i]) != key) {
+                if (k == EMPTY_KEY) return false;
+                i = (i + 1) & mask;
+            } return true;
+        }
+        long get(int index) {
+            return list[index];
+        }
+        int size() {
+            return size;
+        }
+        void clear() {
+            Arrays.fill(table,EMPTY_KEY);
+            size = 0;
+        }
+        private void grow() {
+            table = new long[table.length * 2];
+            int mask = table.length - 1;
+            for (int n = 0; n < size; n++) {
+                int i = hash(list[n]) & mask;
+                while (table[i] != EMPTY_KEY) i = (i + 1) & mask;
+                table[i] = list[n];
+            }
+        }
+    }
 }
@@ -0,0 +1,227 @@
+package io.github.heathensoft.jlib.tiles.neo;
+
+import io.github.heathensoft.jlib.ai.pathfinding.AStarGrid;
+import io.github.heathensoft.jlib.ai.pathfinding.AStarSearch;
+import io.github.heathensoft.jlib.common.storage.generic.Pool;
+import io.github.heathensoft.jlib.common.storage.primitive.IntMinHeap;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import static io.github.heathensoft.jlib.tiles.neo.Tile.*;
+
+/**
+ * Hierarchical pathfinding (HPA*) over the Tilemap.
+ *
+ * 1. Room level: A* over the Network (rooms connected by getAdjacent),
+ *    from the room of the start tile to the room of the end tile.
+ *    Rooms are positioned at the center of their chunk.
+ * 2. Tile level: A* (AStarSearch) restricted to the rooms of the room path.
+ *    If the restricted search fails (i.e. a chunk layout is being rebuilt),
+ *    the tile search falls back to the whole map.
+ *
+ * Rooms are indexed by chunk and local id: ((chunk_y * length_chunks + chunk_x) << 8) | local_id,
+ * so all room-level state is stored in flat primitive arrays.
+ *
+ * Thread-safe. Each search obtains a pooled search context (one per concurrent search).
+ * Like all Tilemap reads, searches are not synchronized with writes to the Tilemap.
+ *
+ * @author Frederik Dahl
+ * 18/10/2026
+ */
+
+
+public class Pathfinder {
+
+    private final MapSize map_size;
+    private final AStarGrid grid;
+    private final int[][] layout;
+    private final Network network;
+    private final ContextPool pool;
+
+    public Pathfinder(Tilemap tilemap) {
+        this(tilemap.map_size(),tilemap,tilemap.layout(),tilemap.network());
+    }
+
+    /**
+     * @param map_size map size
+     * @param grid tile costs and obstacles
+     * @param layout room layout [y][x] (room ids as created by Tile.room_create)
+     * @param network room connections
+     */
+    public Pathfinder(MapSize map_size, AStarGrid grid, int[][] layout, Network network) {
+        this.map_size = map_size;
+        this.grid = grid;
+        this.layout = layout;
+        this.network = network;
+        this.pool = new ContextPool();
+    }
+
+    /**
+     * Path as (x,y) pairs from start to end. Empty if no path exists.
+     * Collapsed: intermediate points on straight lines are removed.
+     */
+    public int[] find(int x0, int y0, int x1, int y1) {
+        return find(x0,y0,x1,y1,true);
+    }
+
+    /**
+     * Path as (x,y) pairs from start to end. Empty if no path exists.
+     * @param collapse remove intermediate points on straight lines
+     */
+    public int[] find(int x0, int y0, int x1, int y1, boolean collapse) {
+        Context context = pool.obtain();
+        try { return context.find(x0,y0,x1,y1,collapse);
+        } finally { pool.free(context); }
+    }
+
+    /**
+     * Room level search only.
+     * @param start_room start room
+     * @param end_room end room
+     * @return room path from start to end, or an empty array if the rooms are not connected
+     */
+    public int[] find_rooms(int start_room, int end_room) {
+        Context context = pool.obtain();
+        try { int count = context.search_rooms(start_room,end_room);
+            return Arrays.copyOf(context.room_path,count);
+        } finally { pool.free(context); }
+    }
+
+    /** Pre-allocate search contexts. Each context holds ~ 36 bytes per tile */
+    public void allocate_contexts(int count) {
+        pool.fill(count);
+    }
+
+    public MapSize map_size() {
+        return map_size;
+    }
+
+    private int room_index(int room) {
+        int chunk = room_chunk_y(room) * map_size.length_chunks + room_chunk_x(room);
+        return (chunk << 8) | room_local_id(room);
+    }
+
+    private static int room_center_x(int room) {
+        return room_chunk_x(room) * 16 + 8;
+    }
+
+    private static int room_center_y(int room) {
+        return room_chunk_y(room) * 16 + 8;
+    }
+
+    private static int room_heuristic(int room1, int room2) {
+        return AStarSearch.heuristic(room_center_x(room1),room_center_y(room1),room_center_x(room2),room_center_y(room2));
+    }
+
+    private final class Context implements AStarSearch.Filter {
+
+        private final AStarSearch tile_search;
+        private final IntBuffer adjacent;
+        private final int[] room_g;
+        private final int[] room_parent;
+        private final int[] room_visited;
+        private final int[] room_closed;
+        private final int[] corridor;
+        private int[] room_path;
+        private final IntMinHeap open;
+        private int search;
+
+        Context() {
+            int rooms = map_size.chunks_count * 256;
+            this.tile_search = new AStarSearch(grid.rows(),grid.cols());
+            this.adjacent = IntBuffer.allocate(2048);
+            this.room_g = new int[rooms];
+            this.room_parent = new int[rooms];
+            this.room_visited = new int[rooms];
+            this.room_closed = new int[rooms];
+            this.corridor = new int[rooms];
+            this.room_path = new int[64];
+            this.open = new IntMinHeap(256);
+        }
+
+        int[] find(int x0, int y0, int x1, int y1, boolean collapse) {
+            if (!grid.contains(x0,y0) || !grid.contains(x1,y1)) return new int[0];
+            int start_room = layout[y0][x0];
+            int end_room = layout[y1][x1];
+            if (room_is_obstacle(start_room) || room_is_obstacle(end_room)) return new int[0];
+            int count = search_rooms(start_room,end_room);
+            if (count == 0) return new int[0];
+            for (int i = 0; i < count; i++) {
+                corridor[room_index(room_path[i])] = search;
+            } if (tile_search.search(grid,x0,y0,x1,y1,this)) {
+                return tile_search.path(collapse);
+            } if (tile_search.search(grid,x0,y0,x1,y1,null)) {
+                return tile_search.path(collapse);
+            } return new int[0];
+        }
+
+        public boolean accept(int x, int y) {
+            int room = layout[y][x];
+            return room_not_obstacle(room) && corridor[room_index(room)] == search;
+        }
+
+        /** @return number of rooms in room_path (0 if no path) */
+        int search_rooms(int start_room, int end_room) {
+            next_search();
+            if (room_is_obstacle(start_room) || room_is_obstacle(end_room)) return 0;
+            final int start = room_index(start_room);
+            final int end = room_index(end_room);
+            open.clear();
+            room_visited[start] = search;
+            room_g[start] = 0;
+            room_parent[start] = -1;
+            open.push(start_room,room_heuristic(start_room,end_room));
+            while (!open.isEmpty()) {
+                final int room = open.pop();
+                final int index = room_index(room);
+                if (room_closed[index] == search) continue;
+                room_closed[index] = search;
+                if (index == end) return retrace(end_room);
+                adjacent.clear();
+                int adjacent_count = network.getAdjacent(room,adjacent);
+                final int g = room_g[index];
+                for (int i = 0; i < adjacent_count; i++) {
+                    final int neighbor = adjacent.get(i);
+                    final int neighbor_index = room_index(neighbor);
+                    if (room_closed[neighbor_index] == search) continue;
+                    final int cost = g + room_heuristic(room,neighbor) + 1;
+                    if (room_visited[neighbor_index] != search || cost < room_g[neighbor_index]) {
+                        room_visited[neighbor_index] = search;
+                        room_g[neighbor_index] = cost;
+                        room_parent[neighbor_index] = room;
+                        open.push(neighbor,cost + room_heuristic(neighbor,end_room));
+                    }
+                }
+            } return 0;
+        }
+
+        private int retrace(int end_room) {
+            int count = 0;
+            for (int room = end_room; room != -1; room = room_parent[room_index(room)]) {
+                if (count == room_path.length) room_path = Arrays.copyOf(room_path,count * 2);
+                room_path[count++] = room;
+            } for (int i = 0, j = count - 1; i < j; i++, j--) {
+                int tmp = room_path[i];
+                room_path[i] = room_path[j];
+                room_path[j] = tmp;
+            } return count;
+        }
+
+        private void next_search() {
+            if (++search == Integer.MAX_VALUE) {
+                Arrays.fill(room_visited,0);
+                Arrays.fill(room_closed,0);
+                Arrays.fill(corridor,0);
+                search = 1;
+            }
+        }
+    }
+
+    private final class ContextPool extends Pool<Context> {
+        protected Context newObject() { return new Context(); }
+        public synchronized Context obtain() { return super.obtain(); }
+        public synchronized void free(Context context) { super.free(context); }
+        public synchronized void fill(int size) { super.fill(size); }
+    }
+}
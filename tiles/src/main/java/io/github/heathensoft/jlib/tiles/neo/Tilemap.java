@@ -2,12 +2,17 @@ package io.github.heathensoft.jlib.tiles.neo;
 
 import io.github.heathensoft.jlib.ai.pathfinding.AStarGrid;
 import io.github.heathensoft.jlib.common.Disposable;
+import io.github.heathensoft.jlib.common.storage.generic.Pool;
+import io.github.heathensoft.jlib.common.storage.generic.Queue;
 import io.github.heathensoft.jlib.common.storage.primitive.BitSet;
 import org.joml.primitives.Rectanglef;
 import org.joml.primitives.Rectanglei;
 
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
 
 import static io.github.heathensoft.jlib.common.utils.U.*;
 import static io.github.heathensoft.jlib.tiles.neo.Tile.*;
@@ -22,6 +27,14 @@ import static io.github.heathensoft.jlib.tiles.neo.Tile.*;
  * Throughout the code when you see 16 and 256 (16 x 16), that's what that is. 16 is permanent and will not change in the future.
  * For the same reason, the map size cannot exceed 1024 x 1024 tiles.
  *
+ * Chunk layouts (rooms) are rebuilt on a worker pool. Chunks queued for a layout update are coalesced
+ * (a chunk edited any number of times between refreshes is rebuilt once). refresh() snapshots the tiles of
+ * queued chunks and submits them. Rebuilt layouts are published on the main thread in a later refresh():
+ * every layout finished since the last refresh is written to the room layout, and the Network is updated
+ * in a single write. A chunk is never rebuilt twice at once. If it is edited while being rebuilt, it stays
+ * queued until the rebuild is published. If a rebuild throws, the chunk is queued again (submitted in the next
+ * refresh) and the exception is rethrown from refresh().
+ *
  *
  * @author Frederik Dahl
  * 20/06/2023
@@ -48,6 +61,15 @@ public abstract class Tilemap implements AStarGrid, Disposable {
     private final float[] chunk_timers;
     private int current_chunk_to_update;
 
+    private final BitSet chunk_layout_in_flight_set;
+    private final ConcurrentLinkedQueue<LayoutJob> layouts_done;
+    private final Queue<LayoutJob> layouts_publishing;
+    private final Pool<LayoutJob> layout_jobs;
+    private ForkJoinPool layout_pool;
+    private IntBuffer layout_old_rooms;
+    private LongBuffer layout_connections;
+    private int layouts_in_flight;
+
 
     public Tilemap(MapSize map_size, int terrain_texture_size) {
         this.map_size = map_size;
@@ -71,6 +93,14 @@ public abstract class Tilemap implements AStarGrid, Disposable {
             }
         }
         this.chunk_timers = new float[map_size.chunks_count];
+        this.chunk_layout_in_flight_set = new BitSet(map_size.chunks_count);
+        this.layouts_done = new ConcurrentLinkedQueue<>();
+        this.layouts_publishing = new Queue<>(16);
+        this.layout_jobs = new Pool<>() {
+            protected LayoutJob newObject() { return new LayoutJob(layouts_done); }
+        }; this.layout_pool = ForkJoinPool.commonPool();
+        this.layout_old_rooms = IntBuffer.allocate(256 * 4);
+        this.layout_connections = LongBuffer.allocate(Chunk.MAX_CONNECTIONS * 4);
     }
 
     // REMEMBER TO SET UP TERRAIN
@@ -115,15 +145,8 @@ public abstract class Tilemap implements AStarGrid, Disposable {
     public void refresh(Rectanglef orthographic_view) {
 
         // UPDATE LAYOUT (EVEN IF NOT IN VIEW)
-        if (chunks_layout_queue.position() != 0) {
-            chunks_layout_queue.flip();
-            while (chunks_layout_queue.hasRemaining()) {
-                int chunk_x = chunks_layout_queue.get();
-                int chunk_y = chunks_layout_queue.get();
-                //chunks[chunk_y][chunk_x].update_layout(this,chunk_x,chunk_y);
-                chunk_update_layout_set.clearUnchecked(chunk_x + chunk_y * map_size.length_chunks);
-            } chunks_layout_queue.clear();
-        }
+        publish_layouts();
+        submit_layouts();
 
         { // UPDATE CHUNKS IN VIEW (IF VIEW HAS CHANGED)
             Rectanglei view = new Rectanglei(
@@ -179,6 +202,31 @@ public abstract class Tilemap implements AStarGrid, Disposable {
         }
     }
 
+    /**
+     * Main thread. Wait for the layouts being rebuilt, and publish them.
+     * Chunks queued since the last refresh are not submitted.
+     */
+    public void flush_layouts() {
+        while (layouts_in_flight > 0) {
+            Thread.onSpinWait();
+            publish_layouts();
+        }
+    }
+
+    /**
+     * Main thread. Pool used to rebuild chunk layouts. The common pool by default.
+     * Layouts already being rebuilt finish on the previous pool.
+     */
+    public void set_layout_pool(ForkJoinPool pool) {
+        if (pool == null) throw new IllegalArgumentException("pool == null");
+        this.layout_pool = pool;
+    }
+
+    /** @return number of chunk layouts being rebuilt or waiting to be published */
+    public int layouts_in_flight() {
+        return layouts_in_flight;
+    }
+
     public Network network() {
         return network;
     }
@@ -433,12 +481,97 @@ public abstract class Tilemap implements AStarGrid, Disposable {
     private void queue_chunk_update_layout(int chunk_x, int chunk_y) {
         int index = chunk_x + chunk_y * map_size.length_chunks;
         if (!chunk_update_layout_set.getUnchecked(index)) {
-            chunk_update_terrain_set.setUnchecked(index);
+            chunk_update_layout_set.setUnchecked(index);
             chunks_layout_queue.put((byte) chunk_x).put((byte) chunk_y);
         }
 
     }
 
+    private void submit_layouts() {
+        if (chunks_layout_queue.position() != 0) {
+            chunks_layout_queue.flip();
+            int kept = 0; // chunks being rebuilt stay queued
+            while (chunks_layout_queue.hasRemaining()) {
+                int chunk_x = chunks_layout_queue.get();
+                int chunk_y = chunks_layout_queue.get();
+                int chunk_index = chunk_x + chunk_y * map_size.length_chunks;
+                if (chunk_layout_in_flight_set.getUnchecked(chunk_index)) {
+                    chunks_layout_queue.put(kept++,(byte) chunk_x);
+                    chunks_layout_queue.put(kept++,(byte) chunk_y);
+                } else {
+                    chunk_update_layout_set.clearUnchecked(chunk_index);
+                    chunk_layout_in_flight_set.setUnchecked(chunk_index);
+                    LayoutJob job = layout_jobs.obtain();
+                    job.chunk_x = chunk_x;
+                    job.chunk_y = chunk_y;
+                    Chunk.snapshot_tiles(tiles,chunk_x,chunk_y,job.tiles);
+                    layouts_in_flight++;
+                    layout_pool.execute(job);
+                }
+            } chunks_layout_queue.clear().position(kept);
+        }
+    }
+
+    private void publish_layouts() {
+        if (layouts_done.isEmpty()) return;
+        layout_old_rooms.clear();
+        layout_connections.clear();
+        RuntimeException exception = null;
+        LayoutJob job;
+        // 1. Write every finished layout
+        while ((job = layouts_done.poll()) != null) {
+            if (job.exception != null) { // the chunk keeps its previous layout, and is queued again
+                if (exception == null) exception = job.exception;
+                job.exception = null;
+                chunk_layout_in_flight_set.clearUnchecked(job.chunk_x + job.chunk_y * map_size.length_chunks);
+                queue_chunk_update_layout(job.chunk_x,job.chunk_y);
+                layouts_in_flight--;
+                layout_jobs.free(job);
+                continue;
+            } if (layout_old_rooms.remaining() < 256) {
+                layout_old_rooms = IntBuffer.allocate(layout_old_rooms.capacity() * 2).put(layout_old_rooms.flip());
+            } Chunk chunk = chunks[job.chunk_y][job.chunk_x];
+            chunk.getRooms(layout_old_rooms);
+            chunk.publish_layout(room_layout,job.chunk_x,job.chunk_y,job.layout,job.rooms,job.num_rooms);
+            layouts_publishing.enqueue(job);
+        }
+        // 2. Collect connections (neighbouring layouts published in this batch are in place)
+        while (!layouts_publishing.isEmpty()) {
+            job = layouts_publishing.dequeue();
+            if (layout_connections.remaining() < Chunk.MAX_CONNECTIONS) {
+                layout_connections = LongBuffer.allocate(layout_connections.capacity() * 2).put(layout_connections.flip());
+            } Chunk.collect_connections(room_layout,job.chunk_x,job.chunk_y,layout_connections);
+            chunk_layout_in_flight_set.clearUnchecked(job.chunk_x + job.chunk_y * map_size.length_chunks);
+            layouts_in_flight--;
+            layout_jobs.free(job);
+        }
+        // 3. Disconnect the old rooms and connect the new (single write)
+        network.update(layout_old_rooms.flip(),layout_connections.flip());
+        if (exception != null) throw exception;
+    }
+
+    private static final class LayoutJob implements Runnable {
+        final ConcurrentLinkedQueue<LayoutJob> done;
+        final int[] tiles = new int[256];   // snapshot
+        final int[] layout = new int[256];
+        final int[] rooms = new int[256];
+        final int[] stack = new int[256];
+        RuntimeException exception;
+        int chunk_x, chunk_y;
+        int num_rooms;
+        LayoutJob(ConcurrentLinkedQueue<LayoutJob> done) {
+            this.done = done;
+        }
+        public void run() {
+            try { num_rooms = Chunk.build_layout(tiles,chunk_x,chunk_y,layout,rooms,stack);
+            } catch (RuntimeException e) {
+                exception = e;
+            } finally {
+                done.offer(this);
+            }
+        }
+    }
+
     public void dispose() {
         for (Chunk[] chunk_row : chunks) {
             for (Chunk chunk : chunk_row)
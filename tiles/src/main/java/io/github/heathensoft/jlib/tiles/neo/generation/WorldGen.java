@@ -3,10 +3,13 @@ package io.github.heathensoft.jlib.tiles.neo.generation;
 import io.github.heathensoft.jlib.ai.pathfinding.AStarNode;
 import io.github.heathensoft.jlib.ai.pathfinding.NodeChain;
 import io.github.heathensoft.jlib.ai.wfc.WFC;
+import io.github.heathensoft.jlib.common.Executor;
 import io.github.heathensoft.jlib.common.noise.FastNoiseLite;
 import io.github.heathensoft.jlib.common.noise.Noise;
 import io.github.heathensoft.jlib.common.noise.NoiseFunction;
 import io.github.heathensoft.jlib.common.storage.generic.HeapSet;
+import io.github.heathensoft.jlib.common.thread.TaskGraph;
+import io.github.heathensoft.jlib.common.thread.ThreadService;
 import io.github.heathensoft.jlib.common.utils.Area;
 import io.github.heathensoft.jlib.common.utils.Coordinate;
 import io.github.heathensoft.jlib.common.utils.Rand;
@@ -14,6 +17,7 @@ import io.github.heathensoft.jlib.common.utils.U;
 import io.github.heathensoft.jlib.lwjgl.gfx.Bitmap;
 import io.github.heathensoft.jlib.common.utils.Color;
 import org.joml.Vector4f;
+import org.tinylog.Logger;
 
 
 import java.util.ArrayList;
@@ -134,8 +138,10 @@ public class WorldGen {
     }
 
 
-    private final Rand rng;
+    private static final int RNG_POSITION = 12999;
+
     private final int[][] region_data;
+    private int world_seed; // seed of the applied world
     private float[][] world_temperature;
     private float[][] world_elevation;
     private float[][] world_humidity;
@@ -144,23 +150,49 @@ public class WorldGen {
     private float global_elevation_modifier = 0.5f;
     private float global_humidity_modifier = 0.5f;
     private float global_tiers_modifier = 0.5f;
+    private TaskGraph generation_graph;
+    private int generation_id;
 
     public WorldGen(int seed) throws Exception {
         region_data = new int[WORLD_MAP_SIZE][WORLD_MAP_SIZE];
-        rng = new Rand(seed);
-        rng.set_position(12999);
-        rng.save_position();
-        create_new_world(rng);
+        create_new_world(seed);
     }
 
     public void set_world_seed(int seed) throws Exception {
-        if (!(rng.seed() == seed)) {
-            rng.set_seed(seed);
-            rng.load_position();
-            create_new_world(rng);
+        if (world_seed != seed) create_new_world(seed);
+    }
+
+    /**
+     * Generate the world asynchronously. Independent stages run in parallel on the service.
+     * The world is replaced (on the super thread) when all stages have completed.
+     * The result is identical to set_world_seed(seed).
+     * If a newer world is requested before this one completes, this result is discarded.
+     * The seed is compared with the seed of the applied world. If generation fails, the world and its seed are kept.
+     * @param seed world seed
+     * @param service thread service
+     * @param on_complete called on the super thread when the new world is in place (can be null)
+     */
+    public void set_world_seed(int seed, ThreadService service, Executor on_complete) {
+        if (world_seed != seed) {
+            final int id = ++generation_id;
+            Generation generation = new Generation(world_rng(seed));
+            generation_graph = generation_graph(generation);
+            generation_graph.execute(service, (graph, e) -> {
+                if (e != null) Logger.error(e,"world generation failed");
+                else if (id == generation_id) {
+                    apply_generation(generation);
+                    world_seed = seed;
+                    if (on_complete != null) on_complete.apply();
+                }
+            });
         }
     }
 
+    /** @return the graph of the last world generation. Node runtimes and critical path for profiling */
+    public TaskGraph generation_graph() {
+        return generation_graph;
+    }
+
     public void adjust_global_elevation(float value) {
         value = clamp(value);
         if (value != global_elevation_modifier) {
@@ -283,11 +315,59 @@ public class WorldGen {
 
 
 
-    private void create_new_world(Rand rng) throws Exception {
-        world_elevation = generate_elevation();
-        world_temperature = generate_temperature(world_elevation,rng);
-        world_humidity = generate_humidity(world_elevation,rng);
-        world_tiers = generate_tiers(rng);
+    private void create_new_world(int seed) throws Exception {
+        generation_id++;
+        Generation generation = new Generation(world_rng(seed));
+        generation_graph = generation_graph(generation);
+        generation_graph.executeDirect(null);
+        if (generation_graph.exception() != null) {
+            throw generation_graph.exception();
+        } apply_generation(generation);
+        world_seed = seed;
+    }
+
+    /** The world rng of seed, at the position every generation starts from */
+    private static Rand world_rng(int seed) {
+        Rand rng = new Rand(seed);
+        rng.set_position(RNG_POSITION);
+        return rng;
+    }
+
+    /**
+     * Generation stages. Every stage has its own Rand, seeded from the world rng up front,
+     * so the result does not depend on the order (or thread) the stages are executed in.
+     */
+    private TaskGraph generation_graph(Generation gen) {
+        TaskGraph graph = new TaskGraph();
+        TaskGraph.Node landmass = graph.add("landmass", queue_time -> {
+            gen.continents = generate_continent_elevation(generate_landmass(gen.rng[0]));
+            return 0; });
+        TaskGraph.Node details = graph.add("elevation_details", queue_time -> {
+            gen.elevation_details = generate_elevation_details(gen.rng[1]);
+            return 0; });
+        TaskGraph.Node elevation = graph.add("elevation", queue_time -> {
+            gen.elevation = apply_rivers(Noise.multiply(gen.continents,gen.elevation_details,1.0f),gen.rng[2]);
+            return 0; }).dependsOn(landmass,details);
+        graph.add("temperature", queue_time -> {
+            gen.temperature = generate_temperature(gen.elevation,gen.rng[3]);
+            return 0; }).dependsOn(elevation);
+        TaskGraph.Node humidity_noise = graph.add("humidity_noise", queue_time -> {
+            gen.humidity_noise = generate_humidity_noise(gen.rng[4]);
+            return 0; });
+        graph.add("humidity", queue_time -> {
+            gen.humidity = Noise.mix(generate_humidity_base(gen.elevation,gen.rng[5]),gen.humidity_noise,0.7f);
+            return 0; }).dependsOn(elevation,humidity_noise);
+        graph.add("tiers", queue_time -> {
+            gen.tiers = generate_tiers(gen.rng[6]);
+            return 0; });
+        return graph;
+    }
+
+    private void apply_generation(Generation generation) {
+        world_elevation = generation.elevation;
+        world_temperature = generation.temperature;
+        world_humidity = generation.humidity;
+        world_tiers = generation.tiers;
         for (int r = 0; r < WORLD_MAP_SIZE; r++) {
             for (int c = 0; c < WORLD_MAP_SIZE; c++) {
                 int reg = region_data[r][c];
@@ -325,12 +405,6 @@ public class WorldGen {
         else return Tier.set(region,Tier.THREE);
     }
 
-    private float[][] generate_elevation() throws Exception {
-        float[][] base = generate_continent_elevation(generate_landmass(rng));
-        float[][] details = generate_elevation_details(rng);
-        return apply_rivers(Noise.multiply(base,details,1.0f),rng);
-    }
-
     private float[][] generate_temperature(float[][] elevation, Rand rng) {
         float[][] result = new float[WORLD_MAP_SIZE][WORLD_MAP_SIZE];
         float equator = WORLD_MAP_SIZE / 2.0f;
@@ -368,12 +442,6 @@ public class WorldGen {
         } return Noise.smoothen(result);
     }
 
-    private float[][] generate_humidity(float[][] elevation, Rand rng) {
-        return Noise.mix(
-                generate_humidity_base(elevation,rng),
-                generate_humidity_noise(rng), 0.7f);
-    }
-
     public float[][] generate_humidity_noise(Rand rng) {
         float[][] noise;
         FastNoiseLite noise_generator = new FastNoiseLite(rng.next_int());
@@ -392,7 +460,7 @@ public class WorldGen {
             noise_generator.SetDomainWarpAmp(65.0f);
             float x0 = rng.white_noise() * 9999.9f;
             float y0 = rng.white_noise() * 9999.9f;
-            noise = Noise.generate(function,WORLD_MAP_SIZE,WORLD_MAP_SIZE,x0,y0);
+            noise = Noise.generate_parallel(function,WORLD_MAP_SIZE,WORLD_MAP_SIZE,x0,y0);
         } return noise;
     }
 
@@ -414,7 +482,7 @@ public class WorldGen {
             noise_generator.SetDomainWarpAmp(65.0f);
             float x0 = rng.white_noise() * 9999.9f;
             float y0 = rng.white_noise() * 9999.9f;
-            humidity = Noise.generate(function,WORLD_MAP_SIZE,WORLD_MAP_SIZE,x0,y0);
+            humidity = Noise.generate_parallel(function,WORLD_MAP_SIZE,WORLD_MAP_SIZE,x0,y0);
         }
         int rows = humidity.length;
         int cols = humidity[0].length;
@@ -471,7 +539,7 @@ public class WorldGen {
             noise_generator.SetFrequency(0.45f);
             float x0 = rng.white_noise() * 9999.9f;
             float y0 = rng.white_noise() * 9999.9f;
-            heightmap = Noise.generate_amplified(function, WORLD_MAP_SIZE, WORLD_MAP_SIZE,x0,y0);
+            heightmap = Noise.generate_amplified_parallel(function, WORLD_MAP_SIZE, WORLD_MAP_SIZE,x0,y0);
         } {   // Low Frequency: Classic
             NoiseFunction classic = (x, y) -> {
                 float n = noise_generator.GetNoise(x, y);
@@ -486,7 +554,7 @@ public class WorldGen {
             noise_generator.SetFrequency(0.04f);
             float x0 = rng.white_noise() * 9999.9f;
             float y0 = rng.white_noise() * 9999.9f;
-            float[][] noise_mix = Noise.generate_amplified(classic,WORLD_MAP_SIZE,WORLD_MAP_SIZE,x0,y0);
+            float[][] noise_mix = Noise.generate_amplified_parallel(classic,WORLD_MAP_SIZE,WORLD_MAP_SIZE,x0,y0);
             Noise.mix(heightmap,noise_mix,0.33f);
             Noise.amplify(heightmap);
         } return heightmap;
@@ -815,4 +883,19 @@ public class WorldGen {
     }
 
 
+    private static final class Generation {
+        final Rand[] rng = new Rand[7];
+        float[][] continents;
+        float[][] elevation_details;
+        float[][] elevation;
+        float[][] temperature;
+        float[][] humidity_noise;
+        float[][] humidity;
+        float[][] tiers;
+        Generation(Rand world_rng) {
+            for (int i = 0; i < rng.length; i++)
+                rng[i] = new Rand(world_rng.next_int());
+        }
+    }
+
 }
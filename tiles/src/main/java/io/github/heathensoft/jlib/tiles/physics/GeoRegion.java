@@ -25,9 +25,9 @@ import java.util.Set;
 
 public class GeoRegion {
     
-    private static final int CIRCLE_S_QID = 0;
-    private static final int CIRCLE_M_QID = 1;
-    private static final int CIRCLE_L_QID = 2;
+    static final int CIRCLE_S_QID = 0;
+    static final int CIRCLE_M_QID = 1;
+    static final int CIRCLE_L_QID = 2;
     private static final int[][] quadrant_offset =
     new int[][] {{0,1},{1,1},{1,0},{0,0}}; // NW,NE,SE,SW
     private final List<List<BlockCluster>> blockGeometry;
@@ -56,7 +56,7 @@ public class GeoRegion {
         final int S = TMap.SECTION_SIZE;
         rX0 *= TMap.SECTION_SIZE;
         rY0 *= TMap.SECTION_SIZE;
-        Area area = new Area(rX0,rY0,S-1,S-1);
+        Area area = new Area(rX0,rY0,rX0+S-1,rY0+S-1);
         if (lightArea.intersection(area)) {
             final int qSize = S / 2;
             Area subArea = new Area();
@@ -89,12 +89,28 @@ public class GeoRegion {
         }
     }
     
+    // adds the geometry within the light area to the visibility sweep. No allocations
+    protected void gatherSegments(Visibility visibility, Area lightArea, int rX0, int rY0) {
+        final int qSize = TMap.SECTION_SIZE / 2;
+        rX0 *= TMap.SECTION_SIZE;
+        rY0 *= TMap.SECTION_SIZE;
+        for (int q = 0; q < 4; q++) { // NW,NE,SE,SW
+            int x0 = rX0 + quadrant_offset[q][0] * qSize;
+            int y0 = rY0 + quadrant_offset[q][1] * qSize;
+            if (lightArea.intersects(x0,y0,x0 + qSize - 1,y0 + qSize - 1)) {
+                if (!circleGeometry[q].isEmpty())
+                    visibility.addCircles(circleGeometry[q],Circle.ray_density);
+                visibility.addClusters(blockGeometry.get(q));
+            }
+        }
+    }
+    
     // updates geometry to reflect the current TMap state
     protected void refreshArea(TMap map, Area refreshArea, int rX0, int rY0) {
         final int S = TMap.SECTION_SIZE;
         rX0 *= TMap.SECTION_SIZE;
         rY0 *= TMap.SECTION_SIZE;
-        Area regionArea = new Area(rX0,rY0,S-1,S-1);
+        Area regionArea = new Area(rX0,rY0,rX0+S-1,rY0+S-1);
         if (refreshArea.intersection(regionArea)) {
             final int qSize = S / 2;
             Area quadArea = new Area();
@@ -19,12 +19,16 @@ public class Geometry {
     
     private final TMap map;
     private final GeoRegion[][] regions;
+    private final Visibility visibility;
+    private final Area lightArea;
     
     
     public Geometry(TMap map) {
         int size = map.dimension().sizeInRegions();
         this.map = map;
         this.regions = new GeoRegion[size][size];
+        this.visibility = new Visibility();
+        this.lightArea = new Area(0,0);
         for (int r = 0; r < size; r++) {
             for (int c = 0; c < size; c++) {
                 regions[r][c] = new GeoRegion(map,c,r);
@@ -36,25 +40,49 @@ public class Geometry {
         return new Light2D(this,origin,radius);
     }
     
+    /**
+     * Builds the light's visibility polygon by angular sweep (see Visibility).
+     * Nothing is built if the light is outside the map.
+     */
     protected void buildLight(Light2D light) {
-        List<LightObstacle> edges = new ArrayList<>(16);
-        Set<Vector2f> vertices = new HashSet<>(31);
-        buildLight(light,edges,vertices);
+        light.clear();
+        final float radius = light.radius();
+        final float ox = light.x();
+        final float oy = light.y();
+        lightArea.set(
+        (int)(ox-radius),(int)(oy-radius),
+        (int)(ox+radius),(int)(oy+radius));
+        if (map.area().intersection(lightArea)
+        && ox >= lightArea.minX() && ox < lightArea.maxX() + 1
+        && oy >= lightArea.minY() && oy < lightArea.maxY() + 1) {
+            visibility.begin(ox,oy,lightArea);
+            final int rx0 = lightArea.minX() / TMap.SECTION_SIZE;
+            final int ry0 = lightArea.minY() / TMap.SECTION_SIZE;
+            final int rx1 = lightArea.maxX() / TMap.SECTION_SIZE;
+            final int ry1 = lightArea.maxY() / TMap.SECTION_SIZE;
+            for (int r = ry0; r <= ry1; r++) {
+                for (int c = rx0; c <= rx1; c++) {
+                    regions[r][c].gatherSegments(visibility,lightArea,c,r);
+                }
+            } visibility.sweep();
+            light.set(visibility.finish(),visibility.polygonSize());
+        }
     }
     
     protected void buildLight(List<Light2D> lights) {
-        if (!lights.isEmpty()) {
-            List<LightObstacle> edges = new ArrayList<>(32); // arbitrary
-            Set<Vector2f> vertices = new HashSet<>(61); // arbitrary prime
-            for (Light2D light : lights) {
-                buildLight(light,edges,vertices);
-            }
+        for (Light2D light : lights) {
+            buildLight(light);
         }
     }
     
-    private void buildLight(Light2D light, List<LightObstacle> edges, Set<Vector2f> vertices) {
-        vertices.clear();
-        edges.clear();
+    /**
+     * The former ray casting: three rays per obstacle vertex, each tested against every obstacle.
+     * O(vertices * obstacles) per light. Kept as a reference for validation and benchmarks.
+     */
+    public void buildLightRaycast(Light2D light) {
+        List<LightObstacle> edges = new ArrayList<>(16);
+        Set<Vector2f> vertices = new HashSet<>(31);
+        List<Ray2D> rays = new ArrayList<>();
         light.clear();
         final float radius = light.radius();
         final float ox = light.x();
@@ -71,8 +99,8 @@ public class Geometry {
             final int ry0 = lightArea.minY() / TMap.SECTION_SIZE;
             final int rx1 = lightArea.maxX() / TMap.SECTION_SIZE;
             final int ry1 = lightArea.maxY() / TMap.SECTION_SIZE;
-            for (int r = rx0; r <= rx1; r++) {
-                for (int c = ry0; c <= ry1; c++) {
+            for (int r = ry0; r <= ry1; r++) {
+                for (int c = rx0; c <= rx1; c++) {
                     regions[r][c].gatherGeometry(
                     light.origin(),lightArea,vertices,edges,c,r);
                 }
@@ -95,14 +123,16 @@ public class Geometry {
                                 t_min = t;
                                 x_min = ox + t * rdx;
                                 y_min = oy + t * rdy;
-                                // atan2 here?
                             }
                         }
                     }
                     if (t_min < Float.MAX_VALUE) {
-                        light.put(new Ray2D(x_min,y_min,angle));
+                        rays.add(new Ray2D(x_min,y_min,angle));
                     }
                 }
+            } Collections.sort(rays);
+            for (Ray2D ray : rays) {
+                light.put(ray.x,ray.y);
             }
         }
     }
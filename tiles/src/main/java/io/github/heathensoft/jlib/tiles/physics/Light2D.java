@@ -6,15 +6,15 @@ import io.github.heathensoft.jlib.tiles.graphics.Color32;
 import org.joml.Vector2f;
 
 import java.nio.FloatBuffer;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * Before drawing a light, it's necessary to check if its geometry
  * is valid. I.e. it had more than 2 vertices. sizeFloat > 4.
  * If the light was built, it will be valid.
- * Light geometry is drawn as a triangle-fan.
+ * Light geometry is drawn as a triangle-fan: the origin, then the visibility
+ * polygon clockwise, with its first vertex repeated to close the fan.
+ * The polygon buffer is kept between builds.
  *
  * @author Frederik Dahl
  * 12/11/2022
@@ -24,7 +24,8 @@ import java.util.List;
 public class Light2D {
     
     private final Geometry context;
-    private final List<Ray2D> rays;
+    private float[] polygon;
+    private int polygon_size;
     private final Vector2f origin;
     private final Color32 color;
     private float intensity;
@@ -32,7 +33,7 @@ public class Light2D {
     private float height;
     
     public Light2D(Geometry context, Vector2f origin, Color32 color, float radius, float height) {
-        this.rays = new ArrayList<>();
+        this.polygon = new float[32];
         this.context = context;
         this.origin = origin;
         this.color = color;
@@ -49,14 +50,12 @@ public class Light2D {
     }
     
     public void get(FloatBuffer buffer) {
-        origin.get(buffer);
-        for (Ray2D r : rays) {
-            buffer.put(r.x).put(r.y);
-        }
+        buffer.put(origin.x).put(origin.y);
+        buffer.put(polygon,0,polygon_size);
     }
     
     public int vertices() {
-        return 1 + rays.size();
+        return 1 + polygon_size / 2;
     }
     
     public int sizeFloat() {
@@ -155,14 +154,23 @@ public class Light2D {
     
     public void updateGeometry() {
         context.buildLight(this);
-        Collections.sort(rays);
     }
     
-    protected void put(Ray2D ray) {
-        rays.add(ray);
+    protected void set(float[] vertices, int floats) {
+        if (floats > polygon.length) {
+            polygon = new float[floats];
+        } System.arraycopy(vertices,0,polygon,0,floats);
+        polygon_size = floats;
+    }
+    
+    protected void put(float x, float y) {
+        if (polygon_size + 2 > polygon.length) {
+            polygon = Arrays.copyOf(polygon,polygon.length * 2);
+        } polygon[polygon_size++] = x;
+        polygon[polygon_size++] = y;
     }
     
     protected void clear() {
-        rays.clear();
+        polygon_size = 0;
     }
 }
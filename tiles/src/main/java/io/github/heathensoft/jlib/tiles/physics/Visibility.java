@@ -0,0 +1,338 @@
+package io.github.heathensoft.jlib.tiles.physics;
+
+import io.github.heathensoft.jlib.common.storage.primitive.IntQueue;
+import io.github.heathensoft.jlib.common.storage.primitive.QTreeCompressed;
+import io.github.heathensoft.jlib.common.utils.Area;
+import io.github.heathensoft.jlib.tiles.physics.obstacle.Edge;
+import org.joml.Math;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Visibility polygon of a point light by angular sweep.
+ *
+ * Obstacles facing the light are added as segments relative to the light origin,
+ * clipped to the light bounds (the bounds are segments as well, so the polygon is closed).
+ * Segment endpoints are sorted once by pseudo-angle (no trigonometry), then swept counter-clockwise
+ * while the segments crossing the sweep ray are kept in a binary heap ordered by distance.
+ * Segments do not cross, so their order along the sweep ray never changes while both are active.
+ * A polygon vertex is emitted wherever the nearest segment changes. O((n + k) log n) per light.
+ *
+ * Circles are added as the chord between their tangent points, split in 2 * density pieces.
+ * Vertices on a circle are projected onto the circle itself.
+ *
+ * All buffers are pooled and grow as needed. Not thread-safe, one instance per thread.
+ *
+ * @author Frederik Dahl
+ * 18/10/2026
+ */
+
+
+final class Visibility {
+
+    private static final float SHRINK = 0.01f; // endpoints moved inward when comparing segments
+
+    private float[] segments = new float[64 * 4]; // x0,y0,x1,y1 (counter-clockwise around the origin)
+    private float[] circles = new float[64 * 3];  // cx,cy,radius (radius 0: not a circle)
+    private long[] events = new long[64 * 2];     // angle bits << 32 | start bit << 31 | segment
+    private int[] heap = new int[64];
+    private int[] heap_pos = new int[64];         // segment -> heap index, -1 if inactive
+    private float[] polygon = new float[64 * 2];
+    private final IntQueue query = new IntQueue(16);
+    private final Area query_area = new Area(0,0);
+    private int num_segments;
+    private int num_events;
+    private int heap_size;
+    private int polygon_size;
+    private float ox, oy;
+    private int bx0, by0, bx1, by1; // light bounds in tiles (inclusive)
+
+    /**
+     * Starts a new polygon
+     * @param x light origin x
+     * @param y light origin y
+     * @param bounds tiles lit (inclusive). The origin must be inside
+     */
+    void begin(float x, float y, Area bounds) {
+        num_segments = 0;
+        polygon_size = 0;
+        ox = x; oy = y;
+        bx0 = bounds.minX(); by0 = bounds.minY();
+        bx1 = bounds.maxX(); by1 = bounds.maxY();
+        float x0 = bx0, y0 = by0, x1 = bx1 + 1, y1 = by1 + 1;
+        addSegment(x0,y0,x1,y0);
+        addSegment(x1,y0,x1,y1);
+        addSegment(x1,y1,x0,y1);
+        addSegment(x0,y1,x0,y0);
+    }
+
+    /** Adds the edges of the clusters facing the light, clipped to the bounds */
+    void addClusters(List<BlockCluster> clusters) {
+        for (int i = 0; i < clusters.size(); i++) {
+            BlockCluster cluster = clusters.get(i);
+            if (cluster.bounds().intersects(bx0,by0,bx1,by1)) {
+                List<Edge> edges = cluster.edges();
+                for (int j = 0; j < edges.size(); j++) {
+                    addEdge(edges.get(j));
+                }
+            }
+        }
+    }
+
+    /** Adds the circles in the tree within the bounds */
+    void addCircles(QTreeCompressed tree, int density) {
+        query_area.set(bx0,by0,bx1,by1);
+        tree.query(query_area,query);
+        while (!query.isEmpty()) {
+            int p = query.dequeue();
+            float radius; switch (p & 0xFF) {
+                case GeoRegion.CIRCLE_S_QID -> radius = BlockType.CIRCLE_S.radius();
+                case GeoRegion.CIRCLE_M_QID -> radius = BlockType.CIRCLE_M.radius();
+                case GeoRegion.CIRCLE_L_QID -> radius = BlockType.CIRCLE_L.radius();
+                default -> { continue; }
+            } addCircle((p >> 20) + 0.5f,((p >> 8) & 0xFFF) + 0.5f,radius,density);
+        }
+    }
+
+    /** Sweeps the segments added since begin */
+    void sweep() {
+        num_events = 0;
+        heap_size = 0;
+        ensureSweepCapacity();
+        for (int s = 0; s < num_segments; s++) {
+            int i = s * 4;
+            float a0 = pseudoAngle(segments[i],segments[i + 1]);
+            float a1 = pseudoAngle(segments[i + 2],segments[i + 3]);
+            heap_pos[s] = -1;
+            if (a0 == a1) continue; // too narrow to occlude anything
+            events[num_events++] = event(a0,true,s);
+            events[num_events++] = event(a1,false,s);
+            if (a0 > a1) heapInsert(s); // crosses angle 0
+        } Arrays.sort(events,0,num_events);
+        int e = 0;
+        while (e < num_events) {
+            long first = events[e];
+            int angle_bits = (int) (first >>> 32);
+            int nearest = heap_size > 0 ? heap[0] : -1;
+            do { long event = events[e];
+                int s = (int) (event & 0x7FFF_FFFFL);
+                if ((event & 0x8000_0000L) == 0) {
+                    if (heap_pos[s] >= 0) heapRemove(s);
+                } else if (heap_pos[s] < 0) heapInsert(s);
+            } while (++e < num_events && (int) (events[e] >>> 32) == angle_bits);
+            int next = heap_size > 0 ? heap[0] : -1;
+            if (nearest != next) {
+                int s = (int) (first & 0x7FFF_FFFFL);
+                int i = s * 4 + ((first & 0x8000_0000L) == 0 ? 2 : 0);
+                float dx = segments[i], dy = segments[i + 1];
+                if (nearest >= 0) emit(nearest,dx,dy);
+                if (next >= 0) emit(next,dx,dy);
+            }
+        }
+    }
+
+    /**
+     * Completes the swept polygon: clockwise, in world space, with the first vertex repeated
+     * (a closed triangle-fan around the origin, excluding the origin). Once per sweep.
+     * @return polygon buffer, polygonSize() floats
+     */
+    float[] finish() {
+        if (polygon_size > 0) {
+            for (int i = 0, j = polygon_size - 2; i < j; i += 2, j -= 2) {
+                float x = polygon[i], y = polygon[i + 1];
+                polygon[i] = polygon[j]; polygon[i + 1] = polygon[j + 1];
+                polygon[j] = x; polygon[j + 1] = y;
+            } for (int i = 0; i < polygon_size; i += 2) {
+                polygon[i] += ox;
+                polygon[i + 1] += oy;
+            } appendVertex(polygon[0],polygon[1]);
+        } return polygon;
+    }
+
+    int polygonSize() {
+        return polygon_size;
+    }
+
+    private void addEdge(Edge edge) {
+        final int axis = edge.axis();
+        final int p0 = edge.p0();
+        final int p1 = edge.p1();
+        if (edge.face().axis == Edge.Axis.X) {
+            if (axis < by0 || axis > by1 + 1) return;
+            if (p1 > p0 ? oy <= axis : oy >= axis) return; // facing away
+            int x0 = Math.max(Math.min(p0,p1),bx0);
+            int x1 = Math.min(Math.max(p0,p1),bx1 + 1);
+            if (x0 < x1) addSegment(x0,axis,x1,axis);
+        } else {
+            if (axis < bx0 || axis > bx1 + 1) return;
+            if (p1 > p0 ? ox <= axis : ox >= axis) return;
+            int y0 = Math.max(Math.min(p0,p1),by0);
+            int y1 = Math.min(Math.max(p0,p1),by1 + 1);
+            if (y0 < y1) addSegment(axis,y0,axis,y1);
+        }
+    }
+
+    /** Adds the chord between the tangent points seen from the light (exact angular extent) */
+    private void addCircle(float cx, float cy, float radius, int density) {
+        float nx = cx - ox, ny = cy - oy;
+        float l2 = nx * nx + ny * ny;
+        float r2 = radius * radius;
+        if (l2 <= r2) return; // inside
+        final int d = Math.max(1,density * Math.round(radius));
+        final float k = 1 - r2 / l2; // chord midpoint: origin + n * k
+        final float step = radius * Math.sqrt(l2 - r2) / (l2 * d);
+        float mx = ox + nx * k, my = oy + ny * k;
+        float px = -ny * step, py = nx * step; // along the chord
+        for (int i = -d; i < d; i++) {
+            if (addSegment(mx + px * i,my + py * i,mx + px * (i + 1),my + py * (i + 1))) {
+                int c = (num_segments - 1) * 3;
+                circles[c] = cx - ox;
+                circles[c + 1] = cy - oy;
+                circles[c + 2] = radius;
+            }
+        }
+    }
+
+    /** World space segment. Oriented counter-clockwise around the origin, skipped if collinear */
+    private boolean addSegment(float x0, float y0, float x1, float y1) {
+        x0 -= ox; y0 -= oy; x1 -= ox; y1 -= oy;
+        float cross = x0 * y1 - y0 * x1;
+        if (cross == 0) return false;
+        if (num_segments * 4 == segments.length) {
+            segments = Arrays.copyOf(segments,segments.length * 2);
+            circles = Arrays.copyOf(circles,circles.length * 2);
+        } int i = num_segments * 4;
+        if (cross > 0) {
+            segments[i] = x0; segments[i + 1] = y0;
+            segments[i + 2] = x1; segments[i + 3] = y1;
+        } else {
+            segments[i] = x1; segments[i + 1] = y1;
+            segments[i + 2] = x0; segments[i + 3] = y0;
+        } circles[num_segments * 3 + 2] = 0;
+        num_segments++;
+        return true;
+    }
+
+    /** Intersection of the ray (dx, dy) and segment s, projected onto the circle if s is a circle */
+    private void emit(int s, float dx, float dy) {
+        int i = s * 4;
+        float x0 = segments[i], y0 = segments[i + 1];
+        float ex = segments[i + 2] - x0, ey = segments[i + 3] - y0;
+        float denominator = dx * ey - dy * ex;
+        float x = x0, y = y0;
+        if (denominator != 0) {
+            float t = (x0 * ey - y0 * ex) / denominator;
+            x = dx * t; y = dy * t;
+        } float radius = circles[s * 3 + 2];
+        if (radius > 0) {
+            float cx = circles[s * 3], cy = circles[s * 3 + 1];
+            float inv_length = Math.invsqrt(dx * dx + dy * dy);
+            float ux = dx * inv_length, uy = dy * inv_length;
+            float tca = cx * ux + cy * uy;
+            float d2 = cx * cx + cy * cy - tca * tca;
+            if (d2 <= radius * radius) {
+                float t = tca - Math.sqrt(radius * radius - d2);
+                if (t >= 0) { x = ux * t; y = uy * t; }
+            }
+        } if (polygon_size > 0) {
+            float px = polygon[polygon_size - 2];
+            float py = polygon[polygon_size - 1];
+            if (Math.abs(px - x) < 0.0001f && Math.abs(py - y) < 0.0001f) return;
+        } appendVertex(x,y);
+    }
+
+    private void appendVertex(float x, float y) {
+        if (polygon_size + 2 > polygon.length) {
+            polygon = Arrays.copyOf(polygon,polygon.length * 2);
+        } polygon[polygon_size++] = x;
+        polygon[polygon_size++] = y;
+    }
+
+    private void ensureSweepCapacity() {
+        if (events.length < num_segments * 2) {
+            events = new long[num_segments * 4];
+        } if (heap.length < num_segments) {
+            heap = new int[num_segments * 2];
+            heap_pos = new int[num_segments * 2];
+        }
+    }
+
+    /** @return true if segment a is closer to the origin than b, along any ray crossing both */
+    private boolean closer(int a, int b) {
+        int i = a * 4, j = b * 4;
+        float ax0 = segments[i], ay0 = segments[i + 1], ax1 = segments[i + 2], ay1 = segments[i + 3];
+        float bx0 = segments[j], by0 = segments[j + 1], bx1 = segments[j + 2], by1 = segments[j + 3];
+        float sa0 = side(bx0,by0,bx1,by1,ax0 + (ax1 - ax0) * SHRINK,ay0 + (ay1 - ay0) * SHRINK);
+        float sa1 = side(bx0,by0,bx1,by1,ax1 + (ax0 - ax1) * SHRINK,ay1 + (ay0 - ay1) * SHRINK);
+        if (sa0 >= 0 && sa1 >= 0) return true; // a on the origin side of b
+        if (sa0 <= 0 && sa1 <= 0) return false;
+        float sb0 = side(ax0,ay0,ax1,ay1,bx0 + (bx1 - bx0) * SHRINK,by0 + (by1 - by0) * SHRINK);
+        float sb1 = side(ax0,ay0,ax1,ay1,bx1 + (bx0 - bx1) * SHRINK,by1 + (by0 - by1) * SHRINK);
+        return sb0 <= 0 && sb1 <= 0; // b beyond a
+    }
+
+    private void heapInsert(int s) {
+        int i = heap_size++;
+        heap[i] = s;
+        heap_pos[s] = i;
+        siftUp(i);
+    }
+
+    private void heapRemove(int s) {
+        int i = heap_pos[s];
+        heap_pos[s] = -1;
+        int last = heap[--heap_size];
+        if (i < heap_size) {
+            heap[i] = last;
+            heap_pos[last] = i;
+            siftDown(siftUp(i));
+        }
+    }
+
+    private int siftUp(int i) {
+        int s = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+            int p = heap[parent];
+            if (!closer(s,p)) break;
+            heap[i] = p;
+            heap_pos[p] = i;
+            i = parent;
+        } heap[i] = s;
+        heap_pos[s] = i;
+        return i;
+    }
+
+    private void siftDown(int i) {
+        int s = heap[i];
+        int half = heap_size >> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int c = heap[child];
+            int right = child + 1;
+            if (right < heap_size && closer(heap[right],c)) {
+                c = heap[child = right];
+            } if (!closer(c,s)) break;
+            heap[i] = c;
+            heap_pos[c] = i;
+            i = child;
+        } heap[i] = s;
+        heap_pos[s] = i;
+    }
+
+    /** > 0 if (px, py) is left of (on the origin side of) the counter-clockwise segment */
+    private static float side(float x0, float y0, float x1, float y1, float px, float py) {
+        return (x1 - x0) * (py - y0) - (y1 - y0) * (px - x0);
+    }
+
+    /** Monotonic in the angle of (dx, dy), counter-clockwise from the positive x-axis. [0, 4) */
+    private static float pseudoAngle(float dx, float dy) {
+        float p = dx / (Math.abs(dx) + Math.abs(dy));
+        return dy < 0 ? 3 + p : 1 - p;
+    }
+
+    private static long event(float angle, boolean start, int segment) {
+        return ((long) Float.floatToIntBits(angle) << 32) | (start ? 0x8000_0000L : 0) | segment;
+    }
+}
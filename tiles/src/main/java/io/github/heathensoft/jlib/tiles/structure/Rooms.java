@@ -1,354 +1,526 @@
 package io.github.heathensoft.jlib.tiles.structure;
 
-import io.github.heathensoft.jlib.common.storage.primitive.*;
-import io.github.heathensoft.jlib.common.storage.primitive.BitSet;
+import io.github.heathensoft.jlib.common.storage.primitive.IntArray2D;
+import io.github.heathensoft.jlib.common.storage.primitive.IntBag;
+import io.github.heathensoft.jlib.common.storage.primitive.IntQueue;
 import io.github.heathensoft.jlib.common.utils.Area;
 import io.github.heathensoft.jlib.common.utils.IDPool;
-import io.github.heathensoft.jlib.tiles.TileUtil;
 
-import java.util.*;
+import java.util.Arrays;
 
 /**
+ * Rooms are the 4-connected regions of non-obstacle tiles.
+ *
+ * Connectivity is maintained incrementally. The map is divided into sections (TMap.SECTION_SIZE).
+ * Within a section, every connected region is a "part". A room is a disjoint set of parts,
+ * joined where parts touch across section borders. Every part stores its room directly,
+ * and the parts of a room are linked in a list. Union relabels the room with fewer parts.
+ *
+ * remove (carving out space) only re-floods the sections intersecting the area, then unions rooms.
+ * place (adding obstacles) re-floods the sections intersecting the area. If that could split a room,
+ * the parts bordering the new obstacles are searched from simultaneously (part by part, round robin).
+ * Searches that meet are joined. A search that runs out of parts is a complete room of its own.
+ * The search stops when one search is left (the largest piece keeps the room id, and is never fully visited).
+ *
+ * All scratch buffers are kept and reused. Nothing the size of the map is allocated after construction.
+ *
  * @author Frederik Dahl
  * 08/11/2022
  */
 
 
 public class Rooms {
-    
+
     public static final int OBSTACLE = 0;
-    
+
+    private static final int SECTION_SIZE = TMap.SECTION_SIZE;
+    private static final int OPEN = -1; // open tile, not yet flooded into a part
+
     private final TMap map;
-    private final IDPool ids;
-    private final IntBag rooms;
-    private final IntArray2D layout;
-    
+    private final IntArray2D layout; // tile -> part
+    private final IDPool part_ids;
+    private final IDPool room_ids;
+    private final int map_size;
+    private final int sections; // sections per side
+
+    private int[] part_room;    // part -> room
+    private int[] part_section; // part -> section index
+    private int[] part_tiles;   // part -> tile count
+    private int[] part_next;    // parts of a room (circular list)
+    private int[] part_prev;
+    private int[] part_mark;    // part -> stamp
+    private int[] part_search;  // part -> search (valid if marked)
+    private int[] room_head;    // room -> first part (0 if none)
+    private int[] room_parts;   // room -> part count
+    private int[] room_tiles;   // room -> tile count
+    private int part_stamp;
+
+    // scratch (reused)
+    private final int[] visited; // section local tile -> stamp
+    private int visit_stamp;
+    private final IntQueue queue;
+    private final IntBag retired;
+    private final IntBag adjacent;
+    private final IntBag seeds;
+    private long[] seed_keys;
+    private Search[] searches;
+    private int[] search_group;
+    private final Area tmp_area;
+
     public Rooms(TMap map) {
         TMap.Size map_dim = map.dimension();
-        int m_size = map_dim.size();
         this.map = map;
-        this.ids = new IDPool();
-        this.ids.obtainID(); // start from 1 (0 is obstacle)
-        this.rooms = new IntBag(32);
-        this.layout = new IntArray2D(m_size,m_size);
-        int[][] adj = TileUtil.adjacent4;
-        Area m_bounds = map.area();
-        BitSet visited = new BitSet(map_dim.tileCount());
-        IntQueue search_queue =
-        new IntQueue(m_size * 2);
-        int cx, cy, nx, ny, v_idx;
-        for (int r = 0; r < m_size; r++) {
-            for (int c = 0; c < m_size; c++) {
-                v_idx = c + r * m_size;
-                if (!visited.get(v_idx)) {
-                    visited.set(v_idx);
-                    if (!map.isObstacle(c,r)) {
-                        search_queue.enqueue(c);
-                        search_queue.enqueue(r);
-                        int room = newRoom();
-                        while (!search_queue.isEmpty()) {
-                            cx = search_queue.dequeue();
-                            cy = search_queue.dequeue();
-                            layout.set(room,cx,cy);
-                            addTile(room);
-                            for (int i = 0; i < 4; i++) {
-                                nx = cx + adj[i][0];
-                                ny = cy + adj[i][1];
-                                if (m_bounds.contains(nx,ny)) {
-                                    v_idx = nx + ny * m_size;
-                                    if (!visited.get(v_idx)) {
-                                        visited.set(v_idx);
-                                        if (!map.isObstacle(nx,ny)) {
-                                            search_queue.enqueue(nx);
-                                            search_queue.enqueue(ny);
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
+        this.map_size = map_dim.size();
+        this.sections = map_size / SECTION_SIZE;
+        this.layout = new IntArray2D(map_size,map_size);
+        this.part_ids = new IDPool();
+        this.room_ids = new IDPool();
+        this.part_ids.obtainID(); // start from 1 (0 is obstacle)
+        this.room_ids.obtainID();
+        this.part_room = new int[64];
+        this.part_section = new int[64];
+        this.part_tiles = new int[64];
+        this.part_next = new int[64];
+        this.part_prev = new int[64];
+        this.part_mark = new int[64];
+        this.part_search = new int[64];
+        this.room_head = new int[64];
+        this.room_parts = new int[64];
+        this.room_tiles = new int[64];
+        this.visited = new int[SECTION_SIZE * SECTION_SIZE];
+        this.queue = new IntQueue(SECTION_SIZE * 4);
+        this.retired = new IntBag(32);
+        this.adjacent = new IntBag(16);
+        this.seeds = new IntBag(32);
+        this.seed_keys = new long[32];
+        this.searches = new Search[0];
+        this.search_group = new int[8];
+        this.tmp_area = new Area(0,0);
+        int[][] tiles = layout.get();
+        for (int r = 0; r < map_size; r++) {
+            for (int c = 0; c < map_size; c++) {
+                tiles[r][c] = map.isObstacle(c,r) ? OBSTACLE : OPEN;
+            }
+        } for (int sy = 0; sy < sections; sy++) {
+            for (int sx = 0; sx < sections; sx++) {
+                flood(sx,sy);
+            }
+        } for (int r = 0; r < map_size; r++) {
+            for (int c = 0; c < map_size; c++) {
+                if (c + 1 < map_size && (c + 1) % SECTION_SIZE == 0) connect(c,r,c + 1,r);
+                if (r + 1 < map_size && (r + 1) % SECTION_SIZE == 0) connect(c,r,c,r + 1);
             }
         }
     }
-    
+
     public synchronized void remove(Area area) {
-        Area tmpA0 = new Area(area);
-        Area m_bounds = map.area();
-        if (m_bounds.intersection(tmpA0)) {
-            TMap.Size map_dim = map.dimension();
-            int tmp_room_id = newRoom();
-            int room_id = -1;
-            int x0 = area.minX();
-            int y0 = area.minY();
-            int x1 = area.maxX();
-            int y1 = area.maxY();
+        Area bounds = tmp_area;
+        bounds.set(area);
+        if (map.area().intersection(bounds)) {
+            int[][] tiles = layout.get();
+            int x0 = bounds.minX();
+            int y0 = bounds.minY();
+            int x1 = bounds.maxX();
+            int y1 = bounds.maxY();
+            boolean changed = false;
             for (int r = y0; r <= y1; r++) {
                 for (int c = x0; c <= x1; c++) {
-                    room_id = getID(c,r);
-                    if (room_id != OBSTACLE) {
-                        removeTile(room_id);
-                    } addTile(tmp_room_id);
-                    layout.set(tmp_room_id,c,r);}
-            } Set<Integer> unique_rooms = new HashSet<>();
-            int w = x0 - 1; int n = y1 + 1;
-            int e = x1 + 1; int s = y0 - 1;
-            if (w >= m_bounds.minX()) { // SW -> NW
-                for (int r = y0; r <= y1; r++) {
-                    room_id = getID(w,r);
-                    if (room_id != OBSTACLE)
-                        unique_rooms.add(room_id);}
-            } if (n <= m_bounds.maxY()) { // NW -> NE
-                for (int c = x0; c <= x1; c++) {
-                    room_id = getID(c,n);
-                    if (room_id != OBSTACLE)
-                        unique_rooms.add(room_id);}
-            } if (e <= m_bounds.maxX()) { // NE -> SE
-                for (int r = y1; r >= y0; r--) {
-                    room_id = getID(e,r);
-                    if (room_id != OBSTACLE)
-                        unique_rooms.add(room_id);}
-            } if (s >= m_bounds.minY()) { // SE -> SW
-                for (int c = x1; c >= x0; c--) {
-                    room_id = getID(c,s);
-                    if (room_id != OBSTACLE)
-                        unique_rooms.add(room_id);}
-            } if (!unique_rooms.isEmpty()){
-                // An empty set means that the carved out area is surrounded by obstacles.
-                // That means we don't need to flood fill + we have already built a new room.
-                // No need to do anything (return).
-                // atp. the set is NOT empty. So we have to find the largest room and flood fill
-                // its id into smaller adjacent rooms.
-                if (unique_rooms.size() == 1){
-                    for (var i : unique_rooms) room_id = i; // this is correct
-                } else { List<Integer> room_list = new ArrayList<>(unique_rooms);
-                    room_list.sort((o1, o2) -> Integer.compare(rooms.get(o2),rooms.get(o1)));
-                    room_id = room_list.get(0); // room_id is the largest room
-                } int[][] adj = TileUtil.adjacent4;
-                BitSet visited = new BitSet(map_dim.tileCount());
-                IntQueue search_queue = new IntQueue(128);
-                int cx = tmpA0.minX(); // arbitrary point in area
-                int cy = tmpA0.minY(); // arbitrary point in area
-                int nx, ny, idx;
-                search_queue.enqueue(cx);
-                search_queue.enqueue(cy);
-                visited.set(cx + cy * map_dim.size());
-                layout.set(room_id,cx,cy);
-                removeTile(tmp_room_id);
-                addTile(room_id);
-                while (!search_queue.isEmpty()) {
-                    cx = search_queue.dequeue();
-                    cy = search_queue.dequeue();
-                    for (int i = 0; i < 4; i++) {
-                        nx = cx + adj[i][0];
-                        ny = cy + adj[i][1];
-                        if (m_bounds.contains(nx,ny)) {
-                            idx = nx + ny * map_dim.size();
-                            if (!visited.get(idx)) {
-                                visited.set(idx);
-                                int prev_id = getID(nx,ny);
-                                if (prev_id != OBSTACLE) {
-                                    if (prev_id != room_id) {
-                                        search_queue.enqueue(nx);
-                                        search_queue.enqueue(ny);
-                                        layout.set(room_id,nx,ny);
-                                        removeTile(prev_id);
-                                        addTile(room_id);
-                                    }
-                                }
-                            }
-                        }
+                    if (tiles[r][c] == OBSTACLE) {
+                        tiles[r][c] = OPEN;
+                        changed = true;
                     }
                 }
+            } if (changed) {
+                // Carving out space never splits a room. Re-flood the affected sections
+                // (new parts join, and union, the rooms of the tiles they cover),
+                // then union across the section borders where new space was opened.
+                next_part_stamp();
+                retired.clear();
+                reflood(bounds);
+                for (int r = y0; r <= y1; r++) {
+                    for (int c = x0; c <= x1; c++) {
+                        if (c % SECTION_SIZE == 0 && c > 0) connect(c,r,c - 1,r);
+                        if ((c + 1) % SECTION_SIZE == 0 && c + 1 < map_size) connect(c,r,c + 1,r);
+                        if (r % SECTION_SIZE == 0 && r > 0) connect(c,r,c,r - 1);
+                        if ((r + 1) % SECTION_SIZE == 0 && r + 1 < map_size) connect(c,r,c,r + 1);
+                    }
+                } retire();
             }
         }
     }
-    
+
     public synchronized void place(Area area) {
-        // this is a generic placement method.
-        // it does not matter how many tiles are placed at once.
-        // more to consider than if we were to only place singles.
-        Area tmpA0 = new Area(area);
-        Area m_bounds = map.area();
-        if (m_bounds.intersection(tmpA0)) {
-            int x0 = tmpA0.minX();
-            int y0 = tmpA0.minY();
-            int x1 = tmpA0.maxX();
-            int y1 = tmpA0.maxY();
-            int space_removed = 0;
+        Area bounds = tmp_area;
+        bounds.set(area);
+        if (map.area().intersection(bounds)) {
+            int[][] tiles = layout.get();
+            int x0 = bounds.minX();
+            int y0 = bounds.minY();
+            int x1 = bounds.maxX();
+            int y1 = bounds.maxY();
+            next_part_stamp();
+            retired.clear();
             for (int r = y0; r <= y1; r++) {
                 for (int c = x0; c <= x1; c++) {
-                    int room = getID(c,r);
-                    if (room != OBSTACLE) {
-                        layout.set(OBSTACLE,c,r);
-                        space_removed++;
-                        removeTile(room);
+                    int part = tiles[r][c];
+                    if (part != OBSTACLE) {
+                        if (part_mark[part] != part_stamp) {
+                            part_mark[part] = part_stamp;
+                            retired.push(part);
+                        } tiles[r][c] = OBSTACLE;
                     }
                 }
+            } if (!retired.isEmpty()) {
+                // New parts keep the room of the tiles they cover (for now)
+                reflood(bounds);
+                retire();
+                split(bounds);
             }
-            if (space_removed > 0) {
-                tmpA0.expand(4);
-                m_bounds.intersection(tmpA0);
-                x0 = tmpA0.minX();
-                y0 = tmpA0.minY();
-                x1 = tmpA0.maxX();
-                y1 = tmpA0.maxY();
-                int lx, ly, idx,
-                cx, cy, nx, ny, room;
-                int cols = tmpA0.cols();
-                int rows = tmpA0.rows();
-                Area tmpA1 = new Area(area);
-                tmpA1.expand(1);
-                m_bounds.intersection(tmpA1);
-                int[][] adj = TileUtil.adjacent4;
-                BitSet visited = new BitSet(rows*cols);
-                IntQueue search_queue = new IntQueue(rows * 2);
-                List<Divide> divide_list = new ArrayList<>();
-                for (int m_y = y0; m_y <= y1; m_y++) {
-                    ly = m_y - y0;
-                    for (int m_x = x0; m_x <= x1; m_x++) {
-                        lx = m_x - x0;
-                        idx = lx + ly * cols;
-                        if (!visited.get(idx)) {
-                            visited.set(idx);
-                            room = getID(m_x,m_y);
-                            if (room != OBSTACLE) {
-                                search_queue.enqueue(m_x);
-                                search_queue.enqueue(m_y);
-                                Divide divide = new Divide(m_x,m_y,room);
-                                while (!search_queue.isEmpty()) {
-                                    cx = search_queue.dequeue();
-                                    cy = search_queue.dequeue();
-                                    divide.expand(cx,cy);
-                                    for (int i = 0; i < 4; i++) {
-                                        nx = cx + adj[i][0];
-                                        ny = cy + adj[i][1];
-                                        if (tmpA0.contains(nx,ny)) {
-                                            idx = (nx - x0) + (ny - y0) * cols;
-                                            if (!visited.get(idx)) {
-                                                visited.set(idx);
-                                                room = getID(nx,ny);
-                                                if (room != OBSTACLE) {
-                                                    search_queue.enqueue(nx);
-                                                    search_queue.enqueue(ny);
-                                                }
-                                            }
-                                        }
-                                    }
-                                }
-                                if (divide.area.intersects(tmpA1))
-                                    divide_list.add(divide);
-                            }
+        }
+    }
+
+    public int getID(int x, int y) {
+        int part = layout.get(x,y);
+        return part == OBSTACLE ? OBSTACLE : part_room[part];
+    }
+
+    public boolean isObstacle(int x, int y) {
+        return layout.get(x,y) == OBSTACLE;
+    }
+
+    /** @return number of tiles in the room */
+    public synchronized int size(int room) {
+        return room > OBSTACLE && room < room_tiles.length ? room_tiles[room] : 0;
+    }
+
+    /** Re-flood every section intersecting the bounds. Replaced parts are collected in retired */
+    private void reflood(Area bounds) {
+        int sx0 = bounds.minX() / SECTION_SIZE;
+        int sy0 = bounds.minY() / SECTION_SIZE;
+        int sx1 = bounds.maxX() / SECTION_SIZE;
+        int sy1 = bounds.maxY() / SECTION_SIZE;
+        for (int sy = sy0; sy <= sy1; sy++) {
+            for (int sx = sx0; sx <= sx1; sx++) {
+                flood(sx,sy);
+            }
+        }
+    }
+
+    /**
+     * Flood the open tiles of a section into new parts.
+     * A new part joins the room of the tiles it covers (the union if more than one), or a new room.
+     * Covered parts are collected in retired (marked with the current part stamp).
+     */
+    private void flood(int sx, int sy) {
+        final int[][] tiles = layout.get();
+        final int x0 = sx * SECTION_SIZE;
+        final int y0 = sy * SECTION_SIZE;
+        final int section = sx + sy * sections;
+        final int stamp = next_visit_stamp();
+        for (int ly = 0; ly < SECTION_SIZE; ly++) {
+            for (int lx = 0; lx < SECTION_SIZE; lx++) {
+                int idx = lx + ly * SECTION_SIZE;
+                if (visited[idx] == stamp) continue;
+                visited[idx] = stamp;
+                if (tiles[y0 + ly][x0 + lx] == OBSTACLE) continue;
+                int part = newPart(section);
+                int room = OBSTACLE;
+                queue.clear();
+                queue.enqueue(idx);
+                while (!queue.isEmpty()) {
+                    idx = queue.dequeue();
+                    int cx = idx % SECTION_SIZE;
+                    int cy = idx / SECTION_SIZE;
+                    int prev = tiles[y0 + cy][x0 + cx];
+                    if (prev > OBSTACLE) {
+                        if (part_mark[prev] != part_stamp) {
+                            part_mark[prev] = part_stamp;
+                            retired.push(prev);
+                        } room = room == OBSTACLE ? part_room[prev] : union(room,part_room[prev]);
+                    } tiles[y0 + cy][x0 + cx] = part;
+                    part_tiles[part]++;
+                    if (cx > 0) visit(tiles,x0,y0,idx - 1,stamp);
+                    if (cy > 0) visit(tiles,x0,y0,idx - SECTION_SIZE,stamp);
+                    if (cx + 1 < SECTION_SIZE) visit(tiles,x0,y0,idx + 1,stamp);
+                    if (cy + 1 < SECTION_SIZE) visit(tiles,x0,y0,idx + SECTION_SIZE,stamp);
+                } join(room == OBSTACLE ? newRoom() : room,part);
+            }
+        }
+    }
+
+    private void visit(int[][] tiles, int x0, int y0, int idx, int stamp) {
+        if (visited[idx] != stamp) {
+            visited[idx] = stamp;
+            if (tiles[y0 + idx / SECTION_SIZE][x0 + idx % SECTION_SIZE] != OBSTACLE) {
+                queue.enqueue(idx);
+            }
+        }
+    }
+
+    /** Union the rooms of two adjacent tiles (if both are open) */
+    private void connect(int x0, int y0, int x1, int y1) {
+        int a = layout.get(x0,y0);
+        int b = layout.get(x1,y1);
+        if (a > OBSTACLE && b > OBSTACLE) {
+            union(part_room[a],part_room[b]);
+        }
+    }
+
+    /** Unlink and return the retired parts. Rooms left without parts are returned */
+    private void retire() {
+        for (int i = 0; i < retired.size(); i++) {
+            int part = retired.get(i);
+            unlink(part);
+            part_ids.returnID(part);
+        } retired.clear();
+    }
+
+    /**
+     * Any piece of a room split by new obstacles contains a part bordering the bounds.
+     * Those parts (seeds) are grouped by room. A room with two or more seeds is searched.
+     */
+    private void split(Area bounds) {
+        Area ring = bounds; // bounds are not used after this
+        ring.expand(1);
+        map.area().intersection(ring);
+        int[][] tiles = layout.get();
+        next_part_stamp();
+        seeds.clear();
+        for (int r = ring.minY(); r <= ring.maxY(); r++) {
+            for (int c = ring.minX(); c <= ring.maxX(); c++) {
+                int part = tiles[r][c];
+                if (part != OBSTACLE && part_mark[part] != part_stamp) {
+                    part_mark[part] = part_stamp;
+                    seeds.push(part);
+                }
+            }
+        } int count = seeds.size();
+        if (count > 1) {
+            if (seed_keys.length < count) seed_keys = new long[count * 2];
+            for (int i = 0; i < count; i++) {
+                int part = seeds.get(i);
+                seed_keys[i] = ((long) part_room[part] << 32) | part;
+            } Arrays.sort(seed_keys,0,count);
+            int from = 0;
+            while (from < count) {
+                int room = (int) (seed_keys[from] >>> 32);
+                int to = from + 1;
+                while (to < count && (int) (seed_keys[to] >>> 32) == room) to++;
+                if (to - from > 1) search(room,from,to);
+                from = to;
+            }
+        }
+    }
+
+    /** Search the room from seed_keys[from, to), splitting off every search group that runs out of parts */
+    private void search(int room, int from, int to) {
+        final int k = to - from;
+        if (searches.length < k) {
+            int n = searches.length;
+            searches = Arrays.copyOf(searches,k * 2);
+            for (int i = n; i < searches.length; i++) searches[i] = new Search();
+            search_group = new int[k * 2];
+        } final int stamp = next_part_stamp();
+        for (int i = 0; i < k; i++) {
+            int seed = (int) seed_keys[from + i];
+            searches[i].reset(seed);
+            part_mark[seed] = stamp;
+            part_search[seed] = i;
+            search_group[i] = i;
+        } int groups = k; // groups still searching
+        while (groups > 1) {
+            for (int i = 0; i < k && groups > 1; i++) {
+                Search search = searches[i];
+                if (search.exhausted()) continue;
+                int group = group(i);
+                adjacent(search.next());
+                for (int j = 0; j < adjacent.size(); j++) {
+                    int part = adjacent.get(j);
+                    if (part_mark[part] != stamp) {
+                        part_mark[part] = stamp;
+                        part_search[part] = i;
+                        search.push(part);
+                    } else { int other = group(part_search[part]);
+                        if (other != group) {
+                            search_group[other] = group;
+                            groups--;
                         }
                     }
-                } if (divide_list.size() > 1) {
-                    TMap.Size map_dim = map.dimension();
-                    Divides divides = new Divides(divide_list);
-                    if (!divides.ofInterest.isEmpty()) {
-                        visited = new BitSet(map_dim.tileCount());
-                        for (var entry: divides.ofInterest.entrySet()) {
-                            List<Divide> divides_by_room = entry.getValue();
-                            int c_room = entry.getKey();
-                            int n_divides = divides_by_room.size();
-                            divides_by_room.sort(Comparator.comparingInt(o -> o.area.size()));
-                            for (int d = 0; d < divides_by_room.size() - 1; d++) {
-                                Divide divide = divides_by_room.get(d);
-                                cx = divide.x; cy = divide.y;
-                                idx = cx + cy * map_dim.size();
-                                if (!visited.get(idx)) {
-                                    int newRoom = newRoom();
-                                    search_queue.clear();
-                                    search_queue.enqueue(cx);
-                                    search_queue.enqueue(cy);
-                                    while (!search_queue.isEmpty() ) {
-                                        cx = search_queue.dequeue();
-                                        cy = search_queue.dequeue();
-                                        removeTile(c_room);
-                                        layout.set(newRoom,cx,cy);
-                                        addTile(newRoom);
-                                        for (int i = 0; i < 4; i++) {
-                                            nx = cx + adj[i][0];
-                                            ny = cy + adj[i][1];
-                                            if (m_bounds.contains(nx,ny)) {
-                                                idx = nx + ny * map_dim.size();
-                                                if (!visited.get(idx)) {
-                                                    visited.set(idx);
-                                                    if (getID(nx,ny) == c_room) {
-                                                        search_queue.enqueue(nx);
-                                                        search_queue.enqueue(ny);
-                                                    }
-                                                }
-                                            }
-                                        }
-                                    }
-                                }
+                } if (search.exhausted() && exhausted(group,k)) {
+                    // the group has visited every part of its piece
+                    int split_room = newRoom();
+                    for (int s = 0; s < k; s++) {
+                        if (group(s) == group) {
+                            Search member = searches[s];
+                            for (int p = 0; p < member.size; p++) {
+                                int part = member.parts[p];
+                                unlink(part);
+                                join(split_room,part);
                             }
                         }
-                    }
+                    } groups--;
                 }
             }
         }
     }
-    
-    public int getID(int x, int y) {
-        return layout.get(x,y);
+
+    private int group(int search) {
+        int group = search;
+        while (search_group[group] != group) {
+            group = search_group[group];
+        } while (search_group[search] != group) {
+            int next = search_group[search];
+            search_group[search] = group;
+            search = next;
+        } return group;
     }
-    
-    public boolean isObstacle(int x, int y) {
-        return layout.get(x,y) == OBSTACLE;
+
+    private boolean exhausted(int group, int k) {
+        for (int s = 0; s < k; s++) {
+            if (!searches[s].exhausted() && group(s) == group) {
+                return false;
+            }
+        } return true;
+    }
+
+    /** Collect the parts adjacent to the part across its section borders (may repeat) */
+    private void adjacent(int part) {
+        final int[][] tiles = layout.get();
+        final int section = part_section[part];
+        final int x0 = (section % sections) * SECTION_SIZE;
+        final int y0 = (section / sections) * SECTION_SIZE;
+        final int x1 = x0 + SECTION_SIZE - 1;
+        final int y1 = y0 + SECTION_SIZE - 1;
+        adjacent.clear();
+        for (int i = 0; i < SECTION_SIZE; i++) {
+            int n;
+            if (x0 > 0 && tiles[y0 + i][x0] == part && (n = tiles[y0 + i][x0 - 1]) != OBSTACLE) adjacent.push(n);
+            if (x1 + 1 < map_size && tiles[y0 + i][x1] == part && (n = tiles[y0 + i][x1 + 1]) != OBSTACLE) adjacent.push(n);
+            if (y0 > 0 && tiles[y0][x0 + i] == part && (n = tiles[y0 - 1][x0 + i]) != OBSTACLE) adjacent.push(n);
+            if (y1 + 1 < map_size && tiles[y1][x0 + i] == part && (n = tiles[y1 + 1][x0 + i]) != OBSTACLE) adjacent.push(n);
+        }
     }
-    
-    private void addTile(int room) {
-        rooms.data()[room]++;
+
+    /** Union two rooms. The room with fewer parts is relabeled and returned. @return the remaining room */
+    private int union(int a, int b) {
+        if (a == b) return a;
+        if (room_parts[a] < room_parts[b]) {
+            int tmp = a; a = b; b = tmp;
+        } int head_a = room_head[a];
+        int head_b = room_head[b];
+        int part = head_b;
+        do { part_room[part] = a;
+            part = part_next[part];
+        } while (part != head_b);
+        int tail_a = part_prev[head_a];
+        int tail_b = part_prev[head_b];
+        part_next[tail_a] = head_b;
+        part_prev[head_b] = tail_a;
+        part_next[tail_b] = head_a;
+        part_prev[head_a] = tail_b;
+        room_parts[a] += room_parts[b];
+        room_tiles[a] += room_tiles[b];
+        room_parts[b] = 0;
+        room_tiles[b] = 0;
+        room_head[b] = 0;
+        room_ids.returnID(b);
+        return a;
     }
-    
-    private void removeTile(int room) {
-        rooms.data()[room]--;
-        if (rooms.data()[room] == 0) {
-            ids.returnID(room);
+
+    private void join(int room, int part) {
+        int head = room_head[room];
+        if (head == 0) {
+            room_head[room] = part;
+            part_next[part] = part;
+            part_prev[part] = part;
+        } else { int next = part_next[head];
+            part_next[head] = part;
+            part_prev[part] = head;
+            part_next[part] = next;
+            part_prev[next] = part;
+        } part_room[part] = room;
+        room_parts[room]++;
+        room_tiles[room] += part_tiles[part];
+    }
+
+    private void unlink(int part) {
+        int room = part_room[part];
+        if (part_next[part] == part) {
+            room_head[room] = 0;
+        } else { int next = part_next[part];
+            int prev = part_prev[part];
+            part_next[prev] = next;
+            part_prev[next] = prev;
+            if (room_head[room] == part) {
+                room_head[room] = next;
+            }
+        } part_room[part] = OBSTACLE;
+        room_tiles[room] -= part_tiles[part];
+        if (--room_parts[room] == 0) {
+            room_ids.returnID(room);
         }
     }
-    
+
+    private int newPart(int section) {
+        int part = part_ids.obtainID();
+        if (part >= part_room.length) {
+            int n = part_room.length * 2;
+            part_room = Arrays.copyOf(part_room,n);
+            part_section = Arrays.copyOf(part_section,n);
+            part_tiles = Arrays.copyOf(part_tiles,n);
+            part_next = Arrays.copyOf(part_next,n);
+            part_prev = Arrays.copyOf(part_prev,n);
+            part_mark = Arrays.copyOf(part_mark,n);
+            part_search = Arrays.copyOf(part_search,n);
+        } part_room[part] = OBSTACLE;
+        part_section[part] = section;
+        part_tiles[part] = 0;
+        part_mark[part] = 0;
+        return part;
+    }
+
     private int newRoom() {
-        int room = ids.obtainID();
-        rooms.set(room,0);
+        int room = room_ids.obtainID();
+        if (room >= room_head.length) {
+            int n = room_head.length * 2;
+            room_head = Arrays.copyOf(room_head,n);
+            room_parts = Arrays.copyOf(room_parts,n);
+            room_tiles = Arrays.copyOf(room_tiles,n);
+        } room_head[room] = 0;
+        room_parts[room] = 0;
+        room_tiles[room] = 0;
         return room;
     }
-    
-    private static final class Divide {
-        private final int x, y, r;
-        private final Area area;
-        private Divide(int x, int y, int r) {
-            this.x = x; this.y = y; this.r = r;
-            this.area = new Area(x,y);
-        }public int x() {return x;}
-        public int y() {return y;}
-        public int room() {return r;}
-        public Area area() {return area;}
-        public void expand(int x, int y) {
-            area.expandToContain(x,y);
-        }
+
+    private int next_part_stamp() {
+        if (++part_stamp == Integer.MAX_VALUE) {
+            Arrays.fill(part_mark,0);
+            part_stamp = 1;
+        } return part_stamp;
     }
-    
-    private static final class Divides {
-        public final Map<Integer,List<Divide>> ofInterest;
-        public Divides(List<Divide> list) {
-            ofInterest = new HashMap<>();
-            for (Divide divide : list) {
-                int room = divide.r;
-                List<Divide> byRoom = ofInterest.get(room);
-                if (byRoom == null) {
-                    byRoom = new ArrayList<>(2);
-                    byRoom.add(divide);
-                    ofInterest.put(room,byRoom);
-                } else byRoom.add(divide);
-            } final IntStack stack = new IntStack(ofInterest.size());
-            ofInterest.forEach((key, value) -> {
-                if (value.size() == 1) {
-                    stack.push(key);
-                }}); while (!stack.isEmpty()) {
-                ofInterest.remove(stack.pop());
-            }
+
+    private int next_visit_stamp() {
+        if (++visit_stamp == Integer.MAX_VALUE) {
+            Arrays.fill(visited,0);
+            visit_stamp = 1;
+        } return visit_stamp;
+    }
+
+    /** Parts visited by one search, in order. Parts [head, size) are not yet expanded */
+    private static final class Search {
+        private int[] parts = new int[16];
+        private int head, size;
+        void reset(int seed) {
+            head = 0; size = 0;
+            push(seed);
+        } void push(int part) {
+            if (size == parts.length) {
+                parts = Arrays.copyOf(parts,size * 2);
+            } parts[size++] = part;
+        } int next() {
+            return parts[head++];
+        } boolean exhausted() {
+            return head == size;
         }
     }
 }
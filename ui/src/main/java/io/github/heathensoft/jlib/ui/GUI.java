@@ -162,6 +162,8 @@ public class GUI {
         public float scrollbar_glow = 0.4f;
         public Vector4f scrollbar_default_color = new Vector4f(0.21f,0.94f,0.55f,1.0f);
 
+        public Vector4f itemgrid_area_select_color = new Vector4f(0.21f,0.94f,0.55f,0.15f);
+
         public int textfield_default_padding = 4;
         public Vector4f textfield_default_custom_color = Color.hex_to_rgb("A9B7C6FF");
 
@@ -1,5 +1,6 @@
 package io.github.heathensoft.jlib.ui;
 
+import io.github.heathensoft.jlib.ui.gfx.CommandBufferGUI;
 import io.github.heathensoft.jlib.ui.gfx.RendererGUI;
 import org.tinylog.Logger;
 
@@ -42,6 +43,15 @@ public abstract class Window { // manager: recently closed list
     protected abstract void onOpen();
     protected abstract void onClose();
     protected abstract void onTermination();
+    /** Windows returning true are drawn with record() instead of render() */
+    protected boolean recordsCommands() { return false; }
+    /**
+     * Draws the window into the buffer on a worker thread, in parallel with other recording windows.
+     * The buffer is submitted in window order. No GL calls, no changes to shared GUI state,
+     * and no U.popRect / U.pushRect (not thread safe). Measure text with buffer.fonts(),
+     * i.e. Text.height(buffer.fonts(),..), not with GUI.fonts (bound by the render thread)
+     */
+    protected void record(CommandBufferGUI buffer, float dt) { }
     protected final void onFocusGain() { if (auto_focused != null) { auto_focused.iFocus(); } }
     protected final void onFocusLoss() { if (auto_focused != null) { auto_focused.iYieldFocus(); } }
 
@@ -5,6 +5,7 @@ import io.github.heathensoft.jlib.common.utils.Color;
 import io.github.heathensoft.jlib.common.utils.U;
 import io.github.heathensoft.jlib.lwjgl.window.Engine;
 import io.github.heathensoft.jlib.lwjgl.window.Resolution;
+import io.github.heathensoft.jlib.ui.gfx.CommandBufferGUI;
 import io.github.heathensoft.jlib.ui.gfx.FontsGUI;
 import io.github.heathensoft.jlib.ui.gfx.RendererGUI;
 import io.github.heathensoft.jlib.ui.text.TextAlignment;
@@ -13,6 +14,8 @@ import org.joml.primitives.Rectanglef;
 import org.tinylog.Logger;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * @author Frederik Dahl
@@ -32,6 +35,9 @@ public class WindowManager implements Disposable {
     private final LinkedList<Window> windows_to_terminate;
     private final LinkedList<Window> tmp_list;
     private final Tooltips tool_tips;
+    private final List<CommandBufferGUI> command_buffers;
+    private final List<ForkJoinTask<?>> record_tasks;
+    private ForkJoinPool record_pool;
 
     private boolean updating_internals;
     private boolean preparing_windows;
@@ -48,6 +54,9 @@ public class WindowManager implements Disposable {
         windows_closed = new LinkedList<>();
         windows_opened = new LinkedList<>();
         windows_recently_closed = new LinkedList<>();
+        command_buffers = new ArrayList<>();
+        record_tasks = new ArrayList<>();
+        record_pool = ForkJoinPool.commonPool();
     }
 
     /**
@@ -136,11 +145,44 @@ public class WindowManager implements Disposable {
         assert_not_updating_internals();
         try { rendering_windows = true;
             Resolution resolution = Engine.get().window().appResolution();
+            startRecording(renderer,dt);
+            int recorded = 0;
             while (!tmp_list.isEmpty()) {
                 Window window = tmp_list.removeFirst();
-                window.render(renderer,dt);
-            } tool_tips.draw(renderer);
-        } finally { rendering_windows = false; }
+                if (window.recordsCommands()) {
+                    record_tasks.get(recorded).join();
+                    renderer.submit(command_buffers.get(recorded++));
+                } else { renderer.flushDeferred();
+                    window.render(renderer,dt);
+                }
+            } renderer.flushDeferred();
+            tool_tips.draw(renderer);
+        } finally { rendering_windows = false;
+            for (ForkJoinTask<?> task : record_tasks) {
+                task.quietlyJoin();
+            } record_tasks.clear();
+        }
+    }
+
+    /** Pool recording windows are drawn on. The common pool by default */
+    public void setRecordPool(ForkJoinPool pool) {
+        assert_not_rendering_windows();
+        this.record_pool = pool == null ? ForkJoinPool.commonPool() : pool;
+    }
+
+    /** Recording windows start drawing into their buffers, while the others are rendered */
+    private void startRecording(RendererGUI renderer, float dt) {
+        Resolution resolution = GUI.resolution();
+        int recorded = 0;
+        for (Window window : tmp_list) {
+            if (window.recordsCommands()) {
+                if (command_buffers.size() == recorded) {
+                    command_buffers.add(new CommandBufferGUI(renderer.fonts()));
+                } CommandBufferGUI buffer = command_buffers.get(recorded++);
+                buffer.begin(resolution.width(),resolution.height());
+                record_tasks.add(record_pool.submit(() -> window.record(buffer,dt)));
+            }
+        }
     }
 
     public <T extends Window> Optional<T> getByName(String key, Class<T> clazz) {
@@ -423,6 +465,9 @@ public class WindowManager implements Disposable {
             window.clearWindowState();
             window.onTermination();
         } windows_by_name.clear();
+        for (CommandBufferGUI buffer : command_buffers) {
+            buffer.dispose();
+        } command_buffers.clear();
         updating_internals = false;
     }
 
@@ -1,13 +1,19 @@
 package io.github.heathensoft.jlib.ui.box.scroll;
 
+import io.github.heathensoft.jlib.common.storage.primitive.IntBag;
+import io.github.heathensoft.jlib.common.utils.Color;
 import io.github.heathensoft.jlib.common.utils.U;
 import io.github.heathensoft.jlib.lwjgl.window.Mouse;
 import io.github.heathensoft.jlib.ui.GUI;
 import io.github.heathensoft.jlib.ui.Interactable;
 import io.github.heathensoft.jlib.ui.box.BoxWindow;
+import io.github.heathensoft.jlib.ui.gfx.PickingIndex;
 import io.github.heathensoft.jlib.ui.gfx.RendererGUI;
+import org.joml.Vector2f;
 import org.joml.primitives.Rectanglef;
 
+import java.util.Arrays;
+
 
 /**
  * @author Frederik Dahl
@@ -21,6 +27,9 @@ public abstract class ItemGrid<T> extends ItemContainer<T> {
     protected float item_height; // height of item without borders
     protected float item_border_thickness; // border for each individual item
     protected float item_desired_spacing; // minimum spacing between items
+    protected final Vector2f area_select_origin = new Vector2f();
+    protected boolean area_selecting; // dragging a selection rectangle from the background
+    private final IntBag picked_ids = new IntBag(16);
 
 
 
@@ -31,6 +40,46 @@ public abstract class ItemGrid<T> extends ItemContainer<T> {
 
 
 
+    /**
+     * Select the items drawn inside the area (screen pixels) in the last rendered frame.
+     * Requires picking enabled on the renderer (RendererGUI.enablePicking).
+     * @param add add to the current selection, else replace it
+     * @return number of items found in the area
+     */
+    public int selectItemsInArea(Rectanglef area, boolean add) {
+        PickingIndex index = GUI.renderer.pickingIndex();
+        if (index == null) return 0;
+        return selectPicked(index.query(area,picked_ids),add);
+    }
+
+    /**
+     * Select the items with their center inside the lasso (screen pixels) in the last rendered frame.
+     * Requires picking enabled on the renderer (RendererGUI.enablePicking).
+     * @param polygon x, y pairs
+     * @param add add to the current selection, else replace it
+     * @return number of items found in the lasso
+     */
+    public int selectItemsInLasso(float[] polygon, int vertices, boolean add) {
+        PickingIndex index = GUI.renderer.pickingIndex();
+        if (index == null) return 0;
+        return selectPicked(index.query(polygon,vertices,picked_ids),add);
+    }
+
+    private int selectPicked(IntBag ids, boolean add) {
+        if (!add) clearSelected();
+        int found = 0;
+        if (!ids.isEmpty()) {
+            ids.sort();
+            for (Item<T> item : filtered_items) {
+                if (Arrays.binarySearch(ids.data(),0,ids.size(),item.iID & 0xFFFF) >= 0) {
+                    if (!item.selected) addToSelectedIfPossible(item);
+                    found++;
+                }
+            }
+        } ids.clear();
+        return found;
+    }
+
     protected abstract void renderItem(RendererGUI renderer, Rectanglef bounds, Item<T> item, float dt);
 
 
@@ -102,12 +151,37 @@ public abstract class ItemGrid<T> extends ItemContainer<T> {
                     }
                 } else index += cols;
                 row_bounds.translate(0,-(item_height + item_spacing));
-            } U.pushRect(3);
+            } renderAreaSelection(renderer);
+            U.pushRect(3);
             renderer.popScissor();
             renderScrollbar(renderer,content_height,x,y,dt);
         } U.pushRect();
     }
 
+    /** Dragging from the background selects the items inside the rectangle (multi-select with picking enabled) */
+    protected void renderAreaSelection(RendererGUI renderer) {
+        if (multi_selection_enabled && renderer.pickingEnabled()) {
+            if (iJustGrabbed(Mouse.LEFT)) {
+                GUI.mousePosition(area_select_origin);
+                area_selecting = true;
+            } if (area_selecting) {
+                Vector2f mouse = GUI.mousePosition(U.popVec2());
+                Rectanglef area = U.popSetRect(
+                        Math.min(area_select_origin.x,mouse.x),
+                        Math.min(area_select_origin.y,mouse.y),
+                        Math.max(area_select_origin.x,mouse.x),
+                        Math.max(area_select_origin.y,mouse.y));
+                if (iGrabbed(Mouse.LEFT)) {
+                    int abgr = Color.rgb_to_intBits(GUI.variables.itemgrid_area_select_color);
+                    renderer.drawElement(area,abgr,RendererGUI.SKIP_ID);
+                } else { area_selecting = false;
+                    selectItemsInArea(area,true);
+                } U.pushRect();
+                U.pushVec2();
+            }
+        } else area_selecting = false;
+    }
+
     protected float itemOffsetX(int cols, float item_width) {
         if (cols == 1) {
             float content_width = boxWidthPadded();
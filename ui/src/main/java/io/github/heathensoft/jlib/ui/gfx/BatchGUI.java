@@ -1,7 +1,7 @@
 package io.github.heathensoft.jlib.ui.gfx;
 
 import io.github.heathensoft.jlib.common.Disposable;
-import io.github.heathensoft.jlib.lwjgl.gfx.BufferObject;
+import io.github.heathensoft.jlib.lwjgl.gfx.StreamBuffer;
 import io.github.heathensoft.jlib.lwjgl.gfx.VertexAttributes;
 import org.lwjgl.system.MemoryUtil;
 
@@ -9,6 +9,8 @@ import java.io.Flushable;
 import java.nio.FloatBuffer;
 
 /**
+ * GL batches write their vertices straight into the StreamBuffer (vertices is its current view).
+ * Recording batches have no GL objects and own their vertices.
  * @author Frederik Dahl
  * 20/10/2023
  */
@@ -16,7 +18,7 @@ import java.nio.FloatBuffer;
 
 abstract class BatchGUI implements Disposable {
     protected VertexAttributes vertexAttribArray;
-    protected BufferObject vertexBuffer;
+    protected StreamBuffer vertexBuffer;
     protected FloatBuffer vertices;
     protected int buffer_capacity;
     protected int draw_calls;
@@ -27,8 +29,12 @@ abstract class BatchGUI implements Disposable {
         int calls = draw_calls;
         draw_calls = 0;
         return calls;
+    } long resetBytesStreamed() {
+        return vertexBuffer == null ? 0 : vertexBuffer.resetBytesStreamed();
+    } int resetStalls() {
+        return vertexBuffer == null ? 0 : vertexBuffer.resetStalls();
     } public void dispose() {
-        if (vertices != null) MemoryUtil.memFree(vertices);
+        if (vertexBuffer == null && vertices != null) MemoryUtil.memFree(vertices);
         Disposable.dispose(vertexAttribArray,vertexBuffer);
     }
 }
@@ -0,0 +1,440 @@
+package io.github.heathensoft.jlib.ui.gfx;
+
+import io.github.heathensoft.jlib.common.Disposable;
+import io.github.heathensoft.jlib.lwjgl.gfx.SamplerArray;
+import io.github.heathensoft.jlib.lwjgl.gfx.Texture;
+import io.github.heathensoft.jlib.lwjgl.gfx.TextureRegion;
+import io.github.heathensoft.jlib.ui.text.Paragraph;
+import io.github.heathensoft.jlib.ui.text.Text;
+import io.github.heathensoft.jlib.ui.text.TextAlignment;
+import org.joml.Vector4f;
+import org.joml.primitives.Rectanglef;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import static io.github.heathensoft.jlib.common.utils.U.ceil;
+import static io.github.heathensoft.jlib.common.utils.U.floor;
+import static io.github.heathensoft.jlib.ui.gfx.RendererGUI.SKIP_ID;
+
+/**
+ * GUI draw calls recorded without GL (i.e. by a window on a worker thread), submitted later on the render thread.
+ * The draw methods are those of RendererGUI, and build the same vertices with the same batch code:
+ * text layout, rotations and scissor tests are done while recording. Submit copies the vertex spans
+ * to the renderer's batches, assigns the texture slots and replays the scissors.
+ * Submitting buffers in the order they were recorded draws the same as making the draw calls on the renderer.
+ * Submitting a buffer to another's asTarget() appends its commands, replayed through the batches
+ * the way the renderer replays them (texture slots assigned again).
+ *
+ * One thread records into a buffer at a time. Fonts are bound in a metrics view, and no shared
+ * temporary rectangles are used. Textures and text drawn must not change before the buffer is submitted.
+ *
+ * @author Frederik Dahl
+ * 18/10/2026
+ */
+
+
+public class CommandBufferGUI implements Disposable {
+
+    /** Where the recorded commands are submitted. See RendererGUI.submit */
+    public interface Target {
+        /**
+         * One quad, 24 floats from offset. The texture slot bits are those of the recording batch.
+         * Id SKIP_ID is not drawn to the id buffer. Bounds and id are the quad's picking entry
+         */
+        void sprite(float[] vertices, int offset, Texture diffuse, Texture normals, int id, boolean ellipse, float minX, float minY, float maxX, float maxY);
+        /** Glyphs, 4 floats each from offset */
+        void glyphs(float[] vertices, int offset, int count);
+        /** @return false if the scissor is not valid (commands until the matching pop are not submitted) */
+        boolean pushScissor(float x1, float y1, float x2, float y2);
+        void popScissor();
+    }
+
+    private static final int SPRITE_BATCH_CAPACITY = 512;
+    private static final int TEXT_BATCH_CAPACITY = 2048;
+    private static final int NULL_BATCH = 0;
+    private static final int TEXT_BATCH = 1;
+    private static final int SPRITE_BATCH = 2;
+    private static final int OP_SPRITES = 0;
+    private static final int OP_GLYPHS = 1;
+    private static final int OP_PUSH_SCISSOR = 2;
+    private static final int OP_POP_SCISSOR = 3;
+    private static final int OP_SIZE = 5; // type, then first and count or the scissor as float bits
+
+    private final FontsGUI fonts;
+    private final SpriteBatchGUI spriteBatch;
+    private final TextBatchGUI textBatch;
+    private final Rectanglef rect; // in place of U.popRect (not thread safe)
+    private final Appender appender;
+    private int[] ops;
+    private float[] sprite_data;
+    private Texture[] sprite_textures; // diffuse, normals
+    private float[] pick_bounds;
+    private int[] pick_ids;
+    private boolean[] pick_ellipse;
+    private float[] glyph_data;
+    private int[] scissors; // emulated scissor stack. minX, minY, maxX, maxY
+    private int num_ops;
+    private int num_sprites;
+    private int num_picks;
+    private int num_glyphs;
+    private int scissor_depth;
+    private int active_batch;
+    private int width, height;
+
+    /** @param fonts the renderer's fonts (read through a metrics view), or FontsGUI.metricsOnly() */
+    public CommandBufferGUI(FontsGUI fonts) {
+        this.fonts = fonts.metricsView();
+        this.spriteBatch = new SpriteBatchGUI(this,SPRITE_BATCH_CAPACITY);
+        this.textBatch = new TextBatchGUI(this,this.fonts,TEXT_BATCH_CAPACITY);
+        this.rect = new Rectanglef();
+        this.appender = new Appender();
+        this.ops = new int[64 * OP_SIZE];
+        this.sprite_data = new float[256 * 24];
+        this.sprite_textures = new Texture[256 * 2];
+        this.pick_bounds = new float[256 * 4];
+        this.pick_ids = new int[256];
+        this.pick_ellipse = new boolean[256];
+        this.glyph_data = new float[1024 * 4];
+        this.scissors = new int[8 * 4];
+        this.width = 1;
+        this.height = 1;
+    }
+
+    /** Clears the buffer. Width and height of the framebuffer the commands are submitted to (for scissors) */
+    public void begin(int width, int height) {
+        this.width = width;
+        this.height = height;
+        spriteBatch.flush();
+        textBatch.flush();
+        active_batch = NULL_BATCH;
+        scissor_depth = 0;
+        num_ops = 0;
+        num_sprites = 0;
+        num_picks = 0;
+        num_glyphs = 0;
+        Arrays.fill(sprite_textures,null);
+    }
+
+    /**
+     * Submits the commands in recorded order. Scissors left on the stack by the recording are popped.
+     * The buffer is not cleared, and can be submitted again.
+     */
+    public void submit(Target target) {
+        flush();
+        active_batch = NULL_BATCH;
+        int rejected = 0; // depth inside a scissor the target did not push
+        int pushed = 0;
+        for (int op = 0; op < num_ops; op++) {
+            int i = op * OP_SIZE;
+            switch (ops[i]) {
+                case OP_SPRITES -> {
+                    if (rejected == 0) {
+                        for (int q = ops[i + 1]; q < ops[i + 1] + ops[i + 2]; q++) {
+                            int b = q * 4;
+                            target.sprite(sprite_data,q * 24,sprite_textures[q * 2],sprite_textures[q * 2 + 1],pick_ids[q],
+                            pick_ellipse[q],pick_bounds[b],pick_bounds[b + 1],pick_bounds[b + 2],pick_bounds[b + 3]);
+                        }
+                    }
+                } case OP_GLYPHS -> {
+                    if (rejected == 0) target.glyphs(glyph_data,ops[i + 1] * 4,ops[i + 2]);
+                } case OP_PUSH_SCISSOR -> {
+                    float x1 = Float.intBitsToFloat(ops[i + 1]);
+                    float y1 = Float.intBitsToFloat(ops[i + 2]);
+                    float x2 = Float.intBitsToFloat(ops[i + 3]);
+                    float y2 = Float.intBitsToFloat(ops[i + 4]);
+                    if (rejected > 0 || !target.pushScissor(x1,y1,x2,y2)) rejected++;
+                    else pushed++;
+                } case OP_POP_SCISSOR -> {
+                    if (rejected > 0) rejected--;
+                    else { target.popScissor(); pushed--; }
+                }
+            }
+        } while (pushed > 0) {
+            target.popScissor();
+            pushed--;
+        }
+    }
+
+    public boolean pushScissor(Rectanglef quad) { return pushScissor(quad.minX,quad.minY,quad.maxX,quad.maxY); }
+
+    /** Same test as the renderer's scissor stack (whole pixels, inside the previous scissor) */
+    public boolean pushScissor(float x1, float y1, float x2, float y2) {
+        int minX = floor(x1), minY = floor(y1);
+        int maxX = ceil(x2), maxY = ceil(y2);
+        if (scissor_depth == 0) {
+            minX = Math.max(minX,0); minY = Math.max(minY,0);
+            maxX = Math.min(maxX,width); maxY = Math.min(maxY,height);
+        } else { int s = (scissor_depth - 1) * 4;
+            minX = Math.max(minX,scissors[s]); minY = Math.max(minY,scissors[s + 1]);
+            maxX = Math.min(maxX,scissors[s + 2]); maxY = Math.min(maxY,scissors[s + 3]);
+        } if (minX < maxX && minY < maxY) {
+            flush();
+            if (scissors.length == scissor_depth * 4) {
+                scissors = Arrays.copyOf(scissors,scissors.length * 2);
+            } int s = scissor_depth * 4;
+            scissors[s] = minX; scissors[s + 1] = minY;
+            scissors[s + 2] = maxX; scissors[s + 3] = maxY;
+            scissor_depth++;
+            op(OP_PUSH_SCISSOR,Float.floatToRawIntBits(x1),Float.floatToRawIntBits(y1),Float.floatToRawIntBits(x2),Float.floatToRawIntBits(y2));
+            return true;
+        } return false;
+    }
+
+    public void popScissor() {
+        if (scissor_depth > 0) {
+            flush();
+            scissor_depth--;
+            op(OP_POP_SCISSOR,0,0,0,0);
+        }
+    }
+
+    public void enablePixelArtAntialiasing(boolean enable) { spriteBatch.enablePixelArtAntialiasing(enable); }
+
+    public void drawText(Text text, Rectanglef bounds, float y_offset, int font, float padding, float size, float glow, boolean wrap, boolean show_cursor) {
+        if (size > 1f && !text.isBlank()) {
+            Rectanglef r = rect.setMin(bounds.minX + padding,bounds.minY + padding).setMax(bounds.maxX - padding,bounds.maxY - padding);
+            if (r.isValid()) {
+                textBatch(font);
+                if (pushScissor(r)) {
+                    text.draw(textBatch,r,y_offset,size,glow,wrap,show_cursor);
+                    popScissor();
+                }
+            }
+        }
+    }
+
+    public void drawText(Text text, Rectanglef bounds, Vector4f rgb, float y_offset, int font, float padding, float size, float glow, boolean wrap, boolean show_cursor) {
+        if (size > 1f && !text.isBlank()) {
+            Rectanglef r = rect.setMin(bounds.minX + padding,bounds.minY + padding).setMax(bounds.maxX - padding,bounds.maxY - padding);
+            if (r.isValid()) {
+                textBatch(font);
+                if (pushScissor(r)) {
+                    text.draw(textBatch,r,rgb,y_offset,size,glow,wrap,show_cursor);
+                    popScissor();
+                }
+            }
+        }
+    }
+
+    public void drawStringFixedSize(String string, TextAlignment alignment, int font, int abgr, float x, float y, float width, float size, float glow) {
+        if (size > 1f && width > 0 && string != null && !string.isBlank()) {
+            textBatch(font);
+            textBatch.drawFixedSize(string,alignment,abgr,x,y,width,size,glow);
+        }
+    }
+
+    public void drawStringDynamicSize(String string, TextAlignment alignment, int font, int abgr, float x, float y, float width, float size, float glow) {
+        if (size > 1f && width > 0 && string != null && !string.isBlank()) {
+            textBatch(font);
+            textBatch.drawDynamicSize(string,alignment,abgr,x,y,width,size,glow);
+        }
+    }
+
+    public void drawStringDynamicVerticalCentered(String string, TextAlignment alignment, Rectanglef bounds, int font, int abgr, int padding, float glow) {
+        final float x1 = bounds.minX + padding;
+        final float y1 = bounds.minY + padding;
+        final float x2 = bounds.maxX - padding;
+        final float y2 = bounds.maxY - padding;
+        if (x2 > x1 && y2 > y1) {
+            final float width = x2 - x1;
+            final float height = y2 - y1;
+            if (height > 1f && string != null && !string.isBlank()) {
+                textBatch(font);
+                textBatch.drawDynamicVerticalCentered(string,alignment,abgr,x1,y2,width,height,glow);
+            }
+        }
+    }
+
+    public void drawParagraphFixedSize(Paragraph paragraph, int font, float x, float y, float width, float size, float glow, float alpha) {
+        textBatch(font);
+        paragraph.drawFixedSize(textBatch,x,y,width,size,glow,alpha);
+    }
+
+    public void drawParagraphDynamicSize(Paragraph paragraph, int font, float x, float y, float width, float size, float glow, float alpha) {
+        textBatch(font);
+        paragraph.drawDynamicSize(textBatch,x,y,width,size,glow,alpha);
+    }
+
+    public void drawElement(Rectanglef quad, int abgr) { drawElement(quad, abgr, 0); }
+    public void drawElement(Rectanglef quad, int abgr, int id) { drawElement(quad, abgr, id,0f); }
+    public void drawElement(Rectanglef quad, int abgr, int id, float glow) { drawElement(quad, abgr, id, glow,true); }
+    public void drawElement(Rectanglef quad, int abgr, int id, float glow, boolean invisible_id) {
+        if (quad.isValid()) {
+            spriteBatch();
+            spriteBatch.push(quad, abgr, id, glow, invisible_id,false);
+        }
+    }
+
+    public void drawElement(Texture diffuse, Texture normals, TextureRegion region, Rectanglef quad, int abgr, int id, float glow, boolean invisible_id) {
+        if (quad.isValid()) {
+            spriteBatch();
+            spriteBatch.push(diffuse, normals, region, quad, abgr, id, glow, invisible_id,false);
+        }
+    }
+
+    public void drawElement(Texture diffuse, Texture normals, Vector4f region, Rectanglef quad, int abgr, int id, float glow, boolean invisible_id) {
+        if (quad.isValid()) {
+            spriteBatch();
+            spriteBatch.push(diffuse, normals, region, quad, abgr, id, glow, invisible_id,false);
+        }
+    }
+
+    public void drawRound(Rectanglef quad, int abgr, int id, float glow, boolean invisible_id) {
+        if (quad.isValid()) {
+            spriteBatch();
+            spriteBatch.push(quad, abgr, id, glow, invisible_id,true);
+        }
+    }
+
+    public void drawRound(Texture diffuse, Texture normals, TextureRegion region, Rectanglef quad, int abgr, int id, float glow, boolean invisible_id) {
+        if (quad.isValid()) {
+            spriteBatch();
+            spriteBatch.push(diffuse, normals, region, quad, abgr, id, glow, invisible_id,true);
+        }
+    }
+
+    public void drawRotated(Rectanglef quad, float rotation, int abgr, int id, float glow, boolean invisible_id) {
+        if (quad.isValid()) {
+            spriteBatch();
+            spriteBatch.push(quad, rotation, abgr, id, glow, invisible_id);
+        }
+    }
+
+    public void drawRotated(Texture diffuse, Texture normals, TextureRegion region, Rectanglef quad, float rotation, int abgr, int id, float glow, boolean invisible_id) {
+        if (quad.isValid()) {
+            spriteBatch();
+            spriteBatch.push(diffuse, normals, region, quad, rotation, abgr, id, glow, invisible_id);
+        }
+    }
+
+    public void drawBorders(Rectanglef quad, float thickness, int abgr, int id, float glow, boolean invisible_id) {
+        Rectanglef outline = rect.set(quad);
+        outline.minY = quad.maxY - thickness;
+        drawElement(outline, abgr, id, glow);
+        outline.minY = quad.minY;
+        outline.maxY = quad.minY + thickness;
+        drawElement(outline, abgr, id, glow);
+        outline.maxY = quad.maxY;
+        outline.maxX = quad.minX + thickness;
+        drawElement(outline, abgr, id, glow);
+        outline.maxX = quad.maxX;
+        outline.minX = quad.maxX - thickness;
+        drawElement(outline,abgr,id,glow);
+    }
+
+    /** @return target appending the commands submitted to it to this buffer */
+    public Target asTarget() { return appender; }
+
+    /** The fonts used for layout while recording */
+    public FontsGUI fonts() { return fonts; }
+
+    /** @return recorded quads (recorded when the sprite batch flushes) */
+    public int spriteCount() { return num_sprites; }
+
+    /** @return recorded glyphs (recorded when the text batch flushes) */
+    public int glyphCount() { return num_glyphs; }
+
+    public void dispose() { Disposable.dispose(spriteBatch,textBatch); }
+
+    void recordSprites(FloatBuffer vertices, int count, SamplerArray diffuse, SamplerArray normals) {
+        int first = num_sprites;
+        ensureSprites(first + count);
+        vertices.get(sprite_data,first * 24,count * 24);
+        for (int q = first; q < first + count; q++) {
+            int bits = Float.floatToRawIntBits(sprite_data[q * 24 + 5]);
+            int diffuse_slot = bits & 0x0F;
+            int normals_slot = (bits >> 4) & 0x0F;
+            sprite_textures[q * 2] = diffuse_slot == 15 ? null : diffuse.texture(diffuse_slot);
+            sprite_textures[q * 2 + 1] = normals_slot == 15 ? null : normals.texture(normals_slot);
+        } num_sprites += count;
+        span(OP_SPRITES,first,count);
+    }
+
+    /** Picking entry of the next quad pushed (before the quad itself is flushed) */
+    void recordPick(float minX, float minY, float maxX, float maxY, int id, boolean ellipse) {
+        ensureSprites(num_picks + 1);
+        pick_bounds[num_picks * 4] = minX;
+        pick_bounds[num_picks * 4 + 1] = minY;
+        pick_bounds[num_picks * 4 + 2] = maxX;
+        pick_bounds[num_picks * 4 + 3] = maxY;
+        pick_ids[num_picks] = id;
+        pick_ellipse[num_picks] = ellipse;
+        num_picks++;
+    }
+
+    void recordGlyphs(FloatBuffer vertices, int count) {
+        int first = num_glyphs;
+        if (glyph_data.length < (first + count) * 4) {
+            glyph_data = Arrays.copyOf(glyph_data,Math.max((first + count) * 4,glyph_data.length * 2));
+        } vertices.get(glyph_data,first * 4,count * 4);
+        num_glyphs += count;
+        span(OP_GLYPHS,first,count);
+    }
+
+    private void spriteBatch() {
+        if (active_batch != SPRITE_BATCH) {
+            if (active_batch == TEXT_BATCH) textBatch.flush();
+            active_batch = SPRITE_BATCH;
+        }
+    }
+
+    private void textBatch(int font) {
+        textBatch();
+        fonts.bindFontMetrics(font);
+    }
+
+    private void textBatch() {
+        if (active_batch != TEXT_BATCH) {
+            if (active_batch == SPRITE_BATCH) spriteBatch.flush();
+            active_batch = TEXT_BATCH;
+        }
+    }
+
+    private void flush() {
+        if (active_batch == TEXT_BATCH) textBatch.flush();
+        else if (active_batch == SPRITE_BATCH) spriteBatch.flush();
+    }
+
+    /** Consecutive spans of the same batch are joined */
+    private void span(int type, int first, int count) {
+        int last = (num_ops - 1) * OP_SIZE;
+        if (num_ops > 0 && ops[last] == type && ops[last + 1] + ops[last + 2] == first) {
+            ops[last + 2] += count;
+        } else op(type,first,count,0,0);
+    }
+
+    private void op(int type, int a, int b, int c, int d) {
+        if (ops.length == num_ops * OP_SIZE) {
+            ops = Arrays.copyOf(ops,ops.length * 2);
+        } int i = num_ops * OP_SIZE;
+        ops[i] = type;
+        ops[i + 1] = a; ops[i + 2] = b;
+        ops[i + 3] = c; ops[i + 4] = d;
+        num_ops++;
+    }
+
+    private void ensureSprites(int sprites) {
+        if (pick_ids.length < sprites) {
+            int capacity = Math.max(sprites,pick_ids.length * 2);
+            sprite_data = Arrays.copyOf(sprite_data,capacity * 24);
+            sprite_textures = Arrays.copyOf(sprite_textures,capacity * 2);
+            pick_bounds = Arrays.copyOf(pick_bounds,capacity * 4);
+            pick_ids = Arrays.copyOf(pick_ids,capacity);
+            pick_ellipse = Arrays.copyOf(pick_ellipse,capacity);
+        }
+    }
+
+    private final class Appender implements Target {
+        public void sprite(float[] vertices, int offset, Texture diffuse, Texture normals, int id, boolean ellipse, float minX, float minY, float maxX, float maxY) {
+            spriteBatch();
+            spriteBatch.push(vertices,offset,diffuse,normals,id,ellipse,minX,minY,maxX,maxY);
+        }
+        public void glyphs(float[] vertices, int offset, int count) {
+            textBatch();
+            textBatch.push(vertices,offset,count);
+        }
+        public boolean pushScissor(float x1, float y1, float x2, float y2) { return CommandBufferGUI.this.pushScissor(x1,y1,x2,y2); }
+        public void popScissor() { CommandBufferGUI.this.popScissor(); }
+    }
+}
@@ -0,0 +1,375 @@
+package io.github.heathensoft.jlib.ui.gfx;
+
+import io.github.heathensoft.jlib.lwjgl.gfx.Texture;
+import org.joml.primitives.Rectanglef;
+
+import java.util.Arrays;
+
+import static io.github.heathensoft.jlib.common.utils.U.ceil;
+import static io.github.heathensoft.jlib.common.utils.U.floor;
+import static io.github.heathensoft.jlib.ui.gfx.RendererGUI.SKIP_ID;
+
+/**
+ * Deferred draw reordering. Commands submitted to the sorter (see CommandBufferGUI.submit) are queued,
+ * then submitted to the renderer grouped into as few draws as the overlap between them allows.
+ *
+ * Every quad and glyph run gets a key: (layer, scissor, program, texture slots).
+ * Program is sprites, sprites with SKIP_ID (drawn without the id buffer) or text.
+ * A quad is added to the first batch with its key after the last batch holding a quad it overlaps,
+ * so quads that overlap keep their order, and the others are drawn with the first batch they fit in.
+ * Sprite batches hold up to NUM_TEXTURE_SLOTS diffuse and normals textures (the renderer's slots).
+ * Layers are never reordered (see nextLayer). Overlap is tested on the visible (scissored) bounds,
+ * glyphs by the quads the text shader draws (FontsGUI.glyphBounds). The picking index and id buffer get the same result,
+ * as they depend on the order of overlapping quads only.
+ *
+ * @author Frederik Dahl
+ * 18/10/2026
+ */
+
+
+public class DrawSorterGUI implements CommandBufferGUI.Target {
+
+    public static final int CELL_SIZE = 32;
+    private static final int GLYPH_RUN = 64; // max glyphs per run (runs are also split per line)
+    private static final int PROGRAM_SPRITES = 0;
+    private static final int PROGRAM_SPRITES_SKIP_ID = 1;
+    private static final int PROGRAM_TEXT = 2;
+
+    private final FontsGUI fonts;
+    private final Rectanglef glyph;
+    private Batch[] batches;
+    private float[] sprite_data;
+    private Texture[] sprite_textures; // diffuse, normals
+    private float[] pick_bounds;
+    private int[] pick_ids;
+    private boolean[] pick_ellipse;
+    private float[] glyph_data;
+    private float[] item_bounds; // visible minX, minY, maxX, maxY
+    private int[] item_first; // sprite index, or first glyph
+    private int[] item_glyphs; // glyph count, 0 for sprites
+    private int[] item_batch;
+    private int[] item_next; // next item in batch
+    private int[] cell_head; // grid of items. Linked entries per cell
+    private int[] entry_item;
+    private int[] entry_next;
+    private int[] scissors; // distinct scissors. minX, minY, maxX, maxY. Scissor 0 is the screen
+    private int[] scissor_stack; // scissor of each pushed level
+    private int num_batches;
+    private int num_sprites;
+    private int num_glyphs;
+    private int num_items;
+    private int num_entries;
+    private int num_scissors;
+    private int scissor_depth;
+    private int layer_first_batch;
+    private int width, height;
+    private int cols, rows;
+
+    /** @param fonts the renderer's fonts, for glyph bounds (read only) */
+    public DrawSorterGUI(FontsGUI fonts) {
+        this.fonts = fonts;
+        this.glyph = new Rectanglef();
+        this.batches = new Batch[16];
+        this.sprite_data = new float[256 * 24];
+        this.sprite_textures = new Texture[256 * 2];
+        this.pick_bounds = new float[256 * 4];
+        this.pick_ids = new int[256];
+        this.pick_ellipse = new boolean[256];
+        this.glyph_data = new float[1024 * 4];
+        this.item_bounds = new float[256 * 4];
+        this.item_first = new int[256];
+        this.item_glyphs = new int[256];
+        this.item_batch = new int[256];
+        this.item_next = new int[256];
+        this.entry_item = new int[1024];
+        this.entry_next = new int[1024];
+        this.scissors = new int[16 * 4];
+        this.scissor_stack = new int[8];
+        begin(1,1);
+    }
+
+    /** Clears the queue. Width and height of the framebuffer the commands are submitted to */
+    public void begin(int width, int height) {
+        if (width <= 0 || height <= 0) throw new IllegalArgumentException("Illegal draw sorter size: " + width + ", " + height);
+        if (this.width != width || this.height != height) {
+            this.width = width;
+            this.height = height;
+            this.cols = (width + CELL_SIZE - 1) / CELL_SIZE;
+            this.rows = (height + CELL_SIZE - 1) / CELL_SIZE;
+            this.cell_head = new int[cols * rows];
+        } clear();
+    }
+
+    /** Clears the queue */
+    public void clear() {
+        Arrays.fill(cell_head,-1);
+        Arrays.fill(sprite_textures,0,num_sprites * 2,null);
+        for (int b = 0; b < num_batches; b++) batches[b].clear();
+        num_batches = 0;
+        num_sprites = 0;
+        num_glyphs = 0;
+        num_items = 0;
+        num_entries = 0;
+        scissor_depth = 0;
+        layer_first_batch = 0;
+        scissors[0] = 0; scissors[1] = 0;
+        scissors[2] = width; scissors[3] = height;
+        num_scissors = 1;
+    }
+
+    /** Commands queued after this are drawn after all commands queued before it */
+    public void nextLayer() {
+        layer_first_batch = num_batches;
+    }
+
+    /**
+     * Submits the queued commands, batch by batch. The queue is not cleared.
+     * Scissors are submitted as the visible (intersected) scissor of each batch, one level deep.
+     */
+    public void submit(CommandBufferGUI.Target target) {
+        int current = 0; // scissor of the previous batch, 0 for none
+        boolean pushed = false;
+        boolean rejected = false;
+        for (int b = 0; b < num_batches; b++) {
+            Batch batch = batches[b];
+            if (batch.scissor != current) {
+                if (pushed) target.popScissor();
+                current = batch.scissor;
+                pushed = false;
+                if (current != 0) {
+                    int s = current * 4;
+                    pushed = target.pushScissor(scissors[s],scissors[s + 1],scissors[s + 2],scissors[s + 3]);
+                } rejected = current != 0 && !pushed;
+            } if (rejected) continue;
+            int item = batch.first;
+            while (item != -1) {
+                int first = item_first[item];
+                int glyphs = item_glyphs[item];
+                if (glyphs == 0) {
+                    int p = first * 4;
+                    target.sprite(sprite_data,first * 24,sprite_textures[first * 2],sprite_textures[first * 2 + 1],pick_ids[first],
+                    pick_ellipse[first],pick_bounds[p],pick_bounds[p + 1],pick_bounds[p + 2],pick_bounds[p + 3]);
+                    item = item_next[item];
+                } else { // consecutive runs of the same glyph span are submitted together
+                    item = item_next[item];
+                    while (item != -1 && item_glyphs[item] > 0 && item_first[item] == first + glyphs) {
+                        glyphs += item_glyphs[item];
+                        item = item_next[item];
+                    } target.glyphs(glyph_data,first * 4,glyphs);
+                }
+            }
+        } if (pushed) target.popScissor();
+    }
+
+    /** @return true if nothing is queued */
+    public boolean isEmpty() { return num_items == 0; }
+
+    /** @return number of batches (a lower bound on draw calls) */
+    public int batchCount() { return num_batches; }
+
+    /** @return queued quads and glyph runs */
+    public int itemCount() { return num_items; }
+
+    public void sprite(float[] vertices, int offset, Texture diffuse, Texture normals, int id, boolean ellipse, float minX, float minY, float maxX, float maxY) {
+        float x0 = Float.MAX_VALUE, y0 = Float.MAX_VALUE;
+        float x1 = -Float.MAX_VALUE, y1 = -Float.MAX_VALUE;
+        for (int v = offset; v < offset + 24; v += 6) {
+            x0 = Math.min(x0,vertices[v]); y0 = Math.min(y0,vertices[v + 1]);
+            x1 = Math.max(x1,vertices[v]); y1 = Math.max(y1,vertices[v + 1]);
+        } int sprite = num_sprites;
+        if (visible(x0,y0,x1,y1)) {
+            if (pick_ids.length == sprite) {
+                int capacity = sprite * 2;
+                sprite_data = Arrays.copyOf(sprite_data,capacity * 24);
+                sprite_textures = Arrays.copyOf(sprite_textures,capacity * 2);
+                pick_bounds = Arrays.copyOf(pick_bounds,capacity * 4);
+                pick_ids = Arrays.copyOf(pick_ids,capacity);
+                pick_ellipse = Arrays.copyOf(pick_ellipse,capacity);
+            } System.arraycopy(vertices,offset,sprite_data,sprite * 24,24);
+            sprite_textures[sprite * 2] = diffuse;
+            sprite_textures[sprite * 2 + 1] = normals;
+            pick_bounds[sprite * 4] = minX; pick_bounds[sprite * 4 + 1] = minY;
+            pick_bounds[sprite * 4 + 2] = maxX; pick_bounds[sprite * 4 + 3] = maxY;
+            pick_ids[sprite] = id;
+            pick_ellipse[sprite] = ellipse;
+            num_sprites++;
+            int program = id == SKIP_ID ? PROGRAM_SPRITES_SKIP_ID : PROGRAM_SPRITES;
+            add(sprite,0,program,diffuse,normals);
+        }
+    }
+
+    public void glyphs(float[] vertices, int offset, int count) {
+        if (glyph_data.length < (num_glyphs + count) * 4) {
+            glyph_data = Arrays.copyOf(glyph_data,Math.max((num_glyphs + count) * 4,glyph_data.length * 2));
+        } System.arraycopy(vertices,offset,glyph_data,num_glyphs * 4,count * 4);
+        int first = num_glyphs;
+        int end = num_glyphs + count;
+        num_glyphs = end;
+        while (first < end) {
+            float y = glyph_data[first * 4 + 1];
+            float x0 = Float.MAX_VALUE, y0 = Float.MAX_VALUE;
+            float x1 = -Float.MAX_VALUE, y1 = -Float.MAX_VALUE;
+            int last = first;
+            while (last < end && last - first < GLYPH_RUN && glyph_data[last * 4 + 1] == y) {
+                int g = last * 4;
+                fonts.glyphBounds(glyph_data[g],glyph_data[g + 1],Float.floatToRawIntBits(glyph_data[g + 2]),glyph);
+                x0 = Math.min(x0,glyph.minX); y0 = Math.min(y0,glyph.minY);
+                x1 = Math.max(x1,glyph.maxX); y1 = Math.max(y1,glyph.maxY);
+                last++;
+            } if (visible(x0,y0,x1,y1)) add(first,last - first,PROGRAM_TEXT,null,null);
+            first = last;
+        }
+    }
+
+    /** Same test as the renderer's scissor stack (whole pixels, inside the previous scissor) */
+    public boolean pushScissor(float x1, float y1, float x2, float y2) {
+        int s = scissor_depth == 0 ? 0 : scissor_stack[scissor_depth - 1] * 4;
+        int minX = Math.max(floor(x1),scissors[s]), minY = Math.max(floor(y1),scissors[s + 1]);
+        int maxX = Math.min(ceil(x2),scissors[s + 2]), maxY = Math.min(ceil(y2),scissors[s + 3]);
+        if (minX < maxX && minY < maxY) {
+            if (scissor_stack.length == scissor_depth) {
+                scissor_stack = Arrays.copyOf(scissor_stack,scissor_depth * 2);
+            } scissor_stack[scissor_depth++] = scissor(minX,minY,maxX,maxY);
+            return true;
+        } return false;
+    }
+
+    public void popScissor() {
+        if (scissor_depth > 0) scissor_depth--;
+    }
+
+    private int scissor(int minX, int minY, int maxX, int maxY) {
+        for (int i = 1; i < num_scissors; i++) {
+            int s = i * 4;
+            if (scissors[s] == minX && scissors[s + 1] == minY && scissors[s + 2] == maxX && scissors[s + 3] == maxY) return i;
+        } if (scissors.length == num_scissors * 4) {
+            scissors = Arrays.copyOf(scissors,scissors.length * 2);
+        } int s = num_scissors * 4;
+        scissors[s] = minX; scissors[s + 1] = minY;
+        scissors[s + 2] = maxX; scissors[s + 3] = maxY;
+        return num_scissors++;
+    }
+
+    private int currentScissor() {
+        return scissor_depth == 0 ? 0 : scissor_stack[scissor_depth - 1];
+    }
+
+    /** Clips the bounds to the current scissor into the next item's bounds. @return false if nothing is visible */
+    private boolean visible(float minX, float minY, float maxX, float maxY) {
+        int s = currentScissor() * 4;
+        minX = Math.max(minX,scissors[s]); minY = Math.max(minY,scissors[s + 1]);
+        maxX = Math.min(maxX,scissors[s + 2]); maxY = Math.min(maxY,scissors[s + 3]);
+        if (minX < maxX && minY < maxY) {
+            if (item_first.length == num_items) {
+                int capacity = num_items * 2;
+                item_bounds = Arrays.copyOf(item_bounds,capacity * 4);
+                item_first = Arrays.copyOf(item_first,capacity);
+                item_glyphs = Arrays.copyOf(item_glyphs,capacity);
+                item_batch = Arrays.copyOf(item_batch,capacity);
+                item_next = Arrays.copyOf(item_next,capacity);
+            } int i = num_items * 4;
+            item_bounds[i] = minX; item_bounds[i + 1] = minY;
+            item_bounds[i + 2] = maxX; item_bounds[i + 3] = maxY;
+            return true;
+        } return false;
+    }
+
+    /** Adds the item with bounds set by visible() to the first batch it can be drawn with */
+    private void add(int first, int glyphs, int program, Texture diffuse, Texture normals) {
+        int item = num_items++;
+        item_first[item] = first;
+        item_glyphs[item] = glyphs;
+        item_next[item] = -1;
+        int b = item * 4;
+        float minX = item_bounds[b], minY = item_bounds[b + 1];
+        float maxX = item_bounds[b + 2], maxY = item_bounds[b + 3];
+        int c0 = cellX(minX), c1 = cellX(maxX);
+        int r0 = cellY(minY), r1 = cellY(maxY);
+        int after = layer_first_batch; // the last batch with an overlapping item
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int entry = cell_head[r * cols + c];
+                while (entry != -1) {
+                    int other = entry_item[entry];
+                    if (item_batch[other] > after) {
+                        int o = other * 4;
+                        if (item_bounds[o] < maxX && item_bounds[o + 2] > minX && item_bounds[o + 1] < maxY && item_bounds[o + 3] > minY) {
+                            after = item_batch[other];
+                        }
+                    } entry = entry_next[entry];
+                }
+            }
+        } int scissor = currentScissor();
+        Batch batch = null;
+        int index = after;
+        for (; index < num_batches; index++) {
+            Batch candidate = batches[index];
+            if (candidate.scissor == scissor && candidate.program == program && candidate.fits(diffuse,normals)) {
+                batch = candidate;
+                break;
+            }
+        } if (batch == null) {
+            if (batches.length == num_batches) {
+                batches = Arrays.copyOf(batches,num_batches * 2);
+            } batch = batches[num_batches];
+            if (batch == null) batch = batches[num_batches] = new Batch();
+            batch.scissor = scissor;
+            batch.program = program;
+            index = num_batches++;
+        } batch.add(item,diffuse,normals,item_next);
+        item_batch[item] = index;
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                if (entry_item.length == num_entries) {
+                    entry_item = Arrays.copyOf(entry_item,num_entries * 2);
+                    entry_next = Arrays.copyOf(entry_next,num_entries * 2);
+                } int cell = r * cols + c;
+                entry_item[num_entries] = item;
+                entry_next[num_entries] = cell_head[cell];
+                cell_head[cell] = num_entries++;
+            }
+        }
+    }
+
+    private int cellX(float x) { return Math.min((int) x / CELL_SIZE,cols - 1); }
+
+    private int cellY(float y) { return Math.min((int) y / CELL_SIZE,rows - 1); }
+
+    /** Items drawn together. Linked through item_next in the order they were added */
+    private static final class Batch {
+        private final Texture[] diffuse = new Texture[SpriteBatchGUI.NUM_TEXTURE_SLOTS];
+        private final Texture[] normals = new Texture[SpriteBatchGUI.NUM_TEXTURE_SLOTS];
+        private int num_diffuse;
+        private int num_normals;
+        private int scissor;
+        private int program;
+        private int first = -1;
+        private int last = -1;
+        boolean fits(Texture diffuse, Texture normals) {
+            return (num_diffuse < this.diffuse.length || slot(this.diffuse,num_diffuse,diffuse))
+                && (num_normals < this.normals.length || slot(this.normals,num_normals,normals));
+        }
+        void add(int item, Texture diffuse, Texture normals, int[] item_next) {
+            if (!slot(this.diffuse,num_diffuse,diffuse)) this.diffuse[num_diffuse++] = diffuse;
+            if (!slot(this.normals,num_normals,normals)) this.normals[num_normals++] = normals;
+            if (first == -1) first = item;
+            else item_next[last] = item;
+            last = item;
+        }
+        void clear() {
+            Arrays.fill(diffuse,0,num_diffuse,null);
+            Arrays.fill(normals,0,num_normals,null);
+            num_diffuse = 0;
+            num_normals = 0;
+            first = -1;
+            last = -1;
+        }
+        /** @return true if the texture has a slot (no texture needs none) */
+        static boolean slot(Texture[] slots, int count, Texture texture) {
+            if (texture == null) return true;
+            for (int i = 0; i < count; i++) {
+                if (slots[i] == texture) return true;
+            } return false;
+        }
+    }
+}
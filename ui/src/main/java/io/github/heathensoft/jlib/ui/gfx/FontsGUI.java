@@ -64,6 +64,7 @@ public class FontsGUI implements Disposable {
     private final boolean[] font_loaded;
     private final boolean[] font_monospaced;
     private final float[][] font_advance;
+    private final float[][] font_glyph_quads; // offsetX, offsetY, width, height. Cursor last
     private final float[] font_ascent;
     private final float[] font_descent;
     private final float[] font_lineGap;
@@ -79,6 +80,7 @@ public class FontsGUI implements Disposable {
         this.font_loaded = new boolean[FONT_SLOTS];
         this.font_monospaced = new boolean[FONT_SLOTS];
         this.font_advance = new float[FONT_SLOTS][FONTS_NUM_CHARACTERS];
+        this.font_glyph_quads = new float[FONT_SLOTS][(FONTS_NUM_CHARACTERS + 1) * 4];
         this.font_ascent = new float[FONT_SLOTS];
         this.font_descent = new float[FONT_SLOTS];
         this.font_lineGap = new float[FONT_SLOTS];
@@ -91,6 +93,51 @@ public class FontsGUI implements Disposable {
         this.uniformBuffer.bindBufferBase(uniformsBindingPoint);
     }
 
+    /** Metrics only (no GL). Shares the metrics of fonts if not null, with its own current font */
+    private FontsGUI(FontsGUI fonts) {
+        if (fonts == null) {
+            this.font_texture = new Texture[FONT_SLOTS];
+            this.font_name = new String[FONT_SLOTS];
+            this.font_loaded = new boolean[FONT_SLOTS];
+            this.font_monospaced = new boolean[FONT_SLOTS];
+            this.font_advance = new float[FONT_SLOTS][FONTS_NUM_CHARACTERS];
+            this.font_glyph_quads = new float[FONT_SLOTS][(FONTS_NUM_CHARACTERS + 1) * 4];
+            this.font_ascent = new float[FONT_SLOTS];
+            this.font_descent = new float[FONT_SLOTS];
+            this.font_lineGap = new float[FONT_SLOTS];
+            this.font_maxAdvance = new float[FONT_SLOTS];
+            this.font_avgAdvance = new float[FONT_SLOTS];
+            this.font_sizePixels = new float[FONT_SLOTS];
+            this.uniformsBindingPoint = 0;
+        } else {
+            this.font_texture = fonts.font_texture;
+            this.font_name = fonts.font_name;
+            this.font_loaded = fonts.font_loaded;
+            this.font_monospaced = fonts.font_monospaced;
+            this.font_advance = fonts.font_advance;
+            this.font_glyph_quads = fonts.font_glyph_quads;
+            this.font_ascent = fonts.font_ascent;
+            this.font_descent = fonts.font_descent;
+            this.font_lineGap = fonts.font_lineGap;
+            this.font_maxAdvance = fonts.font_maxAdvance;
+            this.font_avgAdvance = fonts.font_avgAdvance;
+            this.font_sizePixels = fonts.font_sizePixels;
+            this.uniformsBindingPoint = fonts.uniformsBindingPoint;
+            this.numFontsLoaded = fonts.numFontsLoaded;
+            this.currentFont = fonts.currentFont;
+        } this.uniformBuffer = null;
+    }
+
+    /**
+     * Font metrics for text layout on another thread. Shares the metrics (not a copy),
+     * but binds fonts independently. Fonts must not be uploaded while a view is in use.
+     * Disposing a view does nothing.
+     */
+    public FontsGUI metricsView() { return new FontsGUI(this); }
+
+    /** Font metrics without textures or a GL context (layout in tools and tests). See uploadFontMetrics */
+    public static FontsGUI metricsOnly() { return new FontsGUI(null); }
+
 
 
     public void uploadDefaultFonts() throws Exception {
@@ -110,7 +157,30 @@ public class FontsGUI implements Disposable {
         uploadFont(font.bitmap(),font.info(),slot);
     }
 
+    /** Metrics only FontsGUI (metricsOnly): Load the font metrics descriptor into slot */
+    public void uploadFontMetrics(String metrics, int slot) throws Exception {
+        if (uniformBuffer != null) throw new IllegalStateException("Font metrics without textures on a GL FontsGUI");
+        if (slot < 0 || slot >= FONT_SLOTS)
+            throw new Exception("Invalid slot for fonts: " + slot + ". valid: [0-3]");
+        FontMetrics fontMetrics = extractFontMetrics(metrics);
+        if (!font_loaded[slot]) numFontsLoaded++;
+        font_name[slot] = fontMetrics.name;
+        font_loaded[slot] = true;
+        font_monospaced[slot] = fontMetrics.monospaced;
+        font_ascent[slot] = fontMetrics.ascent;
+        font_descent[slot] = fontMetrics.descent;
+        font_lineGap[slot] = fontMetrics.lineGap;
+        font_maxAdvance[slot] = fontMetrics.maxAdvance;
+        font_avgAdvance[slot] = fontMetrics.avgAdvance;
+        font_sizePixels[slot] = fontMetrics.sizePixels;
+        for (char c = 0; c < FONTS_NUM_CHARACTERS; c++) {
+            font_advance[slot][c] = fontMetrics.glyphs[c].advance;
+            fontMetrics.glyphs[c].getQuad(font_glyph_quads[slot],c * 4);
+        } fontMetrics.cursor.getQuad(font_glyph_quads[slot],FONTS_NUM_CHARACTERS * 4);
+    }
+
     public void uploadFont(Bitmap font_bitmap, String metrics, int slot) throws Exception {
+        if (uniformBuffer == null) throw new IllegalStateException("Cannot upload fonts to a metrics only FontsGUI");
         if (slot < 0 || slot >= FONT_SLOTS)
             throw new Exception("Invalid slot for fonts: " + slot + ". valid: [0-3]");
         FontMetrics fontMetrics = extractFontMetrics(metrics);
@@ -158,8 +228,10 @@ public class FontsGUI implements Disposable {
                 for (char c = 0; c < FONTS_NUM_CHARACTERS; c++) {
                     Glyph glyph = glyphs[c];
                     glyph.get(fBuffer);
+                    glyph.getQuad(font_glyph_quads[slot],c * 4);
                     font_advance[slot][c] = glyph.advance;
                 } fontMetrics.cursor.get(fBuffer);
+                fontMetrics.cursor.getQuad(font_glyph_quads[slot],FONTS_NUM_CHARACTERS * 4);
                 fBuffer.put(slot).put(font_sizePixels[slot]);
                 fBuffer.put(0).put(0).flip();
                 uniformBuffer.bind();
@@ -396,9 +468,30 @@ public class FontsGUI implements Disposable {
         return dst;
     }
 
+    /**
+     * The quad the text shader draws for a glyph vertex (see TextBatchGUI.pushVertex).
+     * @param bits the glyph's info bits (char, size and font)
+     * @return dst
+     */
+    public Rectanglef glyphBounds(float x, float y, int bits, Rectanglef dst) {
+        int font = (bits >> 24) & 0x03;
+        int c = bits & 0x7F;
+        if (font_sizePixels[font] <= 0) return dst.setMin(x,y).setMax(x,y); // not loaded
+        int i = (c < 32 || c > 126 ? FONTS_NUM_CHARACTERS : c - 32) * 4;
+        float scale = (((bits >> 8) & 0xFF) + 1) / font_sizePixels[font];
+        float[] quads = font_glyph_quads[font];
+        dst.minX = x + quads[i] * scale;
+        dst.minY = y + quads[i + 1] * scale;
+        dst.maxX = dst.minX + quads[i + 2] * scale;
+        dst.maxY = dst.minY + quads[i + 3] * scale;
+        return dst;
+    }
+
     public void dispose() {
-        Disposable.dispose(font_texture);
-        Disposable.dispose(uniformBuffer);
+        if (uniformBuffer != null) { // views share the textures
+            Disposable.dispose(font_texture);
+            Disposable.dispose(uniformBuffer);
+        }
     }
 
     // HELPER STRUCTURES
@@ -423,6 +516,11 @@ public class FontsGUI implements Disposable {
             buffer.put(u).put(v).put(u2).put(v2);
             buffer.put(w).put(h);
             buffer.put(offsetX).put(offsetY);
+        } public void getQuad(float[] dst, int offset) {
+            dst[offset] = offsetX;
+            dst[offset + 1] = offsetY;
+            dst[offset + 2] = w;
+            dst[offset + 3] = h;
         }
     }
 
@@ -0,0 +1,275 @@
+package io.github.heathensoft.jlib.ui.gfx;
+
+import io.github.heathensoft.jlib.common.storage.primitive.IntBag;
+import org.joml.primitives.Rectanglef;
+
+import java.util.Arrays;
+
+/**
+ * CPU-side hit-testing of the quads drawn in one frame, in screen pixels.
+ * The same answers as the pixel id buffer, without reading from the GPU.
+ *
+ * Quads are added in draw order (later quads are on top), clipped by the current scissor.
+ * Ids are truncated to 16 bits like the id buffer. Id 0 quads are kept, they cover what is beneath.
+ * On the first query the quads are binned into a uniform grid of CELL_SIZE pixels.
+ *
+ * Quads are tested by their bounds (rotated quads by the bounds of the rotation).
+ * Ellipses are tested as ellipses. Texture alpha is not known here.
+ *
+ * @author Frederik Dahl
+ * 18/10/2026
+ */
+
+
+public class PickingIndex {
+
+    public static final int CELL_SIZE = 32;
+
+    private float[] quads; // clipped minX, minY, maxX, maxY then unclipped minX, minY, maxX, maxY
+    private int[] ids;
+    private boolean[] ellipse;
+    private int[] cell_start;
+    private int[] cell_items;
+    private final long[] seen;
+    private int clip_minX, clip_minY;
+    private int clip_maxX, clip_maxY;
+    private int width, height;
+    private int cols, rows;
+    private int count;
+    private boolean built;
+
+    public PickingIndex(int width, int height) {
+        this.quads = new float[256 * 8];
+        this.ids = new int[256];
+        this.ellipse = new boolean[256];
+        this.cell_items = new int[256];
+        this.seen = new long[1024];
+        resize(width, height);
+    }
+
+    /** Clears the index and sets the screen size */
+    public void resize(int width, int height) {
+        if (width <= 0 || height <= 0) throw new IllegalArgumentException("Illegal picking index size: " + width + ", " + height);
+        this.width = width;
+        this.height = height;
+        this.cols = (width + CELL_SIZE - 1) / CELL_SIZE;
+        this.rows = (height + CELL_SIZE - 1) / CELL_SIZE;
+        this.cell_start = new int[cols * rows + 1];
+        clear();
+    }
+
+    /** Removes all quads and the scissor */
+    public void clear() {
+        count = 0;
+        built = false;
+        clearClip();
+    }
+
+    /** Quads added after this are clipped to the scissor */
+    public void setClip(int minX, int minY, int maxX, int maxY) {
+        clip_minX = Math.max(minX,0);
+        clip_minY = Math.max(minY,0);
+        clip_maxX = Math.min(maxX,width);
+        clip_maxY = Math.min(maxY,height);
+    }
+
+    public void clearClip() { setClip(0,0,width,height); }
+
+    public void add(Rectanglef quad, int id, boolean ellipse) {
+        add(quad.minX,quad.minY,quad.maxX,quad.maxY,id,ellipse);
+    }
+
+    public void add(float minX, float minY, float maxX, float maxY, int id, boolean ellipse) {
+        float x0 = Math.max(minX,clip_minX);
+        float y0 = Math.max(minY,clip_minY);
+        float x1 = Math.min(maxX,clip_maxX);
+        float y1 = Math.min(maxY,clip_maxY);
+        if (x0 < x1 && y0 < y1) {
+            if (count == ids.length) {
+                int capacity = count * 2;
+                quads = Arrays.copyOf(quads,capacity * 8);
+                ids = Arrays.copyOf(ids,capacity);
+                this.ellipse = Arrays.copyOf(this.ellipse,capacity);
+            } int i = count * 8;
+            quads[i] = x0; quads[i + 1] = y0;
+            quads[i + 2] = x1; quads[i + 3] = y1;
+            quads[i + 4] = minX; quads[i + 5] = minY;
+            quads[i + 6] = maxX; quads[i + 7] = maxY;
+            ids[count] = id & 0xFFFF;
+            this.ellipse[count] = ellipse;
+            built = false;
+            count++;
+        }
+    }
+
+    /** @return the id of the topmost quad covering pixel (x, y), 0 if none (like the id buffer) */
+    public int pickPixel(int x, int y) { return pick(x + 0.5f,y + 0.5f); }
+
+    /** @return the id of the topmost quad covering the point, 0 if none */
+    public int pick(float x, float y) {
+        if (count == 0 || x < 0 || y < 0 || x >= width || y >= height) return 0;
+        build();
+        int cell = cell((int) x,(int) y);
+        for (int i = cell_start[cell + 1] - 1; i >= cell_start[cell]; i--) {
+            int quad = cell_items[i];
+            if (contains(quad,x,y)) return ids[quad];
+        } return 0;
+    }
+
+    /**
+     * Ids (not 0) of quads whose visible bounds overlap the area.
+     * Each id is added to dest once. Overlapping quads are not removed.
+     * @return dest
+     */
+    public IntBag query(Rectanglef area, IntBag dest) {
+        if (count == 0) return dest;
+        int c0 = Math.max((int) area.minX / CELL_SIZE,0);
+        int r0 = Math.max((int) area.minY / CELL_SIZE,0);
+        int c1 = Math.min((int) area.maxX / CELL_SIZE,cols - 1);
+        int r1 = Math.min((int) area.maxY / CELL_SIZE,rows - 1);
+        if (area.maxX < 0 || area.maxY < 0) return dest;
+        build();
+        int start = dest.size();
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int cell = r * cols + c;
+                for (int i = cell_start[cell]; i < cell_start[cell + 1]; i++) {
+                    int quad = cell_items[i];
+                    int id = ids[quad];
+                    if (id != 0 && !seen(id)) {
+                        int q = quad * 8;
+                        if (quads[q] < area.maxX && quads[q + 2] > area.minX && quads[q + 1] < area.maxY && quads[q + 3] > area.minY) {
+                            markSeen(id);
+                            dest.push(id);
+                        }
+                    }
+                }
+            }
+        } clearSeen(dest,start);
+        return dest;
+    }
+
+    /**
+     * Ids (not 0) of quads with the center of their visible bounds inside the lasso.
+     * Each id is added to dest once.
+     * @param polygon x, y pairs. Closed implicitly
+     * @param vertices number of vertices in polygon
+     * @return dest
+     */
+    public IntBag query(float[] polygon, int vertices, IntBag dest) {
+        if (count == 0 || vertices < 3) return dest;
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        for (int v = 0; v < vertices; v++) {
+            minX = Math.min(minX,polygon[v * 2]);
+            minY = Math.min(minY,polygon[v * 2 + 1]);
+            maxX = Math.max(maxX,polygon[v * 2]);
+            maxY = Math.max(maxY,polygon[v * 2 + 1]);
+        } if (maxX < 0 || maxY < 0) return dest;
+        int c0 = Math.max((int) minX / CELL_SIZE,0);
+        int r0 = Math.max((int) minY / CELL_SIZE,0);
+        int c1 = Math.min((int) maxX / CELL_SIZE,cols - 1);
+        int r1 = Math.min((int) maxY / CELL_SIZE,rows - 1);
+        build();
+        int start = dest.size();
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int cell = r * cols + c;
+                for (int i = cell_start[cell]; i < cell_start[cell + 1]; i++) {
+                    int quad = cell_items[i];
+                    int id = ids[quad];
+                    if (id != 0 && !seen(id)) {
+                        int q = quad * 8;
+                        float cx = (quads[q] + quads[q + 2]) * 0.5f;
+                        float cy = (quads[q + 1] + quads[q + 3]) * 0.5f;
+                        if (insidePolygon(polygon,vertices,cx,cy)) {
+                            markSeen(id);
+                            dest.push(id);
+                        }
+                    }
+                }
+            }
+        } clearSeen(dest,start);
+        return dest;
+    }
+
+    /** @return number of quads */
+    public int size() { return count; }
+
+    public int width() { return width; }
+
+    public int height() { return height; }
+
+    private boolean contains(int quad, float x, float y) {
+        int q = quad * 8;
+        if (x >= quads[q] && x < quads[q + 2] && y >= quads[q + 1] && y < quads[q + 3]) {
+            if (ellipse[quad]) {
+                float hw = (quads[q + 6] - quads[q + 4]) * 0.5f;
+                float hh = (quads[q + 7] - quads[q + 5]) * 0.5f;
+                float dx = (x - quads[q + 4] - hw) / hw;
+                float dy = (y - quads[q + 5] - hh) / hh;
+                return dx * dx + dy * dy <= 1.0f;
+            } return true;
+        } return false;
+    }
+
+    /** Counting sort of the quads into cells, keeping draw order within each cell */
+    private void build() {
+        if (!built) {
+            int cells = cols * rows;
+            Arrays.fill(cell_start,0);
+            int items = 0;
+            for (int i = 0; i < count; i++) {
+                int q = i * 8;
+                int c0 = cellX(quads[q]), c1 = cellX(quads[q + 2]);
+                int r0 = cellY(quads[q + 1]), r1 = cellY(quads[q + 3]);
+                for (int r = r0; r <= r1; r++) {
+                    for (int c = c0; c <= c1; c++) {
+                        cell_start[r * cols + c + 1]++;
+                    }
+                } items += (c1 - c0 + 1) * (r1 - r0 + 1);
+            } for (int cell = 0; cell < cells; cell++) {
+                cell_start[cell + 1] += cell_start[cell];
+            } if (cell_items.length < items) {
+                cell_items = new int[Math.max(items,cell_items.length * 2)];
+            } int[] next = Arrays.copyOf(cell_start,cells);
+            for (int i = 0; i < count; i++) {
+                int q = i * 8;
+                int c0 = cellX(quads[q]), c1 = cellX(quads[q + 2]);
+                int r0 = cellY(quads[q + 1]), r1 = cellY(quads[q + 3]);
+                for (int r = r0; r <= r1; r++) {
+                    for (int c = c0; c <= c1; c++) {
+                        cell_items[next[r * cols + c]++] = i;
+                    }
+                }
+            } built = true;
+        }
+    }
+
+    private int cell(int x, int y) { return (y / CELL_SIZE) * cols + (x / CELL_SIZE); }
+
+    private int cellX(float x) { return Math.min((int) x / CELL_SIZE,cols - 1); }
+
+    private int cellY(float y) { return Math.min((int) y / CELL_SIZE,rows - 1); }
+
+    private boolean seen(int id) { return (seen[id >> 6] & (1L << id)) != 0; }
+
+    private void markSeen(int id) { seen[id >> 6] |= (1L << id); }
+
+    private void clearSeen(IntBag ids, int start) {
+        for (int i = start; i < ids.size(); i++) {
+            seen[ids.get(i) >> 6] = 0L;
+        }
+    }
+
+    private static boolean insidePolygon(float[] polygon, int vertices, float x, float y) {
+        boolean inside = false;
+        for (int i = 0, j = vertices - 1; i < vertices; j = i++) {
+            float xi = polygon[i * 2], yi = polygon[i * 2 + 1];
+            float xj = polygon[j * 2], yj = polygon[j * 2 + 1];
+            if ((yi > y) != (yj > y) && x < (xj - xi) * (y - yi) / (yj - yi) + xi) {
+                inside = !inside;
+            }
+        } return inside;
+    }
+}
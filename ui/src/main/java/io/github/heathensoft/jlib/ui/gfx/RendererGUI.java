@@ -7,6 +7,7 @@ import io.github.heathensoft.jlib.common.storage.generic.Stack;
 import io.github.heathensoft.jlib.common.utils.Color;
 import io.github.heathensoft.jlib.common.utils.U;
 import io.github.heathensoft.jlib.lwjgl.gfx.*;
+import io.github.heathensoft.jlib.lwjgl.utils.PixelReadback;
 import io.github.heathensoft.jlib.lwjgl.window.Resolution;
 import io.github.heathensoft.jlib.ui.GUI;
 import io.github.heathensoft.jlib.ui.text.Text;
@@ -16,16 +17,12 @@ import org.joml.Vector2f;
 import org.joml.Vector4f;
 import org.joml.primitives.Rectanglef;
 import org.joml.primitives.Rectanglei;
-import org.lwjgl.system.MemoryStack;
 
-import java.nio.IntBuffer;
 import java.util.LinkedList;
 
 import static io.github.heathensoft.jlib.common.utils.U.*;
 import static java.lang.Math.max;
 import static org.lwjgl.glfw.GLFW.glfwGetCursorPos;
-import static org.lwjgl.opengl.GL11.GL_UNSIGNED_INT;
-import static org.lwjgl.opengl.GL11.glReadPixels;
 import static org.lwjgl.opengl.GL30.*;
 import static org.lwjgl.opengl.GL32.GL_BLEND;
 import static org.lwjgl.opengl.GL32.GL_COLOR_BUFFER_BIT;
@@ -76,12 +73,20 @@ public class RendererGUI implements Disposable {
     private int shader_swaps;
     private int draw_calls_max;
     private int draw_calls;
+    private long bytes_streamed_max;
+    private long bytes_streamed;
+    private int stream_stalls_max;
+    private int stream_stalls;
     private int active_batch;
     private int frame_count;
     private int pixel_id;
     private boolean rendering;
     private boolean rendering_delayed;
     private boolean paused;
+    private boolean picking_enabled;
+    private boolean draw_reordering;
+    private int mouse_screen_x;
+    private int mouse_screen_y;
 
     private Framebuffer[] bloomBuffers;
     private Framebuffer framebuffer;
@@ -89,6 +94,11 @@ public class RendererGUI implements Disposable {
     private final SpriteBatchGUI spriteBatch;
     private final TextBatchGUI textBatch;
     private final ScissorStack scissorStack;
+    private final PixelReadback pixelReadback;
+    private final CommandTarget commandTarget;
+    private final DrawSorterGUI drawSorter;
+    private PickingIndex pickingIndex; // last rendered frame
+    private PickingIndex pickingRecording; // frame being rendered
     private final LinkedList<Executor> delayed_calls;
 
     public RendererGUI(int width, int height) throws Exception {
@@ -98,6 +108,9 @@ public class RendererGUI implements Disposable {
         textBatch = new TextBatchGUI(fonts,TEXT_BATCH_CAPACITY,width,height);
         spriteBatch = new SpriteBatchGUI(SPRITE_BATCH_CAPACITY,width,height);
         scissorStack = new ScissorStack(this);
+        pixelReadback = new PixelReadback();
+        commandTarget = new CommandTarget();
+        drawSorter = new DrawSorterGUI(fonts);
         delayed_calls = new LinkedList<>();
         fonts.uploadDefaultFonts();
     }
@@ -109,11 +122,15 @@ public class RendererGUI implements Disposable {
             initializeBloomBuffers(width, height);
             textBatch.updateResolution(width, height);
             spriteBatch.updateResolution(width, height);
+            if (pickingIndex != null) {
+                pickingIndex.resize(width, height);
+                pickingRecording.resize(width, height);
+            }
         }
     }
 
     public void dispose() {
-        Disposable.dispose(spriteBatch,textBatch,framebuffer,fonts);
+        Disposable.dispose(spriteBatch,textBatch,framebuffer,fonts,pixelReadback);
         Disposable.dispose(bloomBuffers);
     }
     public FontsGUI fonts() { return fonts; }
@@ -124,9 +141,28 @@ public class RendererGUI implements Disposable {
     public Texture framebufferDiffuseTexture() { return framebuffer.texture(FRAMEBUFFER_SLOT_DIFFUSE); }
     public Texture framebufferNormalsTexture() { return framebuffer.texture(FRAMEBUFFER_SLOT_NORMALS); }
     public Texture framebufferEmissiveTexture() { return framebuffer.texture(FRAMEBUFFER_SLOT_EMISSIVE); }
+    /**
+     * The pixel id under the mouse, read PixelReadback.LATENCY frames ago (without stalling).
+     * With picking enabled: the id under the mouse in the last rendered frame, from the picking index.
+     */
     public int pixelID() { return pixel_id; }
+    /** @return the quads drawn with ids in the last rendered frame, null if picking is not enabled */
+    public PickingIndex pickingIndex() { return picking_enabled ? pickingIndex : null; }
+    public boolean pickingEnabled() { return picking_enabled; }
+    /** Pick pixel ids on the CPU (PickingIndex) instead of reading them back from the GPU. From the next frame */
+    public void enablePicking(boolean enable) {
+        if (rendering) throw new IllegalStateException("Illegal attempt to enable / disable picking while rendering");
+        if (enable && pickingIndex == null) {
+            pickingIndex = new PickingIndex(framebuffer.width(),framebuffer.height());
+            pickingRecording = new PickingIndex(framebuffer.width(),framebuffer.height());
+        } picking_enabled = enable;
+    }
     public long drawCallCount() { return draw_calls_max;  }
     public long shaderSwapCount() { return shader_swaps_max; }
+    /** Vertex bytes written to the batch stream buffers per frame */
+    public long bytesStreamedCount() { return bytes_streamed_max; }
+    /** Times per frame a batch waited for the GPU to release a stream buffer segment */
+    public long streamStallCount() { return stream_stalls_max; }
     public void uploadFont(BitmapFont font, int slot) throws Exception { fonts.uploadFont(font,slot); }
     public boolean pushScissor(Rectanglef quad) { if (rendering &! paused) return scissorStack.push(quad);
         else throw new IllegalStateException("Cannot push/pop scissors while renderer is not rendering / paused");
@@ -143,15 +179,20 @@ public class RendererGUI implements Disposable {
                 frame_count = 0;
                 shader_swaps_max = shader_swaps;
                 draw_calls_max = draw_calls;
+                bytes_streamed_max = bytes_streamed;
+                stream_stalls_max = stream_stalls;
             } shader_swaps = 0;
-            int mouse_screen_x = round(mouse.x * framebuffer.width());
-            int mouse_screen_y = round(mouse.y * framebuffer.height());
+            drawSorter.begin(framebuffer.width(),framebuffer.height());
+            mouse_screen_x = round(mouse.x * framebuffer.width());
+            mouse_screen_y = round(mouse.y * framebuffer.height());
             Framebuffer.bind(framebuffer);
             Framebuffer.viewport();
-            try (MemoryStack stack = MemoryStack.stackPush()){
-                IntBuffer buffer = stack.callocInt(1);
-                glReadPixels(mouse_screen_x,mouse_screen_y,1,1, GL_RED_INTEGER, GL_UNSIGNED_INT,buffer);
-                pixel_id = buffer.get(0);
+            if (picking_enabled) {
+                pickingRecording.clear();
+                spriteBatch.pickingIndex = pickingRecording;
+            } else {
+                pixelReadback.read(mouse_screen_x,mouse_screen_y,framebuffer.width(),framebuffer.height());
+                pixel_id = pixelReadback.pixelID();
             }
             Framebuffer.drawBuffers(0,1,2,3);
             Framebuffer.clear();
@@ -168,6 +209,7 @@ public class RendererGUI implements Disposable {
 
     public void end() {
         if (rendering) {
+            flushDeferred();
             while (!delayed_calls.isEmpty()) {
                 // delayed calls has no id. And glow should be overridden. Not GL_MAX
                 delayed_calls.removeLast().apply();
@@ -175,10 +217,20 @@ public class RendererGUI implements Disposable {
             spriteBatch.flush();
             textBatch.flush();
             scissorStack.reset();
-            draw_calls = spriteBatch.resetDrawCalls();
+            if (picking_enabled) {
+                PickingIndex rendered = pickingRecording;
+                pickingRecording = pickingIndex;
+                pickingIndex = rendered;
+                spriteBatch.pickingIndex = null;
+                pixel_id = pickingIndex.pickPixel(mouse_screen_x,mouse_screen_y);
+            } draw_calls = spriteBatch.resetDrawCalls();
             draw_calls += textBatch.resetDrawCalls();
             draw_calls_max = max(draw_calls, draw_calls_max);
             shader_swaps_max = max(shader_swaps, shader_swaps_max);
+            bytes_streamed = spriteBatch.resetBytesStreamed() + textBatch.resetBytesStreamed();
+            bytes_streamed_max = Math.max(bytes_streamed, bytes_streamed_max);
+            stream_stalls = spriteBatch.resetStalls() + textBatch.resetStalls();
+            stream_stalls_max = max(stream_stalls, stream_stalls_max);
             active_batch = NULL_BATCH;
 
 
@@ -221,6 +273,7 @@ public class RendererGUI implements Disposable {
     public void pause() {
         if (rendering) {
             if (!paused) {
+                flushDeferred();
                 spriteBatch.flush();
                 textBatch.flush();
                 scissorStack.pause();
@@ -247,6 +300,41 @@ public class RendererGUI implements Disposable {
         }
     }
 
+    /**
+     * Draws the commands recorded in the buffer (see CommandBufferGUI). Render thread only.
+     * With draw reordering enabled the commands are queued, and drawn sorted at flushDeferred().
+     */
+    public void submit(CommandBufferGUI buffer) {
+        if (rendering &! paused) {
+            if (draw_reordering) buffer.submit(drawSorter);
+            else { buffer.submit(commandTarget);
+                commandTarget.finish();
+            }
+        }
+    }
+
+    /**
+     * Draws the queued (submitted) commands, reordered to merge draws (see DrawSorterGUI).
+     * Draw calls made directly on the renderer are not queued: flush before drawing over queued commands.
+     * Called by end() and pause().
+     */
+    public void flushDeferred() {
+        if (rendering &! paused &! drawSorter.isEmpty()) {
+            drawSorter.submit(commandTarget);
+            commandTarget.finish();
+            drawSorter.clear();
+        }
+    }
+
+    /** Queued commands submitted after this are drawn after all queued before it (not reordered between) */
+    public void nextDrawLayer() { drawSorter.nextLayer(); }
+    public boolean drawReorderingEnabled() { return draw_reordering; }
+    /** Queue submitted command buffers and draw them reordered (see DrawSorterGUI) */
+    public void enableDrawReordering(boolean enable) {
+        if (!enable) flushDeferred();
+        draw_reordering = enable;
+    }
+
     /** Use this when rendering items grabbed from and to containers*/
     public void drawDelayed(Executor function) { delayed_calls.addFirst(function); }
     public void drawTooltip(String string, Vector2f mouse_position) { GUI.tooltips.display(string, mouse_position); }
@@ -436,7 +524,7 @@ public class RendererGUI implements Disposable {
                 } if (id == SKIP_ID) {
                     spriteBatch.flush();
                     Framebuffer.drawBuffers(0,1,2);
-                    spriteBatch.push(sprite.texture(),null,uv,quad,sprite.rotationRadians(),abgr,0,glow,invisible_id);
+                    spriteBatch.push(sprite.texture(),null,uv,quad,sprite.rotationRadians(),abgr,SKIP_ID,glow,invisible_id);
                     spriteBatch.flush();
                     Framebuffer.drawBuffers(0,1,2,3);
                 } else spriteBatch.push(sprite.texture(),null,uv,quad,sprite.rotationRadians(),abgr,id,glow,invisible_id);
@@ -476,7 +564,7 @@ public class RendererGUI implements Disposable {
                 } if (id == SKIP_ID) {
                     spriteBatch.flush();
                     Framebuffer.drawBuffers(0,1,2);
-                    spriteBatch.push(sprite.texture(),null,uv,quad,abgr,0,glow,invisible_id,false);
+                    spriteBatch.push(sprite.texture(),null,uv,quad,abgr,SKIP_ID,glow,invisible_id,false);
                     spriteBatch.flush();
                     Framebuffer.drawBuffers(0,1,2,3);
                 } else spriteBatch.push(sprite.texture(),null,uv,quad,abgr,id,glow,invisible_id,false);
@@ -501,7 +589,7 @@ public class RendererGUI implements Disposable {
             } if (id == SKIP_ID) {
                 spriteBatch.flush();
                 Framebuffer.drawBuffers(0,1,2);
-                spriteBatch.push(diffuse, normals, region, quad, abgr, 0, glow, invisible_id,false);
+                spriteBatch.push(diffuse, normals, region, quad, abgr, SKIP_ID, glow, invisible_id,false);
                 spriteBatch.flush();
                 Framebuffer.drawBuffers(0,1,2,3);
             } else spriteBatch.push(diffuse, normals, region, quad, abgr, id, glow, invisible_id,false);
@@ -527,7 +615,7 @@ public class RendererGUI implements Disposable {
             } if (id == SKIP_ID) {
                 spriteBatch.flush();
                 Framebuffer.drawBuffers(0,1,2);
-                spriteBatch.push(diffuse, normals, region, quad, abgr, 0, glow, invisible_id,false);
+                spriteBatch.push(diffuse, normals, region, quad, abgr, SKIP_ID, glow, invisible_id,false);
                 spriteBatch.flush();
                 Framebuffer.drawBuffers(0,1,2,3);
             } else spriteBatch.push(diffuse, normals, region, quad, abgr, id, glow, invisible_id,false);
@@ -552,7 +640,7 @@ public class RendererGUI implements Disposable {
             } if (id == SKIP_ID) {
                 spriteBatch.flush();
                 Framebuffer.drawBuffers(0,1,2);
-                spriteBatch.push(diffuse, null, region, quad, abgr, 0, glow, invisible_id,false);
+                spriteBatch.push(diffuse, null, region, quad, abgr, SKIP_ID, glow, invisible_id,false);
                 spriteBatch.flush();
                 Framebuffer.drawBuffers(0,1,2,3);
             } else spriteBatch.push(diffuse, null, region, quad, abgr, id, glow, invisible_id,false);
@@ -577,7 +665,7 @@ public class RendererGUI implements Disposable {
             } if (id == SKIP_ID) {
                 spriteBatch.flush();
                 Framebuffer.drawBuffers(0,1,2);
-                spriteBatch.push(diffuse, null, region, quad, abgr, 0, glow, invisible_id,false);
+                spriteBatch.push(diffuse, null, region, quad, abgr, SKIP_ID, glow, invisible_id,false);
                 spriteBatch.flush();
                 Framebuffer.drawBuffers(0,1,2,3);
             } else spriteBatch.push(diffuse, null, region, quad, abgr, id, glow, invisible_id,false);
@@ -600,7 +688,7 @@ public class RendererGUI implements Disposable {
             } if (id == SKIP_ID) {
                 spriteBatch.flush();
                 Framebuffer.drawBuffers(0,1,2);
-                spriteBatch.push(diffuse, null, region, quad, abgr, 0, glow, invisible_id,false);
+                spriteBatch.push(diffuse, null, region, quad, abgr, SKIP_ID, glow, invisible_id,false);
                 spriteBatch.flush();
                 Framebuffer.drawBuffers(0,1,2,3);
             } else spriteBatch.push(diffuse, null, region, quad, abgr, id, glow, invisible_id,false);
@@ -624,7 +712,7 @@ public class RendererGUI implements Disposable {
             } if (id == SKIP_ID) {
                 spriteBatch.flush();
                 Framebuffer.drawBuffers(0,1,2);
-                spriteBatch.push(quad, abgr, 0, glow, invisible_id,false);
+                spriteBatch.push(quad, abgr, SKIP_ID, glow, invisible_id,false);
                 spriteBatch.flush();
                 Framebuffer.drawBuffers(0,1,2,3);
             } else spriteBatch.push(quad, abgr, id, glow, invisible_id,false);
@@ -647,7 +735,7 @@ public class RendererGUI implements Disposable {
             } if (id == SKIP_ID) {
                 spriteBatch.flush();
                 Framebuffer.drawBuffers(0,1,2);
-                spriteBatch.push(diffuse, normals, region, quad, rotation, abgr, 0, glow, invisible_id);
+                spriteBatch.push(diffuse, normals, region, quad, rotation, abgr, SKIP_ID, glow, invisible_id);
                 spriteBatch.flush();
                 Framebuffer.drawBuffers(0,1,2,3);
             } else spriteBatch.push(diffuse, normals, region, quad, rotation, abgr, id, glow, invisible_id);
@@ -669,7 +757,7 @@ public class RendererGUI implements Disposable {
             } if (id == SKIP_ID) {
                 spriteBatch.flush();
                 Framebuffer.drawBuffers(0,1,2);
-                spriteBatch.push(diffuse, normals, region, quad, rotation, abgr, 0, glow, invisible_id);
+                spriteBatch.push(diffuse, normals, region, quad, rotation, abgr, SKIP_ID, glow, invisible_id);
                 spriteBatch.flush();
                 Framebuffer.drawBuffers(0,1,2,3);
             } else spriteBatch.push(diffuse, normals, region, quad, rotation, abgr, id, glow, invisible_id);
@@ -691,7 +779,7 @@ public class RendererGUI implements Disposable {
             } if (id == SKIP_ID) {
                 spriteBatch.flush();
                 Framebuffer.drawBuffers(0,1,2);
-                spriteBatch.push(diffuse, null, region, quad, rotation, abgr, 0, glow, invisible_id);
+                spriteBatch.push(diffuse, null, region, quad, rotation, abgr, SKIP_ID, glow, invisible_id);
                 spriteBatch.flush();
                 Framebuffer.drawBuffers(0,1,2,3);
             } else spriteBatch.push(diffuse, null, region, quad, rotation, abgr, id, glow, invisible_id);
@@ -713,7 +801,7 @@ public class RendererGUI implements Disposable {
             } if (id == SKIP_ID) {
                 spriteBatch.flush();
                 Framebuffer.drawBuffers(0,1,2);
-                spriteBatch.push(diffuse, null, region, quad, rotation, abgr, 0, glow, invisible_id);
+                spriteBatch.push(diffuse, null, region, quad, rotation, abgr, SKIP_ID, glow, invisible_id);
                 spriteBatch.flush();
                 Framebuffer.drawBuffers(0,1,2,3);
             } else spriteBatch.push(diffuse, null, region, quad, rotation, abgr, id, glow, invisible_id);
@@ -736,7 +824,7 @@ public class RendererGUI implements Disposable {
             } if (id == SKIP_ID) {
                 spriteBatch.flush();
                 Framebuffer.drawBuffers(0,1,2);
-                spriteBatch.push(quad, rotation, abgr, 0, glow, invisible_id);
+                spriteBatch.push(quad, rotation, abgr, SKIP_ID, glow, invisible_id);
                 spriteBatch.flush();
                 Framebuffer.drawBuffers(0,1,2,3);
             } else spriteBatch.push(quad, rotation, abgr, id, glow, invisible_id);
@@ -766,7 +854,7 @@ public class RendererGUI implements Disposable {
             } if (id == SKIP_ID) {
                 spriteBatch.flush();
                 Framebuffer.drawBuffers(0,1,2);
-                spriteBatch.push(diffuse, normals, region, quad, abgr, 0, glow, invisible_id,true);
+                spriteBatch.push(diffuse, normals, region, quad, abgr, SKIP_ID, glow, invisible_id,true);
                 spriteBatch.flush();
                 Framebuffer.drawBuffers(0,1,2,3);
             } else spriteBatch.push(diffuse, normals, region, quad, abgr, id, glow, invisible_id,true);
@@ -789,7 +877,7 @@ public class RendererGUI implements Disposable {
             } if (id == SKIP_ID) {
                 spriteBatch.flush();
                 Framebuffer.drawBuffers(0,1,2);
-                spriteBatch.push(diffuse, normals, region, quad, abgr, 0, glow, invisible_id,true);
+                spriteBatch.push(diffuse, normals, region, quad, abgr, SKIP_ID, glow, invisible_id,true);
                 spriteBatch.flush();
                 Framebuffer.drawBuffers(0,1,2,3);
             } else spriteBatch.push(diffuse, normals, region, quad, abgr, id, glow, invisible_id,true);
@@ -812,7 +900,7 @@ public class RendererGUI implements Disposable {
             } if (id == SKIP_ID) {
                 spriteBatch.flush();
                 Framebuffer.drawBuffers(0,1,2);
-                spriteBatch.push(diffuse, null, region, quad, abgr, 0, glow, invisible_id,true);
+                spriteBatch.push(diffuse, null, region, quad, abgr, SKIP_ID, glow, invisible_id,true);
                 spriteBatch.flush();
                 Framebuffer.drawBuffers(0,1,2,3);
             } else spriteBatch.push(diffuse, null, region, quad, abgr, id, glow, invisible_id,true);
@@ -835,7 +923,7 @@ public class RendererGUI implements Disposable {
             } if (id == SKIP_ID) {
                 spriteBatch.flush();
                 Framebuffer.drawBuffers(0,1,2);
-                spriteBatch.push(diffuse, null, region, quad, abgr, 0, glow, invisible_id,true);
+                spriteBatch.push(diffuse, null, region, quad, abgr, SKIP_ID, glow, invisible_id,true);
                 spriteBatch.flush();
                 Framebuffer.drawBuffers(0,1,2,3);
             } else spriteBatch.push(diffuse, null, region, quad, abgr, id, glow, invisible_id,true);
@@ -858,7 +946,7 @@ public class RendererGUI implements Disposable {
             } if (id == SKIP_ID) {
                 spriteBatch.flush();
                 Framebuffer.drawBuffers(0,1,2);
-                spriteBatch.push(quad, abgr, 0, glow, invisible_id,true);
+                spriteBatch.push(quad, abgr, SKIP_ID, glow, invisible_id,true);
                 spriteBatch.flush();
                 Framebuffer.drawBuffers(0,1,2,3);
             } else spriteBatch.push(quad, abgr, id, glow, invisible_id,true);
@@ -947,7 +1035,7 @@ public class RendererGUI implements Disposable {
                         shader_swaps++;
                     } active_batch = SPRITE_BATCH;
                     Framebuffer.drawBuffers(0,1,2,3);
-                } if (id == SKIP_ID) { iID = 0;
+                } if (id == SKIP_ID) { iID = SKIP_ID;
                     spriteBatch.flush();
                     Framebuffer.drawBuffers(0,1,2);
                 } Rectanglef rect = U.popRect();
@@ -1032,7 +1120,7 @@ public class RendererGUI implements Disposable {
                         shader_swaps++;
                     } active_batch = SPRITE_BATCH;
                     Framebuffer.drawBuffers(0,1,2,3);
-                } if (id == SKIP_ID) { iID = 0;
+                } if (id == SKIP_ID) { iID = SKIP_ID;
                     spriteBatch.flush();
                     Framebuffer.drawBuffers(0,1,2);
                 } Rectanglef rect = U.popRect();
@@ -1160,6 +1248,49 @@ public class RendererGUI implements Disposable {
 
 
 
+    /**
+     * Recorded quads and glyphs go through the same batch switching as the draw methods.
+     * Consecutive SKIP_ID quads are drawn together. Call finish after submitting.
+     */
+    private final class CommandTarget implements CommandBufferGUI.Target {
+        private boolean skip_ids; // sprite batch drawing without the id buffer
+        public void sprite(float[] vertices, int offset, Texture diffuse, Texture normals, int id, boolean ellipse, float minX, float minY, float maxX, float maxY) {
+            if (active_batch != SPRITE_BATCH) {
+                if (active_batch == TEXT_BATCH) {
+                    textBatch.flush();
+                    shader_swaps++;
+                } active_batch = SPRITE_BATCH;
+                Framebuffer.drawBuffers(0,1,2,3);
+                skip_ids = false;
+            } if ((id == SKIP_ID) != skip_ids) {
+                spriteBatch.flush();
+                skip_ids = !skip_ids;
+                if (skip_ids) Framebuffer.drawBuffers(0,1,2);
+                else Framebuffer.drawBuffers(0,1,2,3);
+            } spriteBatch.push(vertices,offset,diffuse,normals,id,ellipse,minX,minY,maxX,maxY);
+        }
+        public void glyphs(float[] vertices, int offset, int count) {
+            if (active_batch != TEXT_BATCH) {
+                if (active_batch == SPRITE_BATCH) {
+                    spriteBatch.flush();
+                    shader_swaps++;
+                } active_batch = TEXT_BATCH;
+                Framebuffer.drawBuffers(0,1,2);
+                skip_ids = false;
+            } textBatch.push(vertices,offset,count);
+        }
+        /** Draws pending SKIP_ID quads, leaving the sprite batch as the draw methods expect it */
+        void finish() {
+            if (skip_ids) {
+                spriteBatch.flush();
+                Framebuffer.drawBuffers(0,1,2,3);
+                skip_ids = false;
+            }
+        }
+        public boolean pushScissor(float x1, float y1, float x2, float y2) { return scissorStack.push(x1,y1,x2,y2); }
+        public void popScissor() { scissorStack.pop(); }
+    }
+
     private static final class ScissorStack {
         private final RectanglePool scissor_pool = new RectanglePool();
         private final Stack<Rectanglei> scissor_stack = new Stack<>(8);
@@ -1189,6 +1320,7 @@ public class RendererGUI implements Disposable {
                 renderer.flush();
                 glEnable(GL_SCISSOR_TEST);
                 glScissor(scissor.minX,scissor.minY,w,h);
+                clipPicking(scissor);
                 scissor_stack.push(scissor);
                 return true;
             } else scissor_pool.free(scissor);
@@ -1204,7 +1336,8 @@ public class RendererGUI implements Disposable {
                 } else { int w = scissor.lengthX();
                     int h = scissor.lengthY();
                     glScissor(scissor.minX,scissor.minY,w,h);
-                } scissor_pool.free(current);
+                } clipPicking(scissor);
+                scissor_pool.free(current);
             }
         }
 
@@ -1214,6 +1347,14 @@ public class RendererGUI implements Disposable {
             } glDisable(GL_SCISSOR_TEST);
         }
 
+        void clipPicking(Rectanglei scissor) {
+            PickingIndex index = renderer.spriteBatch.pickingIndex;
+            if (index != null) {
+                if (scissor == null) index.clearClip();
+                else index.setClip(scissor.minX,scissor.minY,scissor.maxX,scissor.maxY);
+            }
+        }
+
         void pause() {
             if (!scissor_stack.isEmpty()) {
                 glDisable(GL_SCISSOR_TEST);
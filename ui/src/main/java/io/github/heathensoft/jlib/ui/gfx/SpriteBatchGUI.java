@@ -18,6 +18,7 @@ import static org.lwjgl.opengl.GL11.*;
 import static org.lwjgl.opengl.GL15.*;
 import static org.lwjgl.opengl.GL20.glEnableVertexAttribArray;
 import static org.lwjgl.opengl.GL20.glVertexAttribPointer;
+import static org.lwjgl.opengl.GL32.glDrawElementsBaseVertex;
 
 /**
  *
@@ -33,6 +34,8 @@ import static org.lwjgl.opengl.GL20.glVertexAttribPointer;
  * 00000000 00000000 10000000 00000000 invisible_id (draw_alpha)
  * 11111111 11111111 00000000 00000000 pixel_id
  * Attempting to render disposed textures will color the output Pink (Color.ERROR_BITS)
+ * A recording batch (CommandBufferGUI) has no GL objects. Its flushed quads go to the command buffer,
+ * with the textures of their slots. The slots are assigned again when the quads are submitted.
  * @author Frederik Dahl
  * 20/10/2023
  */
@@ -45,6 +48,8 @@ public class SpriteBatchGUI extends BatchGUI {
     private final SamplerArray samplersDiffuse;
     private final SamplerArray samplersNormals;
     private boolean pixel_antialiasing;
+    PickingIndex pickingIndex; // quads with ids are added while not null
+    private final CommandBufferGUI recorder; // not null for recording batches
 
     SpriteBatchGUI(int capacity, int width, int height) {
         int vertex_size = 6;
@@ -53,12 +58,11 @@ public class SpriteBatchGUI extends BatchGUI {
         samplersDiffuse = new SamplerArray(NUM_TEXTURE_SLOTS,GL_TEXTURE_2D,0);
         samplersNormals = new SamplerArray(NUM_TEXTURE_SLOTS,GL_TEXTURE_2D,NUM_TEXTURE_SLOTS);
         buffer_capacity = capacity;
-        vertices = MemoryUtil.memAllocFloat(buffer_capacity * sprite_size);
         indices = new BufferObject(GL_ELEMENT_ARRAY_BUFFER,GL_STATIC_DRAW);
-        vertexBuffer = new BufferObject(GL_ARRAY_BUFFER,GL_DYNAMIC_DRAW);
         vertexAttribArray = new VertexAttributes().bind();
         indices.bind().bufferData(generateIndices(buffer_capacity));
-        vertexBuffer.bind().bufferData((long) sprite_size * buffer_capacity * Float.BYTES); int pointer = 0;
+        vertexBuffer = new StreamBuffer(GL_ARRAY_BUFFER,sprite_size * buffer_capacity * Float.BYTES);
+        vertices = vertexBuffer.vertices(); int pointer = 0;
         glVertexAttribPointer(0,2,GL_FLOAT,false,vertex_size_bytes,pointer);
         glEnableVertexAttribArray(0); pointer += 2 * Float.BYTES;
         glVertexAttribPointer(1,2,GL_FLOAT,false,vertex_size_bytes,pointer);
@@ -68,6 +72,17 @@ public class SpriteBatchGUI extends BatchGUI {
         glVertexAttribPointer(3,1,GL_FLOAT,false,vertex_size_bytes,pointer);
         glEnableVertexAttribArray(3);
         updateResolution(width, height);
+        recorder = null;
+    }
+
+    /** Recording batch. No GL */
+    SpriteBatchGUI(CommandBufferGUI recorder, int capacity) {
+        this.recorder = recorder;
+        samplersDiffuse = new SamplerArray(NUM_TEXTURE_SLOTS,GL_TEXTURE_2D,0); // never uploaded
+        samplersNormals = new SamplerArray(NUM_TEXTURE_SLOTS,GL_TEXTURE_2D,NUM_TEXTURE_SLOTS);
+        buffer_capacity = capacity;
+        vertices = MemoryUtil.memAllocFloat(buffer_capacity * 24);
+        indices = null;
     }
 
     public void enablePixelArtAntialiasing(boolean enable) {
@@ -75,6 +90,7 @@ public class SpriteBatchGUI extends BatchGUI {
     }
 
     void push(Rectanglef quad, int abgr, int id, float glow, boolean draw_alpha, boolean ellipse) {
+        id = pick(quad,id,ellipse &! draw_alpha);
         if (count == buffer_capacity) flush();
         //int bits = ((round(clamp(glow) * 63.0f) & 0x3F) << 8);
         //bits |= 0xFF;
@@ -97,6 +113,7 @@ public class SpriteBatchGUI extends BatchGUI {
     }
 
     void push(Rectanglef quad, float rotation, int abgr, int id, float glow, boolean draw_alpha) {
+        id = pick(quad,rotation,id);
         if (count == buffer_capacity) flush();
         int bits = ((round(clamp(glow) * 31.0f) & 0x1F) << 8);
         bits |= 0xFF;
@@ -155,6 +172,7 @@ public class SpriteBatchGUI extends BatchGUI {
     }
 
     void push(Texture diffuse, Texture normals, TextureRegion region, Rectanglef quad, int abgr, int id, float glow, boolean draw_alpha, boolean ellipse) {
+        id = pick(quad,id,ellipse &! draw_alpha);
         if (count == buffer_capacity) flush();
         // split into diffuse and normals. 15 texture slots (0-14). 15 = NO TEXTURE
         int diffuse_slot, normals_slot;
@@ -176,8 +194,9 @@ public class SpriteBatchGUI extends BatchGUI {
             abgr = Color.ERROR_BITS;
         }  else {
             normals_slot = samplersNormals.assignSlot(normals);
-            if (normals_slot == 15) { flush();
+            if (normals_slot == 15) { flush(); // diffuse slot was flushed with it
                 normals_slot = samplersNormals.assignSlot(normals);
+                if (diffuse_slot < 15) diffuse_slot = samplersDiffuse.assignSlot(diffuse);
             }
         }
         int bits = (diffuse_slot | (normals_slot << 4)) & 0xFF;
@@ -198,6 +217,7 @@ public class SpriteBatchGUI extends BatchGUI {
     }
 
     void push(Texture diffuse, Texture normals, TextureRegion region, Rectanglef quad, float rotation, int abgr, int id, float glow, boolean draw_alpha) {
+        id = pick(quad,rotation,id);
         if (count == buffer_capacity) flush();
         int diffuse_slot, normals_slot;
         if (diffuse == null)
@@ -218,8 +238,9 @@ public class SpriteBatchGUI extends BatchGUI {
             abgr = Color.ERROR_BITS;
         }  else {
             normals_slot = samplersNormals.assignSlot(normals);
-            if (normals_slot == 15) { flush();
+            if (normals_slot == 15) { flush(); // diffuse slot was flushed with it
                 normals_slot = samplersNormals.assignSlot(normals);
+                if (diffuse_slot < 15) diffuse_slot = samplersDiffuse.assignSlot(diffuse);
             }
         }
         int bits = (diffuse_slot | (normals_slot << 4)) & 0xFF;
@@ -288,6 +309,7 @@ public class SpriteBatchGUI extends BatchGUI {
     }
 
     void push(Texture diffuse, Texture normals, Vector4f region, Rectanglef quad, int abgr, int id, float glow, boolean draw_alpha, boolean ellipse) {
+        id = pick(quad,id,ellipse &! draw_alpha);
         if (count == buffer_capacity) flush();
         // split into diffuse and normals. 15 texture slots (0-14). 15 = NO TEXTURE
         int diffuse_slot, normals_slot;
@@ -309,8 +331,9 @@ public class SpriteBatchGUI extends BatchGUI {
             abgr = Color.ERROR_BITS;
         } else {
             normals_slot = samplersNormals.assignSlot(normals);
-            if (normals_slot == 15) { flush();
+            if (normals_slot == 15) { flush(); // diffuse slot was flushed with it
                 normals_slot = samplersNormals.assignSlot(normals);
+                if (diffuse_slot < 15) diffuse_slot = samplersDiffuse.assignSlot(diffuse);
             }
         }
         int shader_bits = (diffuse_slot | (normals_slot << 4)) & 0xFF;
@@ -329,6 +352,7 @@ public class SpriteBatchGUI extends BatchGUI {
     }
 
     void push(Texture diffuse, Texture normals, Vector4f region, Rectanglef quad, float rotation, int abgr, int id, float glow, boolean draw_alpha) {
+        id = pick(quad,rotation,id);
         if (count == buffer_capacity) flush();
         int diffuse_slot, normals_slot;
         if (diffuse == null)
@@ -346,8 +370,9 @@ public class SpriteBatchGUI extends BatchGUI {
             normals_slot = 15;
             abgr = Color.ERROR_BITS;
         } else { normals_slot = samplersNormals.assignSlot(normals);
-            if (normals_slot == 15) { flush();
+            if (normals_slot == 15) { flush(); // diffuse slot was flushed with it
                 normals_slot = samplersNormals.assignSlot(normals);
+                if (diffuse_slot < 15) diffuse_slot = samplersDiffuse.assignSlot(diffuse);
             }
         }
         int bits = (diffuse_slot | (normals_slot << 4)) & 0xFF;
@@ -415,18 +440,93 @@ public class SpriteBatchGUI extends BatchGUI {
         } count++;
     }
 
+    /**
+     * Pushes a quad recorded by a CommandBufferGUI (24 floats from offset). The texture slots of the
+     * recording batch (the lower 8 shader bits) are replaced with slots assigned here, in the same order as push.
+     * Id and bounds are the quad's picking entry. SKIP_ID is not added (a recording batch keeps it).
+     */
+    void push(float[] quad, int offset, Texture diffuse, Texture normals, int id, boolean ellipse, float minX, float minY, float maxX, float maxY) {
+        pick(minX,minY,maxX,maxY,id,ellipse);
+        if (count == buffer_capacity) flush();
+        boolean error = false;
+        int diffuse_slot, normals_slot;
+        if (diffuse == null)
+            diffuse_slot = 15;
+        else if (diffuse.hasBeenDisposed()) {
+            diffuse_slot = 15;
+            error = true;
+        } else { diffuse_slot = samplersDiffuse.assignSlot(diffuse);
+            if (diffuse_slot == 15) { flush();
+                diffuse_slot = samplersDiffuse.assignSlot(diffuse);
+            }
+        } if (normals == null)
+            normals_slot = 15;
+        else if (normals.hasBeenDisposed()) {
+            normals_slot = 15;
+            error = true;
+        } else { normals_slot = samplersNormals.assignSlot(normals);
+            if (normals_slot == 15) { flush(); // diffuse slot was flushed with it
+                normals_slot = samplersNormals.assignSlot(normals);
+                if (diffuse_slot < 15) diffuse_slot = samplersDiffuse.assignSlot(diffuse);
+            }
+        }
+        int slots = (diffuse_slot | (normals_slot << 4)) & 0xFF;
+        float error_color = Color.intBits_to_floatBits(Color.ERROR_BITS);
+        for (int v = 0; v < 4; v++) {
+            int i = offset + v * 6;
+            int bits = (Float.floatToRawIntBits(quad[i + 5]) & ~0xFF) | slots;
+            vertices.put(quad,i,4).put(error ? error_color : quad[i + 4]).put(Float.intBitsToFloat(bits));
+        } count++;
+    }
+
+    /** Adds the quad to the picking index. SKIP_ID (id buffer not drawn to) is not added, and drawn as 0 */
+    private int pick(Rectanglef quad, int id, boolean ellipse) {
+        pick(quad.minX,quad.minY,quad.maxX,quad.maxY,id,ellipse);
+        return id == RendererGUI.SKIP_ID ? 0 : id;
+    }
+
+    private int pick(Rectanglef quad, float rotation, int id) {
+        if (pickingIndex != null || recorder != null) {
+            if (rotation == ROT_0 || rotation == ROT_90 || rotation == ROT_180 || rotation == ROT_270) {
+                pick(quad.minX,quad.minY,quad.maxX,quad.maxY,id,false);
+            } else { // bounds of the rotated quad
+                final float hw = quad.lengthX() * 0.5f;
+                final float hh = quad.lengthY() * 0.5f;
+                final float cx = quad.minX + hw;
+                final float cy = quad.minY + hh;
+                final float sin = Math.abs((float) Math.sin(rotation));
+                final float cos = Math.abs((float) Math.cos(rotation));
+                final float ex = hw * cos + hh * sin;
+                final float ey = hw * sin + hh * cos;
+                pick(cx - ex,cy - ey,cx + ex,cy + ey,id,false);
+            }
+        } return id == RendererGUI.SKIP_ID ? 0 : id;
+    }
+
+    /** Recording batches keep the entry of every quad (SKIP_ID too) for submit */
+    private void pick(float minX, float minY, float maxX, float maxY, int id, boolean ellipse) {
+        if (recorder != null) recorder.recordPick(minX,minY,maxX,maxY,id,ellipse);
+        else if (pickingIndex != null && id != RendererGUI.SKIP_ID) pickingIndex.add(minX,minY,maxX,maxY,id,ellipse);
+    }
+
     void flush() {
-        if (count > 0) {
+        if (count > 0 && recorder != null) {
+            vertices.flip();
+            recorder.recordSprites(vertices,count,samplersDiffuse,samplersNormals);
+            samplersDiffuse.clear();
+            samplersNormals.clear();
+            vertices.clear();
+            count = 0;
+        } else if (count > 0) {
             ShaderProgram.bindProgram(GUI.shaders.sprite_program);
             samplersDiffuse.uploadUniform("u_diffuse_textures");
             samplersNormals.uploadUniform("u_normals_textures");
-            vertices.flip();
             vertexAttribArray.bind();
             vertexBuffer.bind();
-            vertexBuffer.bufferSubData(vertices, 0);
-            glDrawElements(GL_TRIANGLES,6 * count,GL_UNSIGNED_SHORT,0);
+            int base_vertex = (int) (vertexBuffer.commit() / (6 * Float.BYTES));
+            glDrawElementsBaseVertex(GL_TRIANGLES,6 * count,GL_UNSIGNED_SHORT,0,base_vertex);
+            vertices = vertexBuffer.reserve(buffer_capacity * 24);
             draw_calls++;
-            vertices.clear();
             count = 0;
         }
     }
@@ -12,7 +12,6 @@ import org.lwjgl.system.MemoryUtil;
 import static io.github.heathensoft.jlib.ui.gfx.FontsGUI.*;
 import static org.lwjgl.opengl.GL11.*;
 import static org.lwjgl.opengl.GL15.GL_ARRAY_BUFFER;
-import static org.lwjgl.opengl.GL15.GL_DYNAMIC_DRAW;
 import static org.lwjgl.opengl.GL20.glEnableVertexAttribArray;
 import static org.lwjgl.opengl.GL20.glVertexAttribPointer;
 
@@ -26,6 +25,7 @@ import static org.lwjgl.opengl.GL20.glVertexAttribPointer;
 public class TextBatchGUI extends BatchGUI {
 
     private final FontsGUI fonts;
+    private final CommandBufferGUI recorder; // not null for recording batches
 
     TextBatchGUI(FontsGUI fonts, int capacity, int width, int height) {
         int vertex_size = 4;
@@ -33,14 +33,22 @@ public class TextBatchGUI extends BatchGUI {
         this.fonts = fonts;
         buffer_capacity = capacity;
         vertexAttribArray = new VertexAttributes().bind();
-        vertices = MemoryUtil.memAllocFloat(capacity * vertex_size);
-        vertexBuffer = new BufferObject(GL_ARRAY_BUFFER,GL_DYNAMIC_DRAW);
-        vertexBuffer.bind().bufferData((long) vertex_size_bytes * capacity);
+        vertexBuffer = new StreamBuffer(GL_ARRAY_BUFFER,vertex_size_bytes * capacity);
+        vertices = vertexBuffer.vertices();
         glVertexAttribPointer(0, 3, GL_FLOAT, false, vertex_size_bytes, 0);
         glVertexAttribPointer(1,4,GL_UNSIGNED_BYTE,true,vertex_size_bytes,3 * Float.BYTES);
         glEnableVertexAttribArray(0);
         glEnableVertexAttribArray(1);
         updateResolution(width, height);
+        recorder = null;
+    }
+
+    /** Recording batch. No GL. Flushed glyphs go to the command buffer */
+    TextBatchGUI(CommandBufferGUI recorder, FontsGUI fonts, int capacity) {
+        this.recorder = recorder;
+        this.fonts = fonts;
+        buffer_capacity = capacity;
+        vertices = MemoryUtil.memAllocFloat(capacity * 4);
     }
 
     public FontsGUI fonts() {
@@ -243,16 +251,32 @@ public class TextBatchGUI extends BatchGUI {
         count++;
     }
 
+    /** Pushes glyphs recorded by a CommandBufferGUI (4 floats each from offset) */
+    void push(float[] glyphs, int offset, int count) {
+        while (count > 0) {
+            if (this.count == buffer_capacity) flush();
+            int n = Math.min(count,buffer_capacity - this.count);
+            vertices.put(glyphs,offset,n * 4);
+            offset += n * 4;
+            this.count += n;
+            count -= n;
+        }
+    }
+
     void flush() {
-        if (count > 0) {
+        if (count > 0 && recorder != null) {
+            vertices.flip();
+            recorder.recordGlyphs(vertices,count);
+            vertices.clear();
+            count = 0;
+        } else if (count > 0) {
             ShaderProgram.bindProgram(GUI.shaders.text_program);
             fonts.bindUploadTextures("u_font_textures");
-            vertices.flip();
             vertexAttribArray.bind();
             vertexBuffer.bind();
-            vertexBuffer.bufferSubData(vertices, 0);
-            glDrawArrays(GL_POINTS, 0, count);
-            vertices.clear();
+            int first = (int) (vertexBuffer.commit() / (4 * Float.BYTES));
+            glDrawArrays(GL_POINTS, first, count);
+            vertices = vertexBuffer.reserve(buffer_capacity * 4);
             draw_calls++;
             count = 0;
         }
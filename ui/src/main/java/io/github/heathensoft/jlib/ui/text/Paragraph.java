@@ -162,13 +162,14 @@ public class Paragraph implements Iterable<Word> {
         } return false;
     }
 
-    public float width() { // Unscaled width pixels. Bind font before call
+    public float width() { return width(GUI.fonts); } // Unscaled width pixels. Bind font before call
+
+    public float width(FontsGUI fonts) {
         if (!isBlank()) {
-            FontsGUI fonts = GUI.fonts;
             float space = fonts.advance(' ');
             float width = 0;
             for (Word w : words) {
-                width += w.width();
+                width += w.width(fonts);
                 width += space;
             } width -= space;
             return width;
@@ -391,9 +392,12 @@ public class Paragraph implements Iterable<Word> {
     public void drawFixedSize(RendererGUI renderer, float x, float y, float width, float size) { drawFixedSize(renderer, x, y, width, size,0.0f); }
     public void drawFixedSize(RendererGUI renderer, float x, float y, float width, float size, float glow) { drawFixedSize(renderer, x, y, width, size, glow,1.0f); }
     public void drawFixedSize(RendererGUI renderer, float x, float y, float width, float size, float glow, float alpha) {
+        drawFixedSize(renderer.textBatch(),x,y,width,size,glow,alpha);
+    }
+
+    public void drawFixedSize(TextBatchGUI batch, float x, float y, float width, float size, float glow, float alpha) {
         if (!isBlank() && size >= 1) {
-            FontsGUI fonts = renderer.fonts();
-            TextBatchGUI batch = renderer.textBatch();
+            FontsGUI fonts = batch.fonts();
             float scale = fonts.relativeScale(size);
             float width_unscaled = fonts.advanceSum(this);
             float desired_width = width_unscaled * scale;
@@ -439,9 +443,12 @@ public class Paragraph implements Iterable<Word> {
 
     public void drawFixedSize(RendererGUI renderer, float x, float y, float width, float size, int abgr) { drawFixedSize(renderer, x, y, width, size, abgr,0.0f); }
     public void drawFixedSize(RendererGUI renderer, float x, float y, float width, float size, int abgr, float glow) {
+        drawFixedSize(renderer.textBatch(),x,y,width,size,abgr,glow);
+    }
+
+    public void drawFixedSize(TextBatchGUI batch, float x, float y, float width, float size, int abgr, float glow) {
         if (!isBlank() && size >= 1) {
-            FontsGUI fonts = renderer.fonts();
-            TextBatchGUI batch = renderer.textBatch();
+            FontsGUI fonts = batch.fonts();
             float scale = fonts.relativeScale(size);
             float width_unscaled = fonts.advanceSum(this);
             float desired_width = width_unscaled * scale;
@@ -488,9 +495,12 @@ public class Paragraph implements Iterable<Word> {
     public void drawDynamicSize(RendererGUI renderer, float x, float y, float width, float size) { drawDynamicSize(renderer, x, y, width, size,0.0f); }
     public void drawDynamicSize(RendererGUI renderer, float x, float y, float width, float size, float glow) { drawDynamicSize(renderer, x, y, width, size, glow, 1.0f); }
     public void drawDynamicSize(RendererGUI renderer, float x, float y, float width, float size, float glow, float alpha) {
+        drawDynamicSize(renderer.textBatch(),x,y,width,size,glow,alpha);
+    }
+
+    public void drawDynamicSize(TextBatchGUI batch, float x, float y, float width, float size, float glow, float alpha) {
         if (!isBlank() && size >= 1) {
-            FontsGUI fonts = renderer.fonts();
-            TextBatchGUI batch = renderer.textBatch();
+            FontsGUI fonts = batch.fonts();
             float scale = fonts.relativeScale(size);
             float width_unscaled = fonts.advanceSum(this);
             float desired_width = width_unscaled * scale;
@@ -527,9 +537,12 @@ public class Paragraph implements Iterable<Word> {
 
     public void drawDynamicSize(RendererGUI renderer, float x, float y, float width, float size, int abgr) { drawDynamicSize(renderer, x, y, width, size, abgr, 0.0f); }
     public void drawDynamicSize(RendererGUI renderer, float x, float y, float width, float size, int abgr, float glow) {
+        drawDynamicSize(renderer.textBatch(),x,y,width,size,abgr,glow);
+    }
+
+    public void drawDynamicSize(TextBatchGUI batch, float x, float y, float width, float size, int abgr, float glow) {
         if (!isBlank() && size >= 1) {
-            FontsGUI fonts = renderer.fonts();
-            TextBatchGUI batch = renderer.textBatch();
+            FontsGUI fonts = batch.fonts();
             float scale = fonts.relativeScale(size);
             float width_unscaled = fonts.advanceSum(this);
             float desired_width = width_unscaled * scale;
@@ -110,7 +110,7 @@ public class Text implements Iterable<Paragraph> {
                         if ((y - descent) < bounds.maxY) {
                             batch.pushVertex(x,y,color_float,bits); }
                     } else for (Word word : line) {
-                        float word_width = word.width() * scale;
+                        float word_width = word.width(fonts) * scale;
                         if ((x + word_width) > bounds.maxX && x > bounds.minX) {
                             if (y < bounds.minY) return;
                             x = bounds.minX; y -= size;
@@ -206,7 +206,7 @@ public class Text implements Iterable<Paragraph> {
                     }
                     for (Word word : line) {
                         int word_length = word.length();
-                        float word_width = word.width() * scale;
+                        float word_width = word.width(fonts) * scale;
                         if ((x + word_width) > bounds.maxX && x > bounds.minX) {
                             if (y < bounds.minY) return;
                             x = bounds.minX; y -= size;
@@ -304,7 +304,7 @@ public class Text implements Iterable<Paragraph> {
                             float color = TextColors.floatBits(Paragraph.Type.DEFAULT);
                             batch.pushVertex(x,y,color,bits); }
                     } else for (Word word : line) {
-                        float word_width = word.width() * scale;
+                        float word_width = word.width(fonts) * scale;
                         if ((x + word_width) > bounds.maxX && x > bounds.minX) {
                             if (y < bounds.minY) return;
                             x = bounds.minX; y -= size;
@@ -401,7 +401,7 @@ public class Text implements Iterable<Paragraph> {
                     }
                     for (Word word : line) {
                         int word_length = word.length();
-                        float word_width = word.width() * scale;
+                        float word_width = word.width(fonts) * scale;
                         if ((x + word_width) > bounds.maxX && x > bounds.minX) {
                             if (y < bounds.minY) return;
                             x = bounds.minX; y -= size;
@@ -813,11 +813,14 @@ public class Text implements Iterable<Paragraph> {
     public boolean isOrderedDefault() { return insert_bottom; }
 
     /** @return Desired width of text. Set correct font before calling this */
-    public float width() {
+    public float width() { return width(GUI.fonts); }
+
+    /** @return Desired width of text, measured with the current font of fonts */
+    public float width(FontsGUI fonts) {
         if (isBlank()) return 0;
         float width = 0;
         for (Paragraph line : lines) {
-            width = Math.max(width,line.width());
+            width = Math.max(width,line.width(fonts));
         } return width;
     }
 
@@ -835,15 +838,25 @@ public class Text implements Iterable<Paragraph> {
      * @param wrap word wrapping enabled
      * @return the height of the text */
     public float height(float width, float font_size, boolean wrap) {
+        return height(GUI.fonts,width,font_size,wrap);
+    }
+
+    /**
+     * Height measured with the current font of fonts (i.e. CommandBufferGUI.fonts() while recording)
+     * @param fonts fonts with the text font bound
+     * @param width width of the container
+     * @param font_size size of the current font
+     * @param wrap word wrapping enabled
+     * @return the height of the text */
+    public float height(FontsGUI fonts, float width, float font_size, boolean wrap) {
         if (isBlank() || font_size < 1f || width < 1f ) return 0;
-        FontsGUI fonts = GUI.fonts;
         float height = 0f;
         float scale = fonts.relativeScale(font_size);
         if (wrap) { float space = fonts.advance(' ') * scale;
             for (Paragraph line : lines) {
                 float x = 0f;
                 for (Word word : line) {
-                    float word_width = word.width() * scale;
+                    float word_width = word.width(fonts) * scale;
                     if ((x + word_width) > width && x > 0) { x = 0;
                         height += font_size;
                     } x += (word_width + space);
@@ -859,9 +872,19 @@ public class Text implements Iterable<Paragraph> {
      * @param width width of the container
      * @param font_size size of the current font */
     public void cursorPosition(Vector2f dst, float width, float font_size, boolean wrap) {
+        cursorPosition(GUI.fonts,dst,width,font_size,wrap);
+    }
+
+    /**
+     * Cursors position relative to the top right corner of Text,
+     * measured with the current font of fonts (i.e. CommandBufferGUI.fonts() while recording)
+     * @param fonts fonts with the text font bound
+     * @param dst destination of position
+     * @param width width of the container
+     * @param font_size size of the current font */
+    public void cursorPosition(FontsGUI fonts, Vector2f dst, float width, float font_size, boolean wrap) {
         if (isBlank() || font_size < 1f || width < 1f ) dst.zero();
-        else { FontsGUI fonts = GUI.fonts;
-            float scale = fonts.relativeScale(font_size);
+        else { float scale = fonts.relativeScale(font_size);
             float space = fonts.advance(' ') * scale;
             float x = 0; float y = 0;
             if (wrap) {
@@ -872,7 +895,7 @@ public class Text implements Iterable<Paragraph> {
                         int char_index = 0;
                         if (char_index == cursor_char_index) break;
                         for (Word word : line) {
-                            float word_width = word.width() * scale;
+                            float word_width = word.width(fonts) * scale;
                             if ((x + word_width) > width && x > 0) {
                                 y -= font_size; x = 0;
                             } if (char_index == cursor_char_index) break out;
@@ -887,7 +910,7 @@ public class Text implements Iterable<Paragraph> {
                         }
                     } else {
                         for (Word word : line) {
-                            float word_width = word.width() * scale;
+                            float word_width = word.width(fonts) * scale;
                             if ((x + word_width) > width && x > 0) {
                                 y -= font_size; x = 0; }
                             byte[] bytes = word.get();
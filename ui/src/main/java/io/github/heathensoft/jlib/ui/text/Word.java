@@ -98,8 +98,9 @@ public class Word {
 
     public int hashCode() { return Arrays.hashCode(value); }
 
-    public float width() { // Unscaled width pixels
-        FontsGUI boundFont = GUI.fonts;
+    public float width() { return width(GUI.fonts); }
+
+    public float width(FontsGUI boundFont) { // Unscaled width pixels
         if (boundFont.isMonospaced()) {
             float advance = boundFont.advance('x');
             return length() * advance;